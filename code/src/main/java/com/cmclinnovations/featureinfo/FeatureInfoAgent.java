@@ -21,12 +21,15 @@ import org.springframework.stereotype.Controller;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import com.cmclinnovations.featureinfo.config.ConfigStore;
+import com.cmclinnovations.featureinfo.objects.BatchRequest;
+import com.cmclinnovations.featureinfo.objects.BatchResult;
+import com.cmclinnovations.featureinfo.objects.FeatureResult;
 import com.cmclinnovations.featureinfo.objects.Request;
+import com.cmclinnovations.featureinfo.utils.KGClientRegistry;
 import com.cmclinnovations.featureinfo.utils.TimeSeriesCreator;
 
 import uk.ac.cam.cares.jps.base.agent.JPSAgent;
 import uk.ac.cam.cares.jps.base.discovery.AgentCaller;
-import uk.ac.cam.cares.jps.base.query.RemoteStoreClient;
 import uk.ac.cam.cares.jps.base.timeseries.TimeSeriesClient;
 
 /**
@@ -37,7 +40,7 @@ import uk.ac.cam.cares.jps.base.timeseries.TimeSeriesClient;
  * @author Michael Hillman {@literal <mdhillman@cmclinnovations.com>}
  */
 @Controller
-@WebServlet(urlPatterns = {"/get", "/status", "/refresh", "/make-time-series"})
+@WebServlet(urlPatterns = {"/get", "/get-batch", "/status", "/refresh", "/make-time-series"})
 public class FeatureInfoAgent extends JPSAgent {
 
     /**
@@ -92,17 +95,29 @@ public class FeatureInfoAgent extends JPSAgent {
      * 
      * @return QueryManager instance.
      */
-    public QueryManager getQueryManager() {
+    public synchronized QueryManager getQueryManager() {
         if(this.queryManager == null) {
             this.queryManager = new QueryManager(this.configStore);
 
-            RemoteStoreClient kgClient = new RemoteStoreClient();
-            TimeSeriesClient<Instant> tsClient = new TimeSeriesClient<>(kgClient, Instant.class);
-            this.queryManager.setClients(kgClient, tsClient);
+            KGClientRegistry kgClients = new KGClientRegistry();
+            TimeSeriesClient<Instant> tsClient = new TimeSeriesClient<>(kgClients.getFederatedClient(), Instant.class);
+            this.queryManager.setClients(kgClients, tsClient);
+            this.queryManager.refresh();
         }
         return this.queryManager;
     }
 
+    /**
+     * Release resources held by the agent.
+     */
+    @Override
+    public synchronized void destroy() {
+        if(this.queryManager != null) {
+            this.queryManager.shutdown();
+        }
+        super.destroy();
+    }
+
     /**
      * Processes HTTP requests with originating details.
      *
@@ -144,6 +159,19 @@ public class FeatureInfoAgent extends JPSAgent {
                 }
                 break;
 
+                case "/get-batch":
+                case "get-batch": {
+                    // Run batched GET logic
+                    try {
+                        getBatchRoute(requestParams, response);
+                    } catch(Exception exception) {
+                        LOGGER.error("Could not run /get-batch route.", exception);
+                        response.setStatus(Response.Status.INTERNAL_SERVER_ERROR.getStatusCode());
+                        response.getWriter().write("{\"description\":\"Could not run /get-batch route successfully!\"}");
+                    }
+                }
+                break;
+
                 case "/refresh":
                 case "refresh" : {
                     // Re-scan endpoints and reload configuration
@@ -175,7 +203,7 @@ public class FeatureInfoAgent extends JPSAgent {
                     // Something else
                     LOGGER.info("Detected an unknown request route...");
                     response.setStatus(Response.Status.NOT_IMPLEMENTED.getStatusCode());
-                    response.getWriter().write("{\"description\":\"Unknown route, only '/get', '/refresh', and '/status' are permitted.\"}");
+                    response.getWriter().write("{\"description\":\"Unknown route, only '/get', '/get-batch', '/refresh', and '/status' are permitted.\"}");
                 }
                 break;
             }
@@ -212,10 +240,47 @@ public class FeatureInfoAgent extends JPSAgent {
 
         // Run information gathering logic
         Request request = OBJECT_MAPPER.readValue(requestParams.toString(),Request.class);
-        JSONObject result = this.getQueryManager().processRequest(request, response);
+        FeatureResult result = this.getQueryManager().processRequest(request, response);
+        if(result != null) {
+            // Stream result directly to the response
+            response.setStatus(Response.Status.OK.getStatusCode());
+            response.setContentType("text/json");
+            result.write(response.getWriter(), request.isPretty());
+        }
+    }
+
+    /**
+     * Initiate logic required to process a request on the "/get-batch" route.
+     * 
+     * @param requestParams HTTP request parameters
+     * @param response HTTp response
+     * 
+     * @throws IOException
+     */
+    protected void getBatchRoute(JSONObject requestParams, HttpServletResponse response) throws IOException {
+        LOGGER.info("Detected request to get meta and times series data for multiple IRIs.");
+
+        if(!this.valid) {
+            response.setStatus(Response.Status.INTERNAL_SERVER_ERROR.getStatusCode());
+            response.getWriter().write("{\"description\":\"Agent is in invalid state, please check server logs.\"}");
+            return;
+        } 
+
+        // Check for a valid request
+        if(!this.getQueryManager().checkBatchRequest(requestParams)) {
+            response.setStatus(Response.Status.BAD_REQUEST.getStatusCode());
+            response.getWriter().write("{\"description\":\"Request is missing required parameters, please check documentation.\"}");
+            return;
+        }
+
+        // Run information gathering logic
+        BatchRequest request = OBJECT_MAPPER.readValue(requestParams.toString(), BatchRequest.class);
+        BatchResult result = this.getQueryManager().processBatchRequest(request, response);
         if(result != null) {
+            // Stream result directly to the response
             response.setStatus(Response.Status.OK.getStatusCode());
-            response.getWriter().write(result.toString(2));
+            response.setContentType("text/json");
+            result.write(response.getWriter(), request.isPretty());
         }
     }
 
@@ -230,8 +295,12 @@ public class FeatureInfoAgent extends JPSAgent {
         LOGGER.info("Detected request to get agent status...");
 
         if(this.valid) {
+            JSONObject status = new JSONObject();
+            status.put("description", "Ready to serve.");
+            status.put("statistics", this.getQueryManager().getStatistics());
+
             response.setStatus(Response.Status.OK.getStatusCode());
-            response.getWriter().write("{\"description\":\"Ready to serve.\"}");
+            response.getWriter().write(status.toString());
         } else {
             response.setStatus(Response.Status.INTERNAL_SERVER_ERROR.getStatusCode());
             response.getWriter().write("{\"description\":\"Could not initialise a valid FeatureInfoAgent instance!\"}");
@@ -258,6 +327,7 @@ public class FeatureInfoAgent extends JPSAgent {
 
         // Force refresh of configuration
         this.configStore.loadDetails();
+        this.getQueryManager().refresh();
 
         // Respond
         response.setStatus(Response.Status.OK.getStatusCode());
@@ -2,7 +2,11 @@ package com.cmclinnovations.featureinfo;
 
 import java.io.IOException;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
 
 import javax.servlet.http.HttpServletResponse;
 import javax.ws.rs.InternalServerErrorException;
@@ -13,15 +17,32 @@ import org.apache.logging.log4j.Logger;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
+import com.cmclinnovations.featureinfo.config.AgentSettings;
+import com.cmclinnovations.featureinfo.config.AggregateOverride;
+import com.cmclinnovations.featureinfo.config.AggregateSettings;
 import com.cmclinnovations.featureinfo.config.ConfigEntry;
 import com.cmclinnovations.featureinfo.config.ConfigStore;
 import com.cmclinnovations.featureinfo.core.ClassHandler;
+import com.cmclinnovations.featureinfo.core.meta.MetaCache;
 import com.cmclinnovations.featureinfo.core.meta.MetaHandler;
+import com.cmclinnovations.featureinfo.core.time.TimeBoundsIndex;
 import com.cmclinnovations.featureinfo.core.time.TimeHandler;
+import com.cmclinnovations.featureinfo.core.time.TimeWindow;
+import com.cmclinnovations.featureinfo.core.time.TimeWindowCache;
+import com.cmclinnovations.featureinfo.core.time.TimeSeriesResult;
+import com.cmclinnovations.featureinfo.core.time.TimeTableIndex;
+import com.cmclinnovations.featureinfo.core.trajectory.LayerIndexRegistry;
 import com.cmclinnovations.featureinfo.core.trajectory.TrajectoryHandler;
+import com.cmclinnovations.featureinfo.objects.BatchRequest;
+import com.cmclinnovations.featureinfo.objects.BatchResult;
+import com.cmclinnovations.featureinfo.objects.FeatureResult;
 import com.cmclinnovations.featureinfo.objects.Request;
+import com.cmclinnovations.featureinfo.utils.ExpiringCache;
+import com.cmclinnovations.featureinfo.utils.KGClientRegistry;
+import com.cmclinnovations.featureinfo.utils.RDBPoolRegistry;
+import com.cmclinnovations.featureinfo.utils.TaskExecutor;
+import com.cmclinnovations.featureinfo.utils.TimeSeriesClientCache;
 
-import uk.ac.cam.cares.jps.base.query.RemoteStoreClient;
 import uk.ac.cam.cares.jps.base.timeseries.TimeSeriesClient;
 
 /**
@@ -41,15 +62,105 @@ public class QueryManager {
     private final ConfigStore configStore;
 
     /**
-     * Internal KG handling.
+     * Internal KG handling, one client per endpoint.
      */
-    private RemoteStoreClient kgClient;
+    private KGClientRegistry kgClients;
 
     /**
      * Internal time series handling.
      */
     private TimeSeriesClient<Instant> tsClient;
 
+    /**
+     * Pool used to run the meta, time, and trajectory stages concurrently.
+     */
+    private final TaskExecutor stageExecutor;
+
+    /**
+     * Pool used to retrieve the time series of batched IRIs (kept separate from
+     * the stage pool so that large batches cannot starve single requests).
+     */
+    private final TaskExecutor batchExecutor;
+
+    /**
+     * Pool used to run individual queries within a stage concurrently (kept
+     * separate from the stage pool so that stages never wait on themselves).
+     */
+    private final TaskExecutor queryExecutor;
+
+    /**
+     * Timeout (in seconds) for individual concurrent queries.
+     */
+    private final long queryTimeout;
+
+    /**
+     * Maximum number of time series retrieved concurrently for a single request.
+     */
+    private final int timeParallelism;
+
+    /**
+     * Deadlines (in seconds) for each of the concurrent stages.
+     */
+    private final long metaTimeout;
+    private final long timeTimeout;
+    private final long trajectoryTimeout;
+
+    /**
+     * Cache of class determination results, shared across requests.
+     */
+    private final ExpiringCache<ClassHandler.CacheKey, List<String>> classCache;
+
+    /**
+     * Maximum number of IRIs injected into a single batched query.
+     */
+    private final int batchSize;
+
+    /**
+     * Maximum number of IRIs accepted by a single batch request.
+     */
+    private final int batchMaxIris;
+
+    /**
+     * Maximum number of feature IRIs injected into each chunk of a trajectory
+     * metadata query.
+     */
+    private final int trajectoryChunkSize;
+
+    /**
+     * Cache of metadata query results, for entries with caching enabled.
+     */
+    private final MetaCache metaCache;
+
+    /**
+     * Pooled connections to the RDB, shared across requests.
+     */
+    private final RDBPoolRegistry rdbPools;
+
+    /**
+     * Cache of time series clients constructed by the factory, keyed by data IRI.
+     */
+    private final TimeSeriesClientCache tsClientCache;
+
+    /**
+     * Index of the latest and first times of measurables.
+     */
+    private final TimeBoundsIndex boundsIndex;
+
+    /**
+     * Index of verified time series table layouts, used when aggregating.
+     */
+    private final TimeTableIndex tableIndex;
+
+    /**
+     * Cache of previously read NOW and LATEST time series windows.
+     */
+    private final TimeWindowCache windowCache;
+
+    /**
+     * In-memory feature layers used to evaluate trajectory intersections.
+     */
+    private final LayerIndexRegistry layerIndexes;
+
     /**
      * Initialise a new QueryManager instance.
      * 
@@ -57,21 +168,102 @@ public class QueryManager {
      */
     public QueryManager(ConfigStore configStore) {
         this.configStore = configStore;
+        this.stageExecutor = new TaskExecutor("fia-stage", AgentSettings.getInt(AgentSettings.STAGE_THREADS, 24));
+        this.batchExecutor = new TaskExecutor("fia-batch", AgentSettings.getInt(AgentSettings.BATCH_THREADS, 8));
+        this.queryExecutor = new TaskExecutor("fia-query", AgentSettings.getInt(AgentSettings.QUERY_THREADS, 32));
+        this.queryTimeout = AgentSettings.getLong(AgentSettings.QUERY_TIMEOUT, 30);
+        this.timeParallelism = AgentSettings.getInt(AgentSettings.TIME_PARALLELISM, 8);
+        this.metaTimeout = AgentSettings.getLong(AgentSettings.META_TIMEOUT, 60);
+        this.timeTimeout = AgentSettings.getLong(AgentSettings.TIME_TIMEOUT, 120);
+        this.trajectoryTimeout = AgentSettings.getLong(AgentSettings.TRAJECTORY_TIMEOUT, 120);
+        this.classCache = new ExpiringCache<>(
+                AgentSettings.getInt(AgentSettings.CLASS_CACHE_SIZE, 10_000),
+                AgentSettings.getLong(AgentSettings.CLASS_CACHE_TTL, 300));
+        this.batchSize = Math.max(1, AgentSettings.getInt(AgentSettings.BATCH_SIZE, 100));
+        this.batchMaxIris = Math.max(1, AgentSettings.getInt(AgentSettings.BATCH_MAX_IRIS, 1000));
+        this.trajectoryChunkSize = Math.max(1, AgentSettings.getInt(AgentSettings.TRAJECTORY_CHUNK_SIZE, 500));
+        this.metaCache = new MetaCache(this.queryExecutor);
+        this.rdbPools = new RDBPoolRegistry();
+        this.tsClientCache = new TimeSeriesClientCache(
+                AgentSettings.getInt(AgentSettings.TS_CLIENT_CACHE_SIZE, 10_000),
+                AgentSettings.getLong(AgentSettings.TS_CLIENT_CACHE_TTL, 3600));
+        this.boundsIndex = new TimeBoundsIndex(
+                AgentSettings.getInt(AgentSettings.BOUNDS_INDEX_SIZE, 10_000),
+                AgentSettings.getLong(AgentSettings.BOUNDS_INDEX_TTL, 300));
+        this.tableIndex = new TimeTableIndex(
+                AgentSettings.getInt(AgentSettings.TABLE_INDEX_SIZE, 10_000),
+                AgentSettings.getLong(AgentSettings.TABLE_INDEX_TTL, 600));
+        this.windowCache = new TimeWindowCache(
+                AgentSettings.getLong(AgentSettings.WINDOW_CACHE_MB, 64) * 1024 * 1024,
+                AgentSettings.getLong(AgentSettings.WINDOW_CACHE_TTL, 600));
+        this.layerIndexes = new LayerIndexRegistry(
+                this.rdbPools,
+                AgentSettings.getLong(AgentSettings.LAYER_INDEX_MB, 256) * 1024 * 1024);
+    }
+
+    /**
+     * Stops any running stages and releases pooled threads and connections.
+     */
+    public void shutdown() {
+        this.stageExecutor.shutdown();
+        this.batchExecutor.shutdown();
+        this.queryExecutor.shutdown();
+        this.layerIndexes.shutdown();
+        this.rdbPools.shutdown();
     }
 
     /**
      * Set the client instances used to connect to the KG and RDB.
      * 
-     * @param kgClient Connection to the KG(s).
+     * @param kgClients Registry of connections to the KG(s).
+     * @param tsClient  Default time series client.
      */
     public void setClients(
-            RemoteStoreClient kgClient,
+            KGClientRegistry kgClients,
             TimeSeriesClient<Instant> tsClient) {
 
-        this.kgClient = kgClient;
+        this.kgClients = kgClients;
         this.tsClient = tsClient;
     }
 
+    /**
+     * Rebuilds any state derived from the discovered stack endpoints and clears
+     * cached results; should be called after the configuration store has been
+     * reloaded.
+     */
+    public void refresh() {
+        if (this.kgClients != null) {
+            this.kgClients.rebuild(this.configStore.getStackEndpoints());
+        }
+        this.classCache.clear();
+        this.metaCache.clear();
+        this.tsClientCache.clear();
+        this.boundsIndex.clear();
+        this.tableIndex.clear();
+        this.windowCache.clear();
+        this.rdbPools.rebuild();
+        this.layerIndexes.rebuild(this.configStore);
+    }
+
+    /**
+     * Returns usage statistics for cached data structures and connection pools.
+     * 
+     * @return JSON object of statistics.
+     */
+    public JSONObject getStatistics() {
+        JSONObject statistics = new JSONObject();
+        statistics.put("classCache", this.classCache.getStatistics());
+        statistics.put("metaCache", this.metaCache.getStatistics());
+        statistics.put("subclassIndex", this.configStore.getSubclassIndex().getStatistics());
+        statistics.put("tsClientCache", this.tsClientCache.getStatistics());
+        statistics.put("boundsIndex", this.boundsIndex.getStatistics());
+        statistics.put("tableIndex", this.tableIndex.getStatistics());
+        statistics.put("windowCache", this.windowCache.getStatistics());
+        statistics.put("rdbPools", this.rdbPools.getStatistics());
+        statistics.put("layerIndexes", this.layerIndexes.getStatistics());
+        return statistics;
+    }
+
     /**
      * Check the incoming HTTP request for validity.
      * 
@@ -85,6 +277,50 @@ public class QueryManager {
             LOGGER.error("Could not find the required 'iri' field within the request's parameters.");
             return false;
         }
+
+        // Check that any time window parameters are valid
+        try {
+            TimeWindow.of(
+                    requestParams.has("from") ? requestParams.getLong("from") : null,
+                    requestParams.has("to") ? requestParams.getLong("to") : null,
+                    requestParams.has("pageSize") ? requestParams.getInt("pageSize") : null,
+                    requestParams.optString("cursor", null));
+        } catch (RuntimeException exception) {
+            LOGGER.error("Invalid time window parameters within the request.", exception);
+            return false;
+        }
+
+        // Check that any aggregation parameters are valid
+        try {
+            getAggregate(
+                    requestParams.optString("aggregate", null),
+                    requestParams.has("aggregateInterval") ? requestParams.getLong("aggregateInterval") : null,
+                    requestParams.optString("aggregateUnit", null));
+        } catch (RuntimeException exception) {
+            LOGGER.error("Invalid aggregation parameters within the request.", exception);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Check the incoming HTTP request on the batch route for validity.
+     * 
+     * @param requestParams HTTP request parameters.
+     * 
+     * @return validity.
+     */
+    public boolean checkBatchRequest(JSONObject requestParams) {
+        // Check that there's a non-empty array of iris
+        JSONArray iris = requestParams.optJSONArray("iris");
+        if (iris == null) {
+            iris = requestParams.optJSONArray("IRIS");
+        }
+
+        if (iris == null || iris.isEmpty()) {
+            LOGGER.error("Could not find the required 'iris' array within the request's parameters.");
+            return false;
+        }
         return true;
     }
 
@@ -97,14 +333,18 @@ public class QueryManager {
      * - Get time series data from the relational database.
      * - Format and return as JSON.
      * 
+     * The meta, time, and trajectory stages are independent of each other, so are
+     * run concurrently; any stage that does not complete before its deadline is
+     * omitted from the result.
+     * 
      * @param request  Request object containing parameters.
      * @param response HTTP response to write back to.
      * 
-     * @return resulting JSON of discovered meta and time series data.
+     * @return discovered meta and time series data.
      * 
      * @throws IOException if response cannot be written to.
      */
-    public JSONObject processRequest(Request request, HttpServletResponse response) throws IOException {
+    public FeatureResult processRequest(Request request, HttpServletResponse response) throws IOException {
 
         LOGGER.info("Incoming IRI is: {}", request.getIri());
         request.getEndpoint().ifPresentOrElse(
@@ -119,29 +359,169 @@ public class QueryManager {
             return null;
         }
 
-        // Get meta data
-        JSONObject metadata = getMeta(request, classMatches);
+        if (classMatches == null) {
+            return null;
+        }
 
-        // Get time data
-        JSONArray timedata = getTime(request, classMatches);
+        // Start meta, time, and trajectory stages concurrently
+        final List<ConfigEntry> matches = classMatches;
+        long start = System.nanoTime();
 
-        // Get trajectory data
-        JSONObject trajectoryData = getTrajectory(request, classMatches);
+        Future<JSONObject> metaFuture = stageExecutor.submit(() -> getMeta(request, matches));
+        Future<List<TimeSeriesResult>> timeFuture = stageExecutor.submit(() -> getTimeResults(request, matches));
+        Future<JSONObject> trajectoryFuture = stageExecutor.submit(() -> getTrajectory(request, matches));
 
-        // Combine into a single JSON structure
-        JSONObject result = new JSONObject();
+        // Wait for each stage to finish (or pass its deadline)
+        JSONObject metadata = TaskExecutor.await(
+                metaFuture,
+                TaskExecutor.deadline(start, metaTimeout),
+                "meta data");
+        List<TimeSeriesResult> timedata = TaskExecutor.await(
+                timeFuture,
+                TaskExecutor.deadline(start, timeTimeout),
+                "time series");
+        JSONObject trajectoryData = TaskExecutor.await(
+                trajectoryFuture,
+                TaskExecutor.deadline(start, trajectoryTimeout),
+                "trajectory");
 
-        if (metadata != null && !metadata.isEmpty()) {
-            result.put("meta", metadata);
+        // Combine into a single result (trajectory meta data takes precedence)
+        if (trajectoryData != null && !trajectoryData.isEmpty()) {
+            metadata = trajectoryData;
         }
-        if (timedata != null && !timedata.isEmpty()) {
-            result.put("time", timedata);
+        return new FeatureResult(metadata, timedata);
+    }
+
+    /**
+     * Runs the core logic of the FIA for multiple IRIs at once. IRIs are grouped
+     * by their matching configuration entries so that the class determination and
+     * meta data queries are run once per batch of IRIs (rather than once per IRI).
+     * Time series data is then gathered for each IRI concurrently, on a bounded
+     * pool kept separate from that of the stages. Failures (or missed deadlines)
+     * are recorded against the affected IRIs rather than failing the batch.
+     * 
+     * @param request  Request object containing parameters.
+     * @param response HTTP response to write back to.
+     * 
+     * @return discovered meta and time series data, keyed by IRI.
+     * 
+     * @throws IOException if response cannot be written to.
+     */
+    public BatchResult processBatchRequest(BatchRequest request, HttpServletResponse response) throws IOException {
+        List<String> iris = request.getIris().stream()
+                .map(iri -> iri.replace("<", "").replace(">", ""))
+                .distinct()
+                .toList();
+
+        LOGGER.info("Incoming batch of {} IRIs.", iris.size());
+        if (iris.size() > this.batchMaxIris) {
+            response.setStatus(Response.Status.BAD_REQUEST.getStatusCode());
+            response.getWriter().write("{\"description\":\"Batch requests are limited to " + this.batchMaxIris
+                    + " IRIs.\"}");
+            return null;
         }
-        if (trajectoryData != null && !trajectoryData.isEmpty()) {
-            result.put("meta", trajectoryData);
+        request.getEndpoint().ifPresentOrElse(
+                endpoint -> LOGGER.info("Incoming enforced endpoint is: {}", endpoint),
+                () -> LOGGER.info("No incoming enforced endpoint, will attempt federation."));
+
+        // Determine class matches
+        Map<String, List<ConfigEntry>> classMatches = new LinkedHashMap<>();
+        ClassHandler classHandler = new ClassHandler(this.configStore, this.kgClients);
+        classHandler.setCache(this.classCache);
+
+        try {
+            for (List<String> batch : partition(iris)) {
+                classMatches.putAll(classHandler.determineClassMatches(batch, request.getEndpoint()));
+            }
+        } catch (InternalServerErrorException exception) {
+            response.setStatus(Response.Status.BAD_REQUEST.getStatusCode());
+            response.getWriter().write("{\"description\":\"" + exception.getMessage() + "\"}");
+            return null;
+        }
+
+        // Group IRIs by their matching configuration entries
+        Map<List<ConfigEntry>, List<String>> groups = new LinkedHashMap<>();
+        classMatches.forEach((iri, matches) -> {
+            if (!matches.isEmpty()) {
+                groups.computeIfAbsent(matches, key -> new ArrayList<>()).add(iri);
+            }
+        });
+
+        // Start batched meta stages and individual time stages concurrently
+        long start = System.nanoTime();
+        Map<List<String>, Future<Map<String, JSONObject>>> metaFutures = new LinkedHashMap<>();
+        Map<String, Future<List<TimeSeriesResult>>> timeFutures = new LinkedHashMap<>();
+
+        try {
+            groups.forEach((matches, groupIRIs) -> {
+                partition(groupIRIs).forEach(batch -> metaFutures.put(batch,
+                        stageExecutor.submit(() -> getBatchMeta(request, batch, matches))));
+
+                groupIRIs.forEach(iri -> timeFutures.put(iri,
+                        batchExecutor.submit(() -> getTimeResults(new Request(iri, request.getEndpoint().orElse(null)), matches))));
+            });
+
+            // Combine into a single result, keyed by IRI
+            BatchResult result = new BatchResult();
+            classMatches.forEach((iri, matches) -> result.addFeature(iri,
+                    matches.isEmpty() ? "Class determination found no matching configuration entries." : null));
+
+            long metaDeadline = TaskExecutor.deadline(start, metaTimeout);
+            metaFutures.forEach((batch, future) -> {
+                String failure = "Meta data could not be gathered.";
+                try {
+                    Map<String, JSONObject> metadata = TaskExecutor.await(future, metaDeadline, "batched meta data");
+                    if (metadata != null) {
+                        metadata.forEach(result::setMeta);
+                        return;
+                    }
+                    failure = "Deadline passed before meta data could be gathered.";
+                } catch (RuntimeException exception) {
+                    LOGGER.error("Execution of batched meta data stage has failed!", exception);
+                }
+
+                for (String iri : batch) {
+                    result.addFailure(iri, failure);
+                }
+            });
+
+            long timeDeadline = TaskExecutor.deadline(start, timeTimeout);
+            timeFutures.forEach((iri, future) -> {
+                try {
+                    List<TimeSeriesResult> timedata = TaskExecutor.await(future, timeDeadline, "time series");
+                    if (timedata != null) {
+                        result.setTime(iri, timedata);
+                    } else if (future.isCancelled()) {
+                        result.addFailure(iri, "Deadline passed before time series could be gathered.");
+                    }
+                } catch (RuntimeException exception) {
+                    LOGGER.error("Execution of time series stage has failed for IRI: {}", iri, exception);
+                    result.addFailure(iri, "Time series could not be gathered.");
+                }
+            });
+
+            return result;
+        } finally {
+            // Don't leave work running for a result that won't be returned
+            metaFutures.values().forEach(future -> future.cancel(true));
+            timeFutures.values().forEach(future -> future.cancel(true));
         }
+    }
 
-        return result;
+    /**
+     * Splits the input IRIs into consecutive batches of at most the configured
+     * batch size.
+     * 
+     * @param iris feature IRIs.
+     * 
+     * @return batches of IRIs.
+     */
+    private List<List<String>> partition(List<String> iris) {
+        List<List<String>> batches = new ArrayList<>();
+        for (int i = 0; i < iris.size(); i += this.batchSize) {
+            batches.add(iris.subList(i, Math.min(iris.size(), i + this.batchSize)));
+        }
+        return batches;
     }
 
     /**
@@ -156,7 +536,8 @@ public class QueryManager {
      * @throws IOException if response cannot be written to.
      */
     private List<ConfigEntry> determineClasses(Request request, HttpServletResponse response) throws IOException {
-        ClassHandler classHandler = new ClassHandler(this.configStore, this.kgClient);
+        ClassHandler classHandler = new ClassHandler(this.configStore, this.kgClients);
+        classHandler.setCache(this.classCache);
 
         try {
             return classHandler.determineClassMatches(request);
@@ -184,30 +565,103 @@ public class QueryManager {
      */
     private JSONObject getMeta(Request request, List<ConfigEntry> classMatches) {
         MetaHandler metaHandler = new MetaHandler(request.getIri(), request.getEndpoint(), this.configStore);
-        metaHandler.setClient(this.kgClient);
+        metaHandler.setClient(this.kgClients);
+        metaHandler.setExecutor(this.queryExecutor, this.queryTimeout);
+        metaHandler.setCache(this.metaCache);
         return metaHandler.getData(classMatches);
     }
 
     /**
-     * Runs a TimeHandler instance to loop through the input class matches, query
-     * the KG for
-     * measurement IRIs, then contact the RDB to get time series values.
+     * Runs a MetaHandler instance to query the KG for the meta data of multiple
+     * IRIs that share the same class matches.
      * 
-     * @param iri          feature IRI.
+     * @param request      batch request.
+     * @param iris         feature IRIs.
      * @param classMatches discovered configuration entries will class matches.
      * 
-     * @return formatted time series data.
+     * @return formatted meta data, keyed by IRI.
+     */
+    private Map<String, JSONObject> getBatchMeta(BatchRequest request, List<String> iris,
+            List<ConfigEntry> classMatches) {
+        MetaHandler metaHandler = new MetaHandler(request.getEndpoint(), this.configStore);
+        metaHandler.setClient(this.kgClients);
+        metaHandler.setExecutor(this.queryExecutor, this.queryTimeout);
+        metaHandler.setCache(this.metaCache);
+        return metaHandler.getBatchData(iris, classMatches);
+    }
+
+    /**
+     * Runs a TimeHandler instance to get populated time series for the input
+     * class matches, without converting them to JSON.
+     * 
+     * @param request      request object.
+     * @param classMatches discovered configuration entries will class matches.
+     * 
+     * @return populated time series results.
+     */
+    private List<TimeSeriesResult> getTimeResults(Request request, List<ConfigEntry> classMatches) {
+        return createTimeHandler(request).getResults(classMatches);
+    }
+
+    /**
+     * Returns the request level aggregation options.
+     * 
+     * @param function label of aggregation function, or "none" to disable (may
+     *                 be null).
+     * @param interval length of each bucket (defaults to 1).
+     * @param unit     time unit of interval (defaults to hours).
+     * 
+     * @return aggregation override (or null if not set).
+     * 
+     * @throws IllegalArgumentException if parameters are invalid.
+     */
+    private static AggregateOverride getAggregate(String function, Long interval, String unit) {
+        if (function == null || function.isEmpty()) {
+            return null;
+        }
+        if (function.equalsIgnoreCase("none")) {
+            return AggregateOverride.DISABLED;
+        }
+        return new AggregateOverride(AggregateSettings.of((interval == null) ? 1 : interval, unit, function));
+    }
+
+    /**
+     * Creates a TimeHandler instance for the input request.
+     * 
+     * @param request request object.
+     * 
+     * @return new TimeHandler instance.
      */
-    private JSONArray getTime(Request request, List<ConfigEntry> classMatches) {
+    private TimeHandler createTimeHandler(Request request) {
         TimeHandler timeHandler = new TimeHandler(request.getIri(), request.getEndpoint(), this.configStore);
-        timeHandler.setClients(this.kgClient, this.tsClient, null);
-        return timeHandler.getData(classMatches);
+        timeHandler.setClients(this.kgClients, this.tsClient, null);
+        timeHandler.setPools(this.rdbPools);
+        timeHandler.setClientCache(this.tsClientCache);
+        timeHandler.setExecutor(this.queryExecutor, this.queryTimeout, this.timeParallelism);
+        timeHandler.setMaxPoints(request.getMaxPoints());
+        timeHandler.setBoundsIndex(this.boundsIndex);
+        timeHandler.setTableIndex(this.tableIndex);
+        timeHandler.setWindowCache(this.windowCache);
+        timeHandler.setTimeWindow(TimeWindow.of(
+                request.getFrom(),
+                request.getTo(),
+                request.getPageSize(),
+                request.getCursor()));
+        timeHandler.setAggregate(getAggregate(
+                request.getAggregate(),
+                request.getAggregateInterval(),
+                request.getAggregateUnit()));
+        return timeHandler;
     }
 
     private JSONObject getTrajectory(Request request, List<ConfigEntry> classMatches) {
         TrajectoryHandler trajectoryHandler = new TrajectoryHandler(request.getIri(), request.getEndpoint(),
                 this.configStore, request.getLowerBound(), request.getUpperBound());
-        trajectoryHandler.setClients(kgClient);
+        trajectoryHandler.setClients(this.kgClients);
+        trajectoryHandler.setExecutor(this.queryExecutor, this.queryTimeout, this.trajectoryChunkSize);
+        trajectoryHandler.setPools(this.rdbPools);
+        trajectoryHandler.setClientCache(this.tsClientCache);
+        trajectoryHandler.setLayers(this.layerIndexes);
         return trajectoryHandler.getData(classMatches);
     }
 }
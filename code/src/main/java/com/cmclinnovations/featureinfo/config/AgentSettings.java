@@ -0,0 +1,192 @@
+package com.cmclinnovations.featureinfo.config;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * This class handles reading optional, agent-wide tuning settings from
+ * environment variables. All settings have defaults so that none of the
+ * variables need to be set for the agent to function.
+ */
+public final class AgentSettings {
+
+    /**
+     * Logger for reporting info/errors.
+     */
+    private static final Logger LOGGER = LogManager.getLogger(AgentSettings.class);
+
+    /**
+     * Number of threads used to run the meta, time, and trajectory stages.
+     */
+    public static final String STAGE_THREADS = "FIA_STAGE_THREADS";
+
+    /**
+     * Deadline (in seconds) for the meta data stage of a request.
+     */
+    public static final String META_TIMEOUT = "FIA_META_TIMEOUT";
+
+    /**
+     * Deadline (in seconds) for the time series stage of a request.
+     */
+    public static final String TIME_TIMEOUT = "FIA_TIME_TIMEOUT";
+
+    /**
+     * Deadline (in seconds) for the trajectory stage of a request.
+     */
+    public static final String TRAJECTORY_TIMEOUT = "FIA_TRAJECTORY_TIMEOUT";
+
+    /**
+     * Number of threads used to run individual KG queries within a stage.
+     */
+    public static final String QUERY_THREADS = "FIA_QUERY_THREADS";
+
+    /**
+     * Timeout (in seconds) for individual KG queries run concurrently within a stage.
+     */
+    public static final String QUERY_TIMEOUT = "FIA_QUERY_TIMEOUT";
+
+    /**
+     * Maximum number of cached class determination results (zero to disable).
+     */
+    public static final String CLASS_CACHE_SIZE = "FIA_CLASS_CACHE_SIZE";
+
+    /**
+     * Time-to-live (in seconds) of cached class determination results.
+     */
+    public static final String CLASS_CACHE_TTL = "FIA_CLASS_CACHE_TTL";
+
+    /**
+     * Maximum number of IRIs injected into a single batched query.
+     */
+    public static final String BATCH_SIZE = "FIA_BATCH_SIZE";
+
+    /**
+     * Maximum number of IRIs accepted by a single batch request.
+     */
+    public static final String BATCH_MAX_IRIS = "FIA_BATCH_MAX_IRIS";
+
+    /**
+     * Number of threads used to retrieve the time series of batched IRIs.
+     */
+    public static final String BATCH_THREADS = "FIA_BATCH_THREADS";
+
+    /**
+     * Minimum number of idle connections kept in each database connection pool.
+     */
+    public static final String RDB_POOL_MIN = "FIA_RDB_POOL_MIN";
+
+    /**
+     * Maximum number of connections in each database connection pool.
+     */
+    public static final String RDB_POOL_MAX = "FIA_RDB_POOL_MAX";
+
+    /**
+     * Time (in seconds) after which idle pooled database connections are closed.
+     */
+    public static final String RDB_POOL_IDLE_TIMEOUT = "FIA_RDB_POOL_IDLE_TIMEOUT";
+
+    /**
+     * Maximum number of data IRIs with cached time series clients (zero to disable).
+     */
+    public static final String TS_CLIENT_CACHE_SIZE = "FIA_TS_CLIENT_CACHE_SIZE";
+
+    /**
+     * Time-to-live (in seconds) of cached time series clients.
+     */
+    public static final String TS_CLIENT_CACHE_TTL = "FIA_TS_CLIENT_CACHE_TTL";
+
+    /**
+     * Maximum number of time series retrieved concurrently for a single request.
+     */
+    public static final String TIME_PARALLELISM = "FIA_TIME_PARALLELISM";
+
+    /**
+     * Maximum number of cached latest/first times of measurables (zero to disable).
+     */
+    public static final String BOUNDS_INDEX_SIZE = "FIA_BOUNDS_INDEX_SIZE";
+
+    /**
+     * Time-to-live (in seconds) of cached latest/first times of measurables.
+     */
+    public static final String BOUNDS_INDEX_TTL = "FIA_BOUNDS_INDEX_TTL";
+
+    /**
+     * Maximum number of cached time series table layouts, used when aggregating
+     * in the database (zero to disable).
+     */
+    public static final String TABLE_INDEX_SIZE = "FIA_TABLE_INDEX_SIZE";
+
+    /**
+     * Time-to-live (in seconds) of cached time series table layouts.
+     */
+    public static final String TABLE_INDEX_TTL = "FIA_TABLE_INDEX_TTL";
+
+    /**
+     * Memory budget (in megabytes) for cached NOW and LATEST time series windows
+     * (zero to disable).
+     */
+    public static final String WINDOW_CACHE_MB = "FIA_WINDOW_CACHE_MB";
+
+    /**
+     * Time-to-live (in seconds) of cached time series windows.
+     */
+    public static final String WINDOW_CACHE_TTL = "FIA_WINDOW_CACHE_TTL";
+
+    /**
+     * Maximum number of feature IRIs injected into each chunk of a trajectory
+     * metadata query.
+     */
+    public static final String TRAJECTORY_CHUNK_SIZE = "FIA_TRAJECTORY_CHUNK_SIZE";
+
+    /**
+     * Memory budget (in megabytes) for in-memory trajectory feature layers
+     * (zero to disable).
+     */
+    public static final String LAYER_INDEX_MB = "FIA_LAYER_INDEX_MB";
+
+    /**
+     * Constructor.
+     */
+    private AgentSettings() {
+        // No
+    }
+
+    /**
+     * Returns the integer value of the input environment variable, or the
+     * default value if it is not set (or cannot be parsed).
+     *
+     * @param variable     name of environment variable.
+     * @param defaultValue value to use if not set.
+     *
+     * @return setting value.
+     */
+    public static int getInt(String variable, int defaultValue) {
+        return (int) getLong(variable, defaultValue);
+    }
+
+    /**
+     * Returns the long value of the input environment variable, or the
+     * default value if it is not set (or cannot be parsed).
+     *
+     * @param variable     name of environment variable.
+     * @param defaultValue value to use if not set.
+     *
+     * @return setting value.
+     */
+    public static long getLong(String variable, long defaultValue) {
+        String value = System.getenv(variable);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException exception) {
+            LOGGER.warn("Could not parse value of '{}' environment variable, using default of {}.", variable,
+                    defaultValue);
+            return defaultValue;
+        }
+    }
+
+}
+// End of class.
@@ -0,0 +1,74 @@
+package com.cmclinnovations.featureinfo.config;
+
+/**
+ * Enumerator for allowed time series aggregation functions.
+ */
+public enum AggregateFunction {
+
+    /**
+     * Mean of values within each bucket.
+     */
+    MEAN("mean"),
+
+    /**
+     * Minimum value within each bucket.
+     */
+    MIN("min"),
+
+    /**
+     * Maximum value within each bucket.
+     */
+    MAX("max"),
+
+    /**
+     * Sum of values within each bucket.
+     */
+    SUM("sum"),
+
+    /**
+     * Last value within each bucket.
+     */
+    LAST("last");
+
+    /**
+     * Textual label.
+     */
+    private final String label;
+
+    /**
+     * Initialise a new AggregateFunction enumerator.
+     * 
+     * @param label textual label.
+     */
+    private AggregateFunction(String label) {
+        this.label = label;
+    }
+
+    /**
+     * Returns the function with the input label.
+     * 
+     * @param label textual label.
+     * 
+     * @return matching function (or null).
+     */
+    public static AggregateFunction valueOfLabel(String label) {
+        for (AggregateFunction function : values()) {
+            if (function.label.equals(label)) {
+                return function;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get string value.
+     * 
+     * @returns string value.
+     */
+    @Override
+    public String toString() {
+        return this.label;
+    }
+
+}
+// End of enum.
@@ -0,0 +1,30 @@
+package com.cmclinnovations.featureinfo.config;
+
+/**
+ * Request level aggregation, overriding that of configuration entries. An
+ * override either sets the aggregation options to use, or disables
+ * aggregation altogether.
+ */
+public record AggregateOverride(
+
+    /**
+     * Aggregation options to use (null if aggregation is disabled).
+     */
+    AggregateSettings settings
+){
+
+    /**
+     * Override that disables aggregation.
+     */
+    public static final AggregateOverride DISABLED = new AggregateOverride(null);
+
+    /**
+     * Returns true if this override disables aggregation.
+     * 
+     * @return disabled state.
+     */
+    public boolean isDisabled() {
+        return this.settings == null;
+    }
+
+}
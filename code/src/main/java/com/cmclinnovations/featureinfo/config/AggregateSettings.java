@@ -0,0 +1,48 @@
+package com.cmclinnovations.featureinfo.config;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Options for aggregating time series values into fixed length buckets before
+ * they are returned.
+ */
+public record AggregateSettings(
+
+    /**
+     * Length of each bucket (in seconds).
+     */
+    long intervalSeconds,
+
+    /**
+     * Function used to combine the values within each bucket.
+     */
+    AggregateFunction function
+){
+
+    /**
+     * Creates aggregation options from raw values.
+     * 
+     * @param interval length of each bucket.
+     * @param unit     time unit of interval (defaults to hours if null or empty).
+     * @param function label of aggregation function.
+     * 
+     * @return aggregation options.
+     * 
+     * @throws IllegalArgumentException if any values are invalid.
+     */
+    public static AggregateSettings of(long interval, String unit, String function) {
+        TimeUnit timeUnit = (unit == null || unit.isEmpty()) ? TimeUnit.HOURS : TimeUnit.valueOf(unit.toUpperCase());
+        long intervalSeconds = timeUnit.toSeconds(interval);
+        if (intervalSeconds < 1) {
+            throw new IllegalArgumentException("Aggregation interval must be at least one second.");
+        }
+
+        AggregateFunction match = (function == null) ? null : AggregateFunction.valueOfLabel(function.toLowerCase());
+        if (match == null) {
+            throw new IllegalArgumentException(
+                    "Aggregation function must be one of \"mean\", \"min\", \"max\", \"sum\", or \"last\".");
+        }
+        return new AggregateSettings(intervalSeconds, match);
+    }
+
+}
@@ -0,0 +1,23 @@
+package com.cmclinnovations.featureinfo.config;
+
+/**
+ * Caching options for the results of a configuration entry's queries.
+ */
+public record CacheSettings(
+
+    /**
+     * Time (in seconds) that results are considered fresh for.
+     */
+    long ttlSeconds,
+
+    /**
+     * Maximum number of cached results.
+     */
+    int maxEntries,
+
+    /**
+     * Time (in seconds) after expiry during which results are still served
+     * whilst being refreshed in the background.
+     */
+    long staleSeconds
+){}
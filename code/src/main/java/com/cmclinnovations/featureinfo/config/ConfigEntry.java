@@ -10,6 +10,7 @@ import java.util.concurrent.TimeUnit;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import com.cmclinnovations.featureinfo.utils.QueryTemplate;
 import com.google.common.base.Objects;
 
 /**
@@ -39,6 +40,16 @@ public class ConfigEntry {
      */
     private String metaQueryContent;
 
+    /**
+     * Compiled form of the linked metadata query (may be null).
+     */
+    private QueryTemplate metaQueryTemplate;
+
+    /**
+     * Caching options for metadata query results (may be null).
+     */
+    private CacheSettings metaCache;
+
     /**
      * Location of the linked time series query file (may be null).
      */
@@ -49,6 +60,11 @@ public class ConfigEntry {
      */
     private String timeQueryContent;
 
+    /**
+     * Compiled form of the linked time series query (may be null).
+     */
+    private QueryTemplate timeQueryTemplate;
+
     /**
      * Time reference type (may be null).
      */
@@ -74,6 +90,11 @@ public class ConfigEntry {
      */
     private String timeDatabase;
 
+    /**
+     * Optional aggregation of time series values (may be null).
+     */
+    private AggregateSettings timeAggregate;
+
     private String pointIriQueryFile;
     private String pointIriQueryContent;
     private String featureIriQueryFile;
@@ -82,6 +103,29 @@ public class ConfigEntry {
     private String trajectoryMetaContent;
     private String trajectoryDatabase;
 
+    /**
+     * Tolerance used to simplify trajectory lines (zero to disable).
+     */
+    private double trajectoryTolerance;
+
+    /**
+     * Options for evaluating intersections against an in-memory layer (may be null).
+     */
+    private LayerSettings trajectoryLayer;
+    private String trajectoryLayerContent;
+
+    /**
+     * Compiled forms of the linked trajectory queries (may be null).
+     */
+    private QueryTemplate pointIriQueryTemplate;
+    private QueryTemplate featureIriQueryTemplate;
+    private QueryTemplate trajectoryMetaTemplate;
+
+    /**
+     * Type and result column of the feature query (may be null).
+     */
+    private FeatureQueryPlan featureIriQueryPlan;
+
     /**
      * Initialise a new ConfigEntry instance.
      * 
@@ -118,6 +162,24 @@ public class ConfigEntry {
         return this.metaQueryContent;
     }
 
+    /**
+     * Compiled meta query.
+     * 
+     * @return compiled meta query (may be null).
+     */
+    public QueryTemplate getMetaQueryTemplate() {
+        return this.metaQueryTemplate;
+    }
+
+    /**
+     * Caching options for metadata query results.
+     * 
+     * @return caching options (may be null if caching is disabled).
+     */
+    public CacheSettings getMetaCache() {
+        return this.metaCache;
+    }
+
     /**
      * Time query content.
      * 
@@ -127,6 +189,15 @@ public class ConfigEntry {
         return this.timeQueryContent;
     }
 
+    /**
+     * Compiled time query.
+     * 
+     * @return compiled time query (may be null).
+     */
+    public QueryTemplate getTimeQueryTemplate() {
+        return this.timeQueryTemplate;
+    }
+
     /**
      * Time reference type.
      * 
@@ -172,6 +243,15 @@ public class ConfigEntry {
         return this.timeDatabase;
     }
 
+    /**
+     * Returns the aggregation options for time series values.
+     * 
+     * @return aggregation options (or null if not aggregated).
+     */
+    public AggregateSettings getTimeAggregate() {
+        return this.timeAggregate;
+    }
+
     public String getPointIriQuery() {
         return pointIriQueryContent;
     }
@@ -188,6 +268,55 @@ public class ConfigEntry {
         return trajectoryDatabase;
     }
 
+    /**
+     * Returns the tolerance used to simplify trajectory lines.
+     * 
+     * @return tolerance in units of point coordinates (zero if disabled).
+     */
+    public double getTrajectoryTolerance() {
+        return trajectoryTolerance;
+    }
+
+    /**
+     * Returns the options for evaluating intersections against an in-memory
+     * copy of the feature layer.
+     * 
+     * @return layer options (or null if disabled).
+     */
+    public LayerSettings getTrajectoryLayer() {
+        return trajectoryLayer;
+    }
+
+    /**
+     * Returns the raw SQL query used to load the feature layer.
+     * 
+     * @return layer query (or null if disabled).
+     */
+    public String getTrajectoryLayerQuery() {
+        return trajectoryLayerContent;
+    }
+
+    public QueryTemplate getPointIriQueryTemplate() {
+        return pointIriQueryTemplate;
+    }
+
+    public QueryTemplate getFeatureIriQueryTemplate() {
+        return featureIriQueryTemplate;
+    }
+
+    public QueryTemplate getTrajectoryMetaQueryTemplate() {
+        return trajectoryMetaTemplate;
+    }
+
+    /**
+     * Returns the type and result column of the feature query.
+     * 
+     * @return feature query plan (or null if no feature query).
+     */
+    public FeatureQueryPlan getFeatureIriQueryPlan() {
+        return featureIriQueryPlan;
+    }
+
     /**
      * Generates hash code for this instance.
      * 
@@ -352,6 +481,74 @@ public class ConfigEntry {
                 String timeLimitUnit,
                 String timeDatabase) throws IllegalArgumentException, IOException {
 
+            return build(id, classIRI, metaQueryFile, null, timeQueryFile, timeReference, timeLimitValue, timeLimitUnit,
+                    timeDatabase);
+        }
+
+        /**
+         * Build a new ConfigEntry.
+         * 
+         * @param id             unique ID for entry.
+         * @param classIRI       matching class IRI.
+         * @param metaQueryFile  relative location of metadata query file.
+         * @param metaCache      caching options for metadata results (may be null).
+         * @param timeQueryFile  relative location of time series query file.
+         * @param timeReference  reference for start of time limit.
+         * @param timeLimitValue time limit value.
+         * @param timeLimitUnit  time limit unit.
+         * @param timeDatabase   name of Postgres database with time data.
+         * 
+         * @return new ConfigEntry instance.
+         * @throws IllegalArgumentException If values for enumerators are invalid.
+         * @throws IOException              If query files are present, but cannot be
+         *                                  read.
+         */
+        public ConfigEntry build(
+                String id,
+                String classIRI,
+                String metaQueryFile,
+                CacheSettings metaCache,
+                String timeQueryFile,
+                String timeReference,
+                int timeLimitValue,
+                String timeLimitUnit,
+                String timeDatabase) throws IllegalArgumentException, IOException {
+
+            return build(id, classIRI, metaQueryFile, metaCache, timeQueryFile, timeReference, timeLimitValue,
+                    timeLimitUnit, timeDatabase, null);
+        }
+
+        /**
+         * Build a new ConfigEntry.
+         * 
+         * @param id             unique ID for entry.
+         * @param classIRI       matching class IRI.
+         * @param metaQueryFile  relative location of metadata query file.
+         * @param metaCache      caching options for metadata results (may be null).
+         * @param timeQueryFile  relative location of time series query file.
+         * @param timeReference  reference for start of time limit.
+         * @param timeLimitValue time limit value.
+         * @param timeLimitUnit  time limit unit.
+         * @param timeDatabase   name of Postgres database with time data.
+         * @param timeAggregate  aggregation options for time series (may be null).
+         * 
+         * @return new ConfigEntry instance.
+         * @throws IllegalArgumentException If values for enumerators are invalid.
+         * @throws IOException              If query files are present, but cannot be
+         *                                  read.
+         */
+        public ConfigEntry build(
+                String id,
+                String classIRI,
+                String metaQueryFile,
+                CacheSettings metaCache,
+                String timeQueryFile,
+                String timeReference,
+                int timeLimitValue,
+                String timeLimitUnit,
+                String timeDatabase,
+                AggregateSettings timeAggregate) throws IllegalArgumentException, IOException {
+
             // Check for valid parameters
             if (timeQueryFile != null && !timeQueryFile.isEmpty() && (timeDatabase == null || timeDatabase.isEmpty())) {
                 throw new IllegalArgumentException(
@@ -362,6 +559,7 @@ public class ConfigEntry {
             ConfigEntry entry = new ConfigEntry(id);
             entry.classIRI = classIRI;
             entry.metaQueryFile = metaQueryFile;
+            entry.metaCache = metaCache;
             entry.timeQueryFile = timeQueryFile;
 
             if (timeReference == null) {
@@ -396,6 +594,7 @@ public class ConfigEntry {
             }
 
             entry.timeDatabase = timeDatabase;
+            entry.timeAggregate = timeAggregate;
 
             // Populate query contents
             readQueryContent(entry);
@@ -421,6 +620,61 @@ public class ConfigEntry {
                 String metaQuery,
                 String database) throws IOException {
 
+            return build(id, classIRI, pointIriQuery, featureIriQuery, metaQuery, database, 0);
+        }
+
+        /**
+         * special case for trajectory query, with line simplification
+         * 
+         * @param id                unique ID for entry.
+         * @param classIRI          matching class IRI.
+         * @param pointIriQuery     relative location of point IRI query file.
+         * @param featureIriQuery   relative location of feature IRI query file.
+         * @param metaQuery         relative location of trajectory metadata query file.
+         * @param database          name of Postgres database for SQL feature queries.
+         * @param simplifyTolerance tolerance used to simplify lines (zero to disable).
+         * 
+         * @return new ConfigEntry instance.
+         * @throws IOException If query files cannot be read.
+         */
+        public ConfigEntry build(
+                String id,
+                String classIRI,
+                String pointIriQuery,
+                String featureIriQuery,
+                String metaQuery,
+                String database,
+                double simplifyTolerance) throws IOException {
+
+            return build(id, classIRI, pointIriQuery, featureIriQuery, metaQuery, database, simplifyTolerance, null);
+        }
+
+        /**
+         * special case for trajectory query, with line simplification and an
+         * optional in-memory feature layer
+         * 
+         * @param id                unique ID for entry.
+         * @param classIRI          matching class IRI.
+         * @param pointIriQuery     relative location of point IRI query file.
+         * @param featureIriQuery   relative location of feature IRI query file.
+         * @param metaQuery         relative location of trajectory metadata query file.
+         * @param database          name of Postgres database for SQL feature queries.
+         * @param simplifyTolerance tolerance used to simplify lines (zero to disable).
+         * @param layer             in-memory feature layer options (may be null).
+         * 
+         * @return new ConfigEntry instance.
+         * @throws IOException If query files cannot be read.
+         */
+        public ConfigEntry build(
+                String id,
+                String classIRI,
+                String pointIriQuery,
+                String featureIriQuery,
+                String metaQuery,
+                String database,
+                double simplifyTolerance,
+                LayerSettings layer) throws IOException {
+
             // Create and return ConfigEntry instance.
             ConfigEntry entry = new ConfigEntry(id);
             entry.classIRI = classIRI;
@@ -428,6 +682,8 @@ public class ConfigEntry {
             entry.featureIriQueryFile = featureIriQuery;
             entry.trajectoryMetaFile = metaQuery;
             entry.trajectoryDatabase = database;
+            entry.trajectoryTolerance = Math.max(0, simplifyTolerance);
+            entry.trajectoryLayer = layer;
 
             // Populate query contents
             readQueryContent(entry);
@@ -474,6 +730,20 @@ public class ConfigEntry {
                 Path file = this.configDirectory.resolve(Paths.get(entry.trajectoryMetaFile));
                 entry.trajectoryMetaContent = Files.readString(file);
             }
+            if (entry.trajectoryLayer != null) {
+                Path file = this.configDirectory.resolve(Paths.get(entry.trajectoryLayer.queryFile()));
+                entry.trajectoryLayerContent = Files.readString(file);
+            }
+
+            // Compile queries for injection at request time
+            entry.metaQueryTemplate = QueryTemplate.compile(entry.metaQueryContent);
+            entry.timeQueryTemplate = QueryTemplate.compile(entry.timeQueryContent);
+            entry.pointIriQueryTemplate = QueryTemplate.compile(entry.pointIriQueryContent);
+            entry.featureIriQueryTemplate = QueryTemplate.compile(entry.featureIriQueryContent);
+            entry.trajectoryMetaTemplate = QueryTemplate.compile(entry.trajectoryMetaContent);
+            if (entry.featureIriQueryTemplate != null) {
+                entry.featureIriQueryPlan = FeatureQueryPlan.of(entry.featureIriQueryTemplate);
+            }
         }
     }
 
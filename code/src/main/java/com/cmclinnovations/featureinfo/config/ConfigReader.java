@@ -119,8 +119,10 @@ public class ConfigReader {
             // Meta details
             JSONObject metaEntry = jsonEntry.optJSONObject("meta");
             String metaFile = null;
+            CacheSettings metaCache = null;
             if (metaEntry != null) {
                 metaFile = metaEntry.optString("queryFile");
+                metaCache = parseCache(id, metaEntry.optJSONObject("cache"));
             }
 
             // Time details
@@ -130,6 +132,7 @@ public class ConfigReader {
             String timeUnit = null;
             String timeReference = null;
             String timeDatabase = null;
+            AggregateSettings timeAggregate = null;
 
             if (timeEntry != null) {
                 timeFile = timeEntry.optString("queryFile");
@@ -137,10 +140,12 @@ public class ConfigReader {
                 timeUnit = timeEntry.optString("unit");
                 timeReference = timeEntry.optString("reference");
                 timeDatabase = timeEntry.optString("database");
+                timeAggregate = parseAggregate(id, timeEntry.optJSONObject("aggregate"));
             }
 
             // Build
-            return builder.build(id, clazz, metaFile, timeFile, timeReference, timeLimit, timeUnit, timeDatabase);
+            return builder.build(id, clazz, metaFile, metaCache, timeFile, timeReference, timeLimit, timeUnit,
+                    timeDatabase, timeAggregate);
         } else if (jsonEntry.has("trajectory")) { // special trajectory case
             // TODO: in futrue, it would be best to do tragectory calculations all in a
             // single sparql query. This requires the time series being kg accessible.
@@ -153,8 +158,11 @@ public class ConfigReader {
             String featureIriQuery = trajectoryEntry.getString("featureIriQuery");
             String metaQuery = trajectoryEntry.getString("metaQuery");
             String timeDatabase = trajectoryEntry.optString("database");
+            double simplifyTolerance = trajectoryEntry.optDouble("simplifyTolerance", 0);
+            LayerSettings layer = parseLayer(id, trajectoryEntry.optJSONObject("layer"));
 
-            return builder.build(id, clazz, pointIriQuery, featureIriQuery, metaQuery, timeDatabase);
+            return builder.build(id, clazz, pointIriQuery, featureIriQuery, metaQuery, timeDatabase,
+                    simplifyTolerance, layer);
         } else {
             // Assume old format entry
             String id = "entry-" + (entries.size() + 1);
@@ -176,5 +184,79 @@ public class ConfigReader {
 
     }
 
+    /**
+     * Parses the optional caching options of a query.
+     * 
+     * @param id          ID of configuration entry (for logging).
+     * @param cacheEntry  JSON object with caching options (may be null).
+     * 
+     * @return caching options, or null if caching is not enabled.
+     */
+    private CacheSettings parseCache(String id, JSONObject cacheEntry) {
+        if (cacheEntry == null) {
+            return null;
+        }
+
+        long ttlSeconds = cacheEntry.optLong("ttlSeconds", 0);
+        int maxEntries = cacheEntry.optInt("maxEntries", 1000);
+        long staleSeconds = cacheEntry.optLong("staleSeconds", 0);
+
+        if (ttlSeconds <= 0 || maxEntries <= 0) {
+            LOGGER.warn("Cache options for entry '{}' need positive 'ttlSeconds' and 'maxEntries', caching disabled.",
+                    id);
+            return null;
+        }
+        return new CacheSettings(ttlSeconds, maxEntries, Math.max(0, staleSeconds));
+    }
+
+    /**
+     * Parses the optional in-memory layer object of a trajectory entry.
+     * 
+     * @param id         entry ID (for logging).
+     * @param layerEntry layer JSON object (may be null).
+     * 
+     * @return layer options (or null if disabled).
+     */
+    private LayerSettings parseLayer(String id, JSONObject layerEntry) {
+        if (layerEntry == null) {
+            return null;
+        }
+
+        try {
+            return LayerSettings.of(
+                    layerEntry.optString("query"),
+                    layerEntry.optDouble("buffer", 0));
+        } catch (IllegalArgumentException exception) {
+            LOGGER.warn("Invalid layer options for entry '{}', in-memory layer disabled: {}", id,
+                    exception.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Parses the optional aggregation options of a time series.
+     * 
+     * @param id             ID of configuration entry (for logging).
+     * @param aggregateEntry JSON object with aggregation options (may be null).
+     * 
+     * @return aggregation options, or null if aggregation is not enabled.
+     */
+    private AggregateSettings parseAggregate(String id, JSONObject aggregateEntry) {
+        if (aggregateEntry == null) {
+            return null;
+        }
+
+        try {
+            return AggregateSettings.of(
+                    aggregateEntry.optLong("interval", 1),
+                    aggregateEntry.optString("unit"),
+                    aggregateEntry.optString("function", "mean"));
+        } catch (IllegalArgumentException exception) {
+            LOGGER.warn("Invalid aggregation options for entry '{}', aggregation disabled: {}", id,
+                    exception.getMessage());
+            return null;
+        }
+    }
+
 }
 // End of class.
\ No newline at end of file
@@ -35,6 +35,11 @@ public final class ConfigStore {
      */
     private final List<StackEndpoint> stackEndpoints = new ArrayList<>();
 
+    /**
+     * Index of the T-Box subclass closure for configured classes.
+     */
+    private final SubclassIndex subclassIndex;
+
     /**
      * Cached location of configuration file.
      */
@@ -45,6 +50,7 @@ public final class ConfigStore {
      */
     public ConfigStore() {
         this.configurationFile = Paths.get(getConfigLocation());
+        this.subclassIndex = new SubclassIndex();
     }
 
     /**
@@ -54,6 +60,7 @@ public final class ConfigStore {
      */
     public ConfigStore(String configurationFile) {
         this.configurationFile = Paths.get(configurationFile);
+        this.subclassIndex = new SubclassIndex();
     }
 
     /**
@@ -127,6 +134,15 @@ public final class ConfigStore {
              .collect(Collectors.toList());
     }
 
+    /**
+     * Returns the index of the T-Box subclass closure for configured classes.
+     * 
+     * @return subclass index.
+     */
+    public SubclassIndex getSubclassIndex() {
+        return this.subclassIndex;
+    }
+
     /**
      * Loads the configuration file details and scans for available
      * TWA Stack endpoints.
@@ -137,7 +153,7 @@ public final class ConfigStore {
 
     /**
      * Loads the configuration file details and scans for available
-     * TWA Stack endpoints.
+     * TWA Stack endpoints. When in a stack, the subclass index is also rebuilt.
      * 
      * @param inStack flag to load stack endpoints or skip
      */
@@ -154,6 +170,9 @@ public final class ConfigStore {
             StackInteractor interactor = new StackInteractor(this.stackEndpoints);
             interactor.discoverEndpoints();
             LOGGER.info("Have discovered a total of {} stack endpoints.", this.stackEndpoints.size());
+
+            // Precompute subclass closure for configured classes
+            this.subclassIndex.rebuild(this.configEntries, getStackEndpoints(StackEndpointType.BLAZEGRAPH));
         }
     }
 
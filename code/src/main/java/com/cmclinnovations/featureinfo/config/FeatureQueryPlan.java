@@ -0,0 +1,122 @@
+package com.cmclinnovations.featureinfo.config;
+
+import java.util.List;
+
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryFactory;
+
+import com.cmclinnovations.featureinfo.utils.QueryTemplate;
+
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+import net.sf.jsqlparser.statement.select.Select;
+import net.sf.jsqlparser.statement.select.SelectItem;
+
+/**
+ * Type and result column of a trajectory feature query, determined once when
+ * the configuration is read (rather than by parsing the query on each request).
+ * As neither depends on the values injected into placeholders, the template is
+ * rendered with fixed stand-in values to parse it.
+ *
+ * @param sparql         true if the query is SPARQL, false if SQL.
+ * @param selectVariable name of the single selected variable or column (or null
+ *                       if invalid).
+ * @param error          description of why the query cannot be run (or null
+ *                       if valid).
+ */
+public record FeatureQueryPlan(boolean sparql, String selectVariable, String error) {
+
+    /**
+     * Stand-in value for the [IRI] placeholder.
+     */
+    private static final String PLACEHOLDER_IRI = "<https://theworldavatar.io/fia/placeholder>";
+
+    /**
+     * Stand-in value for the endpoint placeholders.
+     */
+    private static final QueryTemplate.EndpointFragments PLACEHOLDER_ENDPOINTS = new QueryTemplate.EndpointFragments(
+            PLACEHOLDER_IRI + " ", PLACEHOLDER_IRI + " ", PLACEHOLDER_IRI);
+
+    /**
+     * Stand-in value for the [LINE_WKT] placeholder.
+     */
+    private static final String PLACEHOLDER_WKT = "LINESTRING(0 0,0 0)";
+
+    /**
+     * Determines the type and result column of the input feature query.
+     *
+     * @param template compiled feature query.
+     *
+     * @return query plan.
+     */
+    public static FeatureQueryPlan of(QueryTemplate template) {
+        Query query;
+        try {
+            query = QueryFactory.create(template.render(PLACEHOLDER_IRI, PLACEHOLDER_ENDPOINTS, PLACEHOLDER_WKT));
+        } catch (Exception exception) {
+            return ofSql(template);
+        }
+
+        try {
+            return new FeatureQueryPlan(true, getSelectVariable(query), null);
+        } catch (IllegalArgumentException exception) {
+            return new FeatureQueryPlan(true, null, exception.getMessage());
+        }
+    }
+
+    /**
+     * Determines the result column of the input SQL feature query.
+     *
+     * @param template compiled feature query.
+     *
+     * @return query plan.
+     */
+    private static FeatureQueryPlan ofSql(QueryTemplate template) {
+        String sql = template.renderParameterised(PLACEHOLDER_IRI, PLACEHOLDER_ENDPOINTS, PLACEHOLDER_WKT).sql();
+
+        Statement statement;
+        try {
+            statement = CCJSqlParserUtil.parse(sql);
+        } catch (JSQLParserException exception) {
+            return new FeatureQueryPlan(false, null, "Error parsing SQL feature query: " + exception.getMessage());
+        }
+
+        if (!(statement instanceof Select select) || !(select.getSelectBody() instanceof PlainSelect plainSelect)) {
+            return new FeatureQueryPlan(false, null, "Feature query is not a plain SELECT query");
+        }
+
+        List<SelectItem> selectItems = plainSelect.getSelectItems();
+        if (selectItems.size() != 1) {
+            return new FeatureQueryPlan(false, null, "Feature query needs to have exactly one SELECT parameter");
+        }
+        return new FeatureQueryPlan(false, selectItems.get(0).toString(), null);
+    }
+
+    /**
+     * Returns the single variable selected by the input trajectory query.
+     *
+     * @param query parsed SPARQL query.
+     *
+     * @return variable name.
+     *
+     * @throws IllegalArgumentException if the query does not select exactly one
+     *                                  variable.
+     */
+    public static String getSelectVariable(Query query) {
+        if (!query.isSelectType()) {
+            throw new IllegalArgumentException("Trajectory query is not a SELECT query");
+        }
+        if (query.isQueryResultStar()) {
+            throw new IllegalArgumentException(
+                    "SELECT * is not allowed for trajectory query, please provide exactly one SELECT parameter");
+        }
+        if (query.getResultVars().size() != 1) {
+            throw new IllegalArgumentException("Trajectory query needs to have exactly one SELECT parameter");
+        }
+        return query.getResultVars().get(0);
+    }
+
+}
+// End of class.
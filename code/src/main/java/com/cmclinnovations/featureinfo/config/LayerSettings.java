@@ -0,0 +1,42 @@
+package com.cmclinnovations.featureinfo.config;
+
+/**
+ * Options for evaluating trajectory intersections against an in-memory copy
+ * of a (mostly static) feature layer, rather than querying it each time.
+ */
+public record LayerSettings(
+
+    /**
+     * Relative location of the SQL query returning each feature's IRI and
+     * (EPSG:4326) geometry.
+     */
+    String queryFile,
+
+    /**
+     * Distance (in metres) within which features are considered to intersect
+     * the trajectory.
+     */
+    double buffer
+){
+
+    /**
+     * Creates layer options from raw values.
+     * 
+     * @param queryFile relative location of layer query file.
+     * @param buffer    buffer distance (in metres).
+     * 
+     * @return layer options.
+     * 
+     * @throws IllegalArgumentException if any values are invalid.
+     */
+    public static LayerSettings of(String queryFile, double buffer) {
+        if (queryFile == null || queryFile.isEmpty()) {
+            throw new IllegalArgumentException("Layer query file must be set.");
+        }
+        if (!Double.isFinite(buffer) || buffer < 0) {
+            throw new IllegalArgumentException("Layer buffer must be a non-negative distance.");
+        }
+        return new LayerSettings(queryFile, buffer);
+    }
+
+}
@@ -0,0 +1,200 @@
+package com.cmclinnovations.featureinfo.config;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import uk.ac.cam.cares.jps.base.query.RemoteStoreClient;
+
+/**
+ * In-memory index of the T-Box subclass closure, restricted to classes that can
+ * reach a configured class IRI. Built once per Blazegraph namespace (when the
+ * configuration is loaded) so that class determination at request time only
+ * needs to ask for the rdf:type of an IRI, rather than evaluating the
+ * rdfs:subClassOf* path each time.
+ */
+public class SubclassIndex {
+
+    /**
+     * Logger for reporting info/errors.
+     */
+    private static final Logger LOGGER = LogManager.getLogger(SubclassIndex.class);
+
+    /**
+     * Template query to determine all subclasses of the configured classes.
+     */
+    private static final String QUERY_TEMPLATE = """
+            PREFIX rdfs: <http://www.w3.org/2000/01/rdf-schema#>
+
+            SELECT DISTINCT ?type ?class
+            WHERE {
+                VALUES ?class { [CLASSES] }
+                ?type rdfs:subClassOf* ?class .
+                FILTER (!isBlank(?type))
+            }
+            """;
+
+    /**
+     * Immutable snapshot mapping each namespace URL to an index of rdf:type IRIs
+     * to the configured class IRIs they are (or are subclasses of).
+     */
+    private volatile Map<String, Map<String, Set<String>>> namespaces = Map.of();
+
+    /**
+     * Discards any existing index and builds a new one for the input
+     * configuration entries, querying each of the input Blazegraph namespaces.
+     * Namespaces that fail to respond are left out of the index.
+     *
+     * @param entries    configuration entries.
+     * @param blazegraphs Blazegraph namespaces holding T-Box data.
+     */
+    public synchronized void rebuild(List<ConfigEntry> entries, List<StackEndpoint> blazegraphs) {
+        Set<String> classIRIs = entries.stream()
+                .map(ConfigEntry::getClassIRI)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+
+        Map<String, Map<String, Set<String>>> newNamespaces = new HashMap<>();
+
+        if (!classIRIs.isEmpty()) {
+            String query = QUERY_TEMPLATE.replace("[CLASSES]", classIRIs.stream()
+                    .map(classIRI -> "<" + classIRI + ">")
+                    .collect(Collectors.joining(" ")));
+
+            for (StackEndpoint blazegraph : blazegraphs) {
+                try {
+                    JSONArray result = runQuery(blazegraph, query);
+                    newNamespaces.put(blazegraph.url(), parseJSON(result, classIRIs));
+                } catch (Exception exception) {
+                    LOGGER.warn("Could not build subclass index for namespace, will query it directly: {}",
+                            blazegraph.url(), exception);
+                }
+            }
+        }
+
+        this.namespaces = Map.copyOf(newNamespaces);
+        LOGGER.info("Have built subclass index for {} of {} Blazegraph namespaces.",
+                newNamespaces.size(), blazegraphs.size());
+    }
+
+    /**
+     * Returns true if the index holds the subclass closure of every input
+     * namespace (and hence can be used in place of querying them).
+     *
+     * @param blazegraphs Blazegraph namespaces.
+     *
+     * @return coverage state.
+     */
+    public boolean covers(List<StackEndpoint> blazegraphs) {
+        Map<String, Map<String, Set<String>>> snapshot = this.namespaces;
+        return !blazegraphs.isEmpty()
+                && blazegraphs.stream().allMatch(blazegraph -> snapshot.containsKey(blazegraph.url()));
+    }
+
+    /**
+     * Resolves the input rdf:type IRIs to the configured class IRIs that they are
+     * (or are subclasses of) within any of the input namespaces.
+     *
+     * @param types       rdf:type IRIs of a feature.
+     * @param blazegraphs Blazegraph namespaces.
+     *
+     * @return matching configured class IRIs.
+     */
+    public List<String> resolve(Collection<String> types, List<StackEndpoint> blazegraphs) {
+        Map<String, Map<String, Set<String>>> snapshot = this.namespaces;
+        Set<String> classIRIs = new LinkedHashSet<>();
+
+        for (StackEndpoint blazegraph : blazegraphs) {
+            Map<String, Set<String>> index = snapshot.getOrDefault(blazegraph.url(), Map.of());
+            types.forEach(type -> classIRIs.addAll(index.getOrDefault(type, Set.of())));
+        }
+        return List.copyOf(classIRIs);
+    }
+
+    /**
+     * Returns usage statistics for this index.
+     *
+     * @return JSON object of statistics.
+     */
+    public JSONObject getStatistics() {
+        Map<String, Map<String, Set<String>>> snapshot = this.namespaces;
+
+        JSONObject statistics = new JSONObject();
+        statistics.put("namespaces", snapshot.size());
+        statistics.put("types", snapshot.values().stream().mapToInt(Map::size).sum());
+        return statistics;
+    }
+
+    /**
+     * Runs the input query against the input namespace.
+     *
+     * @param blazegraph Blazegraph namespace.
+     * @param query      SPARQL query.
+     *
+     * @return query result.
+     */
+    protected JSONArray runQuery(StackEndpoint blazegraph, String query) {
+        RemoteStoreClient client = new RemoteStoreClient(
+                blazegraph.url(),
+                blazegraph.url(),
+                (blazegraph.username() == null || blazegraph.username().isEmpty()) ? null : blazegraph.username(),
+                (blazegraph.password() == null || blazegraph.password().isEmpty()) ? null : blazegraph.password());
+        return client.executeQuery(query);
+    }
+
+    /**
+     * Parse the JSON Array from the KG into an immutable index of rdf:type IRIs to
+     * configured class IRIs. Configured classes always map to themselves, so that
+     * features typed directly with a configured class are matched even if the
+     * class is missing from the T-Box.
+     *
+     * @param rawResult raw JSON results from KG.
+     * @param classIRIs configured class IRIs.
+     *
+     * @return index of types to class IRIs.
+     */
+    private Map<String, Set<String>> parseJSON(JSONArray rawResult, Set<String> classIRIs) {
+        Map<String, Set<String>> index = new HashMap<>();
+        classIRIs.forEach(classIRI -> index.computeIfAbsent(classIRI, key -> new HashSet<>()).add(classIRI));
+
+        if (rawResult != null) {
+            for (int i = 0; i < rawResult.length(); i++) {
+                JSONObject entry = rawResult.getJSONObject(i);
+                if (!entry.has("type") || !entry.has("class")) {
+                    continue;
+                }
+
+                String type = stripBrackets(entry.getString("type"));
+                String classIRI = stripBrackets(entry.getString("class"));
+                if (classIRIs.contains(classIRI)) {
+                    index.computeIfAbsent(type, key -> new HashSet<>()).add(classIRI);
+                }
+            }
+        }
+
+        return index.entrySet().stream()
+                .collect(Collectors.toUnmodifiableMap(Map.Entry::getKey, entry -> Set.copyOf(entry.getValue())));
+    }
+
+    /**
+     * Removes any angle brackets from the input IRI.
+     *
+     * @param iri IRI.
+     *
+     * @return IRI without brackets.
+     */
+    private static String stripBrackets(String iri) {
+        return iri.replace("<", "").replace(">", "");
+    }
+
+}
+// End of class.
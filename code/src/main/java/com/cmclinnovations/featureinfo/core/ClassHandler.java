@@ -6,7 +6,10 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.regex.Pattern;
 
 import javax.ws.rs.InternalServerErrorException;
@@ -20,12 +23,16 @@ import org.json.JSONObject;
 import com.cmclinnovations.featureinfo.FeatureInfoAgent;
 import com.cmclinnovations.featureinfo.config.ConfigEntry;
 import com.cmclinnovations.featureinfo.config.ConfigStore;
+import com.cmclinnovations.featureinfo.config.StackEndpoint;
 import com.cmclinnovations.featureinfo.config.StackEndpointType;
+import com.cmclinnovations.featureinfo.config.SubclassIndex;
 import com.cmclinnovations.featureinfo.objects.Request;
+import com.cmclinnovations.featureinfo.utils.ExpiringCache;
+import com.cmclinnovations.featureinfo.utils.KGClientRegistry;
+import com.cmclinnovations.featureinfo.utils.QueryTemplate;
 import com.cmclinnovations.featureinfo.utils.Utils;
 
 import uk.ac.cam.cares.jps.base.exception.JPSRuntimeException;
-import uk.ac.cam.cares.jps.base.query.RemoteStoreClient;
 
 /**
  * This class handles querying Blazegraph endpoints to determine which
@@ -44,24 +51,43 @@ public class ClassHandler {
     private final ConfigStore configStore;
 
     /**
-     * Cached connection to KG.
+     * Registry of connections to KG endpoints.
      */
-    private final RemoteStoreClient kgClient;
+    private final KGClientRegistry kgClients;
 
     /**
-     * Cached template query to determine classes.
+     * Cached template query to determine classes (shared by all instances).
      */
-    private String queryTemplate;
+    private static volatile QueryTemplate QUERY_TEMPLATE;
+
+    /**
+     * Cached template query to determine rdf:types (shared by all instances).
+     */
+    private static volatile QueryTemplate TYPE_QUERY_TEMPLATE;
+
+    /**
+     * Optional cache of previously determined class IRIs.
+     */
+    private ExpiringCache<CacheKey, List<String>> cache;
 
     /**
      * Initialise a new ClassHandler instance.
      * 
      * @param configStore Store of class mappings and endpoints.
-     * @param kgClient    Cached connection to KG.
+     * @param kgClients   Registry of connections to KG endpoints.
      */
-    public ClassHandler(ConfigStore configStore, RemoteStoreClient kgClient) {
+    public ClassHandler(ConfigStore configStore, KGClientRegistry kgClients) {
         this.configStore = configStore;
-        this.kgClient = kgClient;
+        this.kgClients = kgClients;
+    }
+
+    /**
+     * Sets the cache used to store previously determined class IRIs.
+     * 
+     * @param cache class IRI cache (may be null).
+     */
+    public void setCache(ExpiringCache<CacheKey, List<String>> cache) {
+        this.cache = cache;
     }
 
     /**
@@ -108,29 +134,193 @@ public class ClassHandler {
      * @return List of class IRIs.
      */
     private List<String> runClassQuery(Request request) {
-        // Read the class determination SPARQL query
-        loadQuery();
+        // Check for previously determined classes
+        CacheKey key = new CacheKey(request.getIri(), request.getEndpoint().orElse(null));
+        if (this.cache != null) {
+            List<String> cached = this.cache.get(key);
+            if (cached != null) {
+                LOGGER.debug("Using cached class IRIs for: {}", request.getIri());
+                return cached;
+            }
+        }
+
+        List<String> classIRIs = queryClasses(request);
+        if (this.cache != null && !classIRIs.isEmpty()) {
+            this.cache.put(key, List.copyOf(classIRIs));
+        }
+        return classIRIs;
+    }
+
+    /**
+     * Determines the configuration entries with a matching class for each of the
+     * input A-Box IRIs, using a single (batched) class determination query where
+     * possible. IRIs without any matching entries map to an empty list.
+     * 
+     * @param iris             A-Box IRIs of features.
+     * @param enforcedEndpoint optional enforced Blazegraph URL.
+     * 
+     * @return configuration entries with a matching class, keyed by IRI.
+     */
+    public Map<String, List<ConfigEntry>> determineClassMatches(List<String> iris, Optional<String> enforcedEndpoint) {
+        Map<String, List<String>> classIRIs = new LinkedHashMap<>();
+        List<String> uncached = new ArrayList<>();
+
+        // Check for previously determined classes
+        for (String iri : iris) {
+            List<String> cached = (this.cache == null) ? null
+                    : this.cache.get(new CacheKey(iri, enforcedEndpoint.orElse(null)));
+
+            if (cached != null) {
+                classIRIs.put(iri, cached);
+            } else {
+                classIRIs.put(iri, List.of());
+                uncached.add(iri);
+            }
+        }
+
+        if (!uncached.isEmpty()) {
+            queryClasses(uncached, enforcedEndpoint).forEach((iri, result) -> {
+                classIRIs.put(iri, result);
+                if (this.cache != null && !result.isEmpty()) {
+                    this.cache.put(new CacheKey(iri, enforcedEndpoint.orElse(null)), List.copyOf(result));
+                }
+            });
+        }
+
+        // Find matches for each IRI
+        Map<String, List<ConfigEntry>> matches = new LinkedHashMap<>();
+        classIRIs.forEach((iri, classes) -> matches.put(iri, configStore.getConfigEntries().stream()
+                .filter(c -> classes.contains(c.getClassIRI())).toList()));
+        return matches;
+    }
+
+    /**
+     * Determine the class IRIs of multiple features with a single query, falling
+     * back to individual queries if the query template cannot be batched.
+     * 
+     * @param iris             A-Box IRIs of features.
+     * @param enforcedEndpoint optional enforced Blazegraph URL.
+     * 
+     * @return List of class IRIs, keyed by IRI.
+     */
+    private Map<String, List<String>> queryClasses(List<String> iris, Optional<String> enforcedEndpoint) {
+        List<StackEndpoint> blazegraphs = Utils.getBlazegraphEndpoints(configStore, enforcedEndpoint);
+        SubclassIndex subclassIndex = configStore.getSubclassIndex();
+        boolean indexed = subclassIndex.covers(blazegraphs);
 
+        // Get final query string (post injection)
+        String queryString = Utils.queryInjectValues(
+                indexed ? getTypeQueryTemplate() : getClassQueryTemplate(),
+                iris,
+                configStore.getStackEndpoints(StackEndpointType.ONTOP),
+                blazegraphs);
+
+        Map<String, List<String>> results = new LinkedHashMap<>();
+        if (queryString == null) {
+            LOGGER.warn("Could not batch class determination query, running for each IRI.");
+            iris.forEach(iri -> results.put(iri, queryClasses(new Request(iri, enforcedEndpoint.orElse(null)))));
+            return results;
+        }
+
+        // Run query
+        JSONArray jsonResult = null;
+
+        try {
+            LOGGER.debug("Running batched class determination query for {} IRIs.", iris.size());
+            jsonResult = kgClients.executeQuery(blazegraphs, queryString);
+        } catch (JPSRuntimeException exception) {
+            LOGGER.error("Running batched class determination query has thrown an exception!", exception);
+            throw new InternalServerErrorException(
+                    "Class determination query has thrown an exception, cannot continue!", exception);
+        }
+
+        // Parse and return class IRIs for each feature
+        Utils.splitBatchResult(jsonResult, iris).forEach((iri, rawResult) -> {
+            if (indexed) {
+                results.put(iri, subclassIndex.resolve(parseJSON(rawResult, "type"), blazegraphs));
+            } else {
+                results.put(iri, parseJSON(rawResult, "class"));
+            }
+        });
+        return results;
+    }
+
+    /**
+     * Determine the class IRIs of the requested feature. If the subclass index
+     * covers all target Blazegraph namespaces, only the rdf:types of the IRI are
+     * queried and then resolved locally, otherwise the full class determination
+     * query is run.
+     * 
+     * @param request incoming request.
+     * 
+     * @return List of class IRIs.
+     */
+    private List<String> queryClasses(Request request) {
+        List<StackEndpoint> blazegraphs = Utils.getBlazegraphEndpoints(configStore, request.getEndpoint());
+        SubclassIndex subclassIndex = configStore.getSubclassIndex();
+
+        if (subclassIndex.covers(blazegraphs)) {
+            List<String> types = queryTypes(request, blazegraphs);
+            return subclassIndex.resolve(types, blazegraphs);
+        }
+        return queryClassTree(request);
+    }
+
+    /**
+     * Run the type determination query against the KG.
+     * 
+     * @param request     incoming request.
+     * @param blazegraphs target Blazegraph endpoints.
+     * 
+     * @return List of rdf:type IRIs.
+     */
+    private List<String> queryTypes(Request request, List<StackEndpoint> blazegraphs) {
         // Get final query string (post injection)
         String queryString = Utils.queryInject(
-                this.queryTemplate,
+                getTypeQueryTemplate(),
+                request.getIri(),
+                configStore.getStackEndpoints(StackEndpointType.ONTOP),
+                blazegraphs);
+
+        // Run query
+        JSONArray jsonResult = null;
+
+        try {
+            LOGGER.debug("Running type determination query.");
+            jsonResult = kgClients.executeQuery(blazegraphs, queryString);
+        } catch (JPSRuntimeException exception) {
+            LOGGER.error("Running type determination query has thrown an exception!", exception);
+            throw new InternalServerErrorException(
+                    "Type determination query has thrown an exception, cannot continue!", exception);
+        }
+
+        // Parse and return type IRIs
+        return parseJSON(jsonResult, "type");
+    }
+
+    /**
+     * Run the full class determination query against the KG.
+     * 
+     * @param request incoming request.
+     * 
+     * @return List of class IRIs.
+     */
+    private List<String> queryClassTree(Request request) {
+        // Get final query string (post injection)
+        String queryString = Utils.queryInject(
+                getClassQueryTemplate(),
                 request.getIri(),
                 configStore.getStackEndpoints(StackEndpointType.ONTOP),
                 Utils.getBlazegraphEndpoints(configStore, request.getEndpoint()));
 
         // Run query
-        List<String> endpoints = Utils.getBlazegraphURLs(configStore, request.getEndpoint());
         JSONArray jsonResult = null;
 
         try {
-            if (endpoints.size() == 1) {
-                LOGGER.debug("Running non-federated class determination query.");
-                kgClient.setQueryEndpoint(endpoints.get(0));
-                jsonResult = kgClient.executeQuery(queryString);
-            } else {
-                LOGGER.debug("Running federated class determination query.");
-                jsonResult = kgClient.executeFederatedQuery(endpoints, queryString);
-            }
+            LOGGER.debug("Running class determination query.");
+            jsonResult = kgClients.executeQuery(
+                    Utils.getBlazegraphEndpoints(configStore, request.getEndpoint()),
+                    queryString);
         } catch (JPSRuntimeException exception) {
             LOGGER.error("Running class determination query has thrown an exception!", exception);
             throw new InternalServerErrorException(
@@ -138,43 +328,69 @@ public class ClassHandler {
         }
 
         // Parse and return class IRIs
-        return parseJSON(jsonResult);
+        return parseJSON(jsonResult, "class");
     }
 
     /**
-     * Read and cache the class determination query.
+     * Returns the (cached) compiled type determination query.
+     * 
+     * @return query template.
      */
-    private void loadQuery() {
-        if (this.queryTemplate == null) {
+    private static QueryTemplate getTypeQueryTemplate() {
+        if (TYPE_QUERY_TEMPLATE == null) {
+            TYPE_QUERY_TEMPLATE = QueryTemplate.compile(loadQuery("WEB-INF/type-query.sparql"));
+        }
+        return TYPE_QUERY_TEMPLATE;
+    }
 
-            if (FeatureInfoAgent.CONTEXT != null) {
-                // Running as a servlet
-                try (InputStream inStream = FeatureInfoAgent.CONTEXT
-                        .getResourceAsStream("WEB-INF/class-query.sparql")) {
-                    this.queryTemplate = FileUtils.readWholeFileAsUTF8(inStream);
-                } catch (Exception exception) {
-                    LOGGER.error("Could not read the class determination query from its file!", exception);
-                }
-            } else {
-                // Running as application/as tests
-                try {
-                    Path queryFile = Paths.get("WEB-INF/class-query.sparql");
-                    this.queryTemplate = Files.readString(queryFile);
-                } catch (IOException ioException) {
-                    LOGGER.error("Could not read the class determination query from its file!", ioException);
-                }
+    /**
+     * Returns the (cached) compiled class determination query.
+     * 
+     * @return query template.
+     */
+    private static QueryTemplate getClassQueryTemplate() {
+        if (QUERY_TEMPLATE == null) {
+            QUERY_TEMPLATE = QueryTemplate.compile(loadQuery("WEB-INF/class-query.sparql"));
+        }
+        return QUERY_TEMPLATE;
+    }
+
+    /**
+     * Read an internal SPARQL query from its file.
+     * 
+     * @param file location of query file (relative to web application).
+     * 
+     * @return query template (or null if it could not be read).
+     */
+    private static String loadQuery(String file) {
+        if (FeatureInfoAgent.CONTEXT != null) {
+            // Running as a servlet
+            try (InputStream inStream = FeatureInfoAgent.CONTEXT.getResourceAsStream(file)) {
+                return FileUtils.readWholeFileAsUTF8(inStream);
+            } catch (Exception exception) {
+                LOGGER.error("Could not read the query from its file: {}", file, exception);
+            }
+        } else {
+            // Running as application/as tests
+            try {
+                Path queryFile = Paths.get(file);
+                return Files.readString(queryFile);
+            } catch (IOException ioException) {
+                LOGGER.error("Could not read the query from its file: {}", file, ioException);
             }
         }
+        return null;
     }
 
     /**
      * Parse the JSON Array from the KG into a list of distinct strings.
      * 
      * @param rawResult raw JSON results from KG.
+     * @param variable  name of result variable holding IRIs.
      * 
-     * @return list of unique class IRIs.
+     * @return list of unique IRIs.
      */
-    private List<String> parseJSON(JSONArray rawResult) {
+    private List<String> parseJSON(JSONArray rawResult, String variable) {
         List<String> classIRIs = new ArrayList<>();
 
         if (rawResult == null) {
@@ -184,8 +400,8 @@ public class ClassHandler {
         for (int i = 0; i < rawResult.length(); i++) {
             JSONObject entry = rawResult.getJSONObject(i);
 
-            if (entry.has("class")) {
-                String classIRI = entry.getString("class");
+            if (entry.has(variable)) {
+                String classIRI = entry.getString(variable);
                 classIRI = classIRI.replaceAll(Pattern.quote("<"), "");
                 classIRI = classIRI.replaceAll(Pattern.quote(">"), "");
 
@@ -197,5 +413,14 @@ public class ClassHandler {
         return classIRIs;
     }
 
+    /**
+     * Key for cached class determination results.
+     * 
+     * @param iri      A-Box IRI of feature.
+     * @param endpoint optional enforced Blazegraph URL (may be null).
+     */
+    public record CacheKey(String iri, String endpoint) {
+    }
+
 }
 // End of class.
\ No newline at end of file
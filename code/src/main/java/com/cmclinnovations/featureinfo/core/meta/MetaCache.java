@@ -0,0 +1,174 @@
+package com.cmclinnovations.featureinfo.core.meta;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import com.cmclinnovations.featureinfo.config.CacheSettings;
+import com.cmclinnovations.featureinfo.config.ConfigEntry;
+import com.cmclinnovations.featureinfo.utils.ExpiringCache;
+import com.cmclinnovations.featureinfo.utils.TaskExecutor;
+
+/**
+ * Cache of raw metadata query results for configuration entries that have
+ * caching enabled, shared across requests. Each entry has its own cache (sized
+ * and timed as per its configuration). Stale results are served whilst a
+ * background refresh is run, so that frequently requested features do not wait
+ * on the KG.
+ */
+public class MetaCache {
+
+    /**
+     * Logger for reporting info/errors.
+     */
+    private static final Logger LOGGER = LogManager.getLogger(MetaCache.class);
+
+    /**
+     * Caches for each configuration entry, keyed by entry ID.
+     */
+    private final Map<String, ExpiringCache<CacheKey, JSONArray>> caches = new ConcurrentHashMap<>();
+
+    /**
+     * Keys currently being refreshed in the background.
+     */
+    private final Set<CacheKey> refreshing = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Pool used to run background refreshes.
+     */
+    private final TaskExecutor refreshExecutor;
+
+    /**
+     * Initialise a new MetaCache instance.
+     *
+     * @param refreshExecutor pool used to run background refreshes.
+     */
+    public MetaCache(TaskExecutor refreshExecutor) {
+        this.refreshExecutor = refreshExecutor;
+    }
+
+    /**
+     * Returns true if the input entry has caching enabled.
+     *
+     * @param entry configuration entry.
+     *
+     * @return caching state.
+     */
+    public boolean isEnabled(ConfigEntry entry) {
+        return entry.getMetaCache() != null;
+    }
+
+    /**
+     * Returns the cached result for the input entry and IRI, or null if there is
+     * none. If the result is stale, a background refresh is started using the
+     * input loader (unless one is already running). Returned arrays are shared,
+     * so must not be modified.
+     *
+     * @param entry            configuration entry.
+     * @param iri              feature IRI.
+     * @param enforcedEndpoint optional enforced Blazegraph URL.
+     * @param loader           logic to re-run the query.
+     *
+     * @return cached result (or null).
+     */
+    public JSONArray get(ConfigEntry entry, String iri, Optional<String> enforcedEndpoint,
+            Callable<JSONArray> loader) {
+        ExpiringCache<CacheKey, JSONArray> cache = getCache(entry);
+        if (cache == null) {
+            return null;
+        }
+
+        CacheKey key = new CacheKey(entry.getID(), iri, enforcedEndpoint.orElse(null));
+        ExpiringCache.Lookup<JSONArray> lookup = cache.lookup(key);
+        if (lookup == null) {
+            return null;
+        }
+
+        if (lookup.stale() && this.refreshing.add(key)) {
+            LOGGER.debug("Serving stale metadata for '{}', refreshing in background.", iri);
+            this.refreshExecutor.submit(() -> {
+                try {
+                    cache.put(key, loader.call());
+                } catch (Exception exception) {
+                    LOGGER.warn("Background refresh of cached metadata has failed!", exception);
+                } finally {
+                    this.refreshing.remove(key);
+                }
+                return null;
+            });
+        }
+        return lookup.value();
+    }
+
+    /**
+     * Stores the result for the input entry and IRI (if the entry has caching
+     * enabled).
+     *
+     * @param entry            configuration entry.
+     * @param iri              feature IRI.
+     * @param enforcedEndpoint optional enforced Blazegraph URL.
+     * @param result           raw query result.
+     */
+    public void put(ConfigEntry entry, String iri, Optional<String> enforcedEndpoint, JSONArray result) {
+        ExpiringCache<CacheKey, JSONArray> cache = getCache(entry);
+        if (cache != null) {
+            cache.put(new CacheKey(entry.getID(), iri, enforcedEndpoint.orElse(null)), result);
+        }
+    }
+
+    /**
+     * Removes all cached results.
+     */
+    public void clear() {
+        this.caches.clear();
+    }
+
+    /**
+     * Returns usage statistics for each entry's cache.
+     *
+     * @return JSON object of statistics, keyed by entry ID.
+     */
+    public JSONObject getStatistics() {
+        JSONObject statistics = new JSONObject();
+        this.caches.forEach((id, cache) -> statistics.put(id, cache.getStatistics()));
+        return statistics;
+    }
+
+    /**
+     * Returns the cache for the input entry, creating it if needed.
+     *
+     * @param entry configuration entry.
+     *
+     * @return entry's cache (or null if caching is disabled).
+     */
+    private ExpiringCache<CacheKey, JSONArray> getCache(ConfigEntry entry) {
+        CacheSettings settings = entry.getMetaCache();
+        if (settings == null) {
+            return null;
+        }
+
+        return this.caches.computeIfAbsent(entry.getID(), id -> new ExpiringCache<>(
+                settings.maxEntries(),
+                settings.ttlSeconds(),
+                settings.staleSeconds()));
+    }
+
+    /**
+     * Key for cached metadata results.
+     *
+     * @param id       configuration entry ID.
+     * @param iri      feature IRI.
+     * @param endpoint optional enforced Blazegraph URL (may be null).
+     */
+    private record CacheKey(String id, String iri, String endpoint) {
+    }
+
+}
+// End of class.
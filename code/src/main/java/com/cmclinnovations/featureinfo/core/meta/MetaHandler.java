@@ -1,8 +1,11 @@
 package com.cmclinnovations.featureinfo.core.meta;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.Future;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -11,11 +14,12 @@ import org.json.JSONObject;
 
 import com.cmclinnovations.featureinfo.config.ConfigEntry;
 import com.cmclinnovations.featureinfo.config.ConfigStore;
+import com.cmclinnovations.featureinfo.config.StackEndpoint;
 import com.cmclinnovations.featureinfo.config.StackEndpointType;
+import com.cmclinnovations.featureinfo.utils.KGClientRegistry;
+import com.cmclinnovations.featureinfo.utils.TaskExecutor;
 import com.cmclinnovations.featureinfo.utils.Utils;
 
-import uk.ac.cam.cares.jps.base.query.RemoteStoreClient;
-
 /**
  * This class handles querying the Knowledge Graph to get meta data.
  */
@@ -42,9 +46,24 @@ public class MetaHandler {
     private final ConfigStore configStore;
 
     /**
-     * Connection to KG.
+     * Registry of connections to KG endpoints.
+     */
+    private KGClientRegistry kgClients;
+
+    /**
+     * Optional pool used to run queries for each class match concurrently.
+     */
+    private TaskExecutor queryExecutor;
+
+    /**
+     * Timeout (in seconds) for each concurrent query.
      */
-    private RemoteStoreClient kgClient;
+    private long queryTimeout;
+
+    /**
+     * Optional cache of raw query results.
+     */
+    private MetaCache metaCache;
 
     /**
      * Initialise a new MetaHandler instance.
@@ -60,12 +79,45 @@ public class MetaHandler {
     }
 
     /**
-     * Sets the remote store client used to connect to the KG.
+     * Initialise a new MetaHandler instance for use with multiple assets (see
+     * getBatchData).
+     * 
+     * @param enforcedEndpoint optional enforced Blazegraph URL.
+     * @param configStore Store of class mappings and stack endpoints.
+     */
+    public MetaHandler(Optional<String> enforcedEndpoint, ConfigStore configStore) {
+        this(null, enforcedEndpoint, configStore);
+    }
+
+    /**
+     * Sets the registry of clients used to connect to the KG.
+     * 
+     * @param kgClients registry of KG connection clients.
+     */
+    public void setClient(KGClientRegistry kgClients) {
+        this.kgClients = kgClients;
+    }
+
+    /**
+     * Sets the pool used to run the queries for each class match concurrently. If
+     * not set, queries are run sequentially.
+     * 
+     * @param queryExecutor pool of query threads.
+     * @param queryTimeout timeout (in seconds) for each query.
+     */
+    public void setExecutor(TaskExecutor queryExecutor, long queryTimeout) {
+        this.queryExecutor = queryExecutor;
+        this.queryTimeout = queryTimeout;
+    }
+
+    /**
+     * Sets the cache used to store raw query results for entries that have
+     * caching enabled.
      * 
-     * @param kgClient KG connection client.
+     * @param metaCache metadata cache (may be null).
      */
-    public void setClient(RemoteStoreClient kgClient) {
-        this.kgClient = kgClient;
+    public void setCache(MetaCache metaCache) {
+        this.metaCache = metaCache;
     }
 
     /**
@@ -77,52 +129,206 @@ public class MetaHandler {
      * @return JSONArray of query result.
      */
     public JSONObject getData(List<ConfigEntry> classMatches) {
-        List<JSONArray> rawResults = new ArrayList<>();
-        
-        // Iterate through each matching query
-        classMatches.forEach(classMatch -> {
+        // Run each matching query
+        List<JSONArray> rawResults = runQueries(classMatches, classMatch -> runCachedQuery(classMatch, this.iri));
+
+        // Format and combine meta data
+        return MetaParser.formatData(rawResults);  
+    }
+
+    /**
+     * Runs the meta data queries of the input class matches for multiple assets
+     * at once, injecting all IRIs into each query with a VALUES block, then
+     * formats the result for each asset.
+     * 
+     * @param iris IRIs of assets (that share the input class matches).
+     * @param classMatches configuration entries that contain class matches.
+     * 
+     * @return formatted meta data, keyed by IRI.
+     */
+    public Map<String, JSONObject> getBatchData(List<String> iris, List<ConfigEntry> classMatches) {
+        Map<String, List<JSONArray>> rawResults = new LinkedHashMap<>();
+        iris.forEach(iri -> rawResults.put(iri, new ArrayList<>()));
+
+        // Run each matching query
+        runQueries(classMatches, classMatch -> runBatchQuery(classMatch, iris)).forEach(
+            batchResult -> batchResult.forEach((iri, rawResult) -> rawResults.get(iri).add(rawResult)));
+
+        // Format and combine meta data for each asset
+        Map<String, JSONObject> results = new LinkedHashMap<>();
+        rawResults.forEach((iri, rawResult) -> results.put(iri, MetaParser.formatData(rawResult)));
+        return results;
+    }
+
+    /**
+     * Runs the input query task for each class match, concurrently if a pool has
+     * been set. Results of failed (or timed out) tasks are skipped, the rest are
+     * returned in the order of the input class matches.
+     * 
+     * @param classMatches configuration entries that contain class matches.
+     * @param task query logic to run for each class match.
+     * 
+     * @return query results, in class match order.
+     */
+    private <T> List<T> runQueries(List<ConfigEntry> classMatches, QueryTask<T> task) {
+        List<T> results = new ArrayList<>();
+
+        if(this.queryExecutor == null || classMatches.size() < 2) {
+            classMatches.forEach(classMatch -> {
+                try {
+                    results.add(task.run(classMatch));
+                } catch(Exception exception) {
+                    LOGGER.error("Execution for meta data query has failed!", exception);
+                }
+            });
+            return results;
+        }
+
+        // Submit all queries before waiting on any of them
+        long deadline = TaskExecutor.deadline(System.nanoTime(), this.queryTimeout);
+        List<Future<T>> futures = classMatches.stream()
+            .map(classMatch -> this.queryExecutor.submit(() -> task.run(classMatch)))
+            .toList();
+
+        for(Future<T> future : futures) {
             try {
-                JSONArray rawResult = runQuery(classMatch);
-                rawResults.add(rawResult);
+                T result = TaskExecutor.await(future, deadline, "meta data query");
+                if(result != null) results.add(result);
             } catch(Exception exception) {
                 LOGGER.error("Execution for meta data query has failed!", exception);
             }
-        });
+        }
+        return results;
+    }
 
-        // Format and combine meta data
-        return MetaParser.formatData(rawResults);  
+    /**
+     * Performs a single meta data query for the input class match and IRIs, or
+     * one query per IRI if the query template cannot be batched.
+     * 
+     * @param classMatch configuration entry containing query details.
+     * @param iris IRIs of assets.
+     * 
+     * @return Resulting JSONArray of meta data, keyed by IRI.
+     * 
+     * @throws Exception if SPARQL execution fails.
+     */
+    private Map<String, JSONArray> runBatchQuery(ConfigEntry classMatch, List<String> iris) throws Exception {
+        if(this.metaCache == null || !this.metaCache.isEnabled(classMatch)) {
+            return runUncachedBatchQuery(classMatch, iris);
+        }
+
+        // Use cached results where available
+        Map<String, JSONArray> cached = new LinkedHashMap<>();
+        List<String> uncached = new ArrayList<>();
+        for(String iri : iris) {
+            JSONArray result = this.metaCache.get(classMatch, iri, enforcedEndpoint, () -> runQuery(classMatch, iri));
+            if(result != null) {
+                cached.put(iri, result);
+            } else {
+                uncached.add(iri);
+            }
+        }
+
+        Map<String, JSONArray> queried = uncached.isEmpty() ? Map.of() : runUncachedBatchQuery(classMatch, uncached);
+        queried.forEach((iri, result) -> this.metaCache.put(classMatch, iri, enforcedEndpoint, result));
+
+        // Combine in input order
+        Map<String, JSONArray> results = new LinkedHashMap<>();
+        iris.forEach(iri -> results.put(iri, cached.containsKey(iri) ? cached.get(iri) : queried.get(iri)));
+        return results;
+    }
+
+    /**
+     * Performs a single meta data query for the input class match and IRIs (see
+     * runBatchQuery), ignoring any cached results.
+     * 
+     * @param classMatch configuration entry containing query details.
+     * @param iris IRIs of assets.
+     * 
+     * @return Resulting JSONArray of meta data, keyed by IRI.
+     * 
+     * @throws Exception if SPARQL execution fails.
+     */
+    private Map<String, JSONArray> runUncachedBatchQuery(ConfigEntry classMatch, List<String> iris) throws Exception {
+        List<StackEndpoint> blazegraphs = Utils.getBlazegraphEndpoints(configStore, enforcedEndpoint);
+        String query = Utils.queryInjectValues(
+            classMatch.getMetaQueryTemplate(),
+            iris,
+            configStore.getStackEndpoints(StackEndpointType.ONTOP),
+            blazegraphs
+        );
+
+        if(query == null) {
+            LOGGER.debug("Could not batch meta data query for '{}', running for each IRI.", classMatch.getID());
+            Map<String, JSONArray> results = new LinkedHashMap<>();
+            for(String iri : iris) {
+                results.put(iri, runQuery(classMatch, iri));
+            }
+            return results;
+        }
+
+        // Run query
+        LOGGER.debug("Running batched meta data query for {} IRIs.", iris.size());
+        return Utils.splitBatchResult(kgClients.executeQuery(blazegraphs, query), iris);
+    }
+
+    /**
+     * Performs a meta data query for the input class match, returning cached
+     * results where available (and the entry has caching enabled).
+     * 
+     * @param classMatch configuration entry containing query details.
+     * @param iri IRI of the asset.
+     * 
+     * @return Resulting JSONArray of meta data.
+     * 
+     * @throws Exception if SPARQL execution fails.
+     */
+    private JSONArray runCachedQuery(ConfigEntry classMatch, String iri) throws Exception {
+        if(this.metaCache == null || !this.metaCache.isEnabled(classMatch)) {
+            return runQuery(classMatch, iri);
+        }
+
+        JSONArray cached = this.metaCache.get(classMatch, iri, enforcedEndpoint, () -> runQuery(classMatch, iri));
+        if(cached != null) {
+            LOGGER.debug("Using cached meta data for entry '{}'.", classMatch.getID());
+            return cached;
+        }
+
+        JSONArray result = runQuery(classMatch, iri);
+        this.metaCache.put(classMatch, iri, enforcedEndpoint, result);
+        return result;
     }
 
     /**
      * Performs a meta data query for the input class match.
      * 
      * @param classMatch configuration entry containing query details.
+     * @param iri IRI of the asset.
      * 
      * @return Resulting JSONArray of meta data.
      * 
      * @throws Exception if SPARQL execution fails.
      */
-    private JSONArray runQuery(ConfigEntry classMatch) throws Exception {
-        String templateQuery = classMatch.getMetaQueryContent();
+    private JSONArray runQuery(ConfigEntry classMatch, String iri) throws Exception {
         String query = Utils.queryInject(
-            templateQuery,
-            this.iri,
+            classMatch.getMetaQueryTemplate(),
+            iri,
             configStore.getStackEndpoints(StackEndpointType.ONTOP),
             Utils.getBlazegraphEndpoints(configStore, enforcedEndpoint)
         );
 
         // Run query
-        List<String> endpoints = Utils.getBlazegraphURLs(configStore, enforcedEndpoint);
+        LOGGER.debug("Running meta data query.");
+        return kgClients.executeQuery(Utils.getBlazegraphEndpoints(configStore, enforcedEndpoint), query);
+    }
 
-        if(endpoints.size() == 1) {
-            LOGGER.debug("Running non-federated meta data query.");
-            kgClient.setQueryEndpoint(endpoints.get(0));
-            return kgClient.executeQuery(query);
+    /**
+     * Query logic to run for a single class match.
+     */
+    @FunctionalInterface
+    private interface QueryTask<T> {
 
-        } else {
-            LOGGER.debug("Running federated meta data query.");
-            return kgClient.executeFederatedQuery(endpoints, query);
-        }
+        T run(ConfigEntry classMatch) throws Exception;
     }
     
 }
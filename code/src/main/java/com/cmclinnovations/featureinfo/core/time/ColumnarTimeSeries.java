@@ -0,0 +1,286 @@
+package com.cmclinnovations.featureinfo.core.time;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.cmclinnovations.featureinfo.utils.StreamingJson;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import uk.ac.cam.cares.jps.base.timeseries.TimeSeries;
+
+/**
+ * Compact, column oriented, copy of a populated time series used on the
+ * response path. Times are held as primitive epoch seconds (plus nanosecond
+ * adjustments) and each column as a primitive array where its values can be
+ * held exactly, with a bitmap marking null values, so that the boxed values returned by the
+ * TimeSeriesClient can be discarded as soon as the series has been read.
+ */
+public final class ColumnarTimeSeries {
+
+    /**
+     * Epoch seconds of each time.
+     */
+    private final long[] seconds;
+
+    /**
+     * Nanosecond adjustment of each time.
+     */
+    private final int[] nanos;
+
+    /**
+     * Columns keyed by data IRI (in original order).
+     */
+    private final Map<String, Column> columns;
+
+    /**
+     * Initialise a new ColumnarTimeSeries instance.
+     *
+     * @param seconds epoch seconds of each time.
+     * @param nanos   nanosecond adjustment of each time.
+     * @param columns columns keyed by data IRI.
+     */
+    private ColumnarTimeSeries(long[] seconds, int[] nanos, Map<String, Column> columns) {
+        this.seconds = seconds;
+        this.nanos = nanos;
+        this.columns = columns;
+    }
+
+    /**
+     * Copies the input time series into columnar form.
+     *
+     * @param timeseries populated time series.
+     *
+     * @return columnar time series.
+     */
+    public static ColumnarTimeSeries of(TimeSeries<Instant> timeseries) {
+        List<Instant> times = timeseries.getTimes();
+        long[] seconds = new long[times.size()];
+        int[] nanos = new int[times.size()];
+
+        int i = 0;
+        for (Instant time : times) {
+            seconds[i] = time.getEpochSecond();
+            nanos[i] = time.getNano();
+            i++;
+        }
+
+        Map<String, Column> columns = new LinkedHashMap<>();
+        for (String dataIRI : timeseries.getDataIRIs()) {
+            List<?> values = timeseries.getValues(dataIRI);
+            if (values != null) {
+                columns.put(dataIRI, Column.of(values));
+            }
+        }
+        return new ColumnarTimeSeries(seconds, nanos, columns);
+    }
+
+    /**
+     * Returns the number of times.
+     *
+     * @return number of times.
+     */
+    public int size() {
+        return this.seconds.length;
+    }
+
+    /**
+     * Returns the time at the input index.
+     *
+     * @param index time index.
+     *
+     * @return time.
+     */
+    public Instant getTime(int index) {
+        return Instant.ofEpochSecond(this.seconds[index], this.nanos[index]);
+    }
+
+    /**
+     * Returns the column for the input data IRI.
+     *
+     * @param dataIRI data IRI.
+     *
+     * @return column (or null if not present).
+     */
+    public Column getColumn(String dataIRI) {
+        return this.columns.get(dataIRI);
+    }
+
+    /**
+     * Single column of values, held in the most compact form that fits all of
+     * its (non-null) values.
+     */
+    public static final class Column {
+
+        /**
+         * Number of values.
+         */
+        private final int size;
+
+        /**
+         * Marks values that are null.
+         */
+        private final BitSet nulls;
+
+        /**
+         * Floating point values (if a floating point column).
+         */
+        private final double[] doubles;
+
+        /**
+         * Integral values (if an integral column).
+         */
+        private final long[] longs;
+
+        /**
+         * Other values (if neither primitive column type), including numbers
+         * that a double cannot hold exactly.
+         */
+        private final Object[] objects;
+
+        /**
+         * Class reported for the column's values.
+         */
+        private final String valueClass;
+
+        /**
+         * Initialise a new Column instance.
+         *
+         * @param size       number of values.
+         * @param nulls      marks values that are null.
+         * @param doubles    floating point values (or null).
+         * @param longs      integral values (or null).
+         * @param objects    other values (or null).
+         * @param valueClass class reported for the column's values.
+         */
+        private Column(int size, BitSet nulls, double[] doubles, long[] longs, Object[] objects, String valueClass) {
+            this.size = size;
+            this.nulls = nulls;
+            this.doubles = doubles;
+            this.longs = longs;
+            this.objects = objects;
+            this.valueClass = valueClass;
+        }
+
+        /**
+         * Copies the input values into a column.
+         *
+         * @param values boxed values.
+         *
+         * @return column.
+         */
+        static Column of(List<?> values) {
+            int size = values.size();
+            BitSet nulls = new BitSet(size);
+
+            // Determine most compact type that holds all values exactly (other
+            // numbers, such as BigDecimal, are kept as they are)
+            boolean floating = true;
+            boolean integral = true;
+            Object first = null;
+
+            for (Object value : values) {
+                if (value == null) {
+                    continue;
+                }
+                if (first == null) {
+                    first = value;
+                }
+                boolean small = (value instanceof Integer || value instanceof Short || value instanceof Byte);
+                integral &= (small || value instanceof Long);
+                floating &= (small || value instanceof Double || value instanceof Float);
+            }
+
+            String valueClass = (first == null) ? null
+                    : (first instanceof Number) ? "Number" : first.getClass().getSimpleName();
+
+            long[] longs = integral ? new long[size] : null;
+            double[] doubles = (!integral && floating) ? new double[size] : null;
+            Object[] objects = (integral || floating) ? null : new Object[size];
+
+            int i = 0;
+            for (Object value : values) {
+                if (value == null) {
+                    nulls.set(i);
+                } else if (doubles != null) {
+                    // Widen floats via decimal form, so that 0.1F is held as 0.1 rather than 0.10000000149011612
+                    doubles[i] = (value instanceof Float floatValue) ? Double.parseDouble(floatValue.toString())
+                            : ((Number) value).doubleValue();
+                } else if (longs != null) {
+                    longs[i] = ((Number) value).longValue();
+                } else {
+                    objects[i] = value;
+                }
+                i++;
+            }
+            return new Column(size, nulls, doubles, longs, objects, valueClass);
+        }
+
+        /**
+         * Returns the number of values.
+         *
+         * @return number of values.
+         */
+        public int size() {
+            return this.size;
+        }
+
+        /**
+         * Returns the class reported for the column's values ("Number" for all
+         * numeric columns, otherwise the simple class name of the first value).
+         *
+         * @return value class (or null if all values are null).
+         */
+        public String getValueClass() {
+            return this.valueClass;
+        }
+
+        /**
+         * Returns the value at the input index, boxing it if required.
+         *
+         * @param index value index.
+         *
+         * @return value (may be null).
+         */
+        public Object get(int index) {
+            if (this.nulls.get(index)) {
+                return null;
+            } else if (this.doubles != null) {
+                return this.doubles[index];
+            } else if (this.longs != null) {
+                return this.longs[index];
+            }
+            return this.objects[index];
+        }
+
+        /**
+         * Writes the value at the input index without boxing numeric values.
+         *
+         * @param generator JSON generator.
+         * @param index     value index.
+         *
+         * @throws IOException if value cannot be written.
+         */
+        public void write(JsonGenerator generator, int index) throws IOException {
+            if (this.nulls.get(index)) {
+                generator.writeNull();
+            } else if (this.doubles != null) {
+                double value = this.doubles[index];
+                if (Double.isFinite(value)) {
+                    generator.writeNumber(value);
+                } else {
+                    generator.writeNull();
+                }
+            } else if (this.longs != null) {
+                generator.writeNumber(this.longs[index]);
+            } else {
+                StreamingJson.writeValue(generator, this.objects[index]);
+            }
+        }
+    }
+
+}
+// End of class.
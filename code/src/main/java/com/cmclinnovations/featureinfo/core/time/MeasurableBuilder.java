@@ -5,7 +5,10 @@ import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import org.apache.jena.util.FileUtils;
@@ -15,13 +18,15 @@ import org.json.JSONArray;
 import org.json.JSONObject;
 
 import com.cmclinnovations.featureinfo.FeatureInfoAgent;
+import com.cmclinnovations.featureinfo.config.AgentSettings;
 import com.cmclinnovations.featureinfo.config.ConfigEntry;
 import com.cmclinnovations.featureinfo.config.ConfigStore;
+import com.cmclinnovations.featureinfo.config.StackEndpoint;
 import com.cmclinnovations.featureinfo.config.StackEndpointType;
+import com.cmclinnovations.featureinfo.utils.KGClientRegistry;
+import com.cmclinnovations.featureinfo.utils.QueryTemplate;
 import com.cmclinnovations.featureinfo.utils.Utils;
 
-import uk.ac.cam.cares.jps.base.query.RemoteStoreClient;
-
 /**
  * This class handles both parsing a JSONObject into an internal Measurable object,
  * and querying the KG for the IRI of the time series instance that is the parent of a
@@ -36,9 +41,14 @@ public class MeasurableBuilder {
     private static final Logger LOGGER = LogManager.getLogger(MeasurableBuilder.class);
 
     /**
-     * SPARQL query template.
+     * Compiled SPARQL query template.
+     */
+    private static QueryTemplate QUERY_TEMPLATE;
+
+    /**
+     * Maximum number of measurable IRIs injected into a single query.
      */
-    private static String QUERY_TEMPLATE;
+    private static final int BATCH_SIZE = Math.max(1, AgentSettings.getInt(AgentSettings.BATCH_SIZE, 100));
 
     /**
      * Constructor.
@@ -90,31 +100,123 @@ public class MeasurableBuilder {
     }
 
     /**
-     * Given a measurable instance, this runs a SPARQL query to determine the IRI of the
-     * linked time series instance then stores it within the measurable instance.
+     * Given a list of measurable instances, this runs SPARQL queries to determine the IRIs
+     * of the linked time series instances (for those that do not have one already), then
+     * stores them within the measurable instances. IRIs are injected into batched queries
+     * with a VALUES block, falling back to individual queries if the query cannot be batched.
      * 
-     * @param measurable measurable instance.
+     * @param measurables measurable instances.
      * @param configStore store of KG endpoints.
      * @param enforcedEndpoint optional enforced KG endpoint.
-     * @param kgClient connection to KG.
+     * @param kgClients registry of connections to KG.
      * 
      * @throws Exception if SPARQL execution fails.
      */
     public static void populateTimeSeriesIRIs(
-        Measurable measurable, 
+        List<Measurable> measurables, 
         ConfigStore configStore, 
         Optional<String> enforcedEndpoint,
-        RemoteStoreClient kgClient) throws Exception {
+        KGClientRegistry kgClients) throws Exception {
 
-        // Bug out if already set
-        if(measurable.getTimeSeriesIRI() != null) return;
+        // Group measurables without a parent time series by their IRI
+        Map<String, List<Measurable>> missing = new LinkedHashMap<>();
+        measurables.stream()
+            .filter(measurable -> measurable.getTimeSeriesIRI() == null)
+            .forEach(measurable -> missing.computeIfAbsent(measurable.getEntityIRI(), key -> new ArrayList<>()).add(measurable));
 
-        // Get IRI of measurable entity
-        String measurableIRI = measurable.getEntityIRI();
+        // Bug out if all already set
+        if(missing.isEmpty()) return;
 
         // Load KG query
         loadQuery();
 
+        List<StackEndpoint> blazegraphs = Utils.getBlazegraphEndpoints(configStore, enforcedEndpoint);
+        List<String> measurableIRIs = new ArrayList<>(missing.keySet());
+
+        for(int i = 0; i < measurableIRIs.size(); i += BATCH_SIZE) {
+            List<String> batch = measurableIRIs.subList(i, Math.min(measurableIRIs.size(), i + BATCH_SIZE));
+
+            // Get final query string (post injection)
+            String queryString = Utils.queryInjectValues(
+                QUERY_TEMPLATE,
+                batch,
+                configStore.getStackEndpoints(StackEndpointType.ONTOP),
+                blazegraphs
+            );
+
+            if(queryString == null) {
+                // Cannot be batched, run individually
+                populateIndividually(batch, missing, configStore, enforcedEndpoint, kgClients);
+                continue;
+            }
+
+            // Run query, falling back to individual queries for this batch if it fails
+            LOGGER.debug("Running measurement population query for {} measurables.", batch.size());
+            JSONArray jsonResult;
+            try {
+                jsonResult = kgClients.executeQuery(blazegraphs, queryString);
+            } catch(Exception exception) {
+                LOGGER.warn("Batched measurement population query failed, falling back to individual queries.", exception);
+                populateIndividually(batch, missing, configStore, enforcedEndpoint, kgClients);
+                continue;
+            }
+
+            // Set parent time series IRIs using first result for each measurable
+            Utils.splitBatchResult(jsonResult, batch).forEach((measurableIRI, result) -> {
+                if(result.length() > 0) {
+                    String timeseriesIRI = result.getJSONObject(0).optString("timeseries");
+                    missing.get(measurableIRI).forEach(measurable -> measurable.setParentTimeSeries(timeseriesIRI));
+                }
+            });
+        }
+    }
+
+    /**
+     * Runs an individual query for each of the input measurable IRIs, so that a
+     * failure for one IRI does not prevent the others from being populated.
+     * 
+     * @param measurableIRIs IRIs of measurables to populate.
+     * @param missing measurable instances without a parent time series, keyed by IRI.
+     * @param configStore store of KG endpoints.
+     * @param enforcedEndpoint optional enforced KG endpoint.
+     * @param kgClients registry of connections to KG.
+     */
+    private static void populateIndividually(
+        List<String> measurableIRIs,
+        Map<String, List<Measurable>> missing,
+        ConfigStore configStore, 
+        Optional<String> enforcedEndpoint,
+        KGClientRegistry kgClients) {
+
+        for(String measurableIRI : measurableIRIs) {
+            try {
+                populateTimeSeriesIRI(missing.get(measurableIRI), configStore, enforcedEndpoint, kgClients);
+            } catch(Exception exception) {
+                LOGGER.error("Could not determine timeseries IRI for measurable: {}", measurableIRI, exception);
+            }
+        }
+    }
+
+    /**
+     * Given measurable instances that share an IRI, this runs a SPARQL query to determine
+     * the IRI of the linked time series instance then stores it within the measurable instances.
+     * 
+     * @param measurables measurable instances with the same IRI.
+     * @param configStore store of KG endpoints.
+     * @param enforcedEndpoint optional enforced KG endpoint.
+     * @param kgClients registry of connections to KG.
+     * 
+     * @throws Exception if SPARQL execution fails.
+     */
+    private static void populateTimeSeriesIRI(
+        List<Measurable> measurables, 
+        ConfigStore configStore, 
+        Optional<String> enforcedEndpoint,
+        KGClientRegistry kgClients) throws Exception {
+
+        // Get IRI of measurable entity
+        String measurableIRI = measurables.get(0).getEntityIRI();
+
         // Get final query string (post injection)
         String queryString = Utils.queryInject(
             QUERY_TEMPLATE,
@@ -124,23 +226,16 @@ public class MeasurableBuilder {
         );
 
         // Run query
-        List<String> endpoints = Utils.getBlazegraphURLs(configStore, enforcedEndpoint);
-        JSONArray jsonResult = null;
-
-        if(endpoints.size() == 1) {
-            LOGGER.debug("Running non-federated measurement population query.");
-            kgClient.setQueryEndpoint(endpoints.get(0));
-            jsonResult = kgClient.executeQuery(queryString);
-
-        } else {
-            LOGGER.debug("Running federated measurement population query.");
-            jsonResult = kgClient.executeFederatedQuery(endpoints, queryString);
-        }
+        LOGGER.debug("Running measurement population query.");
+        JSONArray jsonResult = kgClients.executeQuery(
+            Utils.getBlazegraphEndpoints(configStore, enforcedEndpoint),
+            queryString
+        );
 
         // Set parent time series IRI using first result
         if(jsonResult != null && jsonResult.length() > 0) {
             String timeseriesIRI = jsonResult.getJSONObject(0).optString("timeseries");
-            measurable.setParentTimeSeries(timeseriesIRI);
+            measurables.forEach(measurable -> measurable.setParentTimeSeries(timeseriesIRI));
         }
     }
 
@@ -153,7 +248,7 @@ public class MeasurableBuilder {
             if(FeatureInfoAgent.CONTEXT != null) {
                 // Running as a servlet
                 try (InputStream inStream =  FeatureInfoAgent.CONTEXT.getResourceAsStream("WEB-INF/measurable-query.sparql")) {
-                    QUERY_TEMPLATE = FileUtils.readWholeFileAsUTF8(inStream);
+                    QUERY_TEMPLATE = QueryTemplate.compile(FileUtils.readWholeFileAsUTF8(inStream));
                 } catch(Exception exception) {
                     LOGGER.error("Could not read the measurement population query from its file!", exception);
                 }
@@ -161,7 +256,7 @@ public class MeasurableBuilder {
                 // Running as application/as tests
                 try {
                     Path queryFile = Paths.get("WEB-INF/measurable-query.sparql");
-                    QUERY_TEMPLATE = Files.readString(queryFile);
+                    QUERY_TEMPLATE = QueryTemplate.compile(Files.readString(queryFile));
                 } catch(IOException ioException) {
                     LOGGER.error("Could not read the measurement population query from its file!", ioException);
                 }
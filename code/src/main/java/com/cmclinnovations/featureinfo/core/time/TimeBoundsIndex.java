@@ -0,0 +1,96 @@
+package com.cmclinnovations.featureinfo.core.time;
+
+import java.time.Instant;
+
+import org.json.JSONObject;
+
+import com.cmclinnovations.featureinfo.config.TimeReference;
+import com.cmclinnovations.featureinfo.utils.ExpiringCache;
+
+/**
+ * In-memory index of the latest and first timestamps of measurables, shared
+ * across requests. Knowing these anchors up front allows the time series window
+ * for LATEST and FIRST time references to be read in a single round trip,
+ * rather than querying for the anchor before reading the window.
+ * 
+ * Entries for FIRST anchors rarely change, whilst LATEST anchors are moved
+ * forward each time a newer value is read; both expire after a time-to-live so
+ * that deleted data is eventually noticed.
+ */
+public class TimeBoundsIndex {
+
+    /**
+     * Cached anchors.
+     */
+    private final ExpiringCache<AnchorKey, Instant> anchors;
+
+    /**
+     * Initialise a new TimeBoundsIndex instance.
+     *
+     * @param maxSize    maximum number of cached anchors (zero to disable).
+     * @param ttlSeconds time-to-live of cached anchors in seconds.
+     */
+    public TimeBoundsIndex(int maxSize, long ttlSeconds) {
+        this.anchors = new ExpiringCache<>(maxSize, ttlSeconds);
+    }
+
+    /**
+     * Returns the cached anchor for the input measurable and reference.
+     *
+     * @param measurableIRI measurable IRI.
+     * @param reference     time reference (LATEST or FIRST).
+     *
+     * @return cached anchor (or null).
+     */
+    public Instant get(String measurableIRI, TimeReference reference) {
+        return this.anchors.get(new AnchorKey(measurableIRI, reference));
+    }
+
+    /**
+     * Stores the anchor for the input measurable and reference.
+     *
+     * @param measurableIRI measurable IRI.
+     * @param reference     time reference (LATEST or FIRST).
+     * @param anchor        latest or first timestamp.
+     */
+    public void put(String measurableIRI, TimeReference reference, Instant anchor) {
+        this.anchors.put(new AnchorKey(measurableIRI, reference), anchor);
+    }
+
+    /**
+     * Removes the anchor for the input measurable and reference.
+     *
+     * @param measurableIRI measurable IRI.
+     * @param reference     time reference (LATEST or FIRST).
+     */
+    public void invalidate(String measurableIRI, TimeReference reference) {
+        this.anchors.invalidate(new AnchorKey(measurableIRI, reference));
+    }
+
+    /**
+     * Removes all cached anchors.
+     */
+    public void clear() {
+        this.anchors.clear();
+    }
+
+    /**
+     * Returns usage statistics for this index.
+     *
+     * @return JSON object of statistics.
+     */
+    public JSONObject getStatistics() {
+        return this.anchors.getStatistics();
+    }
+
+    /**
+     * Key for cached anchors.
+     *
+     * @param measurableIRI measurable IRI.
+     * @param reference     time reference.
+     */
+    private record AnchorKey(String measurableIRI, TimeReference reference) {
+    }
+
+}
+// End of class.
@@ -6,10 +6,14 @@ import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
@@ -20,16 +24,21 @@ import org.apache.logging.log4j.Logger;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
+import com.cmclinnovations.featureinfo.config.AggregateOverride;
+import com.cmclinnovations.featureinfo.config.AggregateSettings;
 import com.cmclinnovations.featureinfo.config.ConfigEntry;
 import com.cmclinnovations.featureinfo.config.ConfigStore;
 import com.cmclinnovations.featureinfo.config.StackEndpoint;
 import com.cmclinnovations.featureinfo.config.StackEndpointType;
 import com.cmclinnovations.featureinfo.config.StackInteractor;
 import com.cmclinnovations.featureinfo.config.TimeReference;
+import com.cmclinnovations.featureinfo.utils.KGClientRegistry;
+import com.cmclinnovations.featureinfo.utils.RDBPoolRegistry;
+import com.cmclinnovations.featureinfo.utils.TaskExecutor;
+import com.cmclinnovations.featureinfo.utils.TimeSeriesClientCache;
 import com.cmclinnovations.featureinfo.utils.Utils;
 
 import uk.ac.cam.cares.jps.base.query.RemoteRDBStoreClient;
-import uk.ac.cam.cares.jps.base.query.RemoteStoreClient;
 import uk.ac.cam.cares.jps.base.timeseries.TimeSeries;
 import uk.ac.cam.cares.jps.base.timeseries.TimeSeriesClient;
 import uk.ac.cam.cares.jps.base.timeseries.TimeSeriesClientFactory;
@@ -45,6 +54,11 @@ public class TimeHandler {
      */
     private static final Logger LOGGER = LogManager.getLogger(TimeHandler.class);
 
+    /**
+     * Maximum number of increasingly long windows read when finding a page.
+     */
+    private static final int MAX_PAGE_PROBES = 8;
+
     /**
      * IRI of the asset.
      */
@@ -61,9 +75,9 @@ public class TimeHandler {
     private final ConfigStore configStore;
 
     /**
-     * Communications with KG.
+     * Registry of connections to KG endpoints.
      */
-    private RemoteStoreClient kgClient;
+    private KGClientRegistry kgClients;
 
     /**
      * Communications with RDB.
@@ -75,6 +89,80 @@ public class TimeHandler {
      */
     private TimeSeriesClient<Instant> tsClient;
 
+    /**
+     * Optional registry of pooled RDB connections.
+     */
+    private RDBPoolRegistry rdbPools;
+
+    /**
+     * Optional cache of time series clients constructed by the factory.
+     */
+    private TimeSeriesClientCache tsClientCache;
+
+    /**
+     * Optional pool used to retrieve time series concurrently.
+     */
+    private TaskExecutor queryExecutor;
+
+    /**
+     * Timeout (in seconds) for each concurrent retrieval.
+     */
+    private long queryTimeout;
+
+    /**
+     * Maximum number of concurrent retrievals per request.
+     */
+    private int parallelism = 1;
+
+    /**
+     * Optional maximum number of points per returned time series.
+     */
+    private Integer maxPoints;
+
+    /**
+     * Optional index of latest and first times, used to skip anchor queries.
+     */
+    private TimeBoundsIndex boundsIndex;
+
+    /**
+     * Optional cache of previously read NOW and LATEST windows.
+     */
+    private TimeWindowCache windowCache;
+
+    /**
+     * Optional index of verified time series table layouts, used to skip
+     * catalogue queries when aggregating in the database.
+     */
+    private TimeTableIndex tableIndex;
+
+    /**
+     * Optional client specified time window, overriding configured bounds.
+     */
+    private TimeWindow timeWindow;
+
+    /**
+     * Exclusive upper bound of the next page of each paged time series.
+     */
+    private final Map<TimeSeries<Instant>, Instant> nextCursors = Collections.synchronizedMap(new IdentityHashMap<>());
+
+    /**
+     * Cursor for the next page of all paged time series (or null if none have
+     * more points).
+     */
+    private String pageCursor;
+
+    /**
+     * Optional request level aggregation, overriding that of configuration
+     * entries.
+     */
+    private AggregateOverride aggregateOverride;
+
+    /**
+     * Aggregation options used for each aggregated time series.
+     */
+    private final Map<TimeSeries<Instant>, AggregateSettings> aggregates = Collections
+            .synchronizedMap(new IdentityHashMap<>());
+
     /**
      * Initialise a new TimeHandler instance.
      * 
@@ -91,18 +179,113 @@ public class TimeHandler {
     /**
      * Sets the remote store clients used to connect to the KG.
      * 
-     * @param kgClient KG connection client.
+     * @param kgClients registry of KG connection clients.
      */
     public void setClients(
-            RemoteStoreClient kgClient,
+            KGClientRegistry kgClients,
             TimeSeriesClient<Instant> tsClient,
             RemoteRDBStoreClient dbClient) {
 
-        this.kgClient = kgClient;
+        this.kgClients = kgClients;
         this.tsClient = tsClient;
         this.dbClient = dbClient;
     }
 
+    /**
+     * Sets the registry of pooled RDB connections; if not set, a new connection
+     * is made for each database.
+     * 
+     * @param rdbPools registry of pooled RDB connections.
+     */
+    public void setPools(RDBPoolRegistry rdbPools) {
+        this.rdbPools = rdbPools;
+    }
+
+    /**
+     * Sets the cache of time series clients; if not set, the factory is called
+     * (querying the KG) on every request.
+     * 
+     * @param tsClientCache cache of time series clients.
+     */
+    public void setClientCache(TimeSeriesClientCache tsClientCache) {
+        this.tsClientCache = tsClientCache;
+    }
+
+    /**
+     * Sets the pool used to retrieve the time series of each database, time
+     * series IRI, and configuration entry concurrently. If not set, retrievals
+     * are run sequentially.
+     * 
+     * @param queryExecutor pool of query threads.
+     * @param queryTimeout  timeout (in seconds) for each retrieval.
+     * @param parallelism   maximum number of concurrent retrievals.
+     */
+    public void setExecutor(TaskExecutor queryExecutor, long queryTimeout, int parallelism) {
+        this.queryExecutor = queryExecutor;
+        this.queryTimeout = queryTimeout;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Sets the maximum number of points in each returned time series; longer
+     * series are downsampled. If not set, series are returned in full.
+     * 
+     * @param maxPoints maximum number of points (may be null).
+     */
+    public void setMaxPoints(Integer maxPoints) {
+        this.maxPoints = maxPoints;
+    }
+
+    /**
+     * Sets the index of latest and first times; if not set, the anchor for LATEST
+     * and FIRST time references is queried before each window is read.
+     * 
+     * @param boundsIndex index of latest and first times.
+     */
+    public void setBoundsIndex(TimeBoundsIndex boundsIndex) {
+        this.boundsIndex = boundsIndex;
+    }
+
+    /**
+     * Sets the index of verified table layouts; if not set, the tables of each
+     * time series are looked up and verified before every aggregation query.
+     * 
+     * @param tableIndex index of table layouts.
+     */
+    public void setTableIndex(TimeTableIndex tableIndex) {
+        this.tableIndex = tableIndex;
+    }
+
+    /**
+     * Sets the cache of previously read windows; if not set, NOW and LATEST
+     * windows are read in full on every request.
+     * 
+     * @param windowCache cache of time series windows.
+     */
+    public void setWindowCache(TimeWindowCache windowCache) {
+        this.windowCache = windowCache;
+    }
+
+    /**
+     * Sets the client specified time window; if not set, time series are bounded
+     * as per their configuration entries.
+     * 
+     * @param timeWindow time window (may be null).
+     */
+    public void setTimeWindow(TimeWindow timeWindow) {
+        this.timeWindow = timeWindow;
+    }
+
+    /**
+     * Sets the request level aggregation; if not set (i.e. null), time series are
+     * aggregated as per their configuration entries.
+     * 
+     * @param aggregateOverride aggregation override (may be null).
+     */
+    public void setAggregate(AggregateOverride aggregateOverride) {
+        this.aggregateOverride = aggregateOverride;
+    }
+
     /**
      * Queries the KG to determine measurement IRIs, the passes these onto the
      * relational database to get time series values.
@@ -112,6 +295,19 @@ public class TimeHandler {
      * @return JSONObject of query result.
      */
     public JSONArray getData(List<ConfigEntry> classMatches) {
+        return TimeParser.convertToJSON(getResults(classMatches));
+    }
+
+    /**
+     * Queries the KG to determine measurement IRIs, the passes these onto the
+     * relational database to get populated time series (without converting
+     * them to JSON).
+     * 
+     * @param classMatches configuration entries that contain class matches.
+     * 
+     * @return populated time series results.
+     */
+    public List<TimeSeriesResult> getResults(List<ConfigEntry> classMatches) {
         // Pool for all measureables across all class matches
         List<Measurable> allMeasurables = new ArrayList<>();
 
@@ -131,6 +327,9 @@ public class TimeHandler {
         });
         LOGGER.debug("Detected {} measurable instances.", allMeasurables.size());
 
+        // Fill in timeseries IRIs if missing (across all class matches at once)
+        this.populateTimeSeriesIRIs(allMeasurables);
+
         // Group measurables by the database their time series is defined within
         Map<String, List<Measurable>> groupByDatabase = allMeasurables
                 .stream()
@@ -147,64 +346,162 @@ public class TimeHandler {
         // construct TimeSeriesClient using TimeSeriesClientFactory
         tsClient = getTimeSeriesClientViaFactory(allMeasurables);
 
-        // Iterate through unique database names
+        // Build retrieval tasks, in a deterministic order
+        List<RetrievalTask> tasks = new ArrayList<>();
         for (Map.Entry<String, List<Measurable>> entryByDB : groupByDatabase.entrySet()) {
-            LOGGER.debug("Running queries for time series in database: {}", entryByDB);
 
-            // Connect to a new database
-            try (Connection connection = connectToDatabase(rdbEndpoint, entryByDB.getKey())) {
+            // Group measurables by their time series IRIs
+            Map<String, List<Measurable>> groupByTimeSeries = entryByDB.getValue()
+                    .stream()
+                    .collect(
+                            Collectors.groupingBy(Measurable::getTimeSeriesIRI));
+            LOGGER.debug("There are {} distinct time series in database.", groupByTimeSeries.size());
 
-                // Group measurables by their time series IRIs
-                Map<String, List<Measurable>> groupByTimeSeries = entryByDB.getValue()
+            // Iterate through unique timeseries IRIs
+            for (Map.Entry<String, List<Measurable>> entryByTime : groupByTimeSeries.entrySet()) {
+
+                // Group measurable again, by shared configuration entries
+                // This is because whilst they share a timeseries IRI, each configuration
+                // entry may define different value bounds.
+                Map<ConfigEntry, List<Measurable>> groupedByConfigs = entryByTime.getValue()
                         .stream()
                         .collect(
-                                Collectors.groupingBy(Measurable::getTimeSeriesIRI));
-                LOGGER.debug("There are {} distinct time series in database.", groupByTimeSeries.size());
-
-                // Iterate through unique timeseries IRIs
-                for (Map.Entry<String, List<Measurable>> entryByTime : groupByTimeSeries.entrySet()) {
-
-                    // Group measurable again, by shared configuration entries
-                    // This is because whilst they share a timeseries IRI, each configuration
-                    // entry may define different value bounds.
-                    Map<ConfigEntry, List<Measurable>> groupedByConfigs = entryByTime.getValue()
-                            .stream()
-                            .collect(
-                                    Collectors.groupingBy(Measurable::getConfigEntry));
-
-                    // Iterate through unique config entries
-                    for (Map.Entry<ConfigEntry, List<Measurable>> entryByConfig : groupedByConfigs.entrySet()) {
-                        ConfigEntry thisConfig = entryByConfig.getKey();
-                        List<Measurable> theseMeasurables = entryByConfig.getValue();
-
-                        // Get populated time series object from client
-                        LOGGER.debug("Getting data for time series IRI: {}", entryByTime.getKey());
-
-                        TimeSeries<Instant> timeseries = getTimeSeries(thisConfig, connection, theseMeasurables);
-                        LOGGER.debug("Got populated time series instance from the client.");
-
-                        timeseries.getDataIRIs().forEach(dataIRI -> {
-                            LOGGER.debug("There are {} values for measurable IRI: {}",
-                                    timeseries.getValues(dataIRI).size(), dataIRI);
-                        });
-
-                        if (timeseries != null && timeseries.getTimes() != null && !timeseries.getTimes().isEmpty()) {
-                            allTimeSeries.put(timeseries, theseMeasurables);
-                        } else {
-                            LOGGER.debug("Returned time series has no time entries, skipping: {}",
-                                    entryByTime.getKey());
-                        }
-                    }
+                                Collectors.groupingBy(Measurable::getConfigEntry));
+
+                // Iterate through unique config entries
+                for (Map.Entry<ConfigEntry, List<Measurable>> entryByConfig : groupedByConfigs.entrySet()) {
+                    tasks.add(new RetrievalTask(
+                            entryByDB.getKey(),
+                            entryByTime.getKey(),
+                            entryByConfig.getKey(),
+                            entryByConfig.getValue()));
                 }
+            }
+        }
+
+        // Get populated time series objects from client
+        List<TimeSeries<Instant>> fetched = (this.queryExecutor == null || tasks.size() < 2)
+                ? fetchSequentially(rdbEndpoint, tasks)
+                : fetchConcurrently(rdbEndpoint, tasks);
+        fetched = alignPages(fetched);
+
+        // Reassemble in task order
+        for (int i = 0; i < tasks.size(); i++) {
+            TimeSeries<Instant> timeseries = fetched.get(i);
+
+            if (timeseries != null && timeseries.getTimes() != null && !timeseries.getTimes().isEmpty()) {
+                allTimeSeries.put(timeseries, tasks.get(i).measurables());
+            } else {
+                LOGGER.debug("Returned time series has no time entries, skipping: {}",
+                        tasks.get(i).timeSeriesIRI());
+            }
+        }
+
+        // Attach units and names to all timeseries.
+        return toResults(allTimeSeries);
+    }
+
+    /**
+     * Runs the input retrieval tasks one after another, sharing a single
+     * connection for all tasks on the same database.
+     * 
+     * @param rdbEndpoint endpoint for postgres.
+     * @param tasks       retrieval tasks (grouped by database).
+     * 
+     * @return populated time series (or null if failed), in task order.
+     */
+    private List<TimeSeries<Instant>> fetchSequentially(StackEndpoint rdbEndpoint, List<RetrievalTask> tasks) {
+        List<TimeSeries<Instant>> results = new ArrayList<>(Collections.nCopies(tasks.size(), null));
+
+        int start = 0;
+        while (start < tasks.size()) {
+            String database = tasks.get(start).database();
+            int end = start;
+            while (end < tasks.size() && Objects.equals(database, tasks.get(end).database())) {
+                end++;
+            }
 
+            // Connect to a new database
+            LOGGER.debug("Running queries for time series in database: {}", database);
+            try (Connection connection = connectToDatabase(rdbEndpoint, database)) {
+                for (int i = start; i < end; i++) {
+                    results.set(i, fetch(tasks.get(i), connection));
+                }
             } catch (Exception exception) {
                 LOGGER.error("Exception occurered when connecting to RDB!", exception);
             }
+            start = end;
+        }
+        return results;
+    }
+
+    /**
+     * Runs the input retrieval tasks concurrently (with at most the configured
+     * number in flight at once), each using its own pooled connection. Tasks that
+     * fail or time out are returned as null.
+     * 
+     * @param rdbEndpoint endpoint for postgres.
+     * @param tasks       retrieval tasks.
+     * 
+     * @return populated time series (or null if failed), in task order.
+     */
+    private List<TimeSeries<Instant>> fetchConcurrently(StackEndpoint rdbEndpoint, List<RetrievalTask> tasks) {
+        List<TimeSeries<Instant>> results = new ArrayList<>(Collections.nCopies(tasks.size(), null));
+        List<Future<TimeSeries<Instant>>> futures = new ArrayList<>();
+        List<Long> deadlines = new ArrayList<>();
+
+        for (int i = 0; i < tasks.size() + this.parallelism; i++) {
+            // Wait for the oldest running task before submitting another
+            int oldest = i - this.parallelism;
+            if (oldest >= 0) {
+                try {
+                    results.set(oldest, TaskExecutor.await(
+                            futures.get(oldest),
+                            deadlines.get(oldest),
+                            "time series retrieval"));
+                } catch (Exception exception) {
+                    LOGGER.error("Exception occurered when connecting to RDB!", exception);
+                }
+            }
+
+            if (i < tasks.size()) {
+                RetrievalTask task = tasks.get(i);
+                deadlines.add(TaskExecutor.deadline(System.nanoTime(), this.queryTimeout));
+                futures.add(this.queryExecutor.submit(() -> {
+                    try (Connection connection = connectToDatabase(rdbEndpoint, task.database())) {
+                        return fetch(task, connection);
+                    }
+                }));
+            }
         }
+        return results;
+    }
 
-        // Convert all timeseries to JSON objects.
-        LOGGER.debug("Converting time series data to JSON...");
-        return convertTimeSeries(allTimeSeries);
+    /**
+     * Runs a single retrieval task using the input connection.
+     * 
+     * @param task       retrieval task.
+     * @param connection RDB connection.
+     * 
+     * @return populated time series (or null if failed).
+     */
+    private TimeSeries<Instant> fetch(RetrievalTask task, Connection connection) {
+        try {
+            LOGGER.debug("Getting data for time series IRI: {}", task.timeSeriesIRI());
+            TimeSeries<Instant> timeseries = getTimeSeries(task.configEntry(), connection, task.measurables());
+            LOGGER.debug("Got populated time series instance from the client.");
+
+            if (timeseries != null) {
+                timeseries.getDataIRIs().forEach(dataIRI -> {
+                    LOGGER.debug("There are {} values for measurable IRI: {}",
+                            timeseries.getValues(dataIRI).size(), dataIRI);
+                });
+            }
+            return timeseries;
+        } catch (Exception exception) {
+            LOGGER.error("Exception occurered when getting time series data!", exception);
+            return null;
+        }
     }
 
     /**
@@ -217,26 +514,17 @@ public class TimeHandler {
      * @throws Exception if SPARQL queries fail.
      */
     private List<Measurable> getMeasurables(ConfigEntry classMatch) throws Exception {
-        String templateQuery = classMatch.getTimeQueryContent();
         String query = Utils.queryInject(
-                templateQuery,
+                classMatch.getTimeQueryTemplate(),
                 this.iri,
                 configStore.getStackEndpoints(StackEndpointType.ONTOP),
                 Utils.getBlazegraphEndpoints(configStore, enforcedEndpoint));
 
         // Run query
-        List<String> endpoints = Utils.getBlazegraphURLs(configStore, enforcedEndpoint);
-        JSONArray result = null;
-
-        if (endpoints.size() == 1) {
-            LOGGER.debug("Running non-federated measurement IRI query.");
-            kgClient.setQueryEndpoint(endpoints.get(0));
-            result = this.kgClient.executeQuery(query);
-
-        } else {
-            LOGGER.debug("Running federated measurement IRI query.");
-            result = this.kgClient.executeFederatedQuery(endpoints, query);
-        }
+        LOGGER.debug("Running measurement IRI query.");
+        JSONArray result = this.kgClients.executeQuery(
+                Utils.getBlazegraphEndpoints(configStore, enforcedEndpoint),
+                query);
 
         // Parse results
         List<Measurable> measurables = new ArrayList<>();
@@ -253,27 +541,21 @@ public class TimeHandler {
             }
         }
 
-        // Fill in timeseries IRI if missing
-        this.populateTimeSeriesIRIs(measurables);
         return measurables;
     }
 
     private TimeSeriesClient<Instant> getTimeSeriesClientViaFactory(List<Measurable> measurables) {
         // Run query
-        List<String> endpoints = Utils.getBlazegraphURLs(configStore, enforcedEndpoint);
+        List<StackEndpoint> endpoints = Utils.getBlazegraphEndpoints(configStore, enforcedEndpoint);
+        List<String> dataIRIs = measurables.stream().map(m -> m.getEntityIRI()).collect(Collectors.toList());
 
         try {
-            if (endpoints.size() == 1) {
-                LOGGER.debug("Generating time series client via non-federated query.");
-
-                kgClient.setQueryEndpoint(endpoints.get(0));
-
-                return (TimeSeriesClient<Instant>) TimeSeriesClientFactory.getInstance(kgClient,
-                        measurables.stream().map(m -> m.getEntityIRI()).collect(Collectors.toList()));
-            } else {
-                return (TimeSeriesClient<Instant>) TimeSeriesClientFactory.getInstance(endpoints,
-                        measurables.stream().map(m -> m.getEntityIRI()).collect(Collectors.toList()));
+            if (this.tsClientCache != null) {
+                return (TimeSeriesClient<Instant>) this.tsClientCache.get(
+                        dataIRIs,
+                        () -> createTimeSeriesClient(endpoints, dataIRIs));
             }
+            return (TimeSeriesClient<Instant>) createTimeSeriesClient(endpoints, dataIRIs);
         } catch (Exception e) {
             // return default tsClient
             LOGGER.warn(e.getMessage());
@@ -282,27 +564,45 @@ public class TimeHandler {
     }
 
     /**
-     * For the input list of measurable objects, this method iterates through them
-     * an runs
-     * new queries to determine the IRI of the linked time series if that was not
-     * provided
-     * in the original KG query.
+     * Constructs a new time series client for the input data IRIs using the
+     * TimeSeriesClientFactory (which queries the KG to find their RDB).
+     * 
+     * @param endpoints Blazegraph endpoints to query.
+     * @param dataIRIs  data IRIs.
      * 
-     * @param measurements configuration entry.
-     * @param classMatch   discovered measurable objects.
+     * @return new time series client.
+     * 
+     * @throws Exception if factory fails.
+     */
+    private TimeSeriesClient<?> createTimeSeriesClient(List<StackEndpoint> endpoints, List<String> dataIRIs)
+            throws Exception {
+        if (endpoints.size() == 1) {
+            LOGGER.debug("Generating time series client via non-federated query.");
+            return TimeSeriesClientFactory.getInstance(kgClients.getClient(endpoints.get(0)), dataIRIs);
+        } else {
+            return TimeSeriesClientFactory.getInstance(
+                    endpoints.stream().map(StackEndpoint::url).collect(Collectors.toList()),
+                    dataIRIs);
+        }
+    }
+
+    /**
+     * For the input list of measurable objects, this method runs batched queries
+     * to determine the IRIs of the linked time series for any that were not
+     * provided in the original KG query.
+     * 
+     * @param measurables discovered measurable objects.
      */
     private void populateTimeSeriesIRIs(List<Measurable> measurables) {
-        measurables.forEach(measurable -> {
-            try {
-                MeasurableBuilder.populateTimeSeriesIRIs(
-                        measurable,
-                        configStore,
-                        enforcedEndpoint,
-                        kgClient);
-            } catch (Exception exception) {
-                LOGGER.error("Could not determine timeseries IRI for measurable object!", exception);
-            }
-        });
+        try {
+            MeasurableBuilder.populateTimeSeriesIRIs(
+                    measurables,
+                    configStore,
+                    enforcedEndpoint,
+                    kgClients);
+        } catch (Exception exception) {
+            LOGGER.error("Could not determine timeseries IRIs for measurable objects!", exception);
+        }
     }
 
     /**
@@ -327,6 +627,347 @@ public class TimeHandler {
                 .map(measurable -> measurable.getEntityIRI())
                 .collect(Collectors.toList());
 
+        // Aggregate into buckets if requested
+        AggregateSettings aggregate = (this.aggregateOverride != null)
+                ? this.aggregateOverride.settings()
+                : classMatch.getTimeAggregate();
+        if (aggregate != null) {
+            TimeSeries<Instant> aggregated = getAggregatedTimeSeries(classMatch, connection, measurables,
+                    measurableIRIs, aggregate);
+            if (aggregated != null) {
+                this.aggregates.put(aggregated, aggregate);
+            }
+            return aggregated;
+        }
+
+        // Client specified windows take precedence over configured bounds
+        if (this.timeWindow != null) {
+            return getWindowedTimeSeries(classMatch, connection, measurableIRIs);
+        }
+
+        // Only read values newer than the cached window, if possible
+        TimeReference reference = classMatch.getTimeReference();
+        boolean windowed = this.windowCache != null && this.windowCache.isEnabled()
+                && (reference == TimeReference.NOW || reference == TimeReference.LATEST);
+
+        if (windowed) {
+            TimeSeries<Instant> extended = getExtendedTimeSeries(classMatch, connection, measurableIRIs);
+            if (extended != null) {
+                return extended;
+            }
+        }
+
+        TimeSeries<Instant> timeseries = readTimeSeries(classMatch, connection, measurables, measurableIRIs);
+        if (windowed && timeseries != null) {
+            cacheWindow(classMatch, measurableIRIs, timeseries);
+        }
+        return timeseries;
+    }
+
+    /**
+     * Reads aggregated values for the input measurables, within the client
+     * specified time window (ignoring paging) or the configured bounds. Values are
+     * aggregated in Postgres if possible, otherwise raw values are read and
+     * aggregated in memory.
+     * 
+     * @param classMatch     configuration entry.
+     * @param connection     cached DB connection.
+     * @param measurables    discovered measurable objects.
+     * @param measurableIRIs IRIs of discovered measurables.
+     * @param aggregate      aggregation options.
+     * 
+     * @return aggregated time series (or null).
+     */
+    private TimeSeries<Instant> getAggregatedTimeSeries(ConfigEntry classMatch, Connection connection,
+            List<Measurable> measurables, List<String> measurableIRIs, AggregateSettings aggregate) {
+        Instant lowerBound = null;
+        Instant upperBound = null;
+
+        if (this.timeWindow != null) {
+            lowerBound = this.timeWindow.from();
+            upperBound = this.timeWindow.upperBound();
+        } else {
+            Pair<Instant, Instant> bounds = calculateBounds(classMatch, connection, measurables);
+            if (bounds != null) {
+                lowerBound = bounds.getLeft().isBefore(bounds.getRight()) ? bounds.getLeft() : bounds.getRight();
+                upperBound = bounds.getLeft().isAfter(bounds.getRight()) ? bounds.getLeft() : bounds.getRight();
+            }
+        }
+
+        try {
+            return TimeSeriesAggregator.query(connection, this.tableIndex, measurableIRIs, lowerBound, upperBound,
+                    aggregate);
+        } catch (SQLException exception) {
+            LOGGER.warn("Could not aggregate time series in database, aggregating in memory instead: {}",
+                    exception.getMessage());
+        }
+
+        TimeSeries<Instant> timeseries = this.tsClient.getTimeSeriesWithinBounds(
+                measurableIRIs,
+                lowerBound,
+                upperBound,
+                connection);
+        return (timeseries == null) ? null : TimeSeriesAggregator.aggregate(timeseries, aggregate);
+    }
+
+    /**
+     * Reads the time series for the input measurables within the client
+     * specified time window.
+     * 
+     * When paged, the newest points before the cursor are returned. To avoid
+     * reading all history for each page, slices of increasing length (starting
+     * with the length configured for the class match) are read back from the
+     * upper bound, each only covering the time before the previous slice, until
+     * more than a page of points is found or the oldest point is reached. If
+     * more points remain, a cursor for the next page is recorded against the
+     * result; this is also the case if the probe limit is reached first, in
+     * which case the page may be short.
+     * 
+     * @param classMatch     configuration entry.
+     * @param connection     cached DB connection.
+     * @param measurableIRIs measurable IRIs (sharing a time series).
+     * 
+     * @return populated time series.
+     */
+    private TimeSeries<Instant> getWindowedTimeSeries(ConfigEntry classMatch, Connection connection,
+            List<String> measurableIRIs) {
+        Instant lowerBound = this.timeWindow.from();
+        Instant upperBound = this.timeWindow.upperBound();
+        Instant before = this.timeWindow.cursor();
+        Integer pageSize = this.timeWindow.pageSize();
+
+        if (pageSize == null) {
+            return readBefore(measurableIRIs, lowerBound, upperBound, before, connection);
+        }
+
+        // Page back from the cursor if set, otherwise from the latest value if there's no upper bound
+        if (before != null && (upperBound == null || before.isBefore(upperBound))) {
+            upperBound = before;
+        } else if (upperBound == null) {
+            TimeSeries<Instant> latest = this.tsClient.getLatestData(measurableIRIs.get(0), connection);
+            if (latest == null || latest.getTimes().isEmpty()) {
+                return null;
+            }
+            upperBound = latest.getTimes().get(0);
+        }
+
+        // Initial span is the configured window length (at least a day)
+        Instant configured = offsetTime(classMatch.getTimeLimitValue(), classMatch.getTimeLimitUnit(), Instant.EPOCH);
+        long span = Math.max(Math.abs(configured.getEpochSecond()), 86_400);
+
+        TimeSeries<Instant> timeseries = null;
+        Instant sliceUpper = upperBound;
+        Instant sliceBefore = before;
+        boolean complete = false;
+
+        for (int probe = 0; probe < MAX_PAGE_PROBES && !complete; probe++) {
+            Instant probeLower = sliceUpper.minusSeconds(span);
+            if (lowerBound != null && !probeLower.isAfter(lowerBound)) {
+                probeLower = lowerBound;
+                complete = true;
+            }
+
+            // Only read the slice older than those already read
+            TimeSeries<Instant> slice = readBefore(measurableIRIs, probeLower, sliceUpper, sliceBefore, connection);
+            if (slice == null) {
+                break;
+            }
+            timeseries = prepend(slice, timeseries);
+            if (timeseries.getTimes().size() > pageSize) {
+                TimeSeries<Instant> page = tail(timeseries, null, pageSize);
+                this.nextCursors.put(page, page.getTimes().get(0));
+                return page;
+            }
+
+            sliceUpper = probeLower;
+            sliceBefore = probeLower;
+            span = Math.multiplyExact(span, 4);
+
+            // Without a lower bound, stop at the oldest value rather than probing past it
+            if (lowerBound == null && !complete) {
+                TimeSeries<Instant> oldest = this.tsClient.getOldestData(measurableIRIs.get(0), connection);
+                if (oldest == null || oldest.getTimes().isEmpty() || !oldest.getTimes().get(0).isBefore(probeLower)) {
+                    complete = true;
+                } else {
+                    lowerBound = oldest.getTimes().get(0);
+                }
+            }
+        }
+
+        // Probe limit reached before a full page, let the client continue from the last slice
+        if (timeseries != null && !complete) {
+            this.nextCursors.put(timeseries, sliceBefore);
+        }
+        return timeseries;
+    }
+
+    /**
+     * Trims paged time series so that they all share the same page boundary.
+     * 
+     * Each series fills its page back to a different time, so a cursor per
+     * series cannot be applied to the next request as a whole. Instead, the
+     * latest page start across all series is used as the cursor for the
+     * feature, and older points of every paged series are dropped so they are
+     * returned (once) on the next page.
+     * 
+     * @param fetched populated time series (entries may be null).
+     * 
+     * @return time series trimmed to the shared page boundary.
+     */
+    private List<TimeSeries<Instant>> alignPages(List<TimeSeries<Instant>> fetched) {
+        Instant cursor = null;
+        for (TimeSeries<Instant> timeseries : fetched) {
+            Instant pageStart = (timeseries == null) ? null : this.nextCursors.get(timeseries);
+            if (pageStart != null && (cursor == null || pageStart.isAfter(cursor))) {
+                cursor = pageStart;
+            }
+        }
+
+        if (cursor == null) {
+            this.pageCursor = null;
+            return fetched;
+        }
+        this.pageCursor = TimeWindow.encodeCursor(cursor);
+
+        // Aggregated series ignore the window, so are left as they are
+        List<TimeSeries<Instant>> aligned = new ArrayList<>();
+        for (TimeSeries<Instant> timeseries : fetched) {
+            if (timeseries == null || this.aggregates.containsKey(timeseries)) {
+                aligned.add(timeseries);
+            } else {
+                aligned.add(since(timeseries, cursor));
+            }
+        }
+        return aligned;
+    }
+
+    /**
+     * Returns a copy of the input time series containing only the points at or
+     * after the input time.
+     * 
+     * @param timeseries populated time series.
+     * @param start      inclusive lower bound.
+     * 
+     * @return trimmed time series.
+     */
+    private static TimeSeries<Instant> since(TimeSeries<Instant> timeseries, Instant start) {
+        List<Instant> times = timeseries.getTimes();
+        int begin = 0;
+        while (begin < times.size() && times.get(begin).isBefore(start)) {
+            begin++;
+        }
+        if (begin == 0) {
+            return timeseries;
+        }
+
+        List<List<?>> newValues = new ArrayList<>();
+        for (String dataIRI : timeseries.getDataIRIs()) {
+            newValues.add(new ArrayList<>(timeseries.getValues(dataIRI).subList(begin, times.size())));
+        }
+        return new TimeSeries<>(new ArrayList<>(times.subList(begin, times.size())), timeseries.getDataIRIs(),
+                newValues);
+    }
+
+    /**
+     * Reads the time series within the input bounds, dropping any points at or
+     * after the input time.
+     * 
+     * @param measurableIRIs measurable IRIs (sharing a time series).
+     * @param lowerBound     inclusive lower bound (or null for none).
+     * @param upperBound     inclusive upper bound (or null for none).
+     * @param before         exclusive upper bound (or null for none).
+     * @param connection     cached DB connection.
+     * 
+     * @return populated time series (or null).
+     */
+    private TimeSeries<Instant> readBefore(List<String> measurableIRIs, Instant lowerBound, Instant upperBound,
+            Instant before, Connection connection) {
+        TimeSeries<Instant> timeseries = this.tsClient.getTimeSeriesWithinBounds(
+                measurableIRIs,
+                lowerBound,
+                upperBound,
+                connection);
+        return (timeseries == null) ? null : tail(timeseries, before, null);
+    }
+
+    /**
+     * Returns a time series containing the points of the older time series
+     * followed by those of the newer one.
+     * 
+     * @param older populated time series, covering earlier times.
+     * @param newer populated time series, covering later times (or null).
+     * 
+     * @return combined time series.
+     */
+    private static TimeSeries<Instant> prepend(TimeSeries<Instant> older, TimeSeries<Instant> newer) {
+        if (newer == null || newer.getTimes().isEmpty()) {
+            return older;
+        }
+        if (older.getTimes().isEmpty()) {
+            return newer;
+        }
+
+        List<Instant> times = new ArrayList<>(older.getTimes());
+        times.addAll(newer.getTimes());
+
+        List<List<?>> values = new ArrayList<>();
+        for (String dataIRI : newer.getDataIRIs()) {
+            List<Object> combined = new ArrayList<>(older.getValues(dataIRI));
+            combined.addAll(newer.getValues(dataIRI));
+            values.add(combined);
+        }
+        return new TimeSeries<>(times, newer.getDataIRIs(), values);
+    }
+
+    /**
+     * Returns a copy of the input time series containing only the last points
+     * before the input time.
+     * 
+     * @param timeseries populated time series.
+     * @param before     exclusive upper bound (or null for none).
+     * @param count      maximum number of points to keep (or null for all).
+     * 
+     * @return trimmed time series.
+     */
+    private static TimeSeries<Instant> tail(TimeSeries<Instant> timeseries, Instant before, Integer count) {
+        List<Instant> times = timeseries.getTimes();
+        int end = times.size();
+        while (before != null && end > 0 && !times.get(end - 1).isBefore(before)) {
+            end--;
+        }
+        int start = (count == null) ? 0 : Math.max(0, end - count);
+        if (start == 0 && end == times.size()) {
+            return timeseries;
+        }
+
+        List<List<?>> newValues = new ArrayList<>();
+        for (String dataIRI : timeseries.getDataIRIs()) {
+            newValues.add(new ArrayList<>(timeseries.getValues(dataIRI).subList(start, end)));
+        }
+        return new TimeSeries<>(new ArrayList<>(times.subList(start, end)), timeseries.getDataIRIs(), newValues);
+    }
+
+    /**
+     * Reads the time series for the input measurables within the bounds
+     * determined by the class match.
+     * 
+     * @param classMatch     configuration entry.
+     * @param connection     cached DB connection.
+     * @param measurables    discovered measurable objects.
+     * @param measurableIRIs IRIs of discovered measurables.
+     * 
+     * @return populated TimeSeries object.
+     */
+    private TimeSeries<Instant> readTimeSeries(ConfigEntry classMatch, Connection connection,
+            List<Measurable> measurables, List<String> measurableIRIs) {
+        // Use indexed anchor to read window in a single round trip, if possible
+        if (this.boundsIndex != null) {
+            TimeSeries<Instant> indexed = getIndexedTimeSeries(classMatch, connection, measurableIRIs);
+            if (indexed != null) {
+                return indexed;
+            }
+        }
+
         // Calculate time bounds
         Pair<Instant, Instant> bounds = calculateBounds(classMatch, connection, measurables);
 
@@ -353,6 +994,307 @@ public class TimeHandler {
         }
     }
 
+    /**
+     * For LATEST and FIRST time references, reads the time series window using the
+     * anchor held in the bounds index (skipping the separate anchor query).
+     * 
+     * For FIRST references the window is read directly. For LATEST references
+     * the read extends one window length past the cached anchor, so that values
+     * newer than the anchor are also returned; the anchor is then moved forward
+     * and the result trimmed to the window around it. If that extended bound is
+     * already in the past, newer values may lie beyond it, so the regular path
+     * is used instead.
+     * 
+     * @param classMatch     class match object.
+     * @param connection     cached RDB connection.
+     * @param measurableIRIs measurable IRIs (sharing a time series).
+     * 
+     * @return populated time series (or null if no anchor is indexed).
+     */
+    private TimeSeries<Instant> getIndexedTimeSeries(ConfigEntry classMatch, Connection connection,
+            List<String> measurableIRIs) {
+        TimeReference reference = classMatch.getTimeReference();
+        if (reference != TimeReference.LATEST && reference != TimeReference.FIRST) {
+            return null;
+        }
+
+        // Anchors are indexed by the first measurable (as in calculateBounds)
+        String measureIRI = measurableIRIs.get(0);
+        Instant anchor = this.boundsIndex.get(measureIRI, reference);
+        if (anchor == null) {
+            return null;
+        }
+
+        int timeLimit = classMatch.getTimeLimitValue();
+        TimeUnit timeUnit = classMatch.getTimeLimitUnit();
+
+        if (reference == TimeReference.FIRST) {
+            Instant boundTwo = offsetTime(timeLimit, timeUnit, anchor);
+            LOGGER.debug("Using indexed first time of: {}", anchor);
+
+            return this.tsClient.getTimeSeriesWithinBounds(
+                    measurableIRIs,
+                    anchor.isBefore(boundTwo) ? anchor : boundTwo,
+                    anchor.isAfter(boundTwo) ? anchor : boundTwo,
+                    connection);
+        }
+
+        // Read the window around the cached anchor, up to one window length past it
+        Instant boundTwo = offsetTime(timeLimit * -1, timeUnit, anchor);
+        Instant boundThree = offsetTime(timeLimit, timeUnit, anchor);
+        Instant lowerBound = anchor.isBefore(boundTwo) ? anchor : boundTwo;
+        Instant upperBound = anchor.isAfter(boundThree) ? anchor : boundThree;
+
+        if (upperBound.isBefore(Instant.now())) {
+            // Newer values may lie past the bound, so the anchor must be queried
+            LOGGER.debug("Indexed latest time of {} is more than one window old, ignoring it.", anchor);
+            return null;
+        }
+        LOGGER.debug("Using indexed latest time of: {}", anchor);
+
+        TimeSeries<Instant> timeseries = this.tsClient.getTimeSeriesWithinBounds(
+                measurableIRIs,
+                lowerBound,
+                upperBound,
+                connection);
+
+        // Determine actual latest time (of the first measurable)
+        Instant latest = getLatestTime(timeseries, measureIRI);
+
+        if (latest == null || latest.isBefore(anchor)) {
+            // Data has changed beneath the index, use the regular path
+            this.boundsIndex.invalidate(measureIRI, reference);
+            return null;
+        }
+        this.boundsIndex.put(measureIRI, reference, latest);
+
+        // Trim to the window around the actual latest time
+        Instant latestTwo = offsetTime(timeLimit * -1, timeUnit, latest);
+        return trim(
+                timeseries,
+                latest.isBefore(latestTwo) ? latest : latestTwo,
+                latest.isAfter(latestTwo) ? latest : latestTwo);
+    }
+
+    /**
+     * For NOW and LATEST time references, extends the cached window for the input
+     * measurables by reading only the values after its last time, then trims it
+     * to the new window. This assumes that time series data is append-only, with
+     * the cache's time-to-live covering any other changes.
+     * 
+     * @param classMatch     class match object.
+     * @param connection     cached RDB connection.
+     * @param measurableIRIs measurable IRIs (sharing a time series).
+     * 
+     * @return populated time series (or null if no usable window is cached).
+     */
+    private TimeSeries<Instant> getExtendedTimeSeries(ConfigEntry classMatch, Connection connection,
+            List<String> measurableIRIs) {
+        TimeWindowCache.Window window = this.windowCache.get(classMatch.getID(), measurableIRIs);
+        if (window == null) {
+            return null;
+        }
+
+        int timeLimit = classMatch.getTimeLimitValue();
+        TimeUnit timeUnit = classMatch.getTimeLimitUnit();
+
+        if (classMatch.getTimeReference() == TimeReference.NOW) {
+            Instant now = LocalDateTime.now().toInstant(ZoneOffset.UTC);
+            Instant boundTwo = offsetTime(timeLimit * -1, timeUnit, now);
+            Instant lowerBound = now.isBefore(boundTwo) ? now : boundTwo;
+            Instant upperBound = now.isAfter(boundTwo) ? now : boundTwo;
+
+            // Cached window must cover the start of the new one
+            if (window.lowerBound().isAfter(lowerBound)) {
+                return null;
+            }
+
+            LOGGER.debug("Reading values after cached time of: {}", window.lastTime());
+            TimeSeries<Instant> delta = this.tsClient.getTimeSeriesWithinBounds(
+                    measurableIRIs,
+                    window.lastTime(),
+                    upperBound,
+                    connection);
+
+            TimeSeries<Instant> timeseries = extend(window, delta, lowerBound, upperBound);
+            this.windowCache.extend(classMatch.getID(), measurableIRIs,
+                    new TimeWindowCache.Window(timeseries, lowerBound, getLastTime(timeseries, lowerBound)));
+            return timeseries;
+        }
+
+        // LATEST, read everything after the cached window then find the new anchor
+        LOGGER.debug("Reading values after cached time of: {}", window.lastTime());
+        TimeSeries<Instant> delta = this.tsClient.getTimeSeriesWithinBounds(
+                measurableIRIs,
+                window.lastTime(),
+                null,
+                connection);
+
+        TimeSeries<Instant> merged = extend(window, delta, null, null);
+        String measureIRI = measurableIRIs.get(0);
+        Instant latest = getLatestTime(merged, measureIRI);
+
+        if (latest == null) {
+            this.windowCache.invalidate(classMatch.getID(), measurableIRIs);
+            return null;
+        }
+        if (this.boundsIndex != null) {
+            this.boundsIndex.put(measureIRI, TimeReference.LATEST, latest);
+        }
+
+        Instant latestTwo = offsetTime(timeLimit * -1, timeUnit, latest);
+        Instant lowerBound = latest.isBefore(latestTwo) ? latest : latestTwo;
+        TimeSeries<Instant> timeseries = trim(
+                merged,
+                lowerBound,
+                latest.isAfter(latestTwo) ? latest : latestTwo);
+
+        this.windowCache.extend(classMatch.getID(), measurableIRIs,
+                new TimeWindowCache.Window(timeseries, lowerBound, getLastTime(timeseries, lowerBound)));
+        return timeseries;
+    }
+
+    /**
+     * Stores a freshly read NOW or LATEST window in the window cache.
+     * 
+     * @param classMatch     class match object.
+     * @param measurableIRIs measurable IRIs (sharing a time series).
+     * @param timeseries     time series read for the window.
+     */
+    private void cacheWindow(ConfigEntry classMatch, List<String> measurableIRIs, TimeSeries<Instant> timeseries) {
+        int timeLimit = classMatch.getTimeLimitValue();
+        TimeUnit timeUnit = classMatch.getTimeLimitUnit();
+
+        // Anchor of the window (recalculating NOW after the read is conservative)
+        Instant anchor = (classMatch.getTimeReference() == TimeReference.NOW)
+                ? LocalDateTime.now().toInstant(ZoneOffset.UTC)
+                : getLatestTime(timeseries, measurableIRIs.get(0));
+        if (anchor == null) {
+            return;
+        }
+
+        Instant boundTwo = offsetTime(timeLimit * -1, timeUnit, anchor);
+        Instant lowerBound = anchor.isBefore(boundTwo) ? anchor : boundTwo;
+        this.windowCache.put(classMatch.getID(), measurableIRIs,
+                new TimeWindowCache.Window(timeseries, lowerBound, getLastTime(timeseries, lowerBound)));
+    }
+
+    /**
+     * Returns the latest time at which the input data IRI has a (non-null) value.
+     * 
+     * @param timeseries populated time series (may be null).
+     * @param dataIRI    data IRI.
+     * 
+     * @return latest time (or null if there are no values).
+     */
+    private static Instant getLatestTime(TimeSeries<Instant> timeseries, String dataIRI) {
+        List<?> values = (timeseries == null) ? null : timeseries.getValues(dataIRI);
+        if (values != null) {
+            for (int i = values.size() - 1; i >= 0; i--) {
+                if (values.get(i) != null) {
+                    return timeseries.getTimes().get(i);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the last time within the input time series, or the input default
+     * if it is empty.
+     * 
+     * @param timeseries   populated time series.
+     * @param defaultValue time to return for empty series.
+     * 
+     * @return last time.
+     */
+    private static Instant getLastTime(TimeSeries<Instant> timeseries, Instant defaultValue) {
+        List<Instant> times = timeseries.getTimes();
+        return times.isEmpty() ? defaultValue : times.get(times.size() - 1);
+    }
+
+    /**
+     * Returns a copy of the input time series containing only the times (and
+     * values) within the input bounds.
+     * 
+     * @param timeseries populated time series.
+     * @param lowerBound lower bound (inclusive).
+     * @param upperBound upper bound (inclusive).
+     * 
+     * @return trimmed time series.
+     */
+    private static TimeSeries<Instant> trim(TimeSeries<Instant> timeseries, Instant lowerBound,
+            Instant upperBound) {
+        List<Instant> times = timeseries.getTimes();
+        if (times.isEmpty()
+                || (!times.get(0).isBefore(lowerBound) && !times.get(times.size() - 1).isAfter(upperBound))) {
+            return timeseries;
+        }
+        return copyRows(timeseries.getDataIRIs(), List.of(timeseries), null, lowerBound, upperBound);
+    }
+
+    /**
+     * Returns a new time series containing the cached window's values followed
+     * by those in the delta (after the window's last time), limited to the input
+     * bounds.
+     * 
+     * @param window     cached window.
+     * @param delta      values read after the window (may be null).
+     * @param lowerBound lower bound, inclusive (or null for none).
+     * @param upperBound upper bound, inclusive (or null for none).
+     * 
+     * @return extended time series.
+     */
+    private static TimeSeries<Instant> extend(TimeWindowCache.Window window, TimeSeries<Instant> delta,
+            Instant lowerBound, Instant upperBound) {
+        TimeSeries<Instant> cached = window.timeseries();
+        List<TimeSeries<Instant>> sources = (delta == null) ? List.of(cached) : List.of(cached, delta);
+        return copyRows(cached.getDataIRIs(), sources, window.lastTime(), lowerBound, upperBound);
+    }
+
+    /**
+     * Copies the rows of the input time series (in order) into a new time series,
+     * keeping only those within the input bounds. Rows of all but the first
+     * source are also only kept if after the input time.
+     * 
+     * @param dataIRIs   data IRIs (columns) to copy.
+     * @param sources    time series to copy rows from.
+     * @param after      exclusive lower bound for rows after the first source (or
+     *                   null).
+     * @param lowerBound lower bound, inclusive (or null for none).
+     * @param upperBound upper bound, inclusive (or null for none).
+     * 
+     * @return new time series.
+     */
+    private static TimeSeries<Instant> copyRows(List<String> dataIRIs, List<TimeSeries<Instant>> sources,
+            Instant after, Instant lowerBound, Instant upperBound) {
+        List<Instant> newTimes = new ArrayList<>();
+        List<List<Object>> newValues = new ArrayList<>();
+        dataIRIs.forEach(dataIRI -> newValues.add(new ArrayList<>()));
+
+        for (int s = 0; s < sources.size(); s++) {
+            TimeSeries<Instant> source = sources.get(s);
+            List<Instant> times = source.getTimes();
+            List<List<?>> columns = dataIRIs.stream().map(source::getValues).collect(Collectors.toList());
+
+            for (int i = 0; i < times.size(); i++) {
+                Instant time = times.get(i);
+                if ((s > 0 && after != null && !time.isAfter(after))
+                        || (lowerBound != null && time.isBefore(lowerBound))
+                        || (upperBound != null && time.isAfter(upperBound))) {
+                    continue;
+                }
+
+                newTimes.add(time);
+                for (int j = 0; j < columns.size(); j++) {
+                    List<?> column = columns.get(j);
+                    newValues.get(j).add((column == null) ? null : column.get(i));
+                }
+            }
+        }
+        return new TimeSeries<>(newTimes, dataIRIs, new ArrayList<>(newValues));
+    }
+
     /**
      * Given the configuration entry for a class match, and the resulting measurable
      * IRIs,
@@ -389,6 +1331,9 @@ public class TimeHandler {
                     return null;
                 } else {
                     Instant boundOne = latest.getTimes().get(0);
+                    if (this.boundsIndex != null) {
+                        this.boundsIndex.put(measureIRI, reference, boundOne);
+                    }
                     Instant boundTwo = offsetTime(timeLimit * -1, timeUnit, boundOne);
                     return new ImmutablePair<>(boundOne, boundTwo);
                 }
@@ -400,6 +1345,9 @@ public class TimeHandler {
                     return null;
                 } else {
                     Instant boundOne = first.getTimes().get(0);
+                    if (this.boundsIndex != null) {
+                        this.boundsIndex.put(measureIRI, reference, boundOne);
+                    }
                     Instant boundTwo = offsetTime(timeLimit, timeUnit, boundOne);
                     return new ImmutablePair<>(boundOne, boundTwo);
                 }
@@ -446,47 +1394,63 @@ public class TimeHandler {
     }
 
     /**
-     * Converts all timeseries instances into a single JSON representation.
+     * Pairs all timeseries instances (downsampled if requested) with the units
+     * and names of their measurables.
      * 
-     * @param allTimeSeries timeseries to convert.
+     * @param allTimeSeries timeseries and their measurables.
      * 
-     * @return JSON representation.
+     * @return time series results.
      */
-    private JSONArray convertTimeSeries(Map<TimeSeries<Instant>, List<Measurable>> allTimeSeries) {
-        JSONArray combinedArray = new JSONArray();
+    private List<TimeSeriesResult> toResults(Map<TimeSeries<Instant>, List<Measurable>> allTimeSeries) {
+        List<TimeSeriesResult> results = new ArrayList<>();
 
         // Iterate through entries
         for (Map.Entry<TimeSeries<Instant>, List<Measurable>> entry : allTimeSeries.entrySet()) {
-            TimeSeries<Instant> timeseries = entry.getKey();
-            List<Measurable> measurables = entry.getValue();
-
             // Extract units and names for measurables
             Map<String, String> unitsMap = new LinkedHashMap<>();
             Map<String, String> namesMap = new LinkedHashMap<>();
 
-            measurables.forEach(measurable -> {
+            entry.getValue().forEach(measurable -> {
                 unitsMap.put(measurable.getEntityIRI(), measurable.getUnit());
                 namesMap.put(measurable.getEntityIRI(), measurable.getName());
             });
 
-            // Convert to JSON
-            JSONArray jsonTime = TimeParser.convertToJSON(
-                    timeseries,
-                    unitsMap,
-                    namesMap);
-
-            if (jsonTime != null) {
-                // Append objects to combined array
-                for (int i = 0; i < jsonTime.length(); i++) {
-                    combinedArray.put(jsonTime.getJSONObject(i));
-                }
+            // Downsample if requested
+            TimeSeries<Instant> timeseries = entry.getKey();
+            if (this.maxPoints != null && this.maxPoints > 0) {
+                timeseries = TimeSeriesDownsampler.downsample(timeseries, this.maxPoints);
             }
+
+            // Copy into columnar form, so the boxed values can be released
+            results.add(new TimeSeriesResult(
+                    ColumnarTimeSeries.of(timeseries),
+                    unitsMap,
+                    namesMap,
+                    this.aggregates.containsKey(entry.getKey()) ? null : this.pageCursor,
+                    this.aggregates.get(entry.getKey())));
         }
-        return combinedArray;
+        return results;
+    }
+
+    /**
+     * Time series retrieval for a single database, time series IRI, and
+     * configuration entry.
+     * 
+     * @param database      database name.
+     * @param timeSeriesIRI time series IRI.
+     * @param configEntry   configuration entry.
+     * @param measurables   measurables within the time series.
+     */
+    private record RetrievalTask(
+            String database,
+            String timeSeriesIRI,
+            ConfigEntry configEntry,
+            List<Measurable> measurables) {
     }
 
     /**
-     * Re-initialises the RDB client with a connection to the input database.
+     * Returns a connection to the input database, taken from the connection pool
+     * if one has been set, otherwise re-initialising the RDB client.
      * 
      * @param rdbEndpoint endpoint for postgres.
      * @param database    database name.
@@ -497,6 +1461,11 @@ public class TimeHandler {
         if (rdbEndpoint == null || database == null)
             return null;
 
+        if (this.rdbPools != null) {
+            LOGGER.debug("Using pooled connection to database: {}", database);
+            return this.rdbPools.getConnection(rdbEndpoint, database);
+        }
+
         LOGGER.info("Making new connection to database: {}", database);
         String postgresURL = StackInteractor.generatePostgresURL(database);
 
@@ -1,13 +1,14 @@
 package com.cmclinnovations.featureinfo.core.time;
 
+import java.io.IOException;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -17,6 +18,8 @@ import org.json.JSONArray;
 import org.json.JSONObject;
 
 import com.cmclinnovations.featureinfo.core.meta.MetaParser;
+import com.cmclinnovations.featureinfo.utils.StreamingJson;
+import com.fasterxml.jackson.core.JsonGenerator;
 
 import uk.ac.cam.cares.jps.base.timeseries.TimeSeries;
 import uk.ac.cam.cares.jps.base.timeseries.TimeSeriesClient;
@@ -64,139 +67,293 @@ public class TimeParser {
      * Combine timeseries objects into a single timeseries objects. For some reason this is
      * required by the timeseries client before a conversion to JSON can happen.
      * 
-     * Code taken from Kok Foong.
+     * Each series is aligned against the time axis of the longest series with a single
+     * forward merge (both axes are expected to be in ascending order). Times without an
+     * exact match take the last earlier value (or the final value if beyond the end of the
+     * series). Times before the start of a series take the last value within the day before
+     * the longest series starts (or zero if there is none).
+     * 
+     * Based on code from Kok Foong.
      * 
      * @param tsClient time series client
      * @param tsList list of time series instances
      * 
      * @return combined timeseries instance.
      */
-    @SuppressWarnings("all")
     public static TimeSeries<Instant> getCombinedTimeSeries(TimeSeriesClient<Instant> tsClient, Collection<TimeSeries<Instant>> tsList) {
-    	if (tsList.size() > 1) {
-    		// this will sort in ascending order
-    		List<TimeSeries<Instant>> ts_sorted = tsList.stream().sorted(Comparator.comparing(ts -> ts.getTimes().size())).collect(Collectors.toList());
-    		List<Instant> longestTimeList = ts_sorted.get(ts_sorted.size()-1).getTimes();
-    		
-    		List<List<?>> valuesList = new ArrayList<>();
-    		List<String> dataIRIs = new ArrayList<>();
-    		
-    		for (int i = 0; i < ts_sorted.size() ; i++) {
-    			TimeSeries<Instant> ts = ts_sorted.get(i);
-    			List<Double> values = new ArrayList<>();
-    			// each time series has one column
-    			String dataIRI = ts.getDataIRIs().get(0);
-    			
-    			// need to query data from the day before
-    			Double valueBefore = null;
-    			if (ts.getTimes().get(0).isAfter(longestTimeList.get(0))) {
-    				TimeSeries<Instant> extraInfo = tsClient.getTimeSeriesWithinBounds(Arrays.asList(dataIRI), longestTimeList.get(0).minus(1, ChronoUnit.DAYS), longestTimeList.get(0));
-    				
-    				if (extraInfo.getTimes().size() == 0) {
-    					// could potentially implement a while loop here
-    					LOGGER.warn("getCombinedTimeSeries: no extra data obtained");
-    					valueBefore = 0.0;
-    				} else {
-    					// get final value in the list
-    					valueBefore = extraInfo.getValuesAsDouble(dataIRI).get(extraInfo.getValuesAsDouble(dataIRI).size()-1);
-    				}
+    	if (tsList.size() <= 1) {
+    		return tsList.iterator().next();
+    	}
+
+    	// this will sort in ascending order
+    	List<TimeSeries<Instant>> tsSorted = tsList.stream().sorted(Comparator.comparing(ts -> ts.getTimes().size())).collect(Collectors.toList());
+    	List<Instant> longestTimeList = tsSorted.get(tsSorted.size() - 1).getTimes();
+
+    	long[] longestSeconds = new long[longestTimeList.size()];
+    	int[] longestNanos = new int[longestTimeList.size()];
+    	toPrimitive(longestTimeList, longestSeconds, longestNanos);
+
+    	List<List<?>> valuesList = new ArrayList<>();
+    	List<String> dataIRIs = new ArrayList<>();
+
+    	for (TimeSeries<Instant> ts : tsSorted) {
+    		// each time series has one column
+    		String dataIRI = ts.getDataIRIs().get(0);
+    		List<Instant> times = ts.getTimes();
+    		int count = times.size();
+
+    		long[] seconds = new long[count];
+    		int[] nanos = new int[count];
+    		toPrimitive(times, seconds, nanos);
+
+    		// unbox column once, tracking nulls separately
+    		List<Double> columnValues = ts.getValuesAsDouble(dataIRI);
+    		double[] column = new double[count];
+    		BitSet nulls = new BitSet(count);
+    		for (int i = 0; i < count; i++) {
+    			Double value = columnValues.get(i);
+    			if (value == null) {
+    				nulls.set(i);
+    			} else {
+    				column[i] = value;
     			}
-    			for (Instant time : longestTimeList) {
-    				int index; // work out which index to extract value from
-    				if (ts.getTimes().contains(time)) {
-    					index = ts.getTimes().indexOf(time);
-    					
-    				} else if (time.isAfter(ts.getTimes().get(ts.getTimes().size()-1))) {
-    					// get final index
-    					index = ts.getTimes().size() - 1;
-    				
-    				} else {
-    					// this gives the element right after the time point
-    					Instant t1 = ts.getTimes().stream().filter(t -> t.isAfter(time)).findFirst().get();
-    					index = ts.getTimes().indexOf(t1) - 1;
-    				}
-    				
-    				if (index < 0) {
-    					values.add(valueBefore);
-    				} else {
-    					values.add(ts.getValuesAsDouble(dataIRI).get(index));
-    				}
+    		}
+
+    		// need to query data from the day before
+    		Double valueBefore = null;
+    		if (times.get(0).isAfter(longestTimeList.get(0))) {
+    			valueBefore = getValueBefore(tsClient, dataIRI, longestTimeList.get(0));
+    		}
+
+    		// forward merge, "lower" is the number of times in this series before the current time
+    		List<Double> values = new ArrayList<>(longestSeconds.length);
+    		int lower = 0;
+
+    		for (int k = 0; k < longestSeconds.length; k++) {
+    			while (lower < count && compare(seconds[lower], nanos[lower], longestSeconds[k], longestNanos[k]) < 0) {
+    				lower++;
+    			}
+
+    			// use exact match if present, otherwise last earlier entry
+    			boolean exact = lower < count && compare(seconds[lower], nanos[lower], longestSeconds[k], longestNanos[k]) == 0;
+    			int index = exact ? lower : lower - 1;
+
+    			if (index < 0) {
+    				values.add(valueBefore);
+    			} else {
+    				values.add(nulls.get(index) ? null : column[index]);
     			}
-    			
-    			dataIRIs.add(dataIRI);
-    			valuesList.add(values);
     		}
-    		
-    		return new TimeSeries<>(longestTimeList, dataIRIs, valuesList);
-    	} else {
-    		return tsList.iterator().next();
+
+    		dataIRIs.add(dataIRI);
+    		valuesList.add(values);
+    	}
+
+    	return new TimeSeries<>(longestTimeList, dataIRIs, valuesList);
+    }
+
+    /**
+     * Returns the last value of the input data IRI within the day before the input time,
+     * or zero if there are no values.
+     * 
+     * @param tsClient time series client
+     * @param dataIRI data IRI
+     * @param time upper bound
+     * 
+     * @return value before time.
+     */
+    private static Double getValueBefore(TimeSeriesClient<Instant> tsClient, String dataIRI, Instant time) {
+    	TimeSeries<Instant> extraInfo = tsClient.getTimeSeriesWithinBounds(Arrays.asList(dataIRI), time.minus(1, ChronoUnit.DAYS), time);
+
+    	if (extraInfo.getTimes().isEmpty()) {
+    		// could potentially implement a while loop here
+    		LOGGER.warn("getCombinedTimeSeries: no extra data obtained");
+    		return 0.0;
+    	}
+
+    	// get final value in the list
+    	List<Double> extraValues = extraInfo.getValuesAsDouble(dataIRI);
+    	return extraValues.get(extraValues.size() - 1);
+    }
+
+    /**
+     * Splits the input times into primitive epoch seconds and nanosecond adjustments.
+     * 
+     * @param times times to split
+     * @param seconds output epoch seconds
+     * @param nanos output nanosecond adjustments
+     */
+    private static void toPrimitive(List<Instant> times, long[] seconds, int[] nanos) {
+    	int i = 0;
+    	for (Instant time : times) {
+    		seconds[i] = time.getEpochSecond();
+    		nanos[i] = time.getNano();
+    		i++;
     	}
     }
 
+    /**
+     * Compares two times held as epoch seconds and nanosecond adjustments.
+     * 
+     * @param secondsOne epoch seconds of first time
+     * @param nanosOne nanosecond adjustment of first time
+     * @param secondsTwo epoch seconds of second time
+     * @param nanosTwo nanosecond adjustment of second time
+     * 
+     * @return negative, zero, or positive as the first time is before, equal to, or after the second.
+     */
+    private static int compare(long secondsOne, int nanosOne, long secondsTwo, int nanosTwo) {
+    	int result = Long.compare(secondsOne, secondsTwo);
+    	return (result != 0) ? result : Integer.compare(nanosOne, nanosTwo);
+    }
+
+	/**
+	 * Converts all time series results into a single JSON representation.
+	 * 
+	 * @param results time series results to convert.
+	 * 
+	 * @return JSON representation.
+	 */
+	public static JSONArray convertToJSON(List<TimeSeriesResult> results) {
+		JSONArray combinedArray = new JSONArray();
+
+		for (TimeSeriesResult entry : results) {
+			ColumnarTimeSeries timeseries = entry.timeseries();
+			Set<String> dataIRIs = entry.units().keySet();
+			JSONObject parentObj = new JSONObject();
+
+			// Add arrays of units and names
+			parentObj.put("units", new JSONArray(entry.units().values()));
+			parentObj.put("data", new JSONArray(entry.names().values()));
+
+			// Add ID (never used in vis so can be any value)
+			parentObj.put("id", "1");
+
+			// Add time class (limited to Instant for now)
+			parentObj.put("timeClass", "Instant");
+
+			// Add time values
+			JSONArray timeArray = new JSONArray();
+			for (int i = 0; i < timeseries.size(); i++) {
+				timeArray.put(timeseries.getTime(i).toString());
+			}
+			parentObj.put("time", timeArray);
+
+			// Add value classes and values
+			JSONArray valueClassArray = new JSONArray();
+			JSONArray valuesArray = new JSONArray();
+
+			for (String dataIRI : dataIRIs) {
+				ColumnarTimeSeries.Column column = timeseries.getColumn(dataIRI);
+				if(column != null && column.getValueClass() != null) {
+					valueClassArray.put(column.getValueClass());
+
+					JSONArray values = new JSONArray();
+					for (int i = 0; i < column.size(); i++) {
+						Object value = column.get(i);
+						values.put((value == null) ? JSONObject.NULL : value);
+					}
+					valuesArray.put(values);
+				}
+			}
+			parentObj.put("valuesClass", valueClassArray);
+			parentObj.put("values", valuesArray);
+
+			// Add cursor for next page (if paged)
+			if(entry.nextCursor() != null) {
+				parentObj.put("nextCursor", entry.nextCursor());
+			}
+
+			// Add bucket details (if aggregated)
+			if(entry.aggregate() != null) {
+				JSONObject aggregateObj = new JSONObject();
+				aggregateObj.put("function", entry.aggregate().function().toString());
+				aggregateObj.put("intervalSeconds", entry.aggregate().intervalSeconds());
+				aggregateObj.put("bucketAlignment", "start");
+				parentObj.put("aggregate", aggregateObj);
+			}
+
+			combinedArray.put(parentObj);
+		}
+		return combinedArray;
+	}
+
 	/**
+	 * Writes the input time series result with the same structure as
+	 * {@link #convertToJSON(List)}, but streaming the time and value arrays
+	 * element by element directly from the columnar time series.
+	 * 
+	 * @param generator JSON generator.
+	 * @param entry time series result.
 	 * 
-	 * @param timeseries
-	 * @param measurableUnits
-	 * @param measurableNames
-	 * @return
+	 * @throws IOException if output cannot be written.
 	 */
-	public static JSONArray convertToJSON(TimeSeries<Instant> timeseries, Map<String, String> measurableUnits, Map<String, String> measurableNames) {
-		JSONArray result = new JSONArray();
-		JSONObject parentObj = new JSONObject();
+	public static void writeJSON(JsonGenerator generator, TimeSeriesResult entry) throws IOException {
+		ColumnarTimeSeries timeseries = entry.timeseries();
+		Set<String> dataIRIs = entry.units().keySet();
+
+		generator.writeStartObject();
 
 		// Add array of units
-		JSONArray unitsArray = new JSONArray();
-		measurableUnits.values().forEach(unit -> {
-			unitsArray.put(unit);
-		});
-		parentObj.put("units", unitsArray);
+		generator.writeFieldName("units");
+		StreamingJson.writeValue(generator, entry.units().values());
 
 		// Add array of names
-		JSONArray nameArray = new JSONArray();
-		measurableNames.values().forEach(name -> {
-			nameArray.put(name);
-		});
-		parentObj.put("data", nameArray);
+		generator.writeFieldName("data");
+		StreamingJson.writeValue(generator, entry.names().values());
 
 		// Add ID (never used in vis so can be any value)
-		parentObj.put("id", "1");
+		generator.writeStringField("id", "1");
 
 		// Add time class (limited to Instant for now)
-		parentObj.put("timeClass", "Instant");
-		
+		generator.writeStringField("timeClass", "Instant");
+
 		// Add time values
-		parentObj.put("time", timeseries.getTimes());
+		generator.writeArrayFieldStart("time");
+		for (int i = 0; i < timeseries.size(); i++) {
+			generator.writeString(timeseries.getTime(i).toString());
+		}
+		generator.writeEndArray();
 
 		// Add value classes
-		Set<String> dataIRIs = measurableUnits.keySet();
-		JSONArray valueClassArray = new JSONArray();
-
-		dataIRIs.forEach(dataIRI -> {
-			List<?> values = timeseries.getValues(dataIRI);
-			if(values != null && !values.isEmpty()) {
-				Object firstValue = values.get(0);
-				if (firstValue instanceof Number) {
-					valueClassArray.put("Number");
-				} else {
-					valueClassArray.put(firstValue.getClass().getSimpleName());
-				}	
+		generator.writeArrayFieldStart("valuesClass");
+		for (String dataIRI : dataIRIs) {
+			ColumnarTimeSeries.Column column = timeseries.getColumn(dataIRI);
+			if(column != null && column.getValueClass() != null) {
+				generator.writeString(column.getValueClass());
 			}
-		});
-		parentObj.put("valuesClass", valueClassArray);
+		}
+		generator.writeEndArray();
 
 		// Add values
-		JSONArray valuesArray = new JSONArray();
-		dataIRIs.forEach(dataIRI -> {
-			List<?> values = timeseries.getValues(dataIRI);
-			if(values != null && !values.isEmpty()) {
-				valuesArray.put(values);
+		generator.writeArrayFieldStart("values");
+		for (String dataIRI : dataIRIs) {
+			ColumnarTimeSeries.Column column = timeseries.getColumn(dataIRI);
+			if(column != null && column.getValueClass() != null) {
+				generator.writeStartArray();
+				for (int i = 0; i < column.size(); i++) {
+					column.write(generator, i);
+				}
+				generator.writeEndArray();
 			}
-		});
-		parentObj.put("values", valuesArray);
+		}
+		generator.writeEndArray();
+
+		// Add cursor for next page (if paged)
+		if(entry.nextCursor() != null) {
+			generator.writeStringField("nextCursor", entry.nextCursor());
+		}
+
+		// Add bucket details (if aggregated)
+		if(entry.aggregate() != null) {
+			generator.writeObjectFieldStart("aggregate");
+			generator.writeStringField("function", entry.aggregate().function().toString());
+			generator.writeNumberField("intervalSeconds", entry.aggregate().intervalSeconds());
+			generator.writeStringField("bucketAlignment", "start");
+			generator.writeEndObject();
+		}
 
-		// Return
-		result.put(parentObj);
-		return result;
+		generator.writeEndObject();
 	}
 }
 // End of class.
\ No newline at end of file
@@ -0,0 +1,543 @@
+package com.cmclinnovations.featureinfo.core.time;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import com.cmclinnovations.featureinfo.config.AggregateFunction;
+import com.cmclinnovations.featureinfo.config.AggregateSettings;
+
+import uk.ac.cam.cares.jps.base.timeseries.TimeSeries;
+
+/**
+ * Aggregates time series values into fixed length buckets (aligned to the Unix
+ * epoch), each timestamped with the start of its bucket.
+ *
+ * Where possible, aggregation is pushed down to Postgres so that only one row
+ * per bucket is read. This relies on the table layout used by the
+ * TimeSeriesClient (a "dbTable" lookup table mapping each data IRI to a time
+ * series, table, and column, with times in a "time" column and, where tables
+ * are shared between time series, rows keyed by a "time_series_iri" column).
+ * The layout is verified before a data IRI list is first aggregated (and
+ * optionally cached in a TimeTableIndex); if it cannot be verified, an
+ * exception is thrown so that raw values can be aggregated in memory instead.
+ * Non-numeric columns always take the last value within each bucket.
+ */
+public final class TimeSeriesAggregator {
+
+    /**
+     * Query to find the schemas holding a "dbTable" lookup table with the
+     * expected columns.
+     */
+    private static final String SCHEMA_QUERY = "SELECT table_schema FROM information_schema.columns"
+            + " WHERE table_name = 'dbTable'"
+            + " AND column_name IN ('dataIRI', 'timeseriesIRI', 'tableName', 'columnName')"
+            + " GROUP BY table_schema HAVING count(*) = 4";
+
+    /**
+     * Query to find the time series, table, and column holding a data IRI's
+     * values (formatted with the qualified lookup table).
+     */
+    private static final String LOOKUP_QUERY = "SELECT \"timeseriesIRI\", \"tableName\", \"columnName\""
+            + " FROM %s WHERE \"dataIRI\" = ?";
+
+    /**
+     * Query to find the columns of a table.
+     */
+    private static final String COLUMNS_QUERY = "SELECT column_name, data_type FROM information_schema.columns"
+            + " WHERE table_schema = ? AND table_name = ?";
+
+    /**
+     * Query to count the time series stored within a table (formatted with the
+     * qualified lookup table).
+     */
+    private static final String SERIES_COUNT_QUERY = "SELECT count(DISTINCT \"timeseriesIRI\") FROM %s"
+            + " WHERE \"tableName\" = ?";
+
+    /**
+     * Column data types that can be aggregated numerically; other columns take
+     * the last value within each bucket.
+     */
+    private static final Set<String> NUMERIC_TYPES = Set.of(
+            "smallint", "integer", "bigint", "numeric", "real", "double precision");
+
+    /**
+     * Column keying rows by time series within shared tables.
+     */
+    private static final String SERIES_COLUMN = "time_series_iri";
+
+    /**
+     * Constructor.
+     */
+    private TimeSeriesAggregator() {
+        // No
+    }
+
+    /**
+     * Reads aggregated values for the input data IRIs directly from Postgres,
+     * verifying the layout of their tables first.
+     *
+     * @param connection RDB connection.
+     * @param dataIRIs   data IRIs (sharing a time series).
+     * @param lowerBound inclusive lower bound (or null for none).
+     * @param upperBound inclusive upper bound (or null for none).
+     * @param settings   aggregation options.
+     *
+     * @return aggregated time series.
+     *
+     * @throws SQLException if the time series tables cannot be queried.
+     */
+    public static TimeSeries<Instant> query(Connection connection, List<String> dataIRIs, Instant lowerBound,
+            Instant upperBound, AggregateSettings settings) throws SQLException {
+        return query(connection, null, dataIRIs, lowerBound, upperBound, settings);
+    }
+
+    /**
+     * Reads aggregated values for the input data IRIs directly from Postgres,
+     * reusing the layout of their tables from the input index where possible.
+     *
+     * @param connection RDB connection.
+     * @param index      index of verified table layouts (or null for none).
+     * @param dataIRIs   data IRIs (sharing a time series).
+     * @param lowerBound inclusive lower bound (or null for none).
+     * @param upperBound inclusive upper bound (or null for none).
+     * @param settings   aggregation options.
+     *
+     * @return aggregated time series.
+     *
+     * @throws SQLException if the time series tables cannot be queried.
+     */
+    public static TimeSeries<Instant> query(Connection connection, TimeTableIndex index, List<String> dataIRIs,
+            Instant lowerBound, Instant upperBound, AggregateSettings settings) throws SQLException {
+        if (connection == null) {
+            throw new SQLException("Cannot aggregate time series without a database connection.");
+        }
+
+        List<TableLayout> layouts = (index == null) ? null : index.get(dataIRIs);
+        if (layouts == null) {
+            layouts = resolveLayouts(connection, dataIRIs);
+            if (index != null) {
+                index.put(dataIRIs, layouts);
+            }
+        }
+
+        // Read buckets from each table, merging on bucket start
+        TreeMap<Instant, Object[]> buckets = new TreeMap<>();
+        try {
+            for (TableLayout layout : layouts) {
+                queryTable(connection, layout, dataIRIs, lowerBound, upperBound, settings, buckets);
+            }
+        } catch (SQLException exception) {
+            // Layout may have changed since it was cached
+            if (index != null) {
+                index.invalidate(dataIRIs);
+            }
+            throw exception;
+        }
+        return toTimeSeries(dataIRIs, buckets);
+    }
+
+    /**
+     * Finds and verifies the time series tables holding the input data IRIs.
+     *
+     * @param connection RDB connection.
+     * @param dataIRIs   data IRIs.
+     *
+     * @return verified layout of each table.
+     *
+     * @throws SQLException if the layout cannot be found or verified.
+     */
+    private static List<TableLayout> resolveLayouts(Connection connection, List<String> dataIRIs)
+            throws SQLException {
+        // Group columns by their time series table (expected to be a single one)
+        Map<Source, Map<String, String>> columnsBySource = lookupColumns(connection, dataIRIs);
+
+        List<TableLayout> layouts = new ArrayList<>();
+        for (Map.Entry<Source, Map<String, String>> entry : columnsBySource.entrySet()) {
+            TableInfo table = verifyTable(connection, entry.getKey(), entry.getValue().values());
+            layouts.add(new TableLayout(entry.getKey(), Map.copyOf(entry.getValue()), table));
+        }
+        return List.copyOf(layouts);
+    }
+
+    /**
+     * Finds the time series table and column of each input data IRI, searching
+     * every schema with a lookup table.
+     *
+     * @param connection RDB connection.
+     * @param dataIRIs   data IRIs.
+     *
+     * @return column name of each data IRI, grouped by time series table.
+     *
+     * @throws SQLException if the data IRIs are not found in exactly one schema.
+     */
+    private static Map<Source, Map<String, String>> lookupColumns(Connection connection, List<String> dataIRIs)
+            throws SQLException {
+        List<String> schemas = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement(SCHEMA_QUERY);
+                ResultSet result = statement.executeQuery()) {
+            while (result.next()) {
+                schemas.add(result.getString(1));
+            }
+        }
+
+        Map<Source, Map<String, String>> found = null;
+        for (String schema : schemas) {
+            Map<Source, Map<String, String>> columns = lookupColumns(connection, schema, dataIRIs);
+            if (columns == null) {
+                continue;
+            }
+            if (found != null) {
+                throw new SQLException("Data IRIs are defined in more than one schema: " + dataIRIs);
+            }
+            found = columns;
+        }
+
+        if (found == null) {
+            throw new SQLException("Could not find time series tables for data IRIs: " + dataIRIs);
+        }
+        return found;
+    }
+
+    /**
+     * Finds the time series table and column of each input data IRI within the
+     * input schema.
+     *
+     * @param connection RDB connection.
+     * @param schema     schema holding the lookup table.
+     * @param dataIRIs   data IRIs.
+     *
+     * @return column name of each data IRI, grouped by time series table (or
+     *         null if any data IRI is missing from this schema).
+     *
+     * @throws SQLException if the lookup table cannot be queried.
+     */
+    private static Map<Source, Map<String, String>> lookupColumns(Connection connection, String schema,
+            List<String> dataIRIs) throws SQLException {
+        Map<Source, Map<String, String>> columnsBySource = new LinkedHashMap<>();
+        String query = String.format(LOOKUP_QUERY, quote(schema) + ".\"dbTable\"");
+
+        try (PreparedStatement statement = connection.prepareStatement(query)) {
+            for (String dataIRI : dataIRIs) {
+                statement.setString(1, dataIRI);
+                try (ResultSet result = statement.executeQuery()) {
+                    if (!result.next()) {
+                        return null;
+                    }
+                    Source source = new Source(schema, result.getString(2), result.getString(1));
+                    columnsBySource
+                            .computeIfAbsent(source, key -> new LinkedHashMap<>())
+                            .put(dataIRI, result.getString(3));
+                }
+            }
+        }
+        return columnsBySource;
+    }
+
+    /**
+     * Verifies that the input time series table has the expected layout, so that
+     * only the rows of its time series are aggregated, and finds which of its
+     * value columns are numeric.
+     *
+     * @param connection RDB connection.
+     * @param source     time series table.
+     * @param columns    value columns expected within table.
+     *
+     * @return whether the table is shared and which value columns are numeric.
+     *
+     * @throws SQLException if the layout cannot be verified.
+     */
+    private static TableInfo verifyTable(Connection connection, Source source, Collection<String> columns)
+            throws SQLException {
+        Map<String, String> tableColumns = new HashMap<>();
+        try (PreparedStatement statement = connection.prepareStatement(COLUMNS_QUERY)) {
+            statement.setString(1, source.schema());
+            statement.setString(2, source.table());
+            try (ResultSet result = statement.executeQuery()) {
+                while (result.next()) {
+                    tableColumns.put(result.getString(1), result.getString(2));
+                }
+            }
+        }
+
+        if (!tableColumns.containsKey("time") || !tableColumns.keySet().containsAll(columns)) {
+            throw new SQLException("Unexpected layout of time series table: " + source.table());
+        }
+
+        Set<String> numericColumns = new HashSet<>();
+        for (String column : columns) {
+            if (NUMERIC_TYPES.contains(tableColumns.get(column))) {
+                numericColumns.add(column);
+            }
+        }
+        if (tableColumns.containsKey(SERIES_COLUMN)) {
+            return new TableInfo(true, Set.copyOf(numericColumns));
+        }
+
+        // Without a time series column, the table must not hold any other series
+        String query = String.format(SERIES_COUNT_QUERY, quote(source.schema()) + ".\"dbTable\"");
+        try (PreparedStatement statement = connection.prepareStatement(query)) {
+            statement.setString(1, source.table());
+            try (ResultSet result = statement.executeQuery()) {
+                if (!result.next() || result.getLong(1) != 1) {
+                    throw new SQLException("Time series table is shared without a "
+                            + SERIES_COLUMN + " column: " + source.table());
+                }
+            }
+        }
+        return new TableInfo(false, Set.copyOf(numericColumns));
+    }
+
+    /**
+     * Aggregates the input (raw) time series in memory.
+     *
+     * @param timeseries populated time series.
+     * @param settings   aggregation options.
+     *
+     * @return aggregated time series.
+     */
+    public static TimeSeries<Instant> aggregate(TimeSeries<Instant> timeseries, AggregateSettings settings) {
+        List<String> dataIRIs = timeseries.getDataIRIs();
+        List<Instant> times = timeseries.getTimes();
+        List<List<?>> columns = dataIRIs.stream().<List<?>>map(timeseries::getValues).toList();
+
+        TreeMap<Instant, Object[]> buckets = new TreeMap<>();
+        TreeMap<Instant, long[]> counts = new TreeMap<>();
+
+        for (int i = 0; i < times.size(); i++) {
+            Instant bucket = bucketStart(times.get(i), settings.intervalSeconds());
+            Object[] values = buckets.computeIfAbsent(bucket, key -> new Object[dataIRIs.size()]);
+            long[] count = counts.computeIfAbsent(bucket, key -> new long[dataIRIs.size()]);
+
+            for (int j = 0; j < columns.size(); j++) {
+                Object value = (columns.get(j) == null) ? null : columns.get(j).get(i);
+                if (value == null) {
+                    continue;
+                }
+                count[j]++;
+
+                if (!(value instanceof Number number) || settings.function() == AggregateFunction.LAST) {
+                    values[j] = value;
+                } else {
+                    double current = (values[j] instanceof Double existing) ? existing : Double.NaN;
+                    values[j] = combine(settings.function(), current, number.doubleValue(), count[j]);
+                }
+            }
+        }
+
+        // Turn running sums into means
+        if (settings.function() == AggregateFunction.MEAN) {
+            buckets.forEach((bucket, values) -> {
+                long[] count = counts.get(bucket);
+                for (int j = 0; j < values.length; j++) {
+                    if (values[j] instanceof Double sum) {
+                        values[j] = sum / count[j];
+                    }
+                }
+            });
+        }
+        return toTimeSeries(dataIRIs, buckets);
+    }
+
+    /**
+     * Returns the start of the bucket containing the input time.
+     *
+     * @param time            time to place.
+     * @param intervalSeconds bucket length (in seconds).
+     *
+     * @return bucket start.
+     */
+    static Instant bucketStart(Instant time, long intervalSeconds) {
+        return Instant.ofEpochSecond(Math.floorDiv(time.getEpochSecond(), intervalSeconds) * intervalSeconds);
+    }
+
+    /**
+     * Combines a new numeric value into a bucket's running value (MEAN keeps a
+     * running sum, divided at the end).
+     *
+     * @param function aggregation function.
+     * @param current  current running value (NaN if none).
+     * @param value    new value.
+     * @param count    number of values in bucket, including new value.
+     *
+     * @return new running value.
+     */
+    private static double combine(AggregateFunction function, double current, double value, long count) {
+        if (count == 1 || Double.isNaN(current)) {
+            return value;
+        }
+        return switch (function) {
+            case MIN -> Math.min(current, value);
+            case MAX -> Math.max(current, value);
+            case MEAN, SUM -> current + value;
+            case LAST -> value;
+        };
+    }
+
+    /**
+     * Runs the aggregation query for a single table, storing values in the input
+     * buckets.
+     *
+     * @param connection RDB connection.
+     * @param layout     verified layout of table.
+     * @param dataIRIs   all data IRIs (for column ordering).
+     * @param lowerBound inclusive lower bound (or null for none).
+     * @param upperBound inclusive upper bound (or null for none).
+     * @param settings   aggregation options.
+     * @param buckets    bucket values, keyed by bucket start.
+     *
+     * @throws SQLException if table cannot be queried.
+     */
+    private static void queryTable(Connection connection, TableLayout layout, List<String> dataIRIs,
+            Instant lowerBound, Instant upperBound, AggregateSettings settings, TreeMap<Instant, Object[]> buckets)
+            throws SQLException {
+        Source source = layout.source();
+        TableInfo table = layout.table();
+        Map<String, String> columns = layout.columns();
+
+        StringBuilder builder = new StringBuilder(
+                "SELECT to_timestamp(floor(extract(epoch FROM \"time\") / ?) * ?) AS fia_bucket");
+        for (String column : columns.values()) {
+            AggregateFunction function = table.numericColumns().contains(column)
+                    ? settings.function()
+                    : AggregateFunction.LAST;
+            builder.append(", ").append(aggregateSQL(function, quote(column)));
+        }
+        builder.append(" FROM ").append(quote(source.schema())).append('.').append(quote(source.table()))
+                .append(" WHERE TRUE");
+        if (table.shared()) {
+            builder.append(" AND ").append(quote(SERIES_COLUMN)).append(" = ?");
+        }
+        if (lowerBound != null) {
+            builder.append(" AND \"time\" >= ?");
+        }
+        if (upperBound != null) {
+            builder.append(" AND \"time\" <= ?");
+        }
+        builder.append(" GROUP BY fia_bucket ORDER BY fia_bucket");
+
+        try (PreparedStatement statement = connection.prepareStatement(builder.toString())) {
+            int index = 1;
+            statement.setLong(index++, settings.intervalSeconds());
+            statement.setLong(index++, settings.intervalSeconds());
+            if (table.shared()) {
+                statement.setString(index++, source.timeseriesIRI());
+            }
+            if (lowerBound != null) {
+                statement.setObject(index++, OffsetDateTime.ofInstant(lowerBound, ZoneOffset.UTC));
+            }
+            if (upperBound != null) {
+                statement.setObject(index++, OffsetDateTime.ofInstant(upperBound, ZoneOffset.UTC));
+            }
+
+            List<Integer> positions = columns.keySet().stream().map(dataIRIs::indexOf).toList();
+            try (ResultSet result = statement.executeQuery()) {
+                while (result.next()) {
+                    Instant bucket = result.getObject(1, OffsetDateTime.class).toInstant();
+                    Object[] values = buckets.computeIfAbsent(bucket, key -> new Object[dataIRIs.size()]);
+
+                    for (int j = 0; j < positions.size(); j++) {
+                        Object value = result.getObject(j + 2);
+                        values[positions.get(j)] = (value instanceof Number number) ? number.doubleValue() : value;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the SQL aggregate expression for the input function and column.
+     *
+     * @param function aggregation function.
+     * @param column   quoted column name.
+     *
+     * @return SQL expression.
+     */
+    private static String aggregateSQL(AggregateFunction function, String column) {
+        return switch (function) {
+            case MEAN -> "avg(" + column + ")";
+            case MIN -> "min(" + column + ")";
+            case MAX -> "max(" + column + ")";
+            case SUM -> "sum(" + column + ")";
+            case LAST -> "(array_agg(" + column + " ORDER BY \"time\" DESC) FILTER (WHERE " + column
+                    + " IS NOT NULL))[1]";
+        };
+    }
+
+    /**
+     * Quotes the input SQL identifier.
+     *
+     * @param identifier raw identifier.
+     *
+     * @return quoted identifier.
+     */
+    private static String quote(String identifier) {
+        return "\"" + identifier.replace("\"", "\"\"") + "\"";
+    }
+
+    /**
+     * Converts the input buckets into a time series.
+     *
+     * @param dataIRIs data IRIs (columns).
+     * @param buckets  bucket values, keyed by bucket start.
+     *
+     * @return time series.
+     */
+    private static TimeSeries<Instant> toTimeSeries(List<String> dataIRIs, TreeMap<Instant, Object[]> buckets) {
+        List<Instant> times = new ArrayList<>(buckets.keySet());
+        List<List<?>> values = new ArrayList<>();
+        for (int j = 0; j < dataIRIs.size(); j++) {
+            List<Object> column = new ArrayList<>(times.size());
+            for (Object[] bucket : buckets.values()) {
+                column.add(bucket[j]);
+            }
+            values.add(column);
+        }
+        return new TimeSeries<>(times, dataIRIs, values);
+    }
+
+    /**
+     * Table holding the values of a time series.
+     *
+     * @param schema        schema name.
+     * @param table         table name.
+     * @param timeseriesIRI time series IRI.
+     */
+    private record Source(String schema, String table, String timeseriesIRI) {
+    }
+
+    /**
+     * Verified layout of a time series table.
+     *
+     * @param shared         true if the table is shared (so rows must be
+     *                       filtered by time series).
+     * @param numericColumns value columns that can be aggregated numerically.
+     */
+    private record TableInfo(boolean shared, Set<String> numericColumns) {
+    }
+
+    /**
+     * Verified time series table, with the column of each data IRI it holds.
+     *
+     * @param source  time series table.
+     * @param columns column name of each data IRI within table.
+     * @param table   verified layout of table.
+     */
+    record TableLayout(Source source, Map<String, String> columns, TableInfo table) {
+    }
+
+}
+// End of class.
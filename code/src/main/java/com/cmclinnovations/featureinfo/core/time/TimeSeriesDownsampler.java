@@ -0,0 +1,201 @@
+package com.cmclinnovations.featureinfo.core.time;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import uk.ac.cam.cares.jps.base.timeseries.TimeSeries;
+
+/**
+ * Reduces the number of points in a time series before it is returned, so that
+ * long histories do not produce payloads far larger than can be drawn.
+ * 
+ * Points are split into equal sized buckets and, within each bucket, the first
+ * and last points are kept along with the points holding the minimum and maximum
+ * of each numeric column (the "M4" approach). This preserves the visual shape of
+ * line charts, including spikes. As all columns share a single time axis,
+ * non-numeric columns simply take the value at each kept point, so always
+ * include the last value of each bucket. If there are too many numeric columns
+ * for a bucket's points to fit within the limit, the kept points are thinned
+ * out evenly (keeping the first and last) so that the limit always holds.
+ */
+public final class TimeSeriesDownsampler {
+
+    /**
+     * Constructor.
+     */
+    private TimeSeriesDownsampler() {
+        // No
+    }
+
+    /**
+     * Returns a copy of the input time series reduced to (at most) the input
+     * number of points, or the original if it is already small enough.
+     * 
+     * @param timeseries populated time series.
+     * @param maxPoints  maximum number of points.
+     * 
+     * @return downsampled time series.
+     */
+    public static TimeSeries<Instant> downsample(TimeSeries<Instant> timeseries, int maxPoints) {
+        List<Instant> times = timeseries.getTimes();
+        if (maxPoints < 1 || times == null || times.size() <= maxPoints) {
+            return timeseries;
+        }
+
+        List<String> dataIRIs = timeseries.getDataIRIs();
+        List<List<?>> columns = new ArrayList<>();
+        List<List<?>> numericColumns = new ArrayList<>();
+
+        for (String dataIRI : dataIRIs) {
+            List<?> values = timeseries.getValues(dataIRI);
+            columns.add(values);
+            if (isNumeric(values)) {
+                numericColumns.add(values);
+            }
+        }
+
+        // Each bucket keeps up to two points per numeric column, plus its first and last
+        int pointsPerBucket = 2 * numericColumns.size() + 2;
+        int buckets = Math.max(1, maxPoints / pointsPerBucket);
+
+        boolean[] kept = new boolean[times.size()];
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            int start = (int) ((long) bucket * times.size() / buckets);
+            int end = (int) ((long) (bucket + 1) * times.size() / buckets);
+            if (start >= end) {
+                continue;
+            }
+
+            kept[start] = true;
+            kept[end - 1] = true;
+            numericColumns.forEach(values -> addExtremes(values, start, end, kept));
+        }
+
+        int count = 0;
+        for (boolean keep : kept) {
+            if (keep) {
+                count++;
+            }
+        }
+        if (count > maxPoints) {
+            thin(kept, count, maxPoints);
+            count = maxPoints;
+        }
+
+        // Copy kept points into a new time series
+        List<Instant> newTimes = new ArrayList<>(count);
+        List<List<?>> newColumns = new ArrayList<>();
+        for (int i = 0; i < columns.size(); i++) {
+            newColumns.add(new ArrayList<>(count));
+        }
+
+        for (int index = 0; index < kept.length; index++) {
+            if (!kept[index]) {
+                continue;
+            }
+            newTimes.add(times.get(index));
+            for (int i = 0; i < columns.size(); i++) {
+                List<?> column = columns.get(i);
+                addValue(newColumns.get(i), (column == null || index >= column.size()) ? null : column.get(index));
+            }
+        }
+        return new TimeSeries<>(newTimes, dataIRIs, newColumns);
+    }
+
+    /**
+     * Unmarks kept points, evenly spaced amongst those currently kept, until
+     * only the input number remain. The first and last kept points are always
+     * retained (or just the last if a single point remains).
+     * 
+     * @param kept      marks of kept points.
+     * @param count     number of points currently kept.
+     * @param maxPoints number of points to keep.
+     */
+    private static void thin(boolean[] kept, int count, int maxPoints) {
+        int rank = 0;
+        int next = 0;
+        for (int index = 0; index < kept.length; index++) {
+            if (!kept[index]) {
+                continue;
+            }
+
+            // Rank of the next point to retain
+            long target = (maxPoints == 1) ? count - 1
+                    : Math.round((double) next * (count - 1) / (maxPoints - 1));
+            if (rank == target) {
+                next++;
+            } else {
+                kept[index] = false;
+            }
+            rank++;
+        }
+    }
+
+    /**
+     * Marks the points holding the minimum and maximum values within the input
+     * range of the input column as kept. Null values are ignored.
+     * 
+     * @param values column values.
+     * @param start  start of range (inclusive).
+     * @param end    end of range (exclusive).
+     * @param kept   marks of kept points.
+     */
+    private static void addExtremes(List<?> values, int start, int end, boolean[] kept) {
+        int minIndex = -1;
+        int maxIndex = -1;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+
+        for (int i = start; i < Math.min(end, values.size()); i++) {
+            if (values.get(i) instanceof Number number) {
+                double value = number.doubleValue();
+                if (value < min) {
+                    min = value;
+                    minIndex = i;
+                }
+                if (value > max) {
+                    max = value;
+                    maxIndex = i;
+                }
+            }
+        }
+
+        if (minIndex >= 0) {
+            kept[minIndex] = true;
+            kept[maxIndex] = true;
+        }
+    }
+
+    /**
+     * Returns true if the first non-null value in the input column is a number.
+     * 
+     * @param values column values.
+     * 
+     * @return true if numeric.
+     */
+    private static boolean isNumeric(List<?> values) {
+        if (values == null) {
+            return false;
+        }
+        for (Object value : values) {
+            if (value != null) {
+                return value instanceof Number;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds the input value to the input (wildcard typed) list.
+     * 
+     * @param list  list to add to.
+     * @param value value to add.
+     */
+    @SuppressWarnings("unchecked")
+    private static void addValue(List<?> list, Object value) {
+        ((List<Object>) list).add(value);
+    }
+
+}
+// End of class.
@@ -0,0 +1,38 @@
+package com.cmclinnovations.featureinfo.core.time;
+
+import java.util.Map;
+
+import com.cmclinnovations.featureinfo.config.AggregateSettings;
+
+/**
+ * Populated time series (in columnar form), along with the units and names of
+ * its measurables, ready to be converted (or streamed) to JSON.
+ */
+public record TimeSeriesResult(
+
+    /**
+     * Populated time series.
+     */
+    ColumnarTimeSeries timeseries,
+
+    /**
+     * Unit of each measurable, keyed by data IRI.
+     */
+    Map<String, String> units,
+
+    /**
+     * Name of each measurable, keyed by data IRI.
+     */
+    Map<String, String> names,
+
+    /**
+     * Cursor for the next (older) page, shared by all paged time series of the
+     * feature, or null if none have more points.
+     */
+    String nextCursor,
+
+    /**
+     * Aggregation options used, or null if values were not aggregated.
+     */
+    AggregateSettings aggregate
+){}
@@ -0,0 +1,83 @@
+package com.cmclinnovations.featureinfo.core.time;
+
+import java.util.List;
+
+import org.json.JSONObject;
+
+import com.cmclinnovations.featureinfo.utils.ExpiringCache;
+
+/**
+ * In-memory index of the verified time series table layouts holding lists of
+ * data IRIs, shared across requests. Knowing the layout up front allows
+ * aggregated time series to be read with a single query, rather than first
+ * querying the lookup and catalogue tables to find and verify each table.
+ * 
+ * Entries expire after a time-to-live, and are removed if aggregating with
+ * them fails, so that changes to the tables are eventually noticed.
+ */
+public class TimeTableIndex {
+
+    /**
+     * Cached layouts, keyed by data IRIs.
+     */
+    private final ExpiringCache<List<String>, List<TimeSeriesAggregator.TableLayout>> layouts;
+
+    /**
+     * Initialise a new TimeTableIndex instance.
+     *
+     * @param maxSize    maximum number of cached data IRI lists (zero to
+     *                   disable).
+     * @param ttlSeconds time-to-live of cached layouts in seconds.
+     */
+    public TimeTableIndex(int maxSize, long ttlSeconds) {
+        this.layouts = new ExpiringCache<>(maxSize, ttlSeconds);
+    }
+
+    /**
+     * Returns the cached table layouts for the input data IRIs.
+     *
+     * @param dataIRIs data IRIs.
+     *
+     * @return cached layouts (or null).
+     */
+    List<TimeSeriesAggregator.TableLayout> get(List<String> dataIRIs) {
+        return this.layouts.get(List.copyOf(dataIRIs));
+    }
+
+    /**
+     * Stores the table layouts for the input data IRIs.
+     *
+     * @param dataIRIs data IRIs.
+     * @param tables   verified table layouts.
+     */
+    void put(List<String> dataIRIs, List<TimeSeriesAggregator.TableLayout> tables) {
+        this.layouts.put(List.copyOf(dataIRIs), tables);
+    }
+
+    /**
+     * Removes the table layouts for the input data IRIs.
+     *
+     * @param dataIRIs data IRIs.
+     */
+    void invalidate(List<String> dataIRIs) {
+        this.layouts.invalidate(List.copyOf(dataIRIs));
+    }
+
+    /**
+     * Removes all cached layouts.
+     */
+    public void clear() {
+        this.layouts.clear();
+    }
+
+    /**
+     * Returns usage statistics for this index.
+     *
+     * @return JSON object of statistics.
+     */
+    public JSONObject getStatistics() {
+        return this.layouts.getStatistics();
+    }
+
+}
+// End of class.
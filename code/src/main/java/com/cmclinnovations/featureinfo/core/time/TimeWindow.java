@@ -0,0 +1,102 @@
+package com.cmclinnovations.featureinfo.core.time;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+
+/**
+ * Client specified time window for time series, overriding the bounds
+ * determined from configuration entries. When a page size is set, the newest
+ * points within the window are returned first, with an opaque cursor that can
+ * be passed back to retrieve the next (older) page.
+ *
+ * @param from     inclusive lower bound (or null for none).
+ * @param to       inclusive upper bound (or null for none).
+ * @param pageSize maximum number of points per time series (or null for all).
+ * @param cursor   exclusive upper bound decoded from a cursor (or null).
+ */
+public record TimeWindow(Instant from, Instant to, Integer pageSize, Instant cursor) {
+
+    /**
+     * Prefix of encoded cursors, allowing the format to change later.
+     */
+    private static final String CURSOR_PREFIX = "t1:";
+
+    /**
+     * Creates a window from raw request parameters, returning null if none are
+     * set.
+     *
+     * @param from     lower bound in epoch seconds (may be null).
+     * @param to       upper bound in epoch seconds (may be null).
+     * @param pageSize maximum number of points per time series (may be null).
+     * @param cursor   encoded cursor (may be null).
+     *
+     * @return time window (or null).
+     *
+     * @throws IllegalArgumentException if page size or cursor are invalid.
+     */
+    public static TimeWindow of(Long from, Long to, Integer pageSize, String cursor) {
+        if (from == null && to == null && pageSize == null && (cursor == null || cursor.isEmpty())) {
+            return null;
+        }
+        if (pageSize != null && pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be a positive integer.");
+        }
+
+        return new TimeWindow(
+                (from == null) ? null : Instant.ofEpochSecond(from),
+                (to == null) ? null : Instant.ofEpochSecond(to),
+                pageSize,
+                (cursor == null || cursor.isEmpty()) ? null : decodeCursor(cursor));
+    }
+
+    /**
+     * Returns the upper bound to read up to (inclusive), being the earlier of
+     * the cursor and upper bound.
+     *
+     * @return upper bound (or null for none).
+     */
+    public Instant upperBound() {
+        if (this.cursor == null) {
+            return this.to;
+        }
+        return (this.to != null && this.to.isBefore(this.cursor)) ? this.to : this.cursor;
+    }
+
+    /**
+     * Encodes the input time as an opaque cursor.
+     *
+     * @param time exclusive upper bound of the next page.
+     *
+     * @return encoded cursor.
+     */
+    public static String encodeCursor(Instant time) {
+        String raw = CURSOR_PREFIX + time.getEpochSecond() + "." + time.getNano();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes the input cursor.
+     *
+     * @param cursor encoded cursor.
+     *
+     * @return exclusive upper bound of the page.
+     *
+     * @throws IllegalArgumentException if cursor is invalid.
+     */
+    public static Instant decodeCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (!raw.startsWith(CURSOR_PREFIX)) {
+                throw new IllegalArgumentException("Unknown cursor format.");
+            }
+
+            String[] parts = raw.substring(CURSOR_PREFIX.length()).split("\\.");
+            return Instant.ofEpochSecond(Long.parseLong(parts[0]), Long.parseLong(parts[1]));
+        } catch (RuntimeException exception) {
+            throw new IllegalArgumentException("Invalid time series cursor: " + cursor, exception);
+        }
+    }
+
+}
+// End of class.
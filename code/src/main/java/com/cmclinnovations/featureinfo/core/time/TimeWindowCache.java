@@ -0,0 +1,177 @@
+package com.cmclinnovations.featureinfo.core.time;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+import org.json.JSONObject;
+
+import com.cmclinnovations.featureinfo.utils.ExpiringCache;
+
+import uk.ac.cam.cares.jps.base.timeseries.TimeSeries;
+
+/**
+ * Cache of the most recently read time series window for each set of
+ * measurables and configuration entry, shared across requests. For append-only
+ * data, this allows repeated requests for NOW and LATEST windows to only read
+ * values newer than those already cached.
+ * 
+ * Entries are evicted in least-recently-used order once the (estimated) memory
+ * budget is exceeded. They expire a time-to-live after the window was last read
+ * in full (extending a window does not reset this), so that any non-append
+ * changes to the data are eventually picked up.
+ */
+public class TimeWindowCache {
+
+    /**
+     * Estimated bytes per cached timestamp (Instant and list slot).
+     */
+    private static final long TIME_BYTES = 32;
+
+    /**
+     * Estimated bytes per cached value (boxed value and list slot).
+     */
+    private static final long VALUE_BYTES = 24;
+
+    /**
+     * Estimated fixed overhead per cached window.
+     */
+    private static final long ENTRY_BYTES = 256;
+
+    /**
+     * Cached windows, weighed by their estimated size (in bytes).
+     */
+    private final ExpiringCache<WindowKey, Window> cache;
+
+    /**
+     * Initialise a new TimeWindowCache instance.
+     *
+     * @param maxBytes   maximum estimated size of all cached windows (zero to
+     *                   disable).
+     * @param ttlSeconds time-to-live of windows in seconds (zero or less for no
+     *                   expiry).
+     */
+    public TimeWindowCache(long maxBytes, long ttlSeconds) {
+        this(maxBytes, ttlSeconds, System::nanoTime);
+    }
+
+    /**
+     * Initialise a new TimeWindowCache instance.
+     *
+     * @param maxBytes   maximum estimated size of all cached windows.
+     * @param ttlSeconds time-to-live of windows in seconds.
+     * @param clock      source of current time (in nanoseconds).
+     */
+    TimeWindowCache(long maxBytes, long ttlSeconds, LongSupplier clock) {
+        this.cache = new ExpiringCache<>(maxBytes, window -> estimateSize(window.timeseries()), ttlSeconds, clock);
+    }
+
+    /**
+     * Returns true if this cache can hold any windows.
+     *
+     * @return enabled state.
+     */
+    public boolean isEnabled() {
+        return this.cache.isEnabled();
+    }
+
+    /**
+     * Returns the cached window for the input measurables and entry, or null if
+     * absent or expired.
+     *
+     * @param entryID        configuration entry ID.
+     * @param measurableIRIs measurable IRIs (sharing a time series).
+     *
+     * @return cached window (or null).
+     */
+    public Window get(String entryID, List<String> measurableIRIs) {
+        return this.cache.get(new WindowKey(entryID, measurableIRIs));
+    }
+
+    /**
+     * Stores a window that has been read in full for the input measurables and
+     * entry, starting its time-to-live. Windows larger than the whole budget are
+     * not stored.
+     *
+     * @param entryID        configuration entry ID.
+     * @param measurableIRIs measurable IRIs (sharing a time series).
+     * @param window         window to cache (must not be modified afterwards).
+     */
+    public void put(String entryID, List<String> measurableIRIs, Window window) {
+        this.cache.put(new WindowKey(entryID, List.copyOf(measurableIRIs)), window);
+    }
+
+    /**
+     * Replaces the window for the input measurables and entry with one extended
+     * from it, keeping the time-to-live of the last full read.
+     *
+     * @param entryID        configuration entry ID.
+     * @param measurableIRIs measurable IRIs (sharing a time series).
+     * @param window         extended window (must not be modified afterwards).
+     */
+    public void extend(String entryID, List<String> measurableIRIs, Window window) {
+        this.cache.update(new WindowKey(entryID, List.copyOf(measurableIRIs)), window);
+    }
+
+    /**
+     * Removes the window for the input measurables and entry.
+     *
+     * @param entryID        configuration entry ID.
+     * @param measurableIRIs measurable IRIs (sharing a time series).
+     */
+    public void invalidate(String entryID, List<String> measurableIRIs) {
+        this.cache.invalidate(new WindowKey(entryID, measurableIRIs));
+    }
+
+    /**
+     * Removes all cached windows.
+     */
+    public void clear() {
+        this.cache.clear();
+    }
+
+    /**
+     * Returns usage statistics for this cache, with the estimated size of all
+     * cached windows reported as their weight (in bytes).
+     *
+     * @return JSON object of statistics.
+     */
+    public JSONObject getStatistics() {
+        return this.cache.getStatistics();
+    }
+
+    /**
+     * Returns the estimated in-memory size of the input time series.
+     *
+     * @param timeseries time series.
+     *
+     * @return estimated size (in bytes).
+     */
+    private static long estimateSize(TimeSeries<Instant> timeseries) {
+        long rows = timeseries.getTimes().size();
+        long columns = timeseries.getDataIRIs().size();
+        return ENTRY_BYTES + rows * (TIME_BYTES + columns * VALUE_BYTES);
+    }
+
+    /**
+     * Cached time series window.
+     *
+     * @param timeseries time series within the window.
+     * @param lowerBound lower time bound the window was read from.
+     * @param lastTime   time after which values should be read to extend the
+     *                   window.
+     */
+    public record Window(TimeSeries<Instant> timeseries, Instant lowerBound, Instant lastTime) {
+    }
+
+    /**
+     * Key for cached windows.
+     *
+     * @param entryID        configuration entry ID.
+     * @param measurableIRIs measurable IRIs.
+     */
+    private record WindowKey(String entryID, List<String> measurableIRIs) {
+    }
+
+}
+// End of class.
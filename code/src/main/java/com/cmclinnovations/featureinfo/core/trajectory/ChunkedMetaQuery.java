@@ -0,0 +1,558 @@
+package com.cmclinnovations.featureinfo.core.trajectory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.SortCondition;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.core.VarExprList;
+import org.apache.jena.sparql.engine.binding.BindingFactory;
+import org.apache.jena.sparql.expr.Expr;
+import org.apache.jena.sparql.expr.ExprAggregator;
+import org.apache.jena.sparql.expr.aggregate.AggAvg;
+import org.apache.jena.sparql.expr.aggregate.AggCount;
+import org.apache.jena.sparql.expr.aggregate.AggCountVar;
+import org.apache.jena.sparql.expr.aggregate.AggMax;
+import org.apache.jena.sparql.expr.aggregate.AggMin;
+import org.apache.jena.sparql.expr.aggregate.AggSum;
+import org.apache.jena.sparql.expr.aggregate.Aggregator;
+import org.apache.jena.sparql.expr.aggregate.AggregatorFactory;
+import org.apache.jena.sparql.syntax.Element;
+import org.apache.jena.sparql.syntax.ElementData;
+import org.apache.jena.sparql.syntax.ElementGroup;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Trajectory metadata query that can be run over chunks of the intersected
+ * features, with the results of each chunk merged back into the result of a
+ * single query.
+ *
+ * Each projected variable is given a merge strategy: plain variables are group
+ * keys, whilst COUNT, SUM, MIN, MAX, and AVG aggregates are merged as partial
+ * aggregates (AVG is rewritten into a SUM and a hidden COUNT so that chunk
+ * averages are weighted correctly). Merged rows are re-sorted if the query
+ * orders by projected variables. Queries that cannot be merged (e.g. other
+ * aggregates, HAVING, or LIMIT clauses, or ordering by expressions) are only
+ * ever run as a single chunk.
+ */
+public final class ChunkedMetaQuery {
+
+    /**
+     * Prefix of hidden variables holding the counts behind averages.
+     */
+    private static final String COUNT_PREFIX = "fia_count_";
+
+    /**
+     * Strategies for merging a projected variable across chunks.
+     */
+    enum MergeStrategy {
+        KEY,
+        SUM,
+        MIN,
+        MAX,
+        MEAN
+    }
+
+    /**
+     * Projected variable that merged rows are sorted by.
+     *
+     * @param name       variable name.
+     * @param descending true if sorted in descending order.
+     */
+    private record SortKey(String name, boolean descending) {
+    }
+
+    /**
+     * Variable the feature IRIs are bound to.
+     */
+    private final Var featureVar;
+
+    /**
+     * Query run for each chunk (without a VALUES clause).
+     */
+    private final Query chunkQuery;
+
+    /**
+     * Merge strategy of each projected variable (or null if not mergeable).
+     */
+    private final Map<String, MergeStrategy> strategies;
+
+    /**
+     * Variables that merged rows are sorted by (in order of precedence).
+     */
+    private final List<SortKey> sortKeys;
+
+    /**
+     * Initialise a new ChunkedMetaQuery instance.
+     *
+     * @param featureVar variable the feature IRIs are bound to.
+     * @param chunkQuery query run for each chunk.
+     * @param strategies merge strategy of each projected variable.
+     * @param sortKeys   variables that merged rows are sorted by.
+     */
+    private ChunkedMetaQuery(Var featureVar, Query chunkQuery, Map<String, MergeStrategy> strategies,
+            List<SortKey> sortKeys) {
+        this.featureVar = featureVar;
+        this.chunkQuery = chunkQuery;
+        this.strategies = strategies;
+        this.sortKeys = sortKeys;
+    }
+
+    /**
+     * Returns a plan that runs the input query as a single chunk.
+     *
+     * @param featureVar variable the feature IRIs are bound to.
+     * @param query      parsed metadata query.
+     *
+     * @return unchunked query.
+     */
+    private static ChunkedMetaQuery unchunked(Var featureVar, Query query) {
+        return new ChunkedMetaQuery(featureVar, query, null, List.of());
+    }
+
+    /**
+     * Plans how the input metadata query is run over chunks of features.
+     *
+     * @param query       parsed metadata query.
+     * @param featureName name of variable the feature IRIs are bound to.
+     *
+     * @return chunked query.
+     */
+    public static ChunkedMetaQuery of(Query query, String featureName) {
+        Var featureVar = Var.alloc(featureName);
+
+        if (query.hasLimit() || query.hasOffset() || query.hasHaving()) {
+            return unchunked(featureVar, query);
+        }
+
+        List<SortKey> sortKeys = getSortKeys(query);
+        if (sortKeys == null) {
+            return unchunked(featureVar, query);
+        }
+
+        if (!query.hasAggregators() && !query.hasGroupBy()) {
+            // Rows of each chunk are independent, so can be concatenated
+            Map<String, MergeStrategy> strategies = new LinkedHashMap<>();
+            if (!query.isQueryResultStar()) {
+                query.getProjectVars().forEach(var -> strategies.put(var.getVarName(), MergeStrategy.KEY));
+            }
+            return isSortable(strategies, sortKeys)
+                    ? new ChunkedMetaQuery(featureVar, query, strategies, sortKeys)
+                    : unchunked(featureVar, query);
+        }
+
+        // Keep the dataset and any trailing VALUES block of the original query
+        Query rewritten = new Query();
+        rewritten.setPrefixMapping(query.getPrefixMapping());
+        rewritten.setQuerySelectType();
+        rewritten.setDistinct(query.isDistinct());
+        query.getGraphURIs().forEach(rewritten::addGraphURI);
+        query.getNamedGraphURIs().forEach(rewritten::addNamedGraphURI);
+        rewritten.setQueryPattern(query.getQueryPattern());
+        if (query.hasValues()) {
+            rewritten.setValuesDataBlock(query.getValuesVariables(), query.getValuesData());
+        }
+        query.getGroupBy().forEachVarExpr((var, expr) -> {
+            if (expr == null) {
+                rewritten.addGroupBy(var);
+            } else {
+                rewritten.addGroupBy(var, expr);
+            }
+        });
+
+        Map<String, MergeStrategy> strategies = new LinkedHashMap<>();
+        VarExprList project = query.getProject();
+
+        for (Var var : project.getVars()) {
+            Expr expr = project.getExpr(var);
+            if (!(expr instanceof ExprAggregator aggregate)) {
+                // Plain variables (or expressions of them) identify a group
+                if (expr == null) {
+                    rewritten.addResultVar(var);
+                } else {
+                    rewritten.addResultVar(var, expr);
+                }
+                strategies.put(var.getVarName(), MergeStrategy.KEY);
+                continue;
+            }
+
+            Aggregator aggregator = aggregate.getAggregator();
+            if (aggregator instanceof AggCount || aggregator instanceof AggCountVar
+                    || aggregator instanceof AggSum) {
+                rewritten.addResultVar(var, rewritten.allocAggregate(aggregator));
+                strategies.put(var.getVarName(), MergeStrategy.SUM);
+
+            } else if (aggregator instanceof AggMin || aggregator instanceof AggMax) {
+                rewritten.addResultVar(var, rewritten.allocAggregate(aggregator));
+                strategies.put(var.getVarName(),
+                        (aggregator instanceof AggMin) ? MergeStrategy.MIN : MergeStrategy.MAX);
+
+            } else if (aggregator instanceof AggAvg) {
+                Expr inner = aggregator.getExprList().get(0);
+                rewritten.addResultVar(var, rewritten.allocAggregate(AggregatorFactory.createSum(false, inner)));
+                rewritten.addResultVar(Var.alloc(COUNT_PREFIX + var.getVarName()),
+                        rewritten.allocAggregate(AggregatorFactory.createCountExpr(false, inner)));
+                strategies.put(var.getVarName(), MergeStrategy.MEAN);
+
+            } else {
+                // Other aggregates (e.g. DISTINCT, SAMPLE) cannot be merged
+                return unchunked(featureVar, query);
+            }
+        }
+        return isSortable(strategies, sortKeys)
+                ? new ChunkedMetaQuery(featureVar, rewritten, strategies, sortKeys)
+                : unchunked(featureVar, query);
+    }
+
+    /**
+     * Returns the variables the input query orders its results by.
+     *
+     * @param query parsed metadata query.
+     *
+     * @return sort keys (or null if ordered by anything other than variables).
+     */
+    private static List<SortKey> getSortKeys(Query query) {
+        if (!query.hasOrderBy()) {
+            return List.of();
+        }
+
+        List<SortKey> sortKeys = new ArrayList<>();
+        for (SortCondition condition : query.getOrderBy()) {
+            if (!condition.getExpression().isVariable()) {
+                return null;
+            }
+            sortKeys.add(new SortKey(
+                    condition.getExpression().getVarName(),
+                    condition.getDirection() == Query.ORDER_DESCENDING));
+        }
+        return sortKeys;
+    }
+
+    /**
+     * Returns true if merged rows can be sorted by the input keys, i.e. each key
+     * is a projected variable.
+     *
+     * @param strategies merge strategy of each projected variable (empty if all
+     *                   variables are projected).
+     * @param sortKeys   variables that merged rows are sorted by.
+     *
+     * @return true if sortable.
+     */
+    private static boolean isSortable(Map<String, MergeStrategy> strategies, List<SortKey> sortKeys) {
+        return strategies.isEmpty() || sortKeys.stream().allMatch(key -> strategies.containsKey(key.name()));
+    }
+
+    /**
+     * Returns true if the query can be run over multiple chunks.
+     *
+     * @return chunking state.
+     */
+    public boolean isChunkable() {
+        return this.strategies != null;
+    }
+
+    /**
+     * Returns the query for the input chunk of features.
+     *
+     * @param featureIris feature IRIs.
+     *
+     * @return query string.
+     */
+    public String render(List<String> featureIris) {
+        Query query = this.chunkQuery.cloneQuery();
+        addValues(query, this.featureVar, featureIris);
+        return query.toString();
+    }
+
+    /**
+     * Merges the results of each chunk.
+     *
+     * @param partials results of each chunk.
+     *
+     * @return merged results.
+     */
+    public JSONArray merge(List<JSONArray> partials) {
+        boolean grouped = this.strategies.containsValue(MergeStrategy.SUM)
+                || this.strategies.containsValue(MergeStrategy.MIN)
+                || this.strategies.containsValue(MergeStrategy.MAX)
+                || this.strategies.containsValue(MergeStrategy.MEAN);
+
+        JSONArray merged = new JSONArray();
+        if (!grouped) {
+            if (partials.size() == 1) {
+                return partials.get(0);
+            }
+
+            // Concatenate, removing duplicates if required
+            boolean unique = this.chunkQuery.isDistinct() || this.chunkQuery.hasGroupBy();
+            Set<List<Object>> seen = new LinkedHashSet<>();
+            for (JSONArray partial : partials) {
+                for (int i = 0; i < partial.length(); i++) {
+                    JSONObject row = partial.getJSONObject(i);
+                    if (!unique || seen.add(getKey(row))) {
+                        merged.put(row);
+                    }
+                }
+            }
+            return sort(merged);
+        }
+
+        Map<List<Object>, JSONObject> groups = new LinkedHashMap<>();
+        Map<List<Object>, Map<String, Double>> counts = new LinkedHashMap<>();
+
+        for (JSONArray partial : partials) {
+            for (int i = 0; i < partial.length(); i++) {
+                JSONObject row = partial.getJSONObject(i);
+                List<Object> key = getKey(row);
+
+                JSONObject group = groups.get(key);
+                if (group == null) {
+                    group = new JSONObject();
+                    groups.put(key, group);
+                    counts.put(key, new LinkedHashMap<>());
+                }
+                mergeRow(group, counts.get(key), row);
+            }
+        }
+
+        groups.forEach((key, group) -> {
+            finishRow(group, counts.get(key));
+            merged.put(group);
+        });
+        return sort(merged);
+    }
+
+    /**
+     * Sorts merged rows by the query's sort keys, as each chunk is only sorted
+     * within itself. Unbound values are sorted first; rows with equal keys keep
+     * their merged order.
+     *
+     * @param merged merged rows.
+     *
+     * @return sorted rows.
+     */
+    private JSONArray sort(JSONArray merged) {
+        if (this.sortKeys.isEmpty() || merged.length() < 2) {
+            return merged;
+        }
+
+        List<JSONObject> rows = new ArrayList<>();
+        for (int i = 0; i < merged.length(); i++) {
+            rows.add(merged.getJSONObject(i));
+        }
+
+        rows.sort((first, second) -> {
+            for (SortKey sortKey : this.sortKeys) {
+                int result = compareNullable(first.opt(sortKey.name()), second.opt(sortKey.name()));
+                if (result != 0) {
+                    return sortKey.descending() ? -result : result;
+                }
+            }
+            return 0;
+        });
+        return new JSONArray(rows);
+    }
+
+    /**
+     * Compares two (possibly unbound) values, with unbound values first.
+     *
+     * @param first  first value (may be null).
+     * @param second second value (may be null).
+     *
+     * @return comparison result.
+     */
+    private static int compareNullable(Object first, Object second) {
+        boolean firstUnbound = first == null || first == JSONObject.NULL;
+        boolean secondUnbound = second == null || second == JSONObject.NULL;
+        if (firstUnbound || secondUnbound) {
+            return Boolean.compare(!firstUnbound, !secondUnbound);
+        }
+        return compare(first, second);
+    }
+
+    /**
+     * Merges a chunk's row into its group.
+     *
+     * @param group  merged group row.
+     * @param counts running counts behind each average.
+     * @param row    chunk row.
+     */
+    private void mergeRow(JSONObject group, Map<String, Double> counts, JSONObject row) {
+        for (Map.Entry<String, MergeStrategy> entry : this.strategies.entrySet()) {
+            String name = entry.getKey();
+            Object value = row.opt(name);
+            if (value == null || value == JSONObject.NULL) {
+                continue;
+            }
+
+            Object current = group.opt(name);
+            switch (entry.getValue()) {
+                case KEY -> group.put(name, value);
+                case SUM -> group.put(name, add(current, value));
+                case MIN -> group.put(name, (current == null || compare(value, current) < 0) ? value : current);
+                case MAX -> group.put(name, (current == null || compare(value, current) > 0) ? value : current);
+                case MEAN -> {
+                    group.put(name, add(current, value));
+                    Double count = toDouble(row.opt(COUNT_PREFIX + name));
+                    counts.merge(name, (count == null) ? 0.0 : count, Double::sum);
+                }
+            }
+        }
+    }
+
+    /**
+     * Turns the running sums of averages into means.
+     *
+     * @param group  merged group row.
+     * @param counts running counts behind each average.
+     */
+    private void finishRow(JSONObject group, Map<String, Double> counts) {
+        counts.forEach((name, count) -> {
+            Double sum = toDouble(group.opt(name));
+            if (sum != null) {
+                group.put(name, (count > 0) ? sum / count : 0.0);
+            }
+        });
+    }
+
+    /**
+     * Returns the values of the group key variables in the input row (or all
+     * values if the query projects all variables).
+     *
+     * @param row result row.
+     *
+     * @return key.
+     */
+    private List<Object> getKey(JSONObject row) {
+        if (this.strategies.isEmpty()) {
+            return List.of(row.toMap());
+        }
+
+        List<Object> key = new ArrayList<>();
+        this.strategies.forEach((name, strategy) -> {
+            if (strategy == MergeStrategy.KEY) {
+                Object value = row.opt(name);
+                key.add((value == null) ? null : value.toString());
+            }
+        });
+        return key;
+    }
+
+    /**
+     * Adds two partial values, keeping integers where possible.
+     *
+     * @param current current value (may be null).
+     * @param value   value to add.
+     *
+     * @return sum.
+     */
+    private static Object add(Object current, Object value) {
+        if (current == null) {
+            return value;
+        }
+
+        Long currentLong = toLong(current);
+        Long valueLong = toLong(value);
+        if (currentLong != null && valueLong != null) {
+            return currentLong + valueLong;
+        }
+
+        Double currentDouble = toDouble(current);
+        Double valueDouble = toDouble(value);
+        if (currentDouble == null || valueDouble == null) {
+            return current;
+        }
+        return currentDouble + valueDouble;
+    }
+
+    /**
+     * Compares two values, numerically if possible.
+     *
+     * @param first  first value.
+     * @param second second value.
+     *
+     * @return comparison result.
+     */
+    private static int compare(Object first, Object second) {
+        Double firstDouble = toDouble(first);
+        Double secondDouble = toDouble(second);
+        if (firstDouble != null && secondDouble != null) {
+            return Double.compare(firstDouble, secondDouble);
+        }
+        return first.toString().compareTo(second.toString());
+    }
+
+    /**
+     * Parses the input value as an integer.
+     *
+     * @param value raw value.
+     *
+     * @return integer (or null if not an integer).
+     */
+    private static Long toLong(Object value) {
+        if (value instanceof Integer || value instanceof Long) {
+            return ((Number) value).longValue();
+        }
+        try {
+            return (value instanceof String string) ? Long.valueOf(string.trim()) : null;
+        } catch (NumberFormatException exception) {
+            return null;
+        }
+    }
+
+    /**
+     * Parses the input value as a number.
+     *
+     * @param value raw value.
+     *
+     * @return number (or null if not numeric).
+     */
+    private static Double toDouble(Object value) {
+        if (value instanceof Number number) {
+            return number.doubleValue();
+        }
+        try {
+            return (value == null) ? null : Double.valueOf(value.toString().trim());
+        } catch (NumberFormatException exception) {
+            return null;
+        }
+    }
+
+    /**
+     * Adds a VALUES clause binding the input feature IRIs to the top of the
+     * query's WHERE clause.
+     *
+     * @param query       query to modify.
+     * @param featureVar  variable the feature IRIs are bound to.
+     * @param featureIris feature IRIs.
+     */
+    static void addValues(Query query, Var featureVar, List<String> featureIris) {
+        ElementData valuesClause = new ElementData();
+        valuesClause.add(featureVar);
+
+        for (String featureIri : featureIris) {
+            Node featureValue = NodeFactory.createURI(featureIri);
+            valuesClause.add(BindingFactory.binding(featureVar, featureValue));
+        }
+
+        // Combine the VALUES clause with the existing pattern (if there is any)
+        ElementGroup newGroup = new ElementGroup();
+        newGroup.addElement(valuesClause);
+
+        Element existingPattern = query.getQueryPattern();
+        if (existingPattern != null) {
+            newGroup.addElement(existingPattern);
+        }
+        query.setQueryPattern(newGroup);
+    }
+
+}
+// End of class.
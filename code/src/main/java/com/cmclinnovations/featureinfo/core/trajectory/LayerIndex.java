@@ -0,0 +1,462 @@
+package com.cmclinnovations.featureinfo.core.trajectory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.postgis.Geometry;
+import org.postgis.GeometryCollection;
+import org.postgis.LineString;
+import org.postgis.MultiLineString;
+import org.postgis.MultiPoint;
+import org.postgis.MultiPolygon;
+import org.postgis.Point;
+import org.postgis.Polygon;
+
+/**
+ * Immutable, in-memory copy of a feature layer (the IRI and EPSG:4326 geometry
+ * of each feature), packed into a Sort-Tile-Recursive (STR) R-tree so that the
+ * features near a trajectory can be found without querying the database.
+ *
+ * Distances are evaluated per trajectory segment in a local equirectangular
+ * projection (centred on that segment), which is accurate to well within a
+ * metre for the buffer distances used to match trajectories to features.
+ */
+public final class LayerIndex {
+
+    /**
+     * Length of one degree of latitude (in metres) on the mean Earth sphere.
+     */
+    static final double METRES_PER_DEGREE = 6_371_008.8 * Math.PI / 180;
+
+    /**
+     * Maximum number of children in each tree node.
+     */
+    private static final int NODE_CAPACITY = 16;
+
+    /**
+     * Root of tree (or null if the layer is empty).
+     */
+    private final Box root;
+
+    /**
+     * Number of features within the layer.
+     */
+    private final int size;
+
+    /**
+     * Initialise a new LayerIndex instance.
+     *
+     * @param features features within the layer.
+     */
+    public LayerIndex(List<Feature> features) {
+        this.size = features.size();
+
+        List<? extends Box> level = features;
+        while (level.size() > 1) {
+            level = pack(level);
+        }
+        this.root = level.isEmpty() ? null : level.get(0);
+    }
+
+    /**
+     * Returns the number of features within the layer.
+     *
+     * @return feature count.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the IRIs of features within the input distance of the input
+     * trajectory line, in the order they are first met along the line.
+     *
+     * @param line   trajectory line (EPSG:4326).
+     * @param buffer distance (in metres).
+     *
+     * @return IRIs of intersecting features.
+     */
+    public List<String> intersecting(LineString line, double buffer) {
+        Point[] points = line.getPoints();
+        Set<String> matches = new LinkedHashSet<>();
+        if (this.root == null || points.length == 0) {
+            return new ArrayList<>(matches);
+        }
+
+        for (int i = 0; i < Math.max(1, points.length - 1); i++) {
+            Point start = points[i];
+            Point end = points[Math.min(i + 1, points.length - 1)];
+            findNear(start.getX(), start.getY(), end.getX(), end.getY(), buffer, matches);
+        }
+        return new ArrayList<>(matches);
+    }
+
+    /**
+     * Adds the IRIs of features within the input distance of the input segment.
+     *
+     * @param ax      longitude of segment start.
+     * @param ay      latitude of segment start.
+     * @param bx      longitude of segment end.
+     * @param by      latitude of segment end.
+     * @param buffer  distance (in metres).
+     * @param matches IRIs of matching features, added to.
+     */
+    private void findNear(double ax, double ay, double bx, double by, double buffer, Set<String> matches) {
+        // Local projection centred on segment
+        double originX = (ax + bx) / 2;
+        double originY = (ay + by) / 2;
+        double scaleY = METRES_PER_DEGREE;
+        double scaleX = METRES_PER_DEGREE * Math.max(Math.cos(Math.toRadians(originY)), 1E-6);
+
+        double padY = buffer / scaleY;
+        double maxLatitude = Math.min(89.9, Math.max(Math.abs(ay), Math.abs(by)) + padY);
+        double padX = buffer / (METRES_PER_DEGREE * Math.max(Math.cos(Math.toRadians(maxLatitude)), 1E-6));
+
+        double minX = Math.min(ax, bx) - padX;
+        double maxX = Math.max(ax, bx) + padX;
+        double minY = Math.min(ay, by) - padY;
+        double maxY = Math.max(ay, by) + padY;
+
+        double pax = (ax - originX) * scaleX;
+        double pay = (ay - originY) * scaleY;
+        double pbx = (bx - originX) * scaleX;
+        double pby = (by - originY) * scaleY;
+
+        Deque<Box> stack = new ArrayDeque<>();
+        stack.push(this.root);
+        while (!stack.isEmpty()) {
+            Box box = stack.pop();
+            if (box.maxX() < minX || box.minX() > maxX || box.maxY() < minY || box.minY() > maxY) {
+                continue;
+            }
+
+            if (box instanceof Node node) {
+                node.children().forEach(stack::push);
+            } else if (box instanceof Feature feature && !matches.contains(feature.iri())) {
+                if (feature.contains(ax, ay)
+                        || feature.distance(pax, pay, pbx, pby, originX, originY, scaleX, scaleY) <= buffer) {
+                    matches.add(feature.iri());
+                }
+            }
+        }
+    }
+
+    /**
+     * Packs the input boxes into parent nodes, tiling them into vertical slices
+     * ordered by x, then runs of nodes ordered by y.
+     *
+     * @param boxes boxes to pack.
+     *
+     * @return parent nodes.
+     */
+    private static List<Node> pack(List<? extends Box> boxes) {
+        int nodeCount = (int) Math.ceil(boxes.size() / (double) NODE_CAPACITY);
+        int sliceCount = (int) Math.ceil(Math.sqrt(nodeCount));
+        int sliceSize = sliceCount * NODE_CAPACITY;
+
+        List<Box> sorted = new ArrayList<>(boxes);
+        sorted.sort(Comparator.comparingDouble(box -> box.minX() + box.maxX()));
+
+        List<Node> nodes = new ArrayList<>(nodeCount);
+        for (int i = 0; i < sorted.size(); i += sliceSize) {
+            List<Box> slice = new ArrayList<>(sorted.subList(i, Math.min(sorted.size(), i + sliceSize)));
+            slice.sort(Comparator.comparingDouble(box -> box.minY() + box.maxY()));
+
+            for (int j = 0; j < slice.size(); j += NODE_CAPACITY) {
+                nodes.add(Node.of(slice.subList(j, Math.min(slice.size(), j + NODE_CAPACITY))));
+            }
+        }
+        return nodes;
+    }
+
+    /**
+     * Converts the input geometry into a layer feature.
+     *
+     * @param iri      feature IRI.
+     * @param geometry feature geometry (EPSG:4326).
+     *
+     * @return feature (or null if geometry has no points).
+     */
+    public static Feature toFeature(String iri, Geometry geometry) {
+        List<double[]> lines = new ArrayList<>();
+        List<double[]> rings = new ArrayList<>();
+        addParts(geometry, lines, rings);
+        if (lines.isEmpty() && rings.isEmpty()) {
+            return null;
+        }
+
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (List<double[]> parts : List.of(lines, rings)) {
+            for (double[] part : parts) {
+                for (int i = 0; i < part.length; i += 2) {
+                    minX = Math.min(minX, part[i]);
+                    maxX = Math.max(maxX, part[i]);
+                    minY = Math.min(minY, part[i + 1]);
+                    maxY = Math.max(maxY, part[i + 1]);
+                }
+            }
+        }
+        return new Feature(iri, lines.toArray(new double[0][]), rings.toArray(new double[0][]),
+                minX, minY, maxX, maxY);
+    }
+
+    /**
+     * Adds the coordinates of the input geometry's lines and polygon rings.
+     *
+     * @param geometry geometry to add.
+     * @param lines    coordinates of points and lines, added to.
+     * @param rings    coordinates of polygon rings, added to.
+     */
+    private static void addParts(Geometry geometry, List<double[]> lines, List<double[]> rings) {
+        if (geometry instanceof Point point) {
+            lines.add(new double[] { point.getX(), point.getY() });
+        } else if (geometry instanceof MultiPoint multiPoint) {
+            for (Point point : multiPoint.getPoints()) {
+                addParts(point, lines, rings);
+            }
+        } else if (geometry instanceof LineString lineString) {
+            addPart(lines, toCoordinates(lineString.getPoints()));
+        } else if (geometry instanceof MultiLineString multiLine) {
+            for (LineString lineString : multiLine.getLines()) {
+                addParts(lineString, lines, rings);
+            }
+        } else if (geometry instanceof Polygon polygon) {
+            for (int i = 0; i < polygon.numRings(); i++) {
+                addPart(rings, toCoordinates(polygon.getRing(i).getPoints()));
+            }
+        } else if (geometry instanceof MultiPolygon multiPolygon) {
+            for (Polygon polygon : multiPolygon.getPolygons()) {
+                addParts(polygon, lines, rings);
+            }
+        } else if (geometry instanceof GeometryCollection collection) {
+            for (Geometry member : collection.getGeometries()) {
+                addParts(member, lines, rings);
+            }
+        }
+    }
+
+    /**
+     * Adds the input coordinates to the input parts, unless empty.
+     *
+     * @param parts       parts to add to.
+     * @param coordinates interleaved coordinates.
+     */
+    private static void addPart(List<double[]> parts, double[] coordinates) {
+        if (coordinates.length > 0) {
+            parts.add(coordinates);
+        }
+    }
+
+    /**
+     * Flattens the input points into interleaved x and y coordinates.
+     *
+     * @param points points to flatten.
+     *
+     * @return coordinates.
+     */
+    private static double[] toCoordinates(Point[] points) {
+        double[] coordinates = new double[points.length * 2];
+        for (int i = 0; i < points.length; i++) {
+            coordinates[i * 2] = points[i].getX();
+            coordinates[i * 2 + 1] = points[i].getY();
+        }
+        return coordinates;
+    }
+
+    /**
+     * Returns the distance between segment AB and segment CD.
+     *
+     * @return distance (zero if they cross).
+     */
+    static double segmentDistance(double ax, double ay, double bx, double by,
+            double cx, double cy, double dx, double dy) {
+        double o1 = orientation(ax, ay, bx, by, cx, cy);
+        double o2 = orientation(ax, ay, bx, by, dx, dy);
+        double o3 = orientation(cx, cy, dx, dy, ax, ay);
+        double o4 = orientation(cx, cy, dx, dy, bx, by);
+        if (o1 * o2 < 0 && o3 * o4 < 0) {
+            return 0;
+        }
+
+        return Math.min(
+                Math.min(pointDistance(ax, ay, cx, cy, dx, dy), pointDistance(bx, by, cx, cy, dx, dy)),
+                Math.min(pointDistance(cx, cy, ax, ay, bx, by), pointDistance(dx, dy, ax, ay, bx, by)));
+    }
+
+    /**
+     * Returns the distance from point P to segment AB.
+     *
+     * @return distance.
+     */
+    private static double pointDistance(double px, double py, double ax, double ay, double bx, double by) {
+        double vx = bx - ax;
+        double vy = by - ay;
+        double length = vx * vx + vy * vy;
+        double t = (length == 0) ? 0 : Math.max(0, Math.min(1, ((px - ax) * vx + (py - ay) * vy) / length));
+        return Math.hypot(px - (ax + t * vx), py - (ay + t * vy));
+    }
+
+    /**
+     * Returns twice the signed area of triangle ABC (positive if anticlockwise).
+     *
+     * @return signed area.
+     */
+    private static double orientation(double ax, double ay, double bx, double by, double cx, double cy) {
+        return (bx - ax) * (cy - ay) - (by - ay) * (cx - ax);
+    }
+
+    /**
+     * Anything with a bounding box within the tree.
+     */
+    private sealed interface Box permits Node, Feature {
+
+        double minX();
+
+        double minY();
+
+        double maxX();
+
+        double maxY();
+    }
+
+    /**
+     * Node of tree.
+     *
+     * @param minX     minimum longitude of children.
+     * @param minY     minimum latitude of children.
+     * @param maxX     maximum longitude of children.
+     * @param maxY     maximum latitude of children.
+     * @param children child nodes or features.
+     */
+    private record Node(double minX, double minY, double maxX, double maxY, List<Box> children) implements Box {
+
+        /**
+         * Creates a node bounding the input children.
+         *
+         * @param children child nodes or features.
+         *
+         * @return new node.
+         */
+        static Node of(List<Box> children) {
+            double minX = Double.POSITIVE_INFINITY;
+            double minY = Double.POSITIVE_INFINITY;
+            double maxX = Double.NEGATIVE_INFINITY;
+            double maxY = Double.NEGATIVE_INFINITY;
+            for (Box child : children) {
+                minX = Math.min(minX, child.minX());
+                minY = Math.min(minY, child.minY());
+                maxX = Math.max(maxX, child.maxX());
+                maxY = Math.max(maxY, child.maxY());
+            }
+            return new Node(minX, minY, maxX, maxY, List.copyOf(children));
+        }
+    }
+
+    /**
+     * Feature within the layer.
+     *
+     * @param iri   feature IRI.
+     * @param lines interleaved coordinates of each point and line.
+     * @param rings interleaved coordinates of each polygon ring.
+     * @param minX  minimum longitude.
+     * @param minY  minimum latitude.
+     * @param maxX  maximum longitude.
+     * @param maxY  maximum latitude.
+     */
+    public record Feature(String iri, double[][] lines, double[][] rings,
+            double minX, double minY, double maxX, double maxY) implements Box {
+
+        /**
+         * Returns an estimate of the memory used by this feature (and its place
+         * within the tree).
+         *
+         * @return size in bytes.
+         */
+        public long estimateBytes() {
+            long bytes = 128 + 40 + 2L * this.iri.length();
+            for (double[][] parts : new double[][][] { this.lines, this.rings }) {
+                bytes += 16 + 8L * parts.length;
+                for (double[] part : parts) {
+                    bytes += 16 + 8L * part.length;
+                }
+            }
+            return bytes;
+        }
+
+        /**
+         * Returns true if the input point lies within the feature's polygons
+         * (using the even-odd rule, so holes are excluded).
+         *
+         * @param x longitude.
+         * @param y latitude.
+         *
+         * @return containment state.
+         */
+        boolean contains(double x, double y) {
+            boolean inside = false;
+            for (double[] ring : this.rings) {
+                for (int i = 0, j = ring.length - 2; i < ring.length; j = i, i += 2) {
+                    double xi = ring[i];
+                    double yi = ring[i + 1];
+                    double xj = ring[j];
+                    double yj = ring[j + 1];
+                    if ((yi > y) != (yj > y) && x < (xj - xi) * (y - yi) / (yj - yi) + xi) {
+                        inside = !inside;
+                    }
+                }
+            }
+            return inside;
+        }
+
+        /**
+         * Returns the distance from the input (projected) segment to the feature's
+         * boundary, lines, and points.
+         *
+         * @param ax      projected x of segment start.
+         * @param ay      projected y of segment start.
+         * @param bx      projected x of segment end.
+         * @param by      projected y of segment end.
+         * @param originX longitude of projection origin.
+         * @param originY latitude of projection origin.
+         * @param scaleX  metres per degree of longitude.
+         * @param scaleY  metres per degree of latitude.
+         *
+         * @return distance (in metres).
+         */
+        double distance(double ax, double ay, double bx, double by,
+                double originX, double originY, double scaleX, double scaleY) {
+            double distance = Double.POSITIVE_INFINITY;
+            for (double[][] parts : new double[][][] { this.lines, this.rings }) {
+                for (double[] part : parts) {
+                    double px = (part[0] - originX) * scaleX;
+                    double py = (part[1] - originY) * scaleY;
+                    if (part.length == 2) {
+                        distance = Math.min(distance, segmentDistance(ax, ay, bx, by, px, py, px, py));
+                    }
+
+                    for (int i = 2; i < part.length; i += 2) {
+                        double qx = (part[i] - originX) * scaleX;
+                        double qy = (part[i + 1] - originY) * scaleY;
+                        distance = Math.min(distance, segmentDistance(ax, ay, bx, by, px, py, qx, qy));
+                        if (distance == 0) {
+                            return 0;
+                        }
+                        px = qx;
+                        py = qy;
+                    }
+                }
+            }
+            return distance;
+        }
+    }
+
+}
+// End of class.
@@ -0,0 +1,304 @@
+package com.cmclinnovations.featureinfo.core.trajectory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.JSONObject;
+import org.postgis.binary.BinaryParser;
+
+import com.cmclinnovations.featureinfo.config.ConfigEntry;
+import com.cmclinnovations.featureinfo.config.ConfigStore;
+import com.cmclinnovations.featureinfo.config.StackEndpoint;
+import com.cmclinnovations.featureinfo.config.StackEndpointType;
+import com.cmclinnovations.featureinfo.utils.RDBPoolRegistry;
+import com.cmclinnovations.featureinfo.utils.TaskExecutor;
+
+/**
+ * Registry of in-memory feature layers, one per trajectory configuration entry
+ * with a layer configured. Layers are loaded in the background (on start up and
+ * refresh), within a shared memory budget; until a layer is ready, or if it
+ * does not fit within the budget, trajectories fall back to the remote feature
+ * query.
+ */
+public class LayerIndexRegistry {
+
+    /**
+     * Logger for reporting info/errors.
+     */
+    private static final Logger LOGGER = LogManager.getLogger(LayerIndexRegistry.class);
+
+    /**
+     * Number of rows fetched at a time when loading layers.
+     */
+    private static final int FETCH_SIZE = 1000;
+
+    /**
+     * Loading state of a layer.
+     */
+    enum State {
+        LOADING,
+        READY,
+        TOO_LARGE,
+        FAILED
+    }
+
+    /**
+     * Maximum estimated memory (in bytes) used by all layers.
+     */
+    private final long maxBytes;
+
+    /**
+     * Layers of the current configuration, replaced on each rebuild so that
+     * superseded loads only ever update their own (discarded) generation.
+     */
+    private volatile Generation generation = new Generation();
+
+    /**
+     * Pooled connections to the relational database.
+     */
+    private final RDBPoolRegistry rdbPools;
+
+    /**
+     * Single thread used to load layers in the background.
+     */
+    private final TaskExecutor loader = new TaskExecutor("fia-layer", 1);
+
+    /**
+     * Initialise a new LayerIndexRegistry instance.
+     *
+     * @param rdbPools pooled connections to the relational database.
+     * @param maxBytes maximum estimated memory (in bytes) used by all layers
+     *                 (zero to disable).
+     */
+    public LayerIndexRegistry(RDBPoolRegistry rdbPools, long maxBytes) {
+        this.rdbPools = rdbPools;
+        this.maxBytes = Math.max(0, maxBytes);
+    }
+
+    /**
+     * Returns the ready layer for the input configuration entry.
+     *
+     * @param entry configuration entry.
+     *
+     * @return layer (or null if not configured, not yet loaded, or too large).
+     */
+    public LayerIndex get(ConfigEntry entry) {
+        Layer layer = this.generation.layers().get(entry.getID());
+        return (layer == null || layer.state() != State.READY) ? null : layer.index();
+    }
+
+    /**
+     * Discards all layers, then starts loading those of the input configuration
+     * in the background. Should be called after the configuration and stack
+     * endpoints have been reloaded.
+     *
+     * @param configStore configuration store.
+     */
+    public void rebuild(ConfigStore configStore) {
+        Generation current = new Generation();
+        this.generation = current;
+
+        if (this.maxBytes == 0) {
+            return;
+        }
+
+        List<StackEndpoint> postgres = configStore.getStackEndpoints(StackEndpointType.POSTGRES);
+        for (ConfigEntry entry : configStore.getConfigEntries()) {
+            if (entry.getTrajectoryLayer() == null || entry.getTrajectoryLayerQuery() == null) {
+                continue;
+            }
+
+            if (postgres.isEmpty() || entry.getTrajectoryDatabase() == null
+                    || entry.getTrajectoryDatabase().isEmpty()) {
+                LOGGER.warn("Cannot load layer for entry '{}' without a Postgres endpoint and database.",
+                        entry.getID());
+                current.layers().put(entry.getID(), new Layer(State.FAILED, null, 0));
+                continue;
+            }
+
+            current.layers().put(entry.getID(), new Layer(State.LOADING, null, 0));
+            this.loader.submit(() -> {
+                load(current, entry, postgres.get(0));
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Stops any running loads and releases the loading thread.
+     */
+    public void shutdown() {
+        this.generation = new Generation();
+        this.loader.shutdown();
+    }
+
+    /**
+     * Returns the state, size, and estimated memory of each layer.
+     *
+     * @return JSON object of statistics.
+     */
+    public JSONObject getStatistics() {
+        Generation current = this.generation;
+        JSONObject layerStatistics = new JSONObject();
+        current.layers().forEach((id, layer) -> {
+            JSONObject metrics = new JSONObject();
+            metrics.put("state", layer.state().name());
+            metrics.put("features", (layer.index() == null) ? 0 : layer.index().size());
+            metrics.put("bytes", layer.bytes());
+            layerStatistics.put(id, metrics);
+        });
+
+        JSONObject statistics = new JSONObject();
+        statistics.put("maxBytes", this.maxBytes);
+        statistics.put("bytes", current.usedBytes().get());
+        statistics.put("layers", layerStatistics);
+        return statistics;
+    }
+
+    /**
+     * Loads the layer of the input configuration entry, giving up once it
+     * exceeds the remaining memory budget.
+     *
+     * @param current     generation the load belongs to.
+     * @param entry       configuration entry.
+     * @param rdbEndpoint endpoint for postgres.
+     */
+    private void load(Generation current, ConfigEntry entry, StackEndpoint rdbEndpoint) {
+        LOGGER.info("Loading in-memory layer for entry '{}'...", entry.getID());
+
+        List<LayerIndex.Feature> features = new ArrayList<>();
+        long bytes = 0;
+        boolean stopped = false;
+
+        try (Connection conn = connectToDatabase(rdbEndpoint, entry.getTrajectoryDatabase())) {
+            // Results are only streamed (rather than read in full) outside of auto-commit
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+
+            try (PreparedStatement statement = conn.prepareStatement(entry.getTrajectoryLayerQuery())) {
+                statement.setFetchSize(FETCH_SIZE);
+                BinaryParser parser = new BinaryParser();
+
+                try (ResultSet result = statement.executeQuery()) {
+                    while (!stopped && result.next()) {
+                        byte[] geometry = result.getBytes(2);
+                        LayerIndex.Feature feature = (geometry == null) ? null
+                                : LayerIndex.toFeature(result.getString(1), parser.parse(geometry));
+                        if (feature != null) {
+                            features.add(feature);
+                            bytes += feature.estimateBytes();
+                        }
+
+                        // Stop early if superseded or over budget
+                        stopped = isSuperseded(current) || current.usedBytes().get() + bytes > this.maxBytes;
+                    }
+                }
+                conn.commit();
+            } catch (SQLException | RuntimeException exception) {
+                TrajectoryHandler.rollback(conn, exception);
+                throw exception;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        } catch (Exception exception) {
+            LOGGER.warn("Could not load in-memory layer for entry '{}', using remote query.", entry.getID(),
+                    exception);
+            current.layers().put(entry.getID(), new Layer(State.FAILED, null, 0));
+            return;
+        }
+
+        if (isSuperseded(current)) {
+            return;
+        }
+        if (stopped) {
+            tooLarge(current, entry);
+            return;
+        }
+
+        // Reserve memory within this generation's budget
+        if (current.usedBytes().addAndGet(bytes) > this.maxBytes) {
+            current.usedBytes().addAndGet(-bytes);
+            tooLarge(current, entry);
+            return;
+        }
+
+        LayerIndex index = new LayerIndex(features);
+        current.layers().put(entry.getID(), new Layer(State.READY, index, bytes));
+        LOGGER.info("Loaded in-memory layer for entry '{}' ({} features, ~{} bytes).", entry.getID(),
+                index.size(), bytes);
+    }
+
+    /**
+     * Marks the input entry's layer as too large for the memory budget.
+     *
+     * @param current generation the load belongs to.
+     * @param entry   configuration entry.
+     */
+    private void tooLarge(Generation current, ConfigEntry entry) {
+        LOGGER.warn("In-memory layer for entry '{}' exceeds memory budget, using remote query.", entry.getID());
+        current.layers().put(entry.getID(), new Layer(State.TOO_LARGE, null, 0));
+    }
+
+    /**
+     * Returns true if the input generation has been replaced by a rebuild (so
+     * its loads can stop early).
+     *
+     * @param current generation the load belongs to.
+     *
+     * @return superseded state.
+     */
+    private boolean isSuperseded(Generation current) {
+        return this.generation != current;
+    }
+
+    /**
+     * Returns a connection to the input database.
+     *
+     * @param rdbEndpoint endpoint for postgres.
+     * @param database    database name.
+     *
+     * @return connection.
+     *
+     * @throws SQLException if database cannot be connected to.
+     */
+    protected Connection connectToDatabase(StackEndpoint rdbEndpoint, String database) throws SQLException {
+        return this.rdbPools.getConnection(rdbEndpoint, database);
+    }
+
+    /**
+     * Layer of a configuration entry.
+     *
+     * @param state loading state.
+     * @param index loaded layer (or null if not ready).
+     * @param bytes estimated memory used (in bytes).
+     */
+    private record Layer(State state, LayerIndex index, long bytes) {
+    }
+
+    /**
+     * Layers loaded for one configuration, with their memory accounting.
+     *
+     * @param layers    layers for each configuration entry, keyed by entry ID.
+     * @param usedBytes estimated memory (in bytes) used by ready layers.
+     */
+    private record Generation(Map<String, Layer> layers, AtomicLong usedBytes) {
+
+        /**
+         * Initialise a new, empty, Generation instance.
+         */
+        Generation() {
+            this(new ConcurrentHashMap<>(), new AtomicLong());
+        }
+    }
+
+}
+// End of class.
@@ -0,0 +1,120 @@
+package com.cmclinnovations.featureinfo.core.trajectory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import org.postgis.Point;
+
+/**
+ * Simplifies trajectory lines using the Douglas-Peucker algorithm, so that
+ * long, high frequency, trajectories do not produce WKT literals too large for
+ * the feature query to handle.
+ * 
+ * Every point of the original line lies within the tolerance of the simplified
+ * line (and vice versa), so buffering the simplified line by an extra tolerance
+ * covers everything the original buffer did. Tolerances are in the units of the
+ * point coordinates (i.e. degrees for WGS84).
+ */
+public final class LineSimplifier {
+
+    /**
+     * Constructor.
+     */
+    private LineSimplifier() {
+        // No
+    }
+
+    /**
+     * Returns the input points, simplified to the input tolerance. The first and
+     * last points are always kept.
+     * 
+     * @param points    line points, in order.
+     * @param tolerance maximum distance of removed points from the simplified
+     *                  line (zero or less to disable).
+     * 
+     * @return simplified points (or the input if unchanged).
+     */
+    public static List<Point> simplify(List<Point> points, double tolerance) {
+        if (tolerance <= 0 || points.size() < 3) {
+            return points;
+        }
+
+        int size = points.size();
+        double[] xs = new double[size];
+        double[] ys = new double[size];
+        for (int i = 0; i < size; i++) {
+            xs[i] = points.get(i).getX();
+            ys[i] = points.get(i).getY();
+        }
+
+        boolean[] keep = new boolean[size];
+        keep[0] = true;
+        keep[size - 1] = true;
+        double toleranceSquared = tolerance * tolerance;
+
+        // Iterative to avoid deep recursion on long lines
+        Deque<int[]> ranges = new ArrayDeque<>();
+        ranges.push(new int[] { 0, size - 1 });
+
+        while (!ranges.isEmpty()) {
+            int[] range = ranges.pop();
+            int start = range[0];
+            int end = range[1];
+
+            int furthest = -1;
+            double furthestDistance = toleranceSquared;
+            for (int i = start + 1; i < end; i++) {
+                double distance = segmentDistanceSquared(xs[i], ys[i], xs[start], ys[start], xs[end], ys[end]);
+                if (distance > furthestDistance) {
+                    furthest = i;
+                    furthestDistance = distance;
+                }
+            }
+
+            if (furthest >= 0) {
+                keep[furthest] = true;
+                ranges.push(new int[] { start, furthest });
+                ranges.push(new int[] { furthest, end });
+            }
+        }
+
+        List<Point> simplified = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            if (keep[i]) {
+                simplified.add(points.get(i));
+            }
+        }
+        return simplified;
+    }
+
+    /**
+     * Returns the squared distance from a point to a line segment.
+     * 
+     * @param px point x.
+     * @param py point y.
+     * @param ax segment start x.
+     * @param ay segment start y.
+     * @param bx segment end x.
+     * @param by segment end y.
+     * 
+     * @return squared distance.
+     */
+    private static double segmentDistanceSquared(double px, double py, double ax, double ay, double bx, double by) {
+        double dx = bx - ax;
+        double dy = by - ay;
+        double lengthSquared = dx * dx + dy * dy;
+
+        double t = 0;
+        if (lengthSquared > 0) {
+            t = Math.max(0, Math.min(1, ((px - ax) * dx + (py - ay) * dy) / lengthSquared));
+        }
+
+        double cx = ax + t * dx - px;
+        double cy = ay + t * dy - py;
+        return cx * cx + cy * cy;
+    }
+
+}
+// End of class.
@@ -1,15 +1,18 @@
 package com.cmclinnovations.featureinfo.core.trajectory;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
+import java.sql.Types;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.concurrent.Future;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -18,39 +21,33 @@ import org.json.JSONArray;
 import org.json.JSONObject;
 import org.postgis.LineString;
 import org.postgis.Point;
+import org.postgis.binary.BinaryWriter;
+import org.postgresql.PGStatement;
 import org.apache.logging.log4j.LogManager;
 
 import org.apache.jena.query.Query;
 import org.apache.jena.query.QueryFactory;
-import org.apache.jena.sparql.core.Var;
-import org.apache.jena.sparql.engine.binding.Binding;
-import org.apache.jena.sparql.engine.binding.BindingFactory;
-import org.apache.jena.sparql.syntax.Element;
-import org.apache.jena.sparql.syntax.ElementData;
-import org.apache.jena.sparql.syntax.ElementGroup;
 import org.apache.jena.sparql.syntax.ElementPathBlock;
 import org.apache.jena.sparql.syntax.ElementTriplesBlock;
 import org.apache.jena.sparql.syntax.ElementVisitorBase;
 import org.apache.jena.sparql.syntax.ElementWalker;
-import org.apache.jena.graph.NodeFactory;
 import org.apache.jena.graph.Node;
 
 import com.cmclinnovations.featureinfo.config.ConfigEntry;
 import com.cmclinnovations.featureinfo.config.ConfigStore;
+import com.cmclinnovations.featureinfo.config.FeatureQueryPlan;
 import com.cmclinnovations.featureinfo.config.StackEndpoint;
 import com.cmclinnovations.featureinfo.config.StackEndpointType;
 import com.cmclinnovations.featureinfo.config.StackInteractor;
 import com.cmclinnovations.featureinfo.core.meta.MetaParser;
+import com.cmclinnovations.featureinfo.utils.KGClientRegistry;
+import com.cmclinnovations.featureinfo.utils.QueryTemplate;
+import com.cmclinnovations.featureinfo.utils.RDBPoolRegistry;
+import com.cmclinnovations.featureinfo.utils.TaskExecutor;
+import com.cmclinnovations.featureinfo.utils.TimeSeriesClientCache;
 import com.cmclinnovations.featureinfo.utils.Utils;
 
-import net.sf.jsqlparser.JSQLParserException;
-import net.sf.jsqlparser.parser.CCJSqlParserUtil;
-import net.sf.jsqlparser.statement.select.PlainSelect;
-import net.sf.jsqlparser.statement.select.SelectItem;
-import net.sf.jsqlparser.statement.select.Select;
-
 import uk.ac.cam.cares.jps.base.query.RemoteRDBStoreClient;
-import uk.ac.cam.cares.jps.base.query.RemoteStoreClient;
 import uk.ac.cam.cares.jps.base.timeseries.TimeSeries;
 import uk.ac.cam.cares.jps.base.timeseries.TimeSeriesClient;
 import uk.ac.cam.cares.jps.base.timeseries.TimeSeriesClientFactory;
@@ -60,12 +57,23 @@ public class TrajectoryHandler {
     private final Optional<String> enforcedEndpoint;
     private final String iri;
     private final ConfigStore configStore;
-    private RemoteStoreClient remoteStoreClient;
+    private KGClientRegistry kgClients;
+    private RDBPoolRegistry rdbPools;
+    private TimeSeriesClientCache tsClientCache;
+    private LayerIndexRegistry layerIndexes;
+    private TaskExecutor queryExecutor;
+    private long queryTimeout;
+    private int chunkSize = Integer.MAX_VALUE;
     private Long lowerbound;
     private Long upperbound;
 
     private static final String FEATURE_VARIABLE_NAME = "Feature";
 
+    /**
+     * Number of rows fetched at a time from SQL feature queries.
+     */
+    private static final int FEATURE_FETCH_SIZE = 1000;
+
     public TrajectoryHandler(String iri, Optional<String> enforcedEndpoint, ConfigStore configStore, Long lowerbound,
             Long upperbound) {
         this.iri = iri;
@@ -75,47 +83,81 @@ public class TrajectoryHandler {
         this.upperbound = upperbound;
     }
 
-    public void setClients(RemoteStoreClient remoteStoreClient) {
-        this.remoteStoreClient = remoteStoreClient;
+    public void setClients(KGClientRegistry kgClients) {
+        this.kgClients = kgClients;
+    }
+
+    /**
+     * Sets the pool used to run chunks of the metadata query concurrently. If
+     * not set, chunks are run sequentially.
+     * 
+     * @param queryExecutor pool of query threads.
+     * @param queryTimeout  timeout (in seconds) for each chunk.
+     * @param chunkSize     maximum number of feature IRIs in each chunk.
+     */
+    public void setExecutor(TaskExecutor queryExecutor, long queryTimeout, int chunkSize) {
+        this.queryExecutor = queryExecutor;
+        this.queryTimeout = queryTimeout;
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    /**
+     * Sets the registry of pooled RDB connections; if not set, a new connection
+     * is made for each database.
+     * 
+     * @param rdbPools registry of pooled RDB connections.
+     */
+    public void setPools(RDBPoolRegistry rdbPools) {
+        this.rdbPools = rdbPools;
+    }
+
+    /**
+     * Sets the cache of time series clients; if not set, the factory is called
+     * (querying the KG) on every request.
+     * 
+     * @param tsClientCache cache of time series clients.
+     */
+    public void setClientCache(TimeSeriesClientCache tsClientCache) {
+        this.tsClientCache = tsClientCache;
+    }
+
+    /**
+     * Sets the registry of in-memory feature layers; if not set (or a layer is
+     * not ready), intersecting features are found using the feature query.
+     * 
+     * @param layerIndexes registry of in-memory feature layers.
+     */
+    public void setLayers(LayerIndexRegistry layerIndexes) {
+        this.layerIndexes = layerIndexes;
     }
 
     public JSONObject getData(List<ConfigEntry> classMatches) {
         List<JSONArray> rawResults = new ArrayList<>();
         classMatches.stream().filter(c -> c.getFeatureIriQuery() != null).forEach(classMatch -> {
             // Construct line using points queried from point time series
-            List<String> pointIriList = getPointIriList(classMatch.getPointIriQuery());
-
-            LineString trajectoryLine = makeLine(pointIriList);
+            List<String> pointIriList = getPointIriList(classMatch.getPointIriQueryTemplate());
 
-            String featureIriQuery = classMatch.getFeatureIriQuery().replace("[LINE_WKT]", trajectoryLine.toString());
+            LineString trajectoryLine = makeLine(pointIriList, classMatch.getTrajectoryTolerance());
 
-            List<String> featureIriList = getFeatures(featureIriQuery, classMatch.getTrajectoryDatabase());
+            List<String> featureIriList = getFeatures(classMatch, trajectoryLine);
 
-            String trajectoryMetaQueryTemplate = classMatch.getTrajectoryMetaQuery();
-            rawResults.add(getMetadata(trajectoryMetaQueryTemplate, featureIriList));
+            rawResults.add(getMetadata(classMatch.getTrajectoryMetaQueryTemplate(), featureIriList));
         });
 
         return MetaParser.formatData(rawResults);
     }
 
-    List<String> getPointIriList(String pointIriQueryTemplate) {
+    List<String> getPointIriList(QueryTemplate pointIriQueryTemplate) {
         String queryString = Utils.queryInject(pointIriQueryTemplate, iri,
                 configStore.getStackEndpoints(StackEndpointType.ONTOP),
                 Utils.getBlazegraphEndpoints(configStore, enforcedEndpoint));
 
         String queryParameter = getSparqlQuerySelectParameter(queryString);
 
-        List<String> endpoints = Utils.getBlazegraphURLs(configStore, enforcedEndpoint);
-
-        JSONArray queryResult;
-        if (endpoints.size() == 1) {
-            LOGGER.debug("Running non-federated meta data query.");
-            remoteStoreClient.setQueryEndpoint(endpoints.get(0));
-            queryResult = remoteStoreClient.executeQuery(queryString);
-        } else {
-            LOGGER.debug("Running federated meta data query.");
-            queryResult = remoteStoreClient.executeFederatedQuery(endpoints, queryString);
-        }
+        LOGGER.debug("Running point IRI query for trajectory.");
+        JSONArray queryResult = kgClients.executeQuery(
+                Utils.getBlazegraphEndpoints(configStore, enforcedEndpoint),
+                queryString);
 
         List<String> pointIriList = new ArrayList<>();
         for (int i = 0; i < queryResult.length(); i++) {
@@ -125,59 +167,182 @@ public class TrajectoryHandler {
         return pointIriList;
     }
 
-    private LineString makeLine(List<String> pointIriList) {
-        StackEndpoint rdbEndpoint = this.configStore.getStackEndpoints(StackEndpointType.POSTGRES).get(0);
-
-        List<Long> timeList = new ArrayList<>();
-        List<Point> pointList = new ArrayList<>();
-
+    private LineString makeLine(List<String> pointIriList, double tolerance) {
         // In case of multiple point instances, combine into a single trajectory (e.g.
         // multiple devices linked to a single user)
-        pointIriList.forEach(pointIri -> {
-            TimeSeriesClient<Long> tsClient = getTimeSeriesClientViaFactory(List.of(pointIri));
-            tsClient.setRDBClient(tsClient.getRdbUrl(), rdbEndpoint.username(), rdbEndpoint.password());
-
-            TimeSeries<Long> timeseries = tsClient.getTimeSeriesWithinBounds(List.of(pointIri), lowerbound, upperbound);
-            timeList.addAll(timeseries.getTimes());
-            pointList.addAll(timeseries.getValuesAsPoint(pointIri));
+        Map<String, TimeSeriesClient<Long>> clients = getPointClients(pointIriList);
+
+        // Group points by database, so that each is read using a single connection
+        Map<String, List<String>> pointsByDatabase = new LinkedHashMap<>();
+        pointIriList.forEach(pointIri -> pointsByDatabase
+                .computeIfAbsent(clients.get(pointIri).getRdbUrl(), url -> new ArrayList<>())
+                .add(pointIri));
+
+        List<List<Long>> timeLists = new ArrayList<>();
+        List<List<Point>> pointLists = new ArrayList<>();
+
+        pointsByDatabase.forEach((rdbUrl, pointIris) -> {
+            try (Connection conn = connectToURL(rdbUrl)) {
+                for (String pointIri : pointIris) {
+                    TimeSeries<Long> timeseries = clients.get(pointIri)
+                            .getTimeSeriesWithinBounds(List.of(pointIri), lowerbound, upperbound, conn);
+                    timeLists.add(timeseries.getTimes());
+                    pointLists.add(timeseries.getValuesAsPoint(pointIri));
+                }
+            } catch (SQLException e) {
+                String errmsg = "Error obtaining connection for point time series";
+                LOGGER.error(errmsg);
+                LOGGER.error(e.getMessage());
+                throw new RuntimeException(errmsg, e);
+            }
         });
 
-        // sort points according to time
-        sortTwoLists(timeList, pointList);
+        // Each device's points are already time ordered, so merge rather than sort
+        List<Point> pointList = mergeByTime(timeLists, pointLists);
 
+        // Simplify before generating WKT, to keep the feature query small
+        int originalSize = pointList.size();
+        pointList = LineSimplifier.simplify(pointList, tolerance);
+        if (pointList.size() != originalSize) {
+            LOGGER.debug("Simplified trajectory from {} to {} points.", originalSize, pointList.size());
+        }
         return new LineString(pointList.toArray(new Point[pointList.size()]));
     }
 
-    private List<String> getFeatures(String queryString, String trajectoryDatabase) {
-        List<String> featureIriList = new ArrayList<>();
-        if (isSparql(queryString)) {
-            queryString = Utils.queryInject(queryString, iri,
-                    configStore.getStackEndpoints(StackEndpointType.ONTOP),
-                    Utils.getBlazegraphEndpoints(configStore, enforcedEndpoint));
-
-            String queryParameter = getSparqlQuerySelectParameter(queryString);
-            List<String> endpoints = Utils.getBlazegraphURLs(configStore, enforcedEndpoint);
-            JSONArray queryResult;
-            if (endpoints.size() == 1) {
-                LOGGER.debug("Running non-federated meta data query.");
-                remoteStoreClient.setQueryEndpoint(endpoints.get(0));
-                queryResult = remoteStoreClient.executeQuery(queryString);
-            } else {
-                LOGGER.debug("Running federated meta data query.");
-                queryResult = remoteStoreClient.executeFederatedQuery(endpoints, queryString);
+    /**
+     * Returns a time series client for each point IRI. A single client is
+     * constructed for all points (one KG lookup) where possible, falling back to
+     * a client per point when they are held in different databases.
+     * 
+     * @param pointIriList point IRIs.
+     * 
+     * @return clients keyed by point IRI.
+     */
+    private Map<String, TimeSeriesClient<Long>> getPointClients(List<String> pointIriList) {
+        Map<String, TimeSeriesClient<Long>> clients = new LinkedHashMap<>();
+        if (pointIriList.size() > 1) {
+            try {
+                TimeSeriesClient<Long> tsClient = getTimeSeriesClientViaFactory(pointIriList);
+                pointIriList.forEach(pointIri -> clients.put(pointIri, tsClient));
+                return clients;
+            } catch (RuntimeException exception) {
+                LOGGER.debug("Could not construct a single client for all points, constructing one per point.");
             }
+        }
+
+        pointIriList.forEach(pointIri -> clients.put(pointIri, getTimeSeriesClientViaFactory(List.of(pointIri))));
+        return clients;
+    }
+
+    /**
+     * Merges the input time ordered lists (one per device) into a single time
+     * ordered list of points, using a k-way merge. Points with equal times are
+     * kept in device order.
+     * 
+     * @param timeLists  time ordered times of each device.
+     * @param pointLists points of each device (matching times).
+     * 
+     * @return merged points.
+     */
+    static <U> List<U> mergeByTime(List<List<Long>> timeLists, List<List<U>> pointLists) {
+        int total = timeLists.stream().mapToInt(List::size).sum();
+        List<U> merged = new ArrayList<>(total);
+        int[] positions = new int[timeLists.size()];
+
+        PriorityQueue<Integer> heads = new PriorityQueue<>((a, b) -> {
+            int compare = Long.compare(timeLists.get(a).get(positions[a]), timeLists.get(b).get(positions[b]));
+            return (compare != 0) ? compare : Integer.compare(a, b);
+        });
+        for (int i = 0; i < timeLists.size(); i++) {
+            if (!timeLists.get(i).isEmpty()) {
+                heads.add(i);
+            }
+        }
+
+        while (!heads.isEmpty()) {
+            int device = heads.poll();
+            merged.add(pointLists.get(device).get(positions[device]));
+            positions[device]++;
+            if (positions[device] < timeLists.get(device).size()) {
+                heads.add(device);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Finds features intersecting the input trajectory line. SPARQL queries have
+     * the line injected as a WKT literal, whilst SQL queries are run as a
+     * prepared statement with the line bound as a parameter (so Postgres can
+     * reuse its plan, and does not have to parse a large literal each time).
+     * 
+     * If the entry has an in-memory layer that is ready, intersections are
+     * evaluated locally instead.
+     * 
+     * @param classMatch     configuration entry containing query details.
+     * @param trajectoryLine trajectory line.
+     * 
+     * @return IRIs of intersecting features.
+     */
+    private List<String> getFeatures(ConfigEntry classMatch, LineString trajectoryLine) {
+        LayerIndex layer = (this.layerIndexes == null) ? null : this.layerIndexes.get(classMatch);
+        if (layer != null) {
+            LOGGER.debug("Finding features intersecting trajectory using in-memory layer.");
+            return getLayerFeatures(layer, trajectoryLine, classMatch.getTrajectoryLayer().buffer(),
+                    classMatch.getTrajectoryTolerance());
+        }
+
+        QueryTemplate queryTemplate = classMatch.getFeatureIriQueryTemplate();
+        FeatureQueryPlan queryPlan = classMatch.getFeatureIriQueryPlan();
+        if (queryPlan.error() != null) {
+            LOGGER.error(queryPlan.error());
+            throw new RuntimeException(queryPlan.error());
+        }
+        String queryParameter = queryPlan.selectVariable();
+        String trajectoryDatabase = classMatch.getTrajectoryDatabase();
+        List<StackEndpoint> ontopEndpoints = configStore.getStackEndpoints(StackEndpointType.ONTOP);
+        List<StackEndpoint> blazegraphEndpoints = Utils.getBlazegraphEndpoints(configStore, enforcedEndpoint);
+
+        List<String> featureIriList = new ArrayList<>();
+
+        // Query type was determined when the configuration was read
+        if (queryPlan.sparql()) {
+            String queryString = Utils.queryInject(queryTemplate, iri, ontopEndpoints, blazegraphEndpoints,
+                    trajectoryLine.toString());
+
+            LOGGER.debug("Running feature IRI query for trajectory.");
+            JSONArray queryResult = kgClients.executeQuery(blazegraphEndpoints, queryString);
 
             for (int i = 0; i < queryResult.length(); i++) {
                 featureIriList.add(queryResult.getJSONObject(i).getString(queryParameter));
             }
         } else {
-            String queryParameter = getSqlSelectParameter(queryString);
-            try (Connection conn = connectToDatabase(trajectoryDatabase);
-                    Statement statement = conn.createStatement()) {
-                ResultSet result = statement.executeQuery(queryString);
-
-                while (result.next()) {
-                    featureIriList.add(result.getString(queryParameter));
+            QueryTemplate.ParameterisedQuery query = Utils.queryInjectParameterised(queryTemplate, iri,
+                    ontopEndpoints, blazegraphEndpoints, trajectoryLine.toString());
+
+            try (Connection conn = connectToDatabase(trajectoryDatabase)) {
+                // Results are only streamed (rather than read in full) outside of auto-commit
+                boolean autoCommit = conn.getAutoCommit();
+                conn.setAutoCommit(false);
+
+                try (PreparedStatement statement = conn.prepareStatement(query.sql())) {
+                    if (statement.isWrapperFor(PGStatement.class)) {
+                        statement.unwrap(PGStatement.class).setPrepareThreshold(1);
+                    }
+                    statement.setFetchSize(FEATURE_FETCH_SIZE);
+                    bindLine(statement, query.parameters(), trajectoryLine);
+
+                    try (ResultSet result = statement.executeQuery()) {
+                        while (result.next()) {
+                            featureIriList.add(result.getString(queryParameter));
+                        }
+                    }
+                    conn.commit();
+                } catch (SQLException | RuntimeException exception) {
+                    rollback(conn, exception);
+                    throw exception;
+                } finally {
+                    conn.setAutoCommit(autoCommit);
                 }
             } catch (SQLException e) {
                 String errmsg = "Error executing SQL query to obtain feature IRIs";
@@ -189,7 +354,72 @@ public class TrajectoryHandler {
         return featureIriList;
     }
 
-    private JSONArray getMetadata(String queryTemplate, List<String> featureIriList) {
+    /**
+     * Finds features of the input in-memory layer intersecting the input
+     * (simplified) trajectory line. As advised for feature queries, the buffer
+     * is increased by the simplification tolerance (converted from degrees to
+     * metres), so that features near points removed by simplification are still
+     * matched.
+     * 
+     * @param layer          in-memory layer.
+     * @param trajectoryLine simplified trajectory line (EPSG:4326).
+     * @param buffer         distance (in metres).
+     * @param tolerance      simplification tolerance (in degrees).
+     * 
+     * @return IRIs of intersecting features.
+     */
+    static List<String> getLayerFeatures(LayerIndex layer, LineString trajectoryLine, double buffer,
+            double tolerance) {
+        return layer.intersecting(trajectoryLine, buffer + tolerance * LayerIndex.METRES_PER_DEGREE);
+    }
+
+    /**
+     * Rolls back the current transaction of the input connection after a
+     * failure, recording any error from the rollback against that failure.
+     * 
+     * @param conn      connection.
+     * @param exception failure that caused the rollback.
+     */
+    static void rollback(Connection conn, Exception exception) {
+        try {
+            conn.rollback();
+        } catch (SQLException rollbackException) {
+            exception.addSuppressed(rollbackException);
+        }
+    }
+
+    /**
+     * Binds the input trajectory line to each parameter of a prepared feature
+     * query, as either WKT text or (E)WKB bytes. WKT is bound without a type, so
+     * Postgres resolves it as it would an untyped literal (e.g. as geometry).
+     * 
+     * @param statement      prepared statement.
+     * @param parameters     placeholder for each parameter.
+     * @param trajectoryLine trajectory line.
+     * 
+     * @throws SQLException if parameters cannot be set.
+     */
+    static void bindLine(PreparedStatement statement, List<QueryTemplate.Placeholder> parameters,
+            LineString trajectoryLine) throws SQLException {
+        String wkt = null;
+        byte[] wkb = null;
+
+        for (int i = 0; i < parameters.size(); i++) {
+            if (parameters.get(i) == QueryTemplate.Placeholder.LINE_WKB) {
+                if (wkb == null) {
+                    wkb = new BinaryWriter().writeBinary(trajectoryLine);
+                }
+                statement.setBytes(i + 1, wkb);
+            } else {
+                if (wkt == null) {
+                    wkt = trajectoryLine.toString();
+                }
+                statement.setObject(i + 1, wkt, Types.OTHER);
+            }
+        }
+    }
+
+    private JSONArray getMetadata(QueryTemplate queryTemplate, List<String> featureIriList) {
         String queryString = Utils.queryInject(queryTemplate, iri,
                 configStore.getStackEndpoints(StackEndpointType.ONTOP),
                 Utils.getBlazegraphEndpoints(configStore, enforcedEndpoint));
@@ -197,23 +427,25 @@ public class TrajectoryHandler {
         Query query = QueryFactory.create(queryString);
 
         if (checkIfVariableExists(query, FEATURE_VARIABLE_NAME)) {
-            // add VALUES ?Feature {<feature1> <feature2> <feature3>} to query
-            addValues(query, featureIriList);
-
-            // execute query
-            List<String> endpoints = Utils.getBlazegraphURLs(configStore, enforcedEndpoint);
+            // add VALUES ?Feature {<feature1> <feature2> <feature3>} to query, in chunks where possible
+            ChunkedMetaQuery chunkedQuery = ChunkedMetaQuery.of(query, FEATURE_VARIABLE_NAME);
+            if (!chunkedQuery.isChunkable()) {
+                LOGGER.debug("Running meta data query for trajectory.");
+                return kgClients.executeQuery(
+                        Utils.getBlazegraphEndpoints(configStore, enforcedEndpoint),
+                        chunkedQuery.render(featureIriList));
+            }
 
-            JSONArray queryResult;
-            if (endpoints.size() == 1) {
-                LOGGER.debug("Running non-federated meta data query for trajectory.");
-                remoteStoreClient.setQueryEndpoint(endpoints.get(0));
-                queryResult = remoteStoreClient.executeQuery(query.toString());
-            } else {
-                LOGGER.debug("Running federated meta data query for trajectory.");
-                queryResult = remoteStoreClient.executeFederatedQuery(endpoints, query.toString());
+            List<List<String>> chunks = new ArrayList<>();
+            for (int i = 0; i < featureIriList.size(); i += this.chunkSize) {
+                chunks.add(featureIriList.subList(i, Math.min(featureIriList.size(), i + this.chunkSize)));
+            }
+            if (chunks.isEmpty()) {
+                chunks.add(featureIriList);
             }
 
-            return queryResult;
+            LOGGER.debug("Running meta data query for trajectory in {} chunk(s).", chunks.size());
+            return chunkedQuery.merge(runChunks(chunkedQuery, chunks));
         } else {
             String errmsg = "Trajectory metadata query must contain a variable named " + FEATURE_VARIABLE_NAME;
             LOGGER.error(errmsg);
@@ -221,6 +453,46 @@ public class TrajectoryHandler {
         }
     }
 
+    /**
+     * Runs the metadata query for each chunk of features, concurrently if a
+     * pool has been set. As partial results cannot be merged correctly without
+     * every chunk, any failed (or timed out) chunk fails the whole query.
+     * 
+     * @param chunkedQuery metadata query.
+     * @param chunks       chunks of feature IRIs.
+     * 
+     * @return results of each chunk, in chunk order.
+     */
+    private List<JSONArray> runChunks(ChunkedMetaQuery chunkedQuery, List<List<String>> chunks) {
+        List<StackEndpoint> endpoints = Utils.getBlazegraphEndpoints(configStore, enforcedEndpoint);
+
+        if (this.queryExecutor == null || chunks.size() < 2) {
+            return chunks.stream()
+                    .map(chunk -> kgClients.executeQuery(endpoints, chunkedQuery.render(chunk)))
+                    .toList();
+        }
+
+        // Submit all chunks before waiting on any of them
+        long deadline = TaskExecutor.deadline(System.nanoTime(), this.queryTimeout);
+        List<Future<JSONArray>> futures = chunks.stream()
+                .map(chunk -> this.queryExecutor.submit(
+                        () -> kgClients.executeQuery(endpoints, chunkedQuery.render(chunk))))
+                .toList();
+
+        List<JSONArray> results = new ArrayList<>();
+        for (Future<JSONArray> future : futures) {
+            try {
+                results.add(TaskExecutor.await(future, deadline, "trajectory meta data query"));
+            } catch (Exception exception) {
+                futures.forEach(remaining -> remaining.cancel(true));
+                String errmsg = "Execution of chunked trajectory meta data query has failed";
+                LOGGER.error(errmsg, exception);
+                throw new RuntimeException(errmsg, exception);
+            }
+        }
+        return results;
+    }
+
     private boolean checkIfVariableExists(Query query, String variableName) {
         // Set to collect variables
         Set<String> variables = new HashSet<>();
@@ -253,53 +525,17 @@ public class TrajectoryHandler {
         return variables.contains(variableName);
     }
 
-    private void addValues(Query query, List<String> featureIriList) {
-        // Inject featureIriList into the given query template
-        // create a VALUES clause from featureIriList
-        ElementData valuesClause = new ElementData();
-        Var featureVar = Var.alloc(FEATURE_VARIABLE_NAME);
-        valuesClause.add(featureVar);
-
-        List<Node> featureValues = featureIriList.stream().map(NodeFactory::createURI).collect(Collectors.toList());
-
-        featureValues.forEach(featureValue -> {
-            Binding binding = BindingFactory.binding(featureVar, featureValue);
-            valuesClause.add(binding);
-        });
-
-        // Get the existing WHERE clause (query pattern)
-        Element existingPattern = query.getQueryPattern();
-
-        // Create a new ElementGroup to combine the VALUES clause with the existing
-        // patterns
-        ElementGroup newGroup = new ElementGroup();
-
-        // Add the VALUES clause to the top
-        newGroup.addElement(valuesClause);
-
-        // Add the existing pattern to the group (if there is any existing pattern)
-        if (existingPattern != null) {
-            newGroup.addElement(existingPattern);
-        }
-
-        // Set the modified group as the new query pattern (updated WHERE clause)
-        query.setQueryPattern(newGroup);
-    }
-
     private TimeSeriesClient<Long> getTimeSeriesClientViaFactory(List<String> pointIriList) {
         // Run query
-        List<String> endpoints = Utils.getBlazegraphURLs(configStore, enforcedEndpoint);
+        List<StackEndpoint> endpoints = Utils.getBlazegraphEndpoints(configStore, enforcedEndpoint);
 
         try {
-            if (endpoints.size() == 1) {
-                LOGGER.debug("Generating time series client via non-federated query.");
-
-                remoteStoreClient.setQueryEndpoint(endpoints.get(0));
-
-                return (TimeSeriesClient<Long>) TimeSeriesClientFactory.getInstance(remoteStoreClient, pointIriList);
-            } else {
-                return (TimeSeriesClient<Long>) TimeSeriesClientFactory.getInstance(endpoints, pointIriList);
+            if (this.tsClientCache != null) {
+                return (TimeSeriesClient<Long>) this.tsClientCache.get(
+                        pointIriList,
+                        () -> createTimeSeriesClient(endpoints, pointIriList));
             }
+            return (TimeSeriesClient<Long>) createTimeSeriesClient(endpoints, pointIriList);
         } catch (Exception e) {
             String errmsg = "Failed to construct TimeSeriesClient using TimeSeriesClientFactory, be sure to use JPS base lib 1.44.0 or later";
             LOGGER.error(errmsg);
@@ -308,105 +544,58 @@ public class TrajectoryHandler {
         }
     }
 
-    private <T extends Comparable<T>, U> void sortTwoLists(List<T> listToSortBy, List<U> listToSort) {
-        // Create a list of indices
-        List<Integer> indices = new ArrayList<>();
-        for (int i = 0; i < listToSortBy.size(); i++) {
-            indices.add(i);
-        }
-
-        Collections.sort(indices, Comparator.comparing(listToSortBy::get));
-
-        // Create a sorted copy of listToSortBy and listToSort
-        List<T> sortedListToSortBy = new ArrayList<>(listToSortBy.size());
-        List<U> sortedListToSort = new ArrayList<>(listToSort.size());
-        for (int i : indices) {
-            sortedListToSortBy.add(listToSortBy.get(i));
-            sortedListToSort.add(listToSort.get(i));
-        }
-
-        // Replace the original lists with the sorted ones
-        listToSortBy.clear();
-        listToSortBy.addAll(sortedListToSortBy);
-
-        listToSort.clear();
-        listToSort.addAll(sortedListToSort);
-    }
-
-    // Check if the query is SPARQL by trying to parse it using Apache Jena
-    private boolean isSparql(String query) {
-        try {
-            QueryFactory.create(query);
-            return true;
-        } catch (Exception e) {
-            return false;
-        }
-    }
-
-    private String getSparqlQuerySelectParameter(String queryString) {
-        Query query = QueryFactory.create(queryString);
-
-        String queryParameter;
-        if (query.isSelectType()) {
-            if (query.isQueryResultStar()) {
-                String errmsg = "SELECT * is not allowed for trajectory query, please provide exactly one SELECT parameter";
-                LOGGER.error(errmsg);
-                throw new RuntimeException(errmsg);
-            } else if (query.getResultVars().size() != 1) {
-                String errmsg = "Trajectory query needs to have exactly one SELECT parameter";
-                LOGGER.error(errmsg);
-                throw new RuntimeException(errmsg);
-            }
-            queryParameter = query.getResultVars().get(0);
+    private TimeSeriesClient<?> createTimeSeriesClient(List<StackEndpoint> endpoints, List<String> pointIriList)
+            throws Exception {
+        if (endpoints.size() == 1) {
+            LOGGER.debug("Generating time series client via non-federated query.");
+            return TimeSeriesClientFactory.getInstance(kgClients.getClient(endpoints.get(0)), pointIriList);
         } else {
-            String errmsg = "Trajectory query is not a SELECT query";
-            LOGGER.error(errmsg);
-            throw new RuntimeException(errmsg);
+            return TimeSeriesClientFactory.getInstance(
+                    endpoints.stream().map(StackEndpoint::url).collect(Collectors.toList()),
+                    pointIriList);
         }
-
-        return queryParameter;
     }
 
-    private String getSqlSelectParameter(String queryString) {
-        // Parse the SQL query
-        net.sf.jsqlparser.statement.Statement statement = null;
+    private String getSparqlQuerySelectParameter(String queryString) {
         try {
-            statement = CCJSqlParserUtil.parse(queryString);
-        } catch (JSQLParserException e) {
-            String errmsg = "Error parsing SQL feature query";
-            LOGGER.error(errmsg);
-            LOGGER.error(e.getMessage());
-            throw new RuntimeException(errmsg, e);
+            return FeatureQueryPlan.getSelectVariable(QueryFactory.create(queryString));
+        } catch (IllegalArgumentException exception) {
+            LOGGER.error(exception.getMessage());
+            throw new RuntimeException(exception.getMessage(), exception);
         }
+    }
 
-        Select selectStatement = (Select) statement;
-
-        // Extract the PlainSelect part of the statement
-        PlainSelect plainSelect = (PlainSelect) selectStatement.getSelectBody();
-
-        // Get the SELECT items (parameters)
-        List<SelectItem> selectItems = plainSelect.getSelectItems();
-
-        if (selectItems.size() != 1) {
-            String errmsg = "Feature query needs to have exactly one SELECT parameter";
-            LOGGER.error(errmsg);
-            throw new RuntimeException(errmsg);
+    /**
+     * Returns a connection to the input JDBC URL, taken from the connection pool
+     * if one has been set, otherwise making a new connection.
+     * 
+     * @param rdbUrl JDBC URL.
+     * 
+     * @throws SQLException if database cannot be connected to.
+     */
+    protected Connection connectToURL(String rdbUrl) throws SQLException {
+        StackEndpoint rdbEndpoint = this.configStore.getStackEndpoints(StackEndpointType.POSTGRES).get(0);
+        if (this.rdbPools != null) {
+            return this.rdbPools.getConnection(rdbUrl, rdbEndpoint.username(), rdbEndpoint.password());
         }
-
-        // Convert SelectItems to a list of strings
-        return selectItems.get(0).toString();
+        return new RemoteRDBStoreClient(rdbUrl, rdbEndpoint.username(), rdbEndpoint.password()).getConnection();
     }
 
     /**
-     * Re-initialises the RDB client with a connection to the input database.
+     * Returns a connection to the input database, taken from the connection pool
+     * if one has been set, otherwise re-initialising the RDB client.
      * 
-     * @param rdbEndpoint endpoint for postgres.
-     * @param database    database name.
+     * @param database database name.
      * 
      * @throws SQLException if database cannot be connected to.
      */
     protected Connection connectToDatabase(String database) throws SQLException {
         StackEndpoint rdbEndpoint = this.configStore.getStackEndpoints(StackEndpointType.POSTGRES).get(0);
+        if (this.rdbPools != null) {
+            LOGGER.debug("Using pooled connection to database: {}", database);
+            return this.rdbPools.getConnection(rdbEndpoint, database);
+        }
+
         LOGGER.info("Making new connection to database: {}", database);
         String postgresURL = StackInteractor.generatePostgresURL(database);
         // Create new connection
@@ -0,0 +1,45 @@
+package com.cmclinnovations.featureinfo.objects;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import com.fasterxml.jackson.annotation.JsonAlias;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class BatchRequest {
+    @JsonProperty("iris")
+    @JsonAlias("IRIS")
+    private List<String> iris = new ArrayList<>();
+
+    @JsonAlias("ENDPOINT")
+    @JsonProperty("endpoint")
+    private String endpoint;
+
+    // opt-in pretty-printing of response
+    @JsonProperty("pretty")
+    private boolean pretty;
+
+    public BatchRequest() {
+    }
+
+    public BatchRequest(List<String> iris, String endpoint) {
+        this.iris = iris;
+        this.endpoint = endpoint;
+    }
+
+    public List<String> getIris() {
+        return iris;
+    }
+
+    public Optional<String> getEndpoint() {
+        return Optional.ofNullable(endpoint);
+    }
+
+    public boolean isPretty() {
+        return pretty;
+    }
+
+}
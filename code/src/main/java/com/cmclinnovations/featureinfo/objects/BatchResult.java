@@ -0,0 +1,106 @@
+package com.cmclinnovations.featureinfo.objects;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.json.JSONObject;
+
+import com.cmclinnovations.featureinfo.core.time.TimeSeriesResult;
+import com.cmclinnovations.featureinfo.utils.StreamingJson;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Gathered meta and time series data for a batch of features, keyed by IRI.
+ * Each entry is streamed with the same structure as a single FeatureResult.
+ */
+public class BatchResult {
+
+    /**
+     * Descriptions of each feature, in request order (may hold null values).
+     */
+    private final Map<String, String> descriptions = new LinkedHashMap<>();
+
+    /**
+     * Formatted meta data for each feature.
+     */
+    private final Map<String, JSONObject> meta = new LinkedHashMap<>();
+
+    /**
+     * Populated time series for each feature.
+     */
+    private final Map<String, List<TimeSeriesResult>> time = new LinkedHashMap<>();
+
+    /**
+     * Adds an entry for the input feature.
+     *
+     * @param iri         feature IRI.
+     * @param description optional description of the entry (may be null).
+     */
+    public void addFeature(String iri, String description) {
+        this.descriptions.put(iri, description);
+    }
+
+    /**
+     * Records a failure to gather some data for the input feature, appending
+     * it to any existing description.
+     *
+     * @param iri         feature IRI.
+     * @param description description of the failure.
+     */
+    public void addFailure(String iri, String description) {
+        this.descriptions.merge(iri, description, (existing, added) -> existing + " " + added);
+    }
+
+    /**
+     * Sets the meta data of the input feature.
+     *
+     * @param iri      feature IRI.
+     * @param metadata formatted meta data.
+     */
+    public void setMeta(String iri, JSONObject metadata) {
+        this.meta.put(iri, metadata);
+    }
+
+    /**
+     * Sets the time series of the input feature.
+     *
+     * @param iri     feature IRI.
+     * @param results populated time series.
+     */
+    public void setTime(String iri, List<TimeSeriesResult> results) {
+        this.time.put(iri, results);
+    }
+
+    /**
+     * Streams the JSON representation of the batch to the input writer.
+     *
+     * @param writer output writer.
+     * @param pretty true to pretty-print output.
+     *
+     * @throws IOException if output cannot be written.
+     */
+    public void write(Writer writer, boolean pretty) throws IOException {
+        try (JsonGenerator generator = StreamingJson.createGenerator(writer, pretty)) {
+            generator.writeStartObject();
+
+            for (Map.Entry<String, String> entry : this.descriptions.entrySet()) {
+                String iri = entry.getKey();
+                generator.writeObjectFieldStart(iri);
+
+                if (entry.getValue() != null) {
+                    generator.writeStringField("description", entry.getValue());
+                }
+                new FeatureResult(this.meta.get(iri), this.time.get(iri)).writeFields(generator);
+
+                generator.writeEndObject();
+            }
+
+            generator.writeEndObject();
+        }
+    }
+
+}
+// End of class.
@@ -0,0 +1,82 @@
+package com.cmclinnovations.featureinfo.objects;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+import org.json.JSONObject;
+
+import com.cmclinnovations.featureinfo.core.time.TimeParser;
+import com.cmclinnovations.featureinfo.core.time.TimeSeriesResult;
+import com.cmclinnovations.featureinfo.utils.StreamingJson;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Gathered meta and time series data for a single feature. Time series are
+ * held as populated TimeSeries instances so that they can be streamed to the
+ * response without first being converted to a JSON tree.
+ */
+public class FeatureResult {
+
+    /**
+     * Formatted meta data (may be null).
+     */
+    private final JSONObject meta;
+
+    /**
+     * Populated time series (may be null).
+     */
+    private final List<TimeSeriesResult> time;
+
+    /**
+     * Initialise a new FeatureResult instance.
+     *
+     * @param meta formatted meta data (may be null).
+     * @param time populated time series (may be null).
+     */
+    public FeatureResult(JSONObject meta, List<TimeSeriesResult> time) {
+        this.meta = (meta != null && !meta.isEmpty()) ? meta : null;
+        this.time = (time != null && !time.isEmpty()) ? time : null;
+    }
+
+    /**
+     * Streams the JSON representation of the result to the input writer.
+     *
+     * @param writer output writer.
+     * @param pretty true to pretty-print output.
+     *
+     * @throws IOException if output cannot be written.
+     */
+    public void write(Writer writer, boolean pretty) throws IOException {
+        try (JsonGenerator generator = StreamingJson.createGenerator(writer, pretty)) {
+            generator.writeStartObject();
+            writeFields(generator);
+            generator.writeEndObject();
+        }
+    }
+
+    /**
+     * Writes the "meta" and "time" fields of the result to the input generator,
+     * which must be positioned within an object.
+     *
+     * @param generator JSON generator.
+     *
+     * @throws IOException if output cannot be written.
+     */
+    void writeFields(JsonGenerator generator) throws IOException {
+        if (this.meta != null) {
+            generator.writeFieldName("meta");
+            StreamingJson.writeValue(generator, this.meta);
+        }
+
+        if (this.time != null) {
+            generator.writeArrayFieldStart("time");
+            for (TimeSeriesResult entry : this.time) {
+                TimeParser.writeJSON(generator, entry);
+            }
+            generator.writeEndArray();
+        }
+    }
+
+}
+// End of class.
@@ -22,6 +22,32 @@ public class Request {
     @JsonProperty("lowerbound")
     private Long lowerbound;
 
+    // optional limit on points per time series
+    @JsonProperty("maxPoints")
+    private Integer maxPoints;
+
+    // client specified time window (epoch seconds) and paging for time series
+    @JsonProperty("from")
+    private Long from;
+    @JsonProperty("to")
+    private Long to;
+    @JsonProperty("pageSize")
+    private Integer pageSize;
+    @JsonProperty("cursor")
+    private String cursor;
+
+    // optional aggregation of time series, overriding configuration
+    @JsonProperty("aggregate")
+    private String aggregate;
+    @JsonProperty("aggregateInterval")
+    private Long aggregateInterval;
+    @JsonProperty("aggregateUnit")
+    private String aggregateUnit;
+
+    // opt-in pretty-printing of response
+    @JsonProperty("pretty")
+    private boolean pretty;
+
     public Request() {
     }
 
@@ -46,4 +72,40 @@ public class Request {
         return lowerbound;
     }
 
+    public Integer getMaxPoints() {
+        return maxPoints;
+    }
+
+    public Long getFrom() {
+        return from;
+    }
+
+    public Long getTo() {
+        return to;
+    }
+
+    public Integer getPageSize() {
+        return pageSize;
+    }
+
+    public String getCursor() {
+        return cursor;
+    }
+
+    public String getAggregate() {
+        return aggregate;
+    }
+
+    public Long getAggregateInterval() {
+        return aggregateInterval;
+    }
+
+    public String getAggregateUnit() {
+        return aggregateUnit;
+    }
+
+    public boolean isPretty() {
+        return pretty;
+    }
+
 }
@@ -0,0 +1,375 @@
+package com.cmclinnovations.featureinfo.utils;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.ToLongFunction;
+
+import org.json.JSONObject;
+
+/**
+ * Thread-safe, size bounded, cache that evicts the least recently used entry
+ * once full and treats entries older than its time-to-live as absent. An
+ * optional stale period can be set, during which expired entries are still
+ * returned by lookup() (flagged as stale) so that callers can serve them whilst
+ * refreshing in the background. Caches can instead be bounded by the total
+ * weight of their entries (e.g. estimated bytes), as given by a weigher.
+ *
+ * @param <K> key type.
+ * @param <V> value type.
+ */
+public class ExpiringCache<K, V> {
+
+    /**
+     * Cached entries, in access order.
+     */
+    private final LinkedHashMap<K, Entry<V>> entries;
+
+    /**
+     * Maximum number of entries.
+     */
+    private final int maxSize;
+
+    /**
+     * Weight of each value (or null if bounded by number of entries only).
+     */
+    private final ToLongFunction<? super V> weigher;
+
+    /**
+     * Maximum total weight of entries.
+     */
+    private final long maxWeight;
+
+    /**
+     * Total weight of entries.
+     */
+    private long weight;
+
+    /**
+     * Time-to-live of entries in nanoseconds (zero or less for no expiry).
+     */
+    private final long ttl;
+
+    /**
+     * Period after expiry (in nanoseconds) during which entries are stale rather
+     * than absent.
+     */
+    private final long staleTtl;
+
+    /**
+     * Source of current time (in nanoseconds).
+     */
+    private final LongSupplier clock;
+
+    /**
+     * Usage statistics.
+     */
+    private long hits;
+    private long staleHits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Initialise a new ExpiringCache instance.
+     *
+     * @param maxSize    maximum number of entries.
+     * @param ttlSeconds time-to-live of entries in seconds (zero or less for no
+     *                   expiry).
+     */
+    public ExpiringCache(int maxSize, long ttlSeconds) {
+        this(maxSize, ttlSeconds, 0, System::nanoTime);
+    }
+
+    /**
+     * Initialise a new ExpiringCache instance.
+     *
+     * @param maxSize      maximum number of entries.
+     * @param ttlSeconds   time-to-live of entries in seconds (zero or less for no
+     *                     expiry).
+     * @param staleSeconds period after expiry in seconds during which entries are
+     *                     returned as stale by lookup().
+     */
+    public ExpiringCache(int maxSize, long ttlSeconds, long staleSeconds) {
+        this(maxSize, ttlSeconds, staleSeconds, System::nanoTime);
+    }
+
+    /**
+     * Initialise a new ExpiringCache instance.
+     *
+     * @param maxSize    maximum number of entries.
+     * @param ttlSeconds time-to-live of entries in seconds (zero or less for no
+     *                   expiry).
+     * @param clock      source of current time (in nanoseconds).
+     */
+    ExpiringCache(int maxSize, long ttlSeconds, LongSupplier clock) {
+        this(maxSize, ttlSeconds, 0, clock);
+    }
+
+    /**
+     * Initialise a new ExpiringCache instance.
+     *
+     * @param maxSize      maximum number of entries.
+     * @param ttlSeconds   time-to-live of entries in seconds (zero or less for no
+     *                     expiry).
+     * @param staleSeconds period after expiry in seconds during which entries are
+     *                     returned as stale by lookup().
+     * @param clock        source of current time (in nanoseconds).
+     */
+    ExpiringCache(int maxSize, long ttlSeconds, long staleSeconds, LongSupplier clock) {
+        this(maxSize, null, 0, ttlSeconds, staleSeconds, clock);
+    }
+
+    /**
+     * Initialise a new ExpiringCache instance, bounded by the total weight of
+     * its entries rather than their number.
+     *
+     * @param maxWeight  maximum total weight of entries (zero to disable).
+     * @param weigher    weight of each value.
+     * @param ttlSeconds time-to-live of entries in seconds (zero or less for no
+     *                   expiry).
+     */
+    public ExpiringCache(long maxWeight, ToLongFunction<? super V> weigher, long ttlSeconds) {
+        this(maxWeight, weigher, ttlSeconds, System::nanoTime);
+    }
+
+    /**
+     * Initialise a new ExpiringCache instance, bounded by the total weight of
+     * its entries rather than their number.
+     *
+     * @param maxWeight  maximum total weight of entries (zero to disable).
+     * @param weigher    weight of each value.
+     * @param ttlSeconds time-to-live of entries in seconds (zero or less for no
+     *                   expiry).
+     * @param clock      source of current time (in nanoseconds).
+     */
+    public ExpiringCache(long maxWeight, ToLongFunction<? super V> weigher, long ttlSeconds, LongSupplier clock) {
+        this(Integer.MAX_VALUE, weigher, maxWeight, ttlSeconds, 0, clock);
+    }
+
+    /**
+     * Initialise a new ExpiringCache instance.
+     *
+     * @param maxSize      maximum number of entries.
+     * @param weigher      weight of each value (or null for none).
+     * @param maxWeight    maximum total weight of entries (if weighed).
+     * @param ttlSeconds   time-to-live of entries in seconds (zero or less for no
+     *                     expiry).
+     * @param staleSeconds period after expiry in seconds during which entries are
+     *                     returned as stale by lookup().
+     * @param clock        source of current time (in nanoseconds).
+     */
+    private ExpiringCache(int maxSize, ToLongFunction<? super V> weigher, long maxWeight, long ttlSeconds,
+            long staleSeconds, LongSupplier clock) {
+        this.maxSize = Math.max(0, maxSize);
+        this.weigher = weigher;
+        this.maxWeight = (weigher == null) ? Long.MAX_VALUE : Math.max(0, maxWeight);
+        this.ttl = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        this.staleTtl = TimeUnit.SECONDS.toNanos(Math.max(0, staleSeconds));
+        this.clock = clock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Returns true if this cache can hold any entries.
+     *
+     * @return enabled state.
+     */
+    public boolean isEnabled() {
+        return this.maxSize > 0 && this.maxWeight > 0;
+    }
+
+    /**
+     * Returns the cached value for the input key, or null if absent or expired.
+     *
+     * @param key cache key.
+     *
+     * @return cached value (or null).
+     */
+    public synchronized V get(K key) {
+        Lookup<V> lookup = find(key);
+        if (lookup == null || lookup.stale()) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return lookup.value();
+    }
+
+    /**
+     * Returns the cached value for the input key along with whether it is stale
+     * (i.e. has expired, but is still within the stale period), or null if absent
+     * or beyond the stale period.
+     *
+     * @param key cache key.
+     *
+     * @return cached value and staleness (or null).
+     */
+    public synchronized Lookup<V> lookup(K key) {
+        Lookup<V> lookup = find(key);
+        if (lookup == null) {
+            misses++;
+        } else if (lookup.stale()) {
+            staleHits++;
+        } else {
+            hits++;
+        }
+        return lookup;
+    }
+
+    /**
+     * Stores the input value against the input key.
+     *
+     * @param key   cache key.
+     * @param value value to store (null values are ignored).
+     */
+    public synchronized void put(K key, V value) {
+        store(key, value, this.clock.getAsLong());
+    }
+
+    /**
+     * Stores the input value against the input key, keeping the creation time
+     * of any existing (unexpired) entry, so that updating an entry does not
+     * extend its time-to-live.
+     *
+     * @param key   cache key.
+     * @param value value to store (null values are ignored).
+     */
+    public synchronized void update(K key, V value) {
+        Entry<V> existing = this.entries.get(key);
+        long now = this.clock.getAsLong();
+        boolean expired = existing == null || (this.ttl > 0 && now - existing.created() > this.ttl);
+        store(key, value, expired ? now : existing.created());
+    }
+
+    /**
+     * Removes any value stored against the input key.
+     *
+     * @param key cache key.
+     */
+    public synchronized void invalidate(K key) {
+        remove(key);
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public synchronized void clear() {
+        this.entries.clear();
+        this.weight = 0;
+    }
+
+    /**
+     * Returns the current number of entries (including any that have expired
+     * but not yet been removed).
+     *
+     * @return number of entries.
+     */
+    public synchronized int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * Returns usage statistics for this cache.
+     *
+     * @return JSON object of statistics.
+     */
+    public synchronized JSONObject getStatistics() {
+        JSONObject statistics = new JSONObject();
+        statistics.put("size", this.entries.size());
+        statistics.put("maxSize", this.maxSize);
+        statistics.put("hits", hits);
+        statistics.put("staleHits", staleHits);
+        statistics.put("misses", misses);
+        statistics.put("evictions", evictions);
+        if (this.weigher != null) {
+            statistics.put("weight", this.weight);
+            statistics.put("maxWeight", this.maxWeight);
+        }
+
+        long total = hits + staleHits + misses;
+        statistics.put("hitRate", (total == 0) ? 0.0 : (double) (hits + staleHits) / total);
+        return statistics;
+    }
+
+    /**
+     * Returns the cached value for the input key along with whether it is stale,
+     * removing it if beyond the stale period, without updating statistics.
+     *
+     * @param key cache key.
+     *
+     * @return cached value and staleness (or null).
+     */
+    private Lookup<V> find(K key) {
+        Entry<V> entry = this.entries.get(key);
+        long age = (entry == null) ? 0 : this.clock.getAsLong() - entry.created();
+
+        if (entry != null && this.ttl > 0 && age > this.ttl + this.staleTtl) {
+            remove(key);
+            entry = null;
+        }
+
+        if (entry == null) {
+            return null;
+        }
+        return new Lookup<>(entry.value(), this.ttl > 0 && age > this.ttl);
+    }
+
+    /**
+     * Stores the input value with the input creation time, then evicts the
+     * least recently used entries until within the size and weight limits.
+     * Values heavier than the whole limit are not stored.
+     *
+     * @param key     cache key.
+     * @param value   value to store (null values are ignored).
+     * @param created creation time (in nanoseconds).
+     */
+    private void store(K key, V value, long created) {
+        if (value == null || !isEnabled())
+            return;
+
+        remove(key);
+        long valueWeight = (this.weigher == null) ? 0 : this.weigher.applyAsLong(value);
+        if (valueWeight > this.maxWeight) {
+            return;
+        }
+        this.entries.put(key, new Entry<>(value, created, valueWeight));
+        this.weight += valueWeight;
+
+        Iterator<Entry<V>> iterator = this.entries.values().iterator();
+        while ((this.entries.size() > this.maxSize || this.weight > this.maxWeight) && iterator.hasNext()) {
+            this.weight -= iterator.next().weight();
+            iterator.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Removes the entry for the input key, updating the total weight.
+     *
+     * @param key cache key.
+     */
+    private void remove(K key) {
+        Entry<V> removed = this.entries.remove(key);
+        if (removed != null) {
+            this.weight -= removed.weight();
+        }
+    }
+
+    /**
+     * Cached value with its creation time and weight.
+     */
+    private record Entry<V>(V value, long created, long weight) {
+    }
+
+    /**
+     * Result of a lookup.
+     *
+     * @param value cached value.
+     * @param stale true if the value has expired, but is within the stale period.
+     */
+    public record Lookup<V>(V value, boolean stale) {
+    }
+
+}
+// End of class.
@@ -0,0 +1,149 @@
+package com.cmclinnovations.featureinfo.utils;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.JSONArray;
+
+import com.cmclinnovations.featureinfo.config.StackEndpoint;
+import com.cmclinnovations.featureinfo.config.StackEndpointType;
+
+import uk.ac.cam.cares.jps.base.query.RemoteStoreClient;
+
+/**
+ * Registry of pre-built KG clients, one per discovered stack endpoint (keyed by
+ * URL and credentials). Clients are never re-targeted after construction, so
+ * concurrent requests can share them without interfering with each other.
+ */
+public class KGClientRegistry {
+
+    /**
+     * Logger for reporting info/errors.
+     */
+    private static final Logger LOGGER = LogManager.getLogger(KGClientRegistry.class);
+
+    /**
+     * Client used to run federated queries (does not hold an endpoint).
+     */
+    private final RemoteStoreClient federatedClient;
+
+    /**
+     * Immutable snapshot of clients for each registered endpoint.
+     */
+    private volatile Map<ClientKey, RemoteStoreClient> clients = Map.of();
+
+    /**
+     * Initialise a new, empty, KGClientRegistry instance.
+     */
+    public KGClientRegistry() {
+        this(new RemoteStoreClient());
+    }
+
+    /**
+     * Initialise a new, empty, KGClientRegistry instance.
+     *
+     * @param federatedClient client used to run federated queries.
+     */
+    public KGClientRegistry(RemoteStoreClient federatedClient) {
+        this.federatedClient = federatedClient;
+    }
+
+    /**
+     * Discards all existing clients and builds new ones for each of the input
+     * (non-RDB) stack endpoints.
+     *
+     * @param endpoints discovered stack endpoints.
+     */
+    public synchronized void rebuild(List<StackEndpoint> endpoints) {
+        Map<ClientKey, RemoteStoreClient> newClients = new HashMap<>();
+
+        endpoints.stream()
+                .filter(endpoint -> !endpoint.type().equals(StackEndpointType.POSTGRES))
+                .forEach(endpoint -> newClients.computeIfAbsent(
+                        ClientKey.of(endpoint),
+                        key -> createClient(endpoint)));
+
+        this.clients = Map.copyOf(newClients);
+        LOGGER.info("Have built KG clients for {} stack endpoints.", newClients.size());
+    }
+
+    /**
+     * Returns the client for the input endpoint. Endpoints that were not registered
+     * during the last rebuild (e.g. enforced endpoints) get a new, single-use,
+     * client.
+     *
+     * @param endpoint stack endpoint.
+     *
+     * @return KG client targeting endpoint.
+     */
+    public RemoteStoreClient getClient(StackEndpoint endpoint) {
+        RemoteStoreClient client = this.clients.get(ClientKey.of(endpoint));
+        if (client == null) {
+            LOGGER.debug("No registered KG client for endpoint, creating one: {}", endpoint.url());
+            client = createClient(endpoint);
+        }
+        return client;
+    }
+
+    /**
+     * Returns the client used for federated queries.
+     *
+     * @return federated KG client.
+     */
+    public RemoteStoreClient getFederatedClient() {
+        return this.federatedClient;
+    }
+
+    /**
+     * Runs the input query against the input endpoints, federating if more
+     * than one endpoint is provided.
+     *
+     * @param endpoints KG endpoints.
+     * @param query     SPARQL query.
+     *
+     * @return query result.
+     */
+    public JSONArray executeQuery(List<StackEndpoint> endpoints, String query) {
+        if (endpoints.size() == 1) {
+            LOGGER.debug("Running non-federated query.");
+            return getClient(endpoints.get(0)).executeQuery(query);
+        }
+
+        LOGGER.debug("Running federated query.");
+        List<String> urls = endpoints.stream()
+                .map(StackEndpoint::url)
+                .collect(Collectors.toList());
+        return this.federatedClient.executeFederatedQuery(urls, query);
+    }
+
+    /**
+     * Creates a new client targeting the input endpoint.
+     *
+     * @param endpoint stack endpoint.
+     *
+     * @return new KG client.
+     */
+    protected RemoteStoreClient createClient(StackEndpoint endpoint) {
+        return new RemoteStoreClient(
+                endpoint.url(),
+                endpoint.url(),
+                (endpoint.username() == null || endpoint.username().isEmpty()) ? null : endpoint.username(),
+                (endpoint.password() == null || endpoint.password().isEmpty()) ? null : endpoint.password());
+    }
+
+    /**
+     * Key for registered clients.
+     */
+    private record ClientKey(String url, String username, String password) {
+
+        static ClientKey of(StackEndpoint endpoint) {
+            return new ClientKey(endpoint.url(), endpoint.username(), endpoint.password());
+        }
+    }
+
+}
+// End of class.
@@ -0,0 +1,290 @@
+package com.cmclinnovations.featureinfo.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.cmclinnovations.featureinfo.config.StackEndpoint;
+
+/**
+ * Query template that has been compiled into a list of literal segments and
+ * placeholder slots, so that rendering is a single pass over the template
+ * rather than a regular expression replacement per placeholder.
+ */
+public final class QueryTemplate {
+
+    /**
+     * Supported placeholder tokens.
+     */
+    public enum Placeholder {
+        IRI("[IRI]"),
+        ONTOP("[ONTOP]"),
+        ENDPOINTS_ALL("[ENDPOINTS-ALL]"),
+        ENDPOINTS_BLAZEGRAPH("[ENDPOINTS-BLAZEGRAPH]"),
+        LINE_WKT("[LINE_WKT]"),
+        LINE_WKB("[LINE_WKB]");
+
+        /**
+         * Token as written within templates.
+         */
+        private final String token;
+
+        /**
+         * Constructor.
+         *
+         * @param token token as written within templates.
+         */
+        Placeholder(String token) {
+            this.token = token;
+        }
+
+        /**
+         * Returns the token as written within templates.
+         *
+         * @return token.
+         */
+        public String getToken() {
+            return this.token;
+        }
+    }
+
+    /**
+     * Original template.
+     */
+    private final String source;
+
+    /**
+     * Literal segments, one more than the number of slots.
+     */
+    private final String[] segments;
+
+    /**
+     * Placeholder slots, slot i sits between segment i and i + 1.
+     */
+    private final Placeholder[] slots;
+
+    /**
+     * Total length of all literal segments.
+     */
+    private final int literalLength;
+
+    /**
+     * Initialise a new QueryTemplate instance.
+     *
+     * @param source   original template.
+     * @param segments literal segments.
+     * @param slots    placeholder slots.
+     */
+    private QueryTemplate(String source, List<String> segments, List<Placeholder> slots) {
+        this.source = source;
+        this.segments = segments.toArray(new String[0]);
+        this.slots = slots.toArray(new Placeholder[0]);
+        this.literalLength = segments.stream().mapToInt(String::length).sum();
+    }
+
+    /**
+     * Compiles the input template.
+     *
+     * @param template raw template (may be null).
+     *
+     * @return compiled template (or null if input is null).
+     */
+    public static QueryTemplate compile(String template) {
+        if (template == null) {
+            return null;
+        }
+
+        List<String> segments = new ArrayList<>();
+        List<Placeholder> slots = new ArrayList<>();
+
+        int start = 0;
+        int index = template.indexOf('[');
+
+        while (index >= 0) {
+            Placeholder match = null;
+            for (Placeholder placeholder : Placeholder.values()) {
+                if (template.startsWith(placeholder.token, index)) {
+                    match = placeholder;
+                    break;
+                }
+            }
+
+            if (match != null) {
+                segments.add(template.substring(start, index));
+                slots.add(match);
+                start = index + match.token.length();
+                index = template.indexOf('[', start);
+            } else {
+                index = template.indexOf('[', index + 1);
+            }
+        }
+        segments.add(template.substring(start));
+
+        return new QueryTemplate(template, segments, slots);
+    }
+
+    /**
+     * Returns the original, uncompiled, template.
+     *
+     * @return original template.
+     */
+    public String getSource() {
+        return this.source;
+    }
+
+    /**
+     * Returns true if the template contains the input placeholder.
+     *
+     * @param placeholder placeholder to check for.
+     *
+     * @return true if present.
+     */
+    public boolean contains(Placeholder placeholder) {
+        for (Placeholder slot : this.slots) {
+            if (slot == placeholder) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Renders the template, replacing placeholders with the input values. Any
+     * placeholder without a value (i.e. null) is left in place.
+     *
+     * @param iri       value for the [IRI] placeholder.
+     * @param endpoints rendered endpoint fragments (may be null).
+     * @param lineWKT   value for the [LINE_WKT] placeholder.
+     *
+     * @return rendered query.
+     */
+    public String render(String iri, EndpointFragments endpoints, String lineWKT) {
+        String[] values = new String[this.slots.length];
+        int length = this.literalLength;
+
+        for (int i = 0; i < this.slots.length; i++) {
+            values[i] = switch (this.slots[i]) {
+                case IRI -> iri;
+                case ONTOP -> (endpoints == null) ? null : endpoints.ontop();
+                case ENDPOINTS_ALL -> (endpoints == null) ? null : endpoints.all();
+                case ENDPOINTS_BLAZEGRAPH -> (endpoints == null) ? null : endpoints.blazegraph();
+                case LINE_WKT -> lineWKT;
+                case LINE_WKB -> null;
+            };
+            if (values[i] == null) {
+                values[i] = this.slots[i].token;
+            }
+            length += values[i].length();
+        }
+
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < this.slots.length; i++) {
+            builder.append(this.segments[i]);
+            builder.append(values[i]);
+        }
+        builder.append(this.segments[this.slots.length]);
+        return builder.toString();
+    }
+
+    /**
+     * Renders the template as a parameterised SQL statement. The [LINE_WKB]
+     * placeholder, and any [LINE_WKT] placeholder forming a whole quoted literal
+     * (i.e. '[LINE_WKT]'), are replaced with JDBC parameters (removing the
+     * quotes), so the trajectory line can be bound rather than injected as a
+     * literal. A [LINE_WKT] placeholder within a larger literal (e.g.
+     * 'SRID=4326;[LINE_WKT]') cannot be bound, so the input line is injected.
+     * All other placeholders are rendered as per
+     * {@link #render(String, EndpointFragments, String)}.
+     *
+     * @param iri       value for the [IRI] placeholder.
+     * @param endpoints rendered endpoint fragments (may be null).
+     * @param lineWKT   value for [LINE_WKT] placeholders that cannot be bound.
+     *
+     * @return parameterised statement.
+     */
+    public ParameterisedQuery renderParameterised(String iri, EndpointFragments endpoints, String lineWKT) {
+        List<Placeholder> parameters = new ArrayList<>();
+        StringBuilder builder = new StringBuilder(this.literalLength);
+        boolean dropQuote = false;
+
+        for (int i = 0; i <= this.slots.length; i++) {
+            String segment = this.segments[i];
+            if (dropQuote) {
+                segment = segment.substring(1);
+            }
+            dropQuote = false;
+
+            if (i == this.slots.length) {
+                builder.append(segment);
+                break;
+            }
+
+            Placeholder slot = this.slots[i];
+            String next = this.segments[i + 1];
+            boolean quoted = segment.endsWith("'") && next.startsWith("'");
+
+            if (slot == Placeholder.LINE_WKB || (slot == Placeholder.LINE_WKT && quoted)) {
+                if (slot == Placeholder.LINE_WKT) {
+                    segment = segment.substring(0, segment.length() - 1);
+                    dropQuote = true;
+                }
+                builder.append(segment).append('?');
+                parameters.add(slot);
+            } else {
+                String value = switch (slot) {
+                    case IRI -> iri;
+                    case ONTOP -> (endpoints == null) ? null : endpoints.ontop();
+                    case ENDPOINTS_ALL -> (endpoints == null) ? null : endpoints.all();
+                    case ENDPOINTS_BLAZEGRAPH -> (endpoints == null) ? null : endpoints.blazegraph();
+                    case LINE_WKT -> lineWKT;
+                    default -> null;
+                };
+                builder.append(segment).append((value == null) ? slot.token : value);
+            }
+        }
+        return new ParameterisedQuery(builder.toString(), List.copyOf(parameters));
+    }
+
+    /**
+     * Parameterised SQL statement rendered from a template.
+     *
+     * @param sql        statement with JDBC parameters.
+     * @param parameters placeholder bound to each parameter, in order.
+     */
+    public record ParameterisedQuery(String sql, List<Placeholder> parameters) {
+    }
+
+    /**
+     * Pre-rendered values for the endpoint placeholders.
+     *
+     * @param all        value for [ENDPOINTS-ALL].
+     * @param blazegraph value for [ENDPOINTS-BLAZEGRAPH].
+     * @param ontop      value for [ONTOP] (null unless exactly one Ontop endpoint).
+     */
+    public record EndpointFragments(String all, String blazegraph, String ontop) {
+
+        /**
+         * Renders the fragments for the input endpoints.
+         *
+         * @param ontops      Ontop endpoints.
+         * @param blazegraphs Blazegraph endpoints.
+         *
+         * @return endpoint fragments.
+         */
+        public static EndpointFragments of(List<StackEndpoint> ontops, List<StackEndpoint> blazegraphs) {
+            StringBuilder bothBuilder = new StringBuilder();
+            StringBuilder blazegraphBuilder = new StringBuilder();
+
+            ontops.forEach(endpoint -> bothBuilder.append("<").append(endpoint.url()).append("> "));
+            blazegraphs.forEach(endpoint -> {
+                bothBuilder.append("<").append(endpoint.url()).append("> ");
+                blazegraphBuilder.append("<").append(endpoint.url()).append("> ");
+            });
+
+            // Only inject an Ontop endpoint if there's a single one
+            String ontop = (ontops.size() == 1) ? "<" + ontops.get(0).url() + ">" : null;
+            return new EndpointFragments(bothBuilder.toString(), blazegraphBuilder.toString(), ontop);
+        }
+    }
+
+}
+// End of class.
@@ -0,0 +1,272 @@
+package com.cmclinnovations.featureinfo.utils;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.JSONObject;
+
+import com.cmclinnovations.featureinfo.config.AgentSettings;
+import com.cmclinnovations.featureinfo.config.StackEndpoint;
+import com.cmclinnovations.featureinfo.config.StackInteractor;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+
+/**
+ * Registry of pooled JDBC connections, one pool per (JDBC URL, user) pair.
+ * Pools are created lazily on first use so that repeated time series and
+ * trajectory reads do not pay for a new connection (and its TLS/auth
+ * handshakes) each time. On rebuild, pools are swapped out and retired: they
+ * are only closed once their borrowed connections have been returned (or a
+ * grace period has passed), so that requests in flight are not interrupted.
+ */
+public class RDBPoolRegistry {
+
+    /**
+     * Logger for reporting info/errors.
+     */
+    private static final Logger LOGGER = LogManager.getLogger(RDBPoolRegistry.class);
+
+    /**
+     * Time (in seconds) a retired pool waits for borrowed connections to be
+     * returned before it is closed regardless.
+     */
+    private static final long RETIRE_TIMEOUT = 300;
+
+    /**
+     * Pools for each URL and user.
+     */
+    private final Map<PoolKey, HikariDataSource> pools = new ConcurrentHashMap<>();
+
+    /**
+     * Pools that have been swapped out, but not yet closed.
+     */
+    private final Set<HikariDataSource> retired = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Single thread used to close retired pools once idle.
+     */
+    private final ScheduledExecutorService retirer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "fia-rdb-retire");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Minimum number of idle connections kept in each pool.
+     */
+    private final int minSize;
+
+    /**
+     * Maximum number of connections in each pool.
+     */
+    private final int maxSize;
+
+    /**
+     * Time (in seconds) after which idle connections above the minimum are closed.
+     */
+    private final long idleTimeout;
+
+    /**
+     * Initialise a new RDBPoolRegistry instance, sized as per the agent settings.
+     */
+    public RDBPoolRegistry() {
+        this(
+                AgentSettings.getInt(AgentSettings.RDB_POOL_MIN, 0),
+                AgentSettings.getInt(AgentSettings.RDB_POOL_MAX, 10),
+                AgentSettings.getLong(AgentSettings.RDB_POOL_IDLE_TIMEOUT, 600));
+    }
+
+    /**
+     * Initialise a new RDBPoolRegistry instance.
+     *
+     * @param minSize     minimum number of idle connections per pool.
+     * @param maxSize     maximum number of connections per pool.
+     * @param idleTimeout time (in seconds) before idle connections are closed.
+     */
+    public RDBPoolRegistry(int minSize, int maxSize, long idleTimeout) {
+        this.maxSize = Math.max(1, maxSize);
+        this.minSize = Math.min(Math.max(0, minSize), this.maxSize);
+        this.idleTimeout = Math.max(10, idleTimeout);
+    }
+
+    /**
+     * Returns a pooled connection to the input database on the input Postgres
+     * endpoint. The connection must be closed to return it to the pool.
+     *
+     * @param rdbEndpoint endpoint for postgres.
+     * @param database    database name.
+     *
+     * @return pooled connection.
+     *
+     * @throws SQLException if database cannot be connected to.
+     */
+    public Connection getConnection(StackEndpoint rdbEndpoint, String database) throws SQLException {
+        return getConnection(
+                StackInteractor.generatePostgresURL(database),
+                rdbEndpoint.username(),
+                rdbEndpoint.password());
+    }
+
+    /**
+     * Returns a pooled connection to the input JDBC URL. The connection must be
+     * closed to return it to the pool.
+     *
+     * @param url      JDBC URL.
+     * @param username database user.
+     * @param password database password.
+     *
+     * @return pooled connection.
+     *
+     * @throws SQLException if database cannot be connected to.
+     */
+    public Connection getConnection(String url, String username, String password) throws SQLException {
+        if (url == null || url.isEmpty()) {
+            throw new SQLException("Cannot connect to database without a JDBC URL.");
+        }
+
+        PoolKey key = new PoolKey(url, username);
+        for (int attempt = 0;; attempt++) {
+            HikariDataSource pool;
+            try {
+                pool = this.pools.computeIfAbsent(key, k -> {
+                    LOGGER.info("Creating new connection pool for database: {}", url);
+                    return createPool(url, username, password);
+                });
+            } catch (RuntimeException exception) {
+                throw new SQLException("Could not create connection pool for database: " + url, exception);
+            }
+
+            try {
+                return pool.getConnection();
+            } catch (SQLException exception) {
+                // Pool may have been closed between lookup and use, retry once with a new one
+                if (attempt > 0 || !pool.isClosed()) {
+                    throw exception;
+                }
+                this.pools.remove(key, pool);
+            }
+        }
+    }
+
+    /**
+     * Swaps out all existing pools, new ones will be created on demand. Old
+     * pools are closed once their borrowed connections have been returned.
+     * Should be called after the stack endpoints have been reloaded.
+     */
+    public void rebuild() {
+        List<PoolKey> keys = List.copyOf(this.pools.keySet());
+        keys.forEach(key -> {
+            HikariDataSource pool = this.pools.remove(key);
+            if (pool != null) {
+                retire(pool, System.nanoTime() + TimeUnit.SECONDS.toNanos(RETIRE_TIMEOUT));
+            }
+        });
+        LOGGER.info("Retired {} database connection pools.", keys.size());
+    }
+
+    /**
+     * Closes all pools (including retired ones) and releases their connections.
+     */
+    public void shutdown() {
+        this.retirer.shutdownNow();
+        this.pools.values().forEach(HikariDataSource::close);
+        this.pools.clear();
+        this.retired.forEach(HikariDataSource::close);
+        this.retired.clear();
+    }
+
+    /**
+     * Returns usage metrics for each pool.
+     *
+     * @return JSON object of metrics, keyed by JDBC URL and user.
+     */
+    public JSONObject getStatistics() {
+        JSONObject statistics = new JSONObject();
+        this.pools.forEach((key, pool) -> {
+            JSONObject metrics = new JSONObject();
+            metrics.put("maxSize", pool.getMaximumPoolSize());
+
+            HikariPoolMXBean bean = pool.getHikariPoolMXBean();
+            if (bean != null) {
+                metrics.put("active", bean.getActiveConnections());
+                metrics.put("idle", bean.getIdleConnections());
+                metrics.put("total", bean.getTotalConnections());
+                metrics.put("awaiting", bean.getThreadsAwaitingConnection());
+            }
+            statistics.put(key.username() + "@" + key.url(), metrics);
+        });
+        return statistics;
+    }
+
+    /**
+     * Closes the input pool once it has no borrowed connections, or once the
+     * deadline has passed, checking again every second until then. Idle
+     * connections are evicted straight away.
+     *
+     * @param pool     swapped out pool.
+     * @param deadline time (from System.nanoTime) to close the pool regardless.
+     */
+    private void retire(HikariDataSource pool, long deadline) {
+        HikariPoolMXBean bean = pool.getHikariPoolMXBean();
+        if (bean != null && bean.getActiveConnections() > 0 && System.nanoTime() < deadline) {
+            if (this.retired.add(pool)) {
+                bean.softEvictConnections();
+            }
+            try {
+                this.retirer.schedule(() -> retire(pool, deadline), 1, TimeUnit.SECONDS);
+                return;
+            } catch (RejectedExecutionException exception) {
+                // Shutting down, close now
+            }
+        }
+
+        this.retired.remove(pool);
+        pool.close();
+    }
+
+    /**
+     * Creates a new pool for the input JDBC URL and credentials.
+     *
+     * @param url      JDBC URL.
+     * @param username database user.
+     * @param password database password.
+     *
+     * @return new pool.
+     */
+    protected HikariDataSource createPool(String url, String username, String password) {
+        HikariConfig config = new HikariConfig();
+        config.setPoolName("fia-rdb-" + (this.pools.size() + 1));
+        config.setDriverClassName("org.postgresql.Driver");
+        config.setJdbcUrl(url);
+        config.setUsername(username);
+        config.setPassword(password);
+        config.setMinimumIdle(this.minSize);
+        config.setMaximumPoolSize(this.maxSize);
+        config.setIdleTimeout(this.idleTimeout * 1000);
+        config.setValidationTimeout(5_000);
+        config.setConnectionTimeout(30_000);
+        return new HikariDataSource(config);
+    }
+
+    /**
+     * Key for connection pools.
+     *
+     * @param url      JDBC URL.
+     * @param username database user.
+     */
+    private record PoolKey(String url, String username) {
+    }
+
+}
+// End of class.
@@ -0,0 +1,140 @@
+package com.cmclinnovations.featureinfo.utils;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Collection;
+import java.util.Map;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Helpers to write JSON content directly to an output writer using a streaming
+ * generator, rather than building (and then stringifying) a complete tree.
+ */
+public final class StreamingJson {
+
+    /**
+     * Shared factory for generators.
+     */
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    /**
+     * Constructor.
+     */
+    private StreamingJson() {
+        // No
+    }
+
+    /**
+     * Creates a new generator that writes to the input writer. Closing the
+     * generator flushes, but does not close, the writer.
+     *
+     * @param writer output writer.
+     * @param pretty true to pretty-print output.
+     *
+     * @return JSON generator.
+     *
+     * @throws IOException if generator cannot be created.
+     */
+    public static JsonGenerator createGenerator(Writer writer, boolean pretty) throws IOException {
+        JsonGenerator generator = FACTORY.createGenerator(writer);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        if (pretty) {
+            generator.useDefaultPrettyPrinter();
+        }
+        return generator;
+    }
+
+    /**
+     * Writes the input value, recursing into JSON objects, arrays, maps, and
+     * collections. Values without a native JSON representation are written as
+     * strings (matching org.json serialisation).
+     *
+     * @param generator JSON generator.
+     * @param value     value to write (may be null).
+     *
+     * @throws IOException if value cannot be written.
+     */
+    public static void writeValue(JsonGenerator generator, Object value) throws IOException {
+        if (value == null || JSONObject.NULL.equals(value)) {
+            generator.writeNull();
+
+        } else if (value instanceof JSONObject object) {
+            generator.writeStartObject();
+            for (String key : object.keySet()) {
+                generator.writeFieldName(key);
+                writeValue(generator, object.opt(key));
+            }
+            generator.writeEndObject();
+
+        } else if (value instanceof JSONArray array) {
+            generator.writeStartArray();
+            for (int i = 0; i < array.length(); i++) {
+                writeValue(generator, array.opt(i));
+            }
+            generator.writeEndArray();
+
+        } else if (value instanceof Map<?, ?> map) {
+            generator.writeStartObject();
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                generator.writeFieldName(String.valueOf(entry.getKey()));
+                writeValue(generator, entry.getValue());
+            }
+            generator.writeEndObject();
+
+        } else if (value instanceof Collection<?> collection) {
+            generator.writeStartArray();
+            for (Object element : collection) {
+                writeValue(generator, element);
+            }
+            generator.writeEndArray();
+
+        } else if (value instanceof Boolean bool) {
+            generator.writeBoolean(bool);
+
+        } else if (value instanceof Number number) {
+            writeNumber(generator, number);
+
+        } else {
+            generator.writeString(value.toString());
+        }
+    }
+
+    /**
+     * Writes the input number, using its most specific JSON representation.
+     * Non-finite floating point values are written as null.
+     *
+     * @param generator JSON generator.
+     * @param number    number to write.
+     *
+     * @throws IOException if value cannot be written.
+     */
+    private static void writeNumber(JsonGenerator generator, Number number) throws IOException {
+        if (number instanceof Integer || number instanceof Short || number instanceof Byte) {
+            generator.writeNumber(number.intValue());
+        } else if (number instanceof Long longValue) {
+            generator.writeNumber(longValue);
+        } else if (number instanceof BigInteger bigInteger) {
+            generator.writeNumber(bigInteger);
+        } else if (number instanceof BigDecimal bigDecimal) {
+            generator.writeNumber(bigDecimal);
+        } else if (number instanceof Float floatValue && Float.isFinite(floatValue)) {
+            generator.writeNumber(floatValue.floatValue());
+        } else {
+            double doubleValue = number.doubleValue();
+            if (Double.isFinite(doubleValue)) {
+                generator.writeNumber(doubleValue);
+            } else {
+                generator.writeNull();
+            }
+        }
+    }
+
+}
+// End of class.
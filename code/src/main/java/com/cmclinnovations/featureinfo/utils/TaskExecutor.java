@@ -0,0 +1,115 @@
+package com.cmclinnovations.featureinfo.utils;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Bounded pool of daemon threads used to run independent pieces of request
+ * logic concurrently, with helpers to wait on their results against a deadline.
+ */
+public final class TaskExecutor {
+
+    /**
+     * Logger for reporting info/errors.
+     */
+    private static final Logger LOGGER = LogManager.getLogger(TaskExecutor.class);
+
+    /**
+     * Underlying thread pool.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Initialise a new TaskExecutor instance.
+     *
+     * @param name    prefix for thread names.
+     * @param threads maximum number of concurrent threads.
+     */
+    public TaskExecutor(String name, int threads) {
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Submits the input task for execution.
+     *
+     * @param task task to run.
+     *
+     * @return future for the task's result.
+     */
+    public <T> Future<T> submit(Callable<T> task) {
+        return this.executor.submit(task);
+    }
+
+    /**
+     * Stops all running tasks and releases the pool's threads.
+     */
+    public void shutdown() {
+        this.executor.shutdownNow();
+    }
+
+    /**
+     * Returns the result of the input future, waiting no later than the input
+     * deadline. If the deadline passes, the task is cancelled and null is returned.
+     * Exceptions thrown by the task itself are re-thrown.
+     *
+     * @param future      future to wait on.
+     * @param deadline    deadline (in System.nanoTime() terms).
+     * @param description description of task for logging.
+     *
+     * @return task result (or null if timed out).
+     */
+    public static <T> T await(Future<T> future, long deadline, String description) {
+        long remaining = Math.max(0, deadline - System.nanoTime());
+
+        try {
+            return future.get(remaining, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException exception) {
+            LOGGER.warn("Deadline passed before {} task completed, result will be skipped.", description);
+            future.cancel(true);
+            return null;
+        } catch (InterruptedException exception) {
+            LOGGER.warn("Interrupted whilst waiting for {} task, result will be skipped.", description);
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException exception) {
+            Throwable cause = exception.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException("Execution of " + description + " task has failed!", cause);
+        }
+    }
+
+    /**
+     * Returns a deadline (in System.nanoTime() terms) the input number of
+     * seconds from the input start time.
+     *
+     * @param start   start time (in System.nanoTime() terms).
+     * @param seconds timeout in seconds.
+     *
+     * @return deadline.
+     */
+    public static long deadline(long start, long seconds) {
+        return start + TimeUnit.SECONDS.toNanos(seconds);
+    }
+
+}
+// End of class.
@@ -0,0 +1,92 @@
+package com.cmclinnovations.featureinfo.utils;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.JSONObject;
+
+import uk.ac.cam.cares.jps.base.timeseries.TimeSeriesClient;
+
+/**
+ * Cache of time series clients (as constructed by the TimeSeriesClientFactory)
+ * keyed by data IRI, shared across requests. The factory has to query the KG to
+ * determine which RDB and schema hold the data of each IRI; as that mapping is
+ * effectively static, repeat requests for the same IRIs can skip the lookup.
+ */
+public class TimeSeriesClientCache {
+
+    /**
+     * Logger for reporting info/errors.
+     */
+    private static final Logger LOGGER = LogManager.getLogger(TimeSeriesClientCache.class);
+
+    /**
+     * Cached clients, keyed by data IRI.
+     */
+    private final ExpiringCache<String, TimeSeriesClient<?>> cache;
+
+    /**
+     * Initialise a new TimeSeriesClientCache instance.
+     *
+     * @param maxSize    maximum number of cached data IRIs (zero to disable).
+     * @param ttlSeconds time-to-live of cached clients in seconds (zero or less
+     *                   for no expiry).
+     */
+    public TimeSeriesClientCache(int maxSize, long ttlSeconds) {
+        this.cache = new ExpiringCache<>(maxSize, ttlSeconds);
+    }
+
+    /**
+     * Returns the cached client for the input data IRIs if they all share one,
+     * otherwise runs the input loader and caches its client against each IRI.
+     *
+     * @param dataIRIs data IRIs.
+     * @param loader   logic to construct a new client via the factory.
+     *
+     * @return time series client.
+     *
+     * @throws Exception if loader fails.
+     */
+    public TimeSeriesClient<?> get(List<String> dataIRIs, Callable<TimeSeriesClient<?>> loader) throws Exception {
+        TimeSeriesClient<?> cached = null;
+        for (String dataIRI : dataIRIs) {
+            TimeSeriesClient<?> client = this.cache.get(dataIRI);
+            if (client == null || (cached != null && client != cached)) {
+                cached = null;
+                break;
+            }
+            cached = client;
+        }
+
+        if (cached != null) {
+            LOGGER.debug("Using cached time series client for {} data IRIs.", dataIRIs.size());
+            return cached;
+        }
+
+        TimeSeriesClient<?> client = loader.call();
+        if (client != null) {
+            dataIRIs.forEach(dataIRI -> this.cache.put(dataIRI, client));
+        }
+        return client;
+    }
+
+    /**
+     * Removes all cached clients.
+     */
+    public void clear() {
+        this.cache.clear();
+    }
+
+    /**
+     * Returns usage statistics for this cache.
+     *
+     * @return JSON object of statistics.
+     */
+    public JSONObject getStatistics() {
+        return this.cache.getStatistics();
+    }
+
+}
+// End of class.
@@ -2,13 +2,28 @@ package com.cmclinnovations.featureinfo.utils;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.regex.Pattern;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryFactory;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.binding.BindingFactory;
+import org.apache.jena.sparql.syntax.ElementData;
+import org.apache.jena.sparql.syntax.ElementGroup;
+import org.apache.jena.sparql.syntax.ElementSubQuery;
+import org.apache.jena.sparql.syntax.ElementVisitorBase;
+import org.apache.jena.sparql.syntax.ElementWalker;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.json.JSONArray;
+import org.json.JSONObject;
 
 import com.cmclinnovations.featureinfo.config.ConfigStore;
 import com.cmclinnovations.featureinfo.config.StackEndpoint;
@@ -24,6 +39,21 @@ public final class Utils {
      */
     private static final Logger LOGGER = LogManager.getLogger(Utils.class);
 
+    /**
+     * Name of the variable that replaces the [IRI] placeholder in batched queries.
+     */
+    public static final String BATCH_VARIABLE = "fia_iri";
+
+    /**
+     * Maximum number of cached endpoint fragments.
+     */
+    private static final int MAX_ENDPOINT_FRAGMENTS = 64;
+
+    /**
+     * Rendered endpoint placeholder values, keyed by Ontop and Blazegraph endpoints.
+     */
+    private static final Map<List<List<StackEndpoint>>, QueryTemplate.EndpointFragments> ENDPOINT_FRAGMENTS = new ConcurrentHashMap<>();
+
     /**
      * Constructor.
      */
@@ -42,40 +72,191 @@ public final class Utils {
 	 * @return Updated SPARQL query string.
 	 */
 	public static String queryInject(String query, String iri, List<StackEndpoint> ontops, List<StackEndpoint> blazegraphs) {
-		String updatedQuery = query;
+		return queryInject(QueryTemplate.compile(query), iri, ontops, blazegraphs);
+	}
+
+	/**
+	 * Injects the input IRI and Ontop endpoint into the input compiled SPARQL query.
+	 * 
+	 * @param template compiled SPARQL query to inject into.
+	 * @param iri feature IRI to inject.
+	 * @param ontops List of ontop endpoints for injection.
+	 * @param blazegraphs List of blazegraph endpoints for injection.
+	 * 
+	 * @return Updated SPARQL query string.
+	 */
+	public static String queryInject(QueryTemplate template, String iri, List<StackEndpoint> ontops, List<StackEndpoint> blazegraphs) {
+		return queryInject(template, iri, ontops, blazegraphs, null);
+	}
 
+	/**
+	 * Injects the input IRI, Ontop endpoint, and trajectory line into the input 
+	 * compiled query.
+	 * 
+	 * @param template compiled query to inject into.
+	 * @param iri feature IRI to inject.
+	 * @param ontops List of ontop endpoints for injection.
+	 * @param blazegraphs List of blazegraph endpoints for injection.
+	 * @param lineWKT WKT literal of trajectory line to inject (may be null).
+	 * 
+	 * @return Updated query string.
+	 */
+	public static String queryInject(QueryTemplate template, String iri, List<StackEndpoint> ontops, List<StackEndpoint> blazegraphs, String lineWKT) {
 		if(!iri.startsWith("<")) iri = "<" + iri;
         if(!iri.endsWith(">")) iri += ">";
-		updatedQuery = updatedQuery.replaceAll(Pattern.quote("[IRI]"), iri);
 
-		// Build SPARQL values strings
-		StringBuilder bothBuilder = new StringBuilder();
-		StringBuilder blazegraphBuilder = new StringBuilder();
+		return template.render(iri, getEndpointFragments(ontops, blazegraphs), lineWKT);
+	}
 
-		ontops.forEach(endpoint -> {
-			bothBuilder.append("<");
-			bothBuilder.append(endpoint.url());
-			bothBuilder.append("> ");
-		});
-		blazegraphs.forEach(endpoint -> {
-			bothBuilder.append("<");
-			bothBuilder.append(endpoint.url());
-			bothBuilder.append("> ");
-			blazegraphBuilder.append("<");
-			blazegraphBuilder.append(endpoint.url());
-			blazegraphBuilder.append("> ");
-		});
+	/**
+	 * Injects the input IRI and Ontop endpoint into the input compiled SQL query,
+	 * replacing trajectory line placeholders with JDBC parameters where possible.
+	 * 
+	 * @param template compiled SQL query to inject into.
+	 * @param iri feature IRI to inject.
+	 * @param ontops List of ontop endpoints for injection.
+	 * @param blazegraphs List of blazegraph endpoints for injection.
+	 * @param lineWKT WKT literal of trajectory line to inject where it cannot be bound.
+	 * 
+	 * @return Parameterised SQL query.
+	 */
+	public static QueryTemplate.ParameterisedQuery queryInjectParameterised(QueryTemplate template, String iri, List<StackEndpoint> ontops, List<StackEndpoint> blazegraphs, String lineWKT) {
+		if(!iri.startsWith("<")) iri = "<" + iri;
+        if(!iri.endsWith(">")) iri += ">";
 
-		updatedQuery = updatedQuery.replaceAll(Pattern.quote("[ENDPOINTS-ALL]"), bothBuilder.toString());
-		updatedQuery = updatedQuery.replaceAll(Pattern.quote("[ENDPOINTS-BLAZEGRAPH]"), blazegraphBuilder.toString());
+		return template.renderParameterised(iri, getEndpointFragments(ontops, blazegraphs), lineWKT);
+	}
 
-		// If a single Ontop endpoint is present, inject that
-		if(ontops.size() == 1) {
-			String ontopURL = "<" + ontops.get(0).url() + ">";
-			updatedQuery = updatedQuery.replaceAll(Pattern.quote("[ONTOP]"), ontopURL);
+	/**
+	 * Injects multiple IRIs and the Ontop endpoint into the input SPARQL query. The
+	 * [IRI] placeholder is replaced with the BATCH_VARIABLE variable, which is then
+	 * bound using a VALUES block and added to the query's projection so that each
+	 * result row can be attributed to its IRI.
+	 * 
+	 * Queries that cannot be safely batched (non-SELECT queries, those using
+	 * aggregates, grouping, limits, or the [IRI] placeholder within a sub-query)
+	 * return null, in which case callers should fall back to per-IRI queries.
+	 * 
+	 * @param template compiled SPARQL query to inject into.
+	 * @param iris feature IRIs to inject.
+	 * @param ontops List of ontop endpoints for injection.
+	 * @param blazegraphs List of blazegraph endpoints for injection.
+	 * 
+	 * @return Updated SPARQL query string (or null if cannot be batched).
+	 */
+	public static String queryInjectValues(QueryTemplate template, List<String> iris, List<StackEndpoint> ontops, List<StackEndpoint> blazegraphs) {
+		if(!template.contains(QueryTemplate.Placeholder.IRI)) return null;
+
+		String updatedQuery = template.render("?" + BATCH_VARIABLE, getEndpointFragments(ontops, blazegraphs), null);
+
+		Query parsed;
+		try {
+			parsed = QueryFactory.create(updatedQuery);
+		} catch(Exception exception) {
+			LOGGER.debug("Could not parse query for batching, will fall back to individual queries.", exception);
+			return null;
+		}
+
+		if(!parsed.isSelectType() || parsed.hasAggregators() || parsed.hasGroupBy() 
+			|| parsed.hasLimit() || parsed.hasOffset() || usedInSubQuery(parsed)) {
+			return null;
+		}
+
+		// Project the IRI variable
+		Var iriVar = Var.alloc(BATCH_VARIABLE);
+		if(!parsed.isQueryResultStar() && !parsed.getResultVars().contains(BATCH_VARIABLE)) {
+			parsed.addResultVar(iriVar);
+		}
+
+		// Bind the IRI variable with a VALUES block at the top of the WHERE clause
+		ElementData valuesClause = new ElementData();
+		valuesClause.add(iriVar);
+		iris.forEach(iri -> valuesClause.add(BindingFactory.binding(
+			iriVar,
+			NodeFactory.createURI(iri.replace("<", "").replace(">", "")))));
+
+		ElementGroup newGroup = new ElementGroup();
+		newGroup.addElement(valuesClause);
+		if(parsed.getQueryPattern() != null) {
+			newGroup.addElement(parsed.getQueryPattern());
+		}
+		parsed.setQueryPattern(newGroup);
+
+		return parsed.toString();
+	}
+
+	/**
+	 * Splits the result of a batched query (see queryInjectValues) into separate
+	 * results for each IRI, removing the BATCH_VARIABLE column from each row.
+	 * 
+	 * @param rawResult raw JSON results from KG.
+	 * @param iris feature IRIs within batch.
+	 * 
+	 * @return results keyed by IRI (in input order).
+	 */
+	public static Map<String, JSONArray> splitBatchResult(JSONArray rawResult, List<String> iris) {
+		Map<String, JSONArray> results = new LinkedHashMap<>();
+		iris.forEach(iri -> results.put(iri, new JSONArray()));
+
+		if(rawResult == null) return results;
+
+		for(int i = 0; i < rawResult.length(); i++) {
+			JSONObject row = rawResult.getJSONObject(i);
+			Object value = row.remove(BATCH_VARIABLE);
+			if(value == null) continue;
+
+			String iri = value.toString().replace("<", "").replace(">", "");
+			JSONArray iriResult = results.get(iri);
+			if(iriResult != null) {
+				iriResult.put(row);
+			}
 		}
+		return results;
+	}
 
-		return updatedQuery;
+	/**
+	 * Returns true if the BATCH_VARIABLE variable is used within a sub-query of
+	 * the input query (where outer bindings would not be visible).
+	 * 
+	 * @param query parsed SPARQL query.
+	 * 
+	 * @return sub-query usage.
+	 */
+	private static boolean usedInSubQuery(Query query) {
+		AtomicBoolean used = new AtomicBoolean(false);
+
+		ElementWalker.walk(query.getQueryPattern(), new ElementVisitorBase() {
+			@Override
+			public void visit(ElementSubQuery element) {
+				if(element.getQuery().toString().contains("?" + BATCH_VARIABLE)) {
+					used.set(true);
+				}
+			}
+		});
+		return used.get();
+	}
+
+	/**
+	 * Returns the rendered endpoint placeholder values for the input endpoints,
+	 * reusing those rendered for previous calls with the same endpoints.
+	 * 
+	 * @param ontops List of ontop endpoints for injection.
+	 * @param blazegraphs List of blazegraph endpoints for injection.
+	 * 
+	 * @return rendered endpoint fragments.
+	 */
+	private static QueryTemplate.EndpointFragments getEndpointFragments(List<StackEndpoint> ontops, List<StackEndpoint> blazegraphs) {
+		List<List<StackEndpoint>> key = List.of(List.copyOf(ontops), List.copyOf(blazegraphs));
+
+		QueryTemplate.EndpointFragments fragments = ENDPOINT_FRAGMENTS.get(key);
+		if(fragments == null) {
+			// Endpoint snapshots only change on refresh, so this rarely grows
+			if(ENDPOINT_FRAGMENTS.size() >= MAX_ENDPOINT_FRAGMENTS) ENDPOINT_FRAGMENTS.clear();
+
+			fragments = QueryTemplate.EndpointFragments.of(ontops, blazegraphs);
+			ENDPOINT_FRAGMENTS.put(key, fragments);
+		}
+		return fragments;
 	}
 
 	/**
@@ -23,6 +23,9 @@ import org.mockito.Mockito;
 import com.cmclinnovations.featureinfo.config.ConfigStore;
 import com.cmclinnovations.featureinfo.config.StackEndpoint;
 import com.cmclinnovations.featureinfo.config.StackEndpointType;
+import com.cmclinnovations.featureinfo.utils.KGClientRegistry;
+
+import uk.ac.cam.cares.jps.base.query.RemoteStoreClient;
 
 /**
  * Misc utilities used for automated tests.
@@ -236,5 +239,19 @@ public final class TestUtils {
 
         return spiedConfig;
     }
+
+    /**
+     * Mocks a KGClientRegistry that returns the input client for all endpoints
+     * and for federated queries.
+     * 
+     * @param kgClient (mocked) KG client.
+     * 
+     * @return spied client registry.
+     */
+    public static KGClientRegistry mockRegistry(RemoteStoreClient kgClient) {
+        KGClientRegistry spiedRegistry = Mockito.spy(new KGClientRegistry(kgClient));
+        Mockito.doReturn(kgClient).when(spiedRegistry).getClient(ArgumentMatchers.any());
+        return spiedRegistry;
+    }
 }
 // End of class.
\ No newline at end of file
@@ -0,0 +1,56 @@
+package com.cmclinnovations.featureinfo.config;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.cmclinnovations.featureinfo.utils.QueryTemplate;
+
+/**
+ * Tests for the FeatureQueryPlan class.
+ */
+public class FeatureQueryPlanTest {
+
+    /**
+     * Tests that SPARQL feature queries (including those using endpoint
+     * placeholders) are detected, along with their selected variable.
+     */
+    @Test
+    public void testSparql() {
+        FeatureQueryPlan plan = FeatureQueryPlan.of(QueryTemplate.compile(
+                "SELECT ?Feature WHERE { SERVICE [ONTOP] { ?Feature ?p [IRI] ."
+                        + " FILTER(CONTAINS(\"[LINE_WKT]\", \"LINESTRING\")) } }"));
+
+        Assertions.assertTrue(plan.sparql());
+        Assertions.assertEquals("Feature", plan.selectVariable());
+        Assertions.assertNull(plan.error());
+
+        plan = FeatureQueryPlan.of(QueryTemplate.compile("SELECT * WHERE { ?Feature ?p [IRI] }"));
+        Assertions.assertTrue(plan.sparql());
+        Assertions.assertNotNull(plan.error(), "SELECT * should not be allowed!");
+    }
+
+    /**
+     * Tests that SQL feature queries are detected, along with their selected
+     * column, whether or not the line can be bound as a parameter.
+     */
+    @Test
+    public void testSql() {
+        FeatureQueryPlan plan = FeatureQueryPlan.of(QueryTemplate.compile(
+                "SELECT iri FROM features WHERE ST_Intersects(geom, ST_GeomFromText('[LINE_WKT]', 4326))"));
+        Assertions.assertFalse(plan.sparql());
+        Assertions.assertEquals("iri", plan.selectVariable());
+        Assertions.assertNull(plan.error());
+
+        plan = FeatureQueryPlan.of(QueryTemplate.compile(
+                "SELECT iri FROM features WHERE ST_Intersects(geom, ST_GeomFromEWKT('SRID=4326;[LINE_WKT]'))"));
+        Assertions.assertFalse(plan.sparql());
+        Assertions.assertEquals("iri", plan.selectVariable());
+
+        plan = FeatureQueryPlan.of(QueryTemplate.compile(
+                "SELECT iri, name FROM features WHERE ST_Intersects(geom, ST_GeomFromWKB([LINE_WKB], 4326))"));
+        Assertions.assertFalse(plan.sparql());
+        Assertions.assertNotNull(plan.error(), "Multiple columns should not be allowed!");
+    }
+
+}
+// End of class.
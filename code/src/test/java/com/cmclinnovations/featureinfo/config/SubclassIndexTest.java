@@ -0,0 +1,102 @@
+package com.cmclinnovations.featureinfo.config;
+
+import java.util.List;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+/**
+ * Tests for the SubclassIndex class.
+ */
+public class SubclassIndexTest {
+
+    /**
+     * Mock namespace that returns subclass results.
+     */
+    private static final StackEndpoint NAMESPACE_ONE = new StackEndpoint(
+            "http://mock-blazegraph/namespace/one/sparql", null, null, StackEndpointType.BLAZEGRAPH);
+
+    /**
+     * Mock namespace that fails to respond.
+     */
+    private static final StackEndpoint NAMESPACE_TWO = new StackEndpoint(
+            "http://mock-blazegraph/namespace/two/sparql", null, null, StackEndpointType.BLAZEGRAPH);
+
+    /**
+     * Tests that rdf:types are resolved to configured classes via the subclass
+     * closure, and that configured classes always resolve to themselves.
+     */
+    @Test
+    public void testResolve() {
+        SubclassIndex index = buildIndex();
+
+        Assertions.assertTrue(index.covers(List.of(NAMESPACE_ONE)), "Index should cover first namespace!");
+
+        List<String> classes = index.resolve(List.of("https://mock-tbox/SubClass"), List.of(NAMESPACE_ONE));
+        Assertions.assertEquals(List.of("https://mock-tbox/ClassOne"), classes);
+
+        classes = index.resolve(List.of("https://mock-tbox/ClassTwo"), List.of(NAMESPACE_ONE));
+        Assertions.assertEquals(List.of("https://mock-tbox/ClassTwo"), classes);
+
+        classes = index.resolve(List.of("https://mock-tbox/Unrelated"), List.of(NAMESPACE_ONE));
+        Assertions.assertTrue(classes.isEmpty(), "Unrelated type should not resolve to any classes!");
+    }
+
+    /**
+     * Tests that namespaces that could not be indexed are reported as not covered.
+     */
+    @Test
+    public void testCoverage() {
+        SubclassIndex index = buildIndex();
+
+        Assertions.assertFalse(index.covers(List.of(NAMESPACE_TWO)), "Failed namespace should not be covered!");
+        Assertions.assertFalse(index.covers(List.of(NAMESPACE_ONE, NAMESPACE_TWO)),
+                "Partially indexed namespaces should not be covered!");
+        Assertions.assertFalse(new SubclassIndex().covers(List.of(NAMESPACE_ONE)),
+                "Empty index should not cover any namespaces!");
+
+        JSONObject statistics = index.getStatistics();
+        Assertions.assertEquals(1, statistics.getInt("namespaces"));
+        Assertions.assertEquals(3, statistics.getInt("types"));
+    }
+
+    /**
+     * Builds an index for two configured classes over two namespaces, the second
+     * of which throws an exception when queried.
+     *
+     * @return subclass index.
+     */
+    private SubclassIndex buildIndex() {
+        ConfigEntry entryOne = Mockito.mock(ConfigEntry.class);
+        Mockito.when(entryOne.getClassIRI()).thenReturn("https://mock-tbox/ClassOne");
+        ConfigEntry entryTwo = Mockito.mock(ConfigEntry.class);
+        Mockito.when(entryTwo.getClassIRI()).thenReturn("https://mock-tbox/ClassTwo");
+
+        JSONArray result = new JSONArray();
+        result.put(new JSONObject()
+                .put("type", "https://mock-tbox/SubClass")
+                .put("class", "https://mock-tbox/ClassOne"));
+        result.put(new JSONObject()
+                .put("type", "https://mock-tbox/ClassOne")
+                .put("class", "https://mock-tbox/ClassOne"));
+
+        SubclassIndex index = new SubclassIndex() {
+            @Override
+            protected JSONArray runQuery(StackEndpoint blazegraph, String query) {
+                if (blazegraph.equals(NAMESPACE_TWO)) {
+                    throw new IllegalStateException("Mock namespace is unavailable.");
+                }
+                Assertions.assertTrue(query.contains("<https://mock-tbox/ClassOne>"),
+                        "Query should contain configured classes!");
+                return result;
+            }
+        };
+        index.rebuild(List.of(entryOne, entryTwo), List.of(NAMESPACE_ONE, NAMESPACE_TWO));
+        return index;
+    }
+
+}
+// End of class.
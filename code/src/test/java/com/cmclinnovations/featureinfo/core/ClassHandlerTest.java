@@ -11,6 +11,8 @@ import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 import org.apache.commons.io.FileUtils;
 import org.json.JSONArray;
@@ -18,6 +20,7 @@ import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.ArgumentMatchers;
 import org.mockito.Mockito;
 
@@ -28,6 +31,7 @@ import com.cmclinnovations.featureinfo.config.ConfigStoreTest;
 import com.cmclinnovations.featureinfo.config.StackEndpoint;
 import com.cmclinnovations.featureinfo.config.StackEndpointType;
 import com.cmclinnovations.featureinfo.objects.Request;
+import com.cmclinnovations.featureinfo.utils.ExpiringCache;
 
 import uk.ac.cam.cares.jps.base.query.RemoteStoreClient;
 
@@ -118,7 +122,7 @@ public class ClassHandlerTest {
         when(kgClient.executeFederatedQuery(nullable(List.class), ArgumentMatchers.anyString())).thenReturn(mockResponse);
 
         // Create a ClassHandler instance
-        ClassHandler handler = new ClassHandler(spiedConfig, kgClient);
+        ClassHandler handler = new ClassHandler(spiedConfig, TestUtils.mockRegistry(kgClient));
 
         // Run class determination logic
         List<ConfigEntry> matchingEntries = handler.determineClassMatches(
@@ -132,5 +136,81 @@ public class ClassHandlerTest {
         );
     }
 
+    /**
+     * Tests that repeat class determination for the same IRI uses cached results
+     * rather than querying the KG again.
+     */
+    @Test
+    public void getCachedClasses() throws Exception {
+        Path configFile = TEMP_DIR.resolve("mock-config-01/config.json");
+        ConfigStore configStore = TestUtils.mockConfig(configFile);
+
+        // Mock a RemoteStoreClient instance
+        RemoteStoreClient kgClient = mock(RemoteStoreClient.class);
+
+        JSONArray mockResponse = new JSONArray("""
+                [
+                    { "class": "https://theworldavatar.io/mock-domain/ClassOne" }
+                ]
+            """);
+        when(kgClient.executeFederatedQuery(nullable(List.class), ArgumentMatchers.anyString())).thenReturn(mockResponse);
+
+        // Create a ClassHandler instance with a cache
+        ExpiringCache<ClassHandler.CacheKey, List<String>> cache = new ExpiringCache<>(10, 60);
+        ClassHandler handler = new ClassHandler(configStore, TestUtils.mockRegistry(kgClient));
+        handler.setCache(cache);
+
+        // Run class determination logic twice
+        Request request = new Request("https://test-stack/features/feature-one", null);
+        List<ConfigEntry> first = handler.determineClassMatches(request);
+        List<ConfigEntry> second = handler.determineClassMatches(request);
+
+        Assertions.assertEquals(first, second, "Cached class matches differ from original ones!");
+        Mockito.verify(kgClient, Mockito.times(1)).executeFederatedQuery(nullable(List.class), ArgumentMatchers.anyString());
+        Assertions.assertEquals(1, cache.getStatistics().getLong("hits"), "Second request did not hit the cache!");
+    }
+
+    /**
+     * Tests that class determination for multiple IRIs runs a single batched query
+     * and attributes the results to the correct IRIs.
+     */
+    @Test
+    public void getBatchClasses() throws Exception {
+        Path configFile = TEMP_DIR.resolve("mock-config-01/config.json");
+        ConfigStore configStore = TestUtils.mockConfig(configFile);
+
+        // Mock a RemoteStoreClient instance
+        RemoteStoreClient kgClient = mock(RemoteStoreClient.class);
+
+        JSONArray mockResponse = new JSONArray("""
+                [
+                    { "fia_iri": "https://test-stack/features/feature-one", "class": "https://theworldavatar.io/mock-domain/ClassOne" },
+                    { "fia_iri": "https://test-stack/features/feature-one", "class": "https://theworldavatar.io/mock-domain/ClassTwo" },
+                    { "fia_iri": "https://test-stack/features/feature-two", "class": "https://theworldavatar.io/mock-domain/ClassThree" }
+                ]
+            """);
+        when(kgClient.executeFederatedQuery(nullable(List.class), ArgumentMatchers.anyString())).thenReturn(mockResponse);
+
+        // Run class determination logic for three IRIs
+        ClassHandler handler = new ClassHandler(configStore, TestUtils.mockRegistry(kgClient));
+        Map<String, List<ConfigEntry>> matches = handler.determineClassMatches(
+            List.of(
+                "https://test-stack/features/feature-one",
+                "https://test-stack/features/feature-two",
+                "https://test-stack/features/feature-three"),
+            Optional.empty()
+        );
+
+        Assertions.assertEquals(2, matches.get("https://test-stack/features/feature-one").size());
+        Assertions.assertEquals(1, matches.get("https://test-stack/features/feature-two").size());
+        Assertions.assertTrue(matches.get("https://test-stack/features/feature-three").isEmpty(),
+            "IRI without results should not have any matches!");
+
+        // Check that only one (batched) query was run
+        ArgumentCaptor<String> query = ArgumentCaptor.forClass(String.class);
+        Mockito.verify(kgClient, Mockito.times(1)).executeFederatedQuery(nullable(List.class), query.capture());
+        Assertions.assertTrue(query.getValue().contains("VALUES ?fia_iri"), "Query was not batched with a VALUES block!");
+    }
+
 }
 // End of class.
\ No newline at end of file
@@ -0,0 +1,62 @@
+package com.cmclinnovations.featureinfo.core.meta;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.json.JSONArray;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import com.cmclinnovations.featureinfo.config.CacheSettings;
+import com.cmclinnovations.featureinfo.config.ConfigEntry;
+import com.cmclinnovations.featureinfo.utils.TaskExecutor;
+
+/**
+ * Tests for the MetaCache class.
+ */
+public class MetaCacheTest {
+
+    /**
+     * Tests that results are only cached for entries with caching enabled, and are
+     * keyed by entry, IRI, and endpoint.
+     */
+    @Test
+    public void testCaching() {
+        ConfigEntry cachedEntry = Mockito.mock(ConfigEntry.class);
+        Mockito.when(cachedEntry.getID()).thenReturn("cached");
+        Mockito.when(cachedEntry.getMetaCache()).thenReturn(new CacheSettings(60, 10, 0));
+
+        ConfigEntry uncachedEntry = Mockito.mock(ConfigEntry.class);
+        Mockito.when(uncachedEntry.getID()).thenReturn("uncached");
+
+        TaskExecutor executor = new TaskExecutor("test-refresh", 1);
+        try {
+            MetaCache cache = new MetaCache(executor);
+            AtomicInteger loads = new AtomicInteger();
+            JSONArray result = new JSONArray("[{\"Property\":\"Name\",\"Value\":\"Art Vandelay\"}]");
+
+            cache.put(cachedEntry, "https://test-stack/feature", Optional.empty(), result);
+            cache.put(uncachedEntry, "https://test-stack/feature", Optional.empty(), result);
+
+            Assertions.assertSame(result, cache.get(cachedEntry, "https://test-stack/feature", Optional.empty(),
+                    () -> {
+                        loads.incrementAndGet();
+                        return new JSONArray();
+                    }));
+            Assertions.assertNull(cache.get(cachedEntry, "https://test-stack/feature", Optional.of("https://other"),
+                    () -> new JSONArray()), "Results for other endpoints should not be shared!");
+            Assertions.assertNull(cache.get(uncachedEntry, "https://test-stack/feature", Optional.empty(),
+                    () -> new JSONArray()), "Results for entries without caching should not be stored!");
+            Assertions.assertEquals(0, loads.get(), "Fresh results should not be reloaded!");
+
+            cache.clear();
+            Assertions.assertNull(cache.get(cachedEntry, "https://test-stack/feature", Optional.empty(),
+                    () -> new JSONArray()), "Results remain after clearing!");
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+}
+// End of class.
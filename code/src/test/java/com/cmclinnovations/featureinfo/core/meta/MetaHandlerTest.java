@@ -4,6 +4,8 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import org.apache.commons.io.FileUtils;
@@ -18,8 +20,11 @@ import org.mockito.Mockito;
 import org.skyscreamer.jsonassert.JSONAssert;
 
 import com.cmclinnovations.featureinfo.TestUtils;
+import com.cmclinnovations.featureinfo.config.ConfigEntry;
 import com.cmclinnovations.featureinfo.config.ConfigStore;
 import com.cmclinnovations.featureinfo.config.ConfigStoreTest;
+import com.cmclinnovations.featureinfo.utils.QueryTemplate;
+import com.cmclinnovations.featureinfo.utils.TaskExecutor;
 
 import uk.ac.cam.cares.jps.base.query.RemoteStoreClient;
 
@@ -80,7 +85,7 @@ public class MetaHandlerTest {
         );       
 
         // Set a mock KG client
-        metaHandler.setClient(mockClient());
+        metaHandler.setClient(TestUtils.mockRegistry(mockClient()));
 
         // Attempt to get metadata
         JSONObject result = metaHandler.getData(
@@ -120,7 +125,7 @@ public class MetaHandlerTest {
         );       
 
         // Set a mock KG client
-        metaHandler.setClient(mockClient());
+        metaHandler.setClient(TestUtils.mockRegistry(mockClient()));
 
         // Attempt to get metadata
         JSONObject result = metaHandler.getData(
@@ -140,6 +145,121 @@ public class MetaHandlerTest {
         JSONAssert.assertEquals(expected, result, false);
     }
 
+    /**
+     * Tests that meta data queries for multiple class matches run concurrently
+     * are still combined in class match order.
+     */
+    @Test
+    public void testConcurrentMultipleMatchQuery() throws Exception {
+        Path configFile = TEMP_DIR.resolve("mock-config-01/config.json");
+
+        // Mock a config store based on the real config file
+        ConfigStore configStore = TestUtils.mockConfig(configFile);
+        
+        // Initialise a metahandler with a query pool
+        MetaHandler metaHandler = new MetaHandler(
+            "https://test-stack/features/feature-one",
+            Optional.empty(),
+            configStore
+        );
+        metaHandler.setClient(TestUtils.mockRegistry(mockClient()));
+
+        TaskExecutor queryExecutor = new TaskExecutor("test-query", 4);
+        try {
+            metaHandler.setExecutor(queryExecutor, 10);
+
+            // Attempt to get metadata
+            JSONObject result = metaHandler.getData(
+                configStore.getConfigEntries().subList(0, 2)
+            );
+
+            Assertions.assertEquals(
+                List.of("Art Vandelay", "Cosmo Kramer"),
+                result.getJSONArray("Name").toList(),
+                "Meta data was not combined in class match order!"
+            );
+            Assertions.assertEquals("The Assman", result.getString("Nickname(s)"));
+        } finally {
+            queryExecutor.shutdown();
+        }
+    }
+
+    /**
+     * Tests that batched meta data is split by IRI, combining the results of a
+     * batched query with those of a query that has to be run for each IRI.
+     * 
+     * @throws Exception if SPARQL fails.
+     */
+    @Test
+    public void testBatchQuery() throws Exception {
+        Path configFile = TEMP_DIR.resolve("mock-config-01/config.json");
+        ConfigStore configStore = TestUtils.mockConfig(configFile);
+
+        // Entry with a query that can be batched
+        ConfigEntry batchedEntry = Mockito.mock(ConfigEntry.class);
+        Mockito.when(batchedEntry.getMetaQueryTemplate()).thenReturn(
+            QueryTemplate.compile("SELECT ?Property ?Value WHERE { [IRI] ?Property ?Value }")
+        );
+
+        RemoteStoreClient client = mockClient();
+        Mockito.when(
+            client.executeFederatedQuery(
+                ArgumentMatchers.anyList(),
+                ArgumentMatchers.contains("VALUES")
+            )
+        ).thenReturn(
+            new JSONArray(
+                """
+                [
+                    {\"fia_iri\":\"https://test-stack/features/feature-two\",\"Property\":\"Name\",\"Value\":\"Jerry Seinfeld\"},
+                    {\"fia_iri\":\"https://test-stack/features/feature-one\",\"Property\":\"Name\",\"Value\":\"Art Vandelay\"},
+                    {\"fia_iri\":\"https://test-stack/features/feature-two\",\"Property\":\"Job(s)\",\"Value\":\"Comedian\"}
+                ]
+                """
+            )
+        );
+
+        MetaHandler metaHandler = new MetaHandler(Optional.empty(), configStore);
+        metaHandler.setClient(TestUtils.mockRegistry(client));
+
+        // Second entry's query has no [IRI] placeholder, so is run for each IRI
+        Map<String, JSONObject> result = metaHandler.getBatchData(
+            List.of("https://test-stack/features/feature-one", "https://test-stack/features/feature-two"),
+            List.of(batchedEntry, configStore.getConfigEntries().get(1))
+        );
+
+        Assertions.assertEquals(
+            List.of("https://test-stack/features/feature-one", "https://test-stack/features/feature-two"),
+            List.copyOf(result.keySet()),
+            "Meta data was not returned in IRI order!"
+        );
+        JSONAssert.assertEquals(
+            new JSONObject(
+                """
+                {
+                    "Name": ["Art Vandelay", "Cosmo Kramer"],
+                    "Nickname(s)": "The Assman"
+                }
+                """
+            ),
+            result.get("https://test-stack/features/feature-one"),
+            false
+        );
+        JSONAssert.assertEquals(
+            new JSONObject(
+                """
+                {
+                    "Name": ["Jerry Seinfeld", "Cosmo Kramer"],
+                    "Job(s)": "Comedian",
+                    "Nickname(s)": "The Assman"
+                }
+                """
+            ),
+            result.get("https://test-stack/features/feature-two"),
+            false
+        );
+    }
+
     /**
      * Returns a mocked RemoteStoreClient for mocked interaction with KGs.
      * 
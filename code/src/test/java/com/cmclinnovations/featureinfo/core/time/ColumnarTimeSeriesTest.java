@@ -0,0 +1,112 @@
+package com.cmclinnovations.featureinfo.core.time;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.cmclinnovations.featureinfo.utils.StreamingJson;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import uk.ac.cam.cares.jps.base.timeseries.TimeSeries;
+
+/**
+ * Tests for the ColumnarTimeSeries class.
+ */
+public class ColumnarTimeSeriesTest {
+
+    /**
+     * Tests that BigDecimal values are kept exactly, rather than rounded to the
+     * nearest double.
+     *
+     * @throws IOException if output cannot be written.
+     */
+    @Test
+    public void testBigDecimal() throws IOException {
+        BigDecimal precise = new BigDecimal("12345678901234567.891");
+        ColumnarTimeSeries.Column column = column(Arrays.asList(precise, null, new BigDecimal("0.1")));
+
+        Assertions.assertEquals("Number", column.getValueClass());
+        Assertions.assertEquals(precise, column.get(0));
+        Assertions.assertNull(column.get(1));
+        Assertions.assertEquals("[12345678901234567.891,null,0.1]", write(column));
+    }
+
+    /**
+     * Tests that Float values are written as their decimal form, without the
+     * noise picked up by widening them to doubles.
+     *
+     * @throws IOException if output cannot be written.
+     */
+    @Test
+    public void testFloat() throws IOException {
+        ColumnarTimeSeries.Column column = column(Arrays.asList(0.1F, 2.5F, null, 3));
+
+        Assertions.assertEquals(0.1, column.get(0));
+        Assertions.assertEquals(3.0, column.get(3));
+        Assertions.assertEquals("[0.1,2.5,null,3.0]", write(column));
+    }
+
+    /**
+     * Tests that integral columns are kept as longs, and that mixed columns
+     * keep their original values.
+     *
+     * @throws IOException if output cannot be written.
+     */
+    @Test
+    public void testIntegralAndMixed() throws IOException {
+        ColumnarTimeSeries.Column integral = column(Arrays.asList(1, 9_007_199_254_740_993L, null));
+        Assertions.assertEquals(9_007_199_254_740_993L, integral.get(1));
+        Assertions.assertEquals("[1,9007199254740993,null]", write(integral));
+
+        ColumnarTimeSeries.Column mixed = column(Arrays.asList(1.5, 9_007_199_254_740_993L, "three"));
+        Assertions.assertEquals(9_007_199_254_740_993L, mixed.get(1));
+        Assertions.assertEquals("[1.5,9007199254740993,\"three\"]", write(mixed));
+    }
+
+    /**
+     * Returns the column for the input values.
+     *
+     * @param values column values.
+     *
+     * @return column.
+     */
+    private static ColumnarTimeSeries.Column column(List<?> values) {
+        List<Instant> times = new ArrayList<>();
+        for (int i = 0; i < values.size(); i++) {
+            times.add(Instant.ofEpochSecond(i));
+        }
+        TimeSeries<Instant> timeseries = new TimeSeries<>(times, List.of("https://test-stack/data/one"),
+                List.<List<?>>of(values));
+        return ColumnarTimeSeries.of(timeseries).getColumn("https://test-stack/data/one");
+    }
+
+    /**
+     * Streams the input column as a JSON array.
+     *
+     * @param column column to write.
+     *
+     * @return JSON array string.
+     *
+     * @throws IOException if output cannot be written.
+     */
+    private static String write(ColumnarTimeSeries.Column column) throws IOException {
+        StringWriter writer = new StringWriter();
+        try (JsonGenerator generator = StreamingJson.createGenerator(writer, false)) {
+            generator.writeStartArray();
+            for (int i = 0; i < column.size(); i++) {
+                column.write(generator, i);
+            }
+            generator.writeEndArray();
+        }
+        return writer.toString();
+    }
+
+}
+// End of class.
@@ -0,0 +1,80 @@
+package com.cmclinnovations.featureinfo.core.time;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+
+import com.cmclinnovations.featureinfo.TestUtils;
+import com.cmclinnovations.featureinfo.config.ConfigStore;
+
+import uk.ac.cam.cares.jps.base.query.RemoteStoreClient;
+
+/**
+ * Tests for the MeasurableBuilder class.
+ */
+public class MeasurableBuilderTest {
+
+    /**
+     * Tests that a failing batched query only affects its own batch, which
+     * falls back to individual queries, and that later batches still run.
+     *
+     * @throws Exception if population fails.
+     */
+    @Test
+    public void testFailedBatch() throws Exception {
+        List<Measurable> measurables = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            measurables.add(new Measurable(measurableIRI(i), "Measurement " + i, null, null));
+        }
+
+        // Batched queries containing the first measurable fail, all others succeed
+        RemoteStoreClient kgClient = Mockito.mock(RemoteStoreClient.class);
+        Mockito.when(kgClient.executeQuery(ArgumentMatchers.anyString())).thenAnswer(invocation -> {
+            String query = invocation.getArgument(0);
+            if (query.contains("VALUES") && query.contains("<" + measurableIRI(0) + ">")) {
+                throw new RuntimeException("Mock batch failure");
+            }
+
+            JSONArray result = new JSONArray();
+            for (int i = 0; i < 250; i++) {
+                if (query.contains("<" + measurableIRI(i) + ">")) {
+                    result.put(new JSONObject()
+                            .put("fia_iri", measurableIRI(i))
+                            .put("timeseries", "https://test-stack/time-series/" + i));
+                }
+            }
+            return result;
+        });
+
+        MeasurableBuilder.populateTimeSeriesIRIs(
+                measurables,
+                Mockito.mock(ConfigStore.class),
+                Optional.of("https://test-stack/blazegraph-one"),
+                TestUtils.mockRegistry(kgClient));
+
+        for (int i = 0; i < 250; i++) {
+            Assertions.assertEquals("https://test-stack/time-series/" + i, measurables.get(i).getTimeSeriesIRI(),
+                    "Expected parent time series to be populated for measurable " + i + "!");
+        }
+    }
+
+    /**
+     * Returns the IRI of a mock measurable.
+     *
+     * @param index measurable index.
+     *
+     * @return IRI.
+     */
+    private static String measurableIRI(int index) {
+        return "https://test-stack/measurables/measurable-" + index;
+    }
+
+}
+// End of class.
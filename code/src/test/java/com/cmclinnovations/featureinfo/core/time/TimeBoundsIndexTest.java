@@ -0,0 +1,51 @@
+package com.cmclinnovations.featureinfo.core.time;
+
+import java.time.Instant;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.cmclinnovations.featureinfo.config.TimeReference;
+
+/**
+ * Tests for the TimeBoundsIndex class.
+ */
+public class TimeBoundsIndexTest {
+
+    /**
+     * Tests that anchors are stored separately per measurable and reference, and
+     * can be invalidated and cleared.
+     */
+    @Test
+    public void testAnchors() {
+        TimeBoundsIndex index = new TimeBoundsIndex(10, 60);
+        Instant latest = Instant.parse("1970-01-02T17:00:00Z");
+        Instant first = Instant.parse("1970-01-01T12:00:00Z");
+
+        index.put("measurable-one", TimeReference.LATEST, latest);
+        index.put("measurable-one", TimeReference.FIRST, first);
+
+        Assertions.assertEquals(latest, index.get("measurable-one", TimeReference.LATEST));
+        Assertions.assertEquals(first, index.get("measurable-one", TimeReference.FIRST));
+        Assertions.assertNull(index.get("measurable-two", TimeReference.LATEST));
+
+        index.invalidate("measurable-one", TimeReference.LATEST);
+        Assertions.assertNull(index.get("measurable-one", TimeReference.LATEST));
+        Assertions.assertEquals(first, index.get("measurable-one", TimeReference.FIRST));
+
+        index.clear();
+        Assertions.assertNull(index.get("measurable-one", TimeReference.FIRST));
+    }
+
+    /**
+     * Tests that a zero size disables the index.
+     */
+    @Test
+    public void testDisabled() {
+        TimeBoundsIndex index = new TimeBoundsIndex(0, 60);
+        index.put("measurable-one", TimeReference.LATEST, Instant.EPOCH);
+        Assertions.assertNull(index.get("measurable-one", TimeReference.LATEST));
+    }
+
+}
+// End of class.
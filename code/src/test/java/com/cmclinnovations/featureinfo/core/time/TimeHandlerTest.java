@@ -27,6 +27,7 @@ import com.cmclinnovations.featureinfo.TestUtils;
 import com.cmclinnovations.featureinfo.config.ConfigEntry;
 import com.cmclinnovations.featureinfo.config.ConfigStore;
 import com.cmclinnovations.featureinfo.config.ConfigStoreTest;
+import com.cmclinnovations.featureinfo.utils.TaskExecutor;
 
 import uk.ac.cam.cares.jps.base.query.RemoteRDBStoreClient;
 import uk.ac.cam.cares.jps.base.query.RemoteStoreClient;
@@ -100,7 +101,7 @@ public class TimeHandlerTest {
 
         // Set clients for communication with KG and RDB
         spiedHandler.setClients(
-            mockKGClient(true),
+            TestUtils.mockRegistry(mockKGClient(true)),
             mockTSClient(),
             mockRDBClient()
         );
@@ -135,6 +136,194 @@ public class TimeHandlerTest {
         Assertions.assertTrue(expected.similar(result), "Returned JSONArray did not match expected one!");
     }
 
+    /**
+     * Tests that a client specified time window with a page size returns the
+     * newest points, along with a cursor for the next (older) page.
+     * 
+     * @throws Exception if connections to KG or RDB fail.
+     */
+    @Test
+    public void testPagedSingleMatch() throws Exception {
+        Path configFile = TEMP_DIR.resolve("mock-config-01/config.json");
+        ConfigStore configStore = TestUtils.mockConfig(configFile);
+
+        TimeHandler spiedHandler = spy(new TimeHandler(
+            "https://test-stack/features/feature-one",
+            Optional.empty(),
+            configStore
+        ));
+        doReturn(null).when(spiedHandler).connectToDatabase(
+            ArgumentMatchers.any(),
+            ArgumentMatchers.any()
+        );
+        spiedHandler.setClients(
+            TestUtils.mockRegistry(mockKGClient(true)),
+            mockTSClient(),
+            mockRDBClient()
+        );
+        spiedHandler.setTimeWindow(new TimeWindow(null, Instant.parse("1970-01-02T00:00:00Z"), 2, null));
+
+        JSONArray result = spiedHandler.getData(
+            configStore.getConfigEntries().subList(1, 2)
+        );
+
+        JSONArray expected = new JSONArray(
+            """
+                [
+                    {
+                        "data": ["Measurement One"],
+                        "values": [
+                            [2, 3]
+                        ],
+                        "timeClass": "Instant",
+                        "valuesClass": ["Number"],
+                        "units": ["mph"],
+                        "id": "1",
+                        "time": [
+                            "1970-01-01T13:00:00Z",
+                            "1970-01-01T14:00:00Z"
+                        ],
+                        "nextCursor": "%s"
+                    }
+                ]    
+            """.formatted(TimeWindow.encodeCursor(Instant.parse("1970-01-01T13:00:00Z")))
+        );
+
+        Assertions.assertTrue(expected.similar(result), "Returned JSONArray did not match expected one!");
+    }
+
+    /**
+     * Tests that paging probes only read each slice of history once, stopping
+     * as soon as more than a page of points has been found.
+     * 
+     * @throws Exception if connections to KG or RDB fail.
+     */
+    @Test
+    public void testPagedSlices() throws Exception {
+        Path configFile = TEMP_DIR.resolve("mock-config-01/config.json");
+        ConfigStore configStore = TestUtils.mockConfig(configFile);
+
+        // Hourly points over ten days
+        List<Instant> times = new ArrayList<>();
+        List<Double> values = new ArrayList<>();
+        for (int i = 0; i < 240; i++) {
+            times.add(Instant.EPOCH.plusSeconds(i * 3600L));
+            values.add((double) i);
+        }
+        List<Instant[]> reads = new ArrayList<>();
+        TimeSeriesClient<Instant> tsClient = mockBoundedTSClient(times, values, reads);
+
+        TimeHandler spiedHandler = spy(new TimeHandler(
+            "https://test-stack/features/feature-one",
+            Optional.empty(),
+            configStore
+        ));
+        doReturn(null).when(spiedHandler).connectToDatabase(
+            ArgumentMatchers.any(),
+            ArgumentMatchers.any()
+        );
+        spiedHandler.setClients(
+            TestUtils.mockRegistry(mockKGClient(true)),
+            tsClient,
+            mockRDBClient()
+        );
+        spiedHandler.setTimeWindow(new TimeWindow(null, Instant.EPOCH.plusSeconds(240 * 3600L), 30, null));
+
+        JSONArray result = spiedHandler.getData(configStore.getConfigEntries().subList(1, 2));
+        JSONArray resultTimes = result.getJSONObject(0).getJSONArray("time");
+        Assertions.assertEquals(30, resultTimes.length());
+        Assertions.assertEquals(times.get(210).toString(), resultTimes.getString(0));
+        Assertions.assertEquals(times.get(239).toString(), resultTimes.getString(29));
+        Assertions.assertEquals(TimeWindow.encodeCursor(times.get(210)),
+                result.getJSONObject(0).getString("nextCursor"));
+
+        // One day back from the upper bound, then the four days before that
+        Assertions.assertEquals(2, reads.size(), "Expected probing to stop once a page was found!");
+        Assertions.assertArrayEquals(new Instant[] { times.get(216), Instant.EPOCH.plusSeconds(240 * 3600L) },
+                reads.get(0));
+        Assertions.assertArrayEquals(new Instant[] { times.get(120), times.get(216) }, reads.get(1));
+    }
+
+    /**
+     * Tests that paged time series whose pages start at different times share
+     * a single cursor, so that no points are repeated or skipped between pages.
+     * 
+     * @throws Exception if connections to KG or RDB fail.
+     */
+    @Test
+    public void testPagedMultipleMatch() throws Exception {
+        Path configFile = TEMP_DIR.resolve("mock-config-01/config.json");
+        ConfigStore configStore = TestUtils.mockConfig(configFile);
+
+        List<ConfigEntry> classMatches = new ArrayList<>();
+        classMatches.add(configStore.getConfigEntries().get(1));
+        classMatches.add(configStore.getConfigEntries().get(3));
+
+        // First page ends at the later page start, so holds no points of the older series
+        TimeHandler firstHandler = mockPagedHandler(configStore, null);
+        JSONArray firstPage = firstHandler.getData(classMatches);
+
+        String firstCursor = TimeWindow.encodeCursor(Instant.parse("1970-01-02T16:00:00Z"));
+        JSONArray expectedFirst = new JSONArray(
+            """
+                [
+                    {"data":["Measurement Two","Measurement Three"],"values":[[20,30],[200,300]],"timeClass":"Instant",
+                    "valuesClass":["Number","Number"],"units":["kph","m/s"],"id":"1","time":["1970-01-02T16:00:00Z",
+                    "1970-01-02T17:00:00Z"],"nextCursor":"%s"}
+                ]
+            """.formatted(firstCursor)
+        );
+        Assertions.assertTrue(expectedFirst.similar(firstPage), "Returned first page did not match expected one!");
+
+        // Second page continues both series from the shared cursor
+        TimeHandler secondHandler = mockPagedHandler(configStore, Instant.parse("1970-01-02T16:00:00Z"));
+        JSONArray secondPage = secondHandler.getData(classMatches);
+
+        String secondCursor = TimeWindow.encodeCursor(Instant.parse("1970-01-01T13:00:00Z"));
+        JSONArray expectedSecond = new JSONArray(
+            """
+                [
+                    {"data":["Measurement Two","Measurement Three"],"values":[[10],[100]],"timeClass":"Instant",
+                    "valuesClass":["Number","Number"],"units":["kph","m/s"],"id":"1","time":["1970-01-02T15:00:00Z"],
+                    "nextCursor":"%s"},{"data":["Measurement One"],"values":[[2,3]],"timeClass":"Instant",
+                    "valuesClass":["Number"],"units":["mph"],"id":"1","time":["1970-01-01T13:00:00Z",
+                    "1970-01-01T14:00:00Z"],"nextCursor":"%s"}
+                ]
+            """.formatted(secondCursor, secondCursor)
+        );
+        Assertions.assertTrue(expectedSecond.similar(secondPage), "Returned second page did not match expected one!");
+    }
+
+    /**
+     * Returns a TimeHandler for the multiple class match scenario, paging two
+     * points at a time.
+     * 
+     * @param configStore mocked config store.
+     * @param cursor      exclusive upper bound of the page (or null).
+     * 
+     * @return spied TimeHandler instance.
+     * 
+     * @throws Exception if connections to KG or RDB fail.
+     */
+    private TimeHandler mockPagedHandler(ConfigStore configStore, Instant cursor) throws Exception {
+        TimeHandler spiedHandler = spy(new TimeHandler(
+            "https://test-stack/features/feature-one",
+            Optional.empty(),
+            configStore
+        ));
+        doReturn(null).when(spiedHandler).connectToDatabase(
+            ArgumentMatchers.any(),
+            ArgumentMatchers.any()
+        );
+        spiedHandler.setClients(
+            TestUtils.mockRegistry(mockKGClientForMultiple()),
+            mockTSClient(),
+            mockRDBClient()
+        );
+        spiedHandler.setTimeWindow(new TimeWindow(null, Instant.parse("1970-01-03T00:00:00Z"), 2, cursor));
+        return spiedHandler;
+    }
+
     /**
      * Tests that time series can be discovered, parsed, and formatted using
      * a single class match with a time query that does NOT return measurable
@@ -166,7 +355,7 @@ public class TimeHandlerTest {
 
         // Set clients for communication with KG and RDB
         spiedHandler.setClients(
-            mockKGClient(false),
+            TestUtils.mockRegistry(mockKGClient(false)),
             mockTSClient(),
             mockRDBClient()
         );
@@ -210,6 +399,34 @@ public class TimeHandlerTest {
      */
     @Test
     public void testMultipleMatch() throws Exception {
+        assertMultipleMatch(null);
+    }
+
+    /**
+     * Tests that time series retrieved concurrently (with limited parallelism)
+     * are returned in the same order as when retrieved sequentially.
+     * 
+     * @throws Exception if connections to KG or RDB fail.
+     */
+    @Test
+    public void testConcurrentMultipleMatch() throws Exception {
+        TaskExecutor executor = new TaskExecutor("test-time", 4);
+        try {
+            assertMultipleMatch(executor);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Runs the multiple class match scenario, optionally with a pool to retrieve
+     * time series concurrently, and checks the result.
+     * 
+     * @param executor optional pool of query threads (may be null).
+     * 
+     * @throws Exception if connections to KG or RDB fail.
+     */
+    private void assertMultipleMatch(TaskExecutor executor) throws Exception {
         Path configFile = TEMP_DIR.resolve("mock-config-01/config.json");
 
         // Mock a config store based on the real config file
@@ -232,11 +449,15 @@ public class TimeHandlerTest {
 
         // Set clients for communication with KG and RDB
         spiedHandler.setClients(
-            mockKGClientForMultiple(),
+            TestUtils.mockRegistry(mockKGClientForMultiple()),
             mockTSClient(),
             mockRDBClient()
         );
 
+        if (executor != null) {
+            spiedHandler.setExecutor(executor, 30, 2);
+        }
+
         // Mock class matches
         List<ConfigEntry> classMatches = new ArrayList<>();
         classMatches.add(configStore.getConfigEntries().get(1));
@@ -312,6 +533,7 @@ public class TimeHandlerTest {
             new JSONArray(
                 """
                 [{
+                    "fia_iri": "https://test-stack/measurables/measurable-one",
                     "timeseries": "https://test-stack/time-series/time-series-one"
                 }]
                 """
@@ -327,6 +549,7 @@ public class TimeHandlerTest {
             new JSONArray(
                 """
                 [{
+                    "fia_iri": "https://test-stack/measurables/measurable-one",
                     "timeseries": "https://test-stack/time-series/time-series-one"
                 }]
                 """
@@ -386,42 +609,29 @@ public class TimeHandlerTest {
             )
         ).thenReturn(mockResultTwo);
 
-        // Mock methods for determining missing parent time series IRIs
+        // Mock method for determining missing parent time series IRIs (in a single batch)
         Mockito.when(
             spiedClient.executeFederatedQuery(
                 ArgumentMatchers.anyList(),
-                ArgumentMatchers.contains("https://test-stack/measurables/measurable-one")
+                ArgumentMatchers.contains("VALUES ?fia_iri")
             )
         ).thenReturn(
             new JSONArray(
                 """
-                [{"timeseries": "https://test-stack/time-series/time-series-one"}]
-                """
-            )
-        );
-
-        Mockito.when(
-            spiedClient.executeFederatedQuery(
-                ArgumentMatchers.anyList(),
-                ArgumentMatchers.contains("https://test-stack/measurables/measurable-two")
-            )
-        ).thenReturn(
-            new JSONArray(
-                """
-                [{"timeseries": "https://test-stack/time-series/time-series-two"}]
-                """
-            )
-        );
-
-        Mockito.when(
-            spiedClient.executeFederatedQuery(
-                ArgumentMatchers.anyList(),
-                ArgumentMatchers.contains("https://test-stack/measurables/measurable-three")
-            )
-        ).thenReturn(
-            new JSONArray(
-                """
-                [{"timeseries": "https://test-stack/time-series/time-series-two"}]
+                [
+                    {
+                        "fia_iri": "https://test-stack/measurables/measurable-one",
+                        "timeseries": "https://test-stack/time-series/time-series-one"
+                    },
+                    {
+                        "fia_iri": "https://test-stack/measurables/measurable-two",
+                        "timeseries": "https://test-stack/time-series/time-series-two"
+                    },
+                    {
+                        "fia_iri": "https://test-stack/measurables/measurable-three",
+                        "timeseries": "https://test-stack/time-series/time-series-two"
+                    }
+                ]
                 """
             )
         );
@@ -492,6 +702,53 @@ public class TimeHandlerTest {
         return spiedClient;
     }
 
+    /**
+     * Returns a mocked TimeSeriesClient that only returns the points of the
+     * input time series within the requested bounds, recording each read.
+     * 
+     * @param times  times of all points.
+     * @param values values of all points.
+     * @param reads  list to record the bounds of each read in.
+     * 
+     * @returns mocked TimeSeriesClient instance.
+     */
+    private TimeSeriesClient<Instant> mockBoundedTSClient(List<Instant> times, List<Double> values,
+            List<Instant[]> reads) throws Exception {
+        TimeSeriesClient<Instant> spiedClient = Mockito.mock(TimeSeriesClient.class);
+        List<String> dataIRIs = List.of("https://test-stack/measurables/measurable-one");
+
+        Mockito.when(
+            spiedClient.getTimeSeriesWithinBounds(
+                ArgumentMatchers.eq(dataIRIs),
+                ArgumentMatchers.any(),
+                ArgumentMatchers.any(),
+                ArgumentMatchers.any()
+            )
+        ).thenAnswer(invocation -> {
+            Instant lower = invocation.getArgument(1);
+            Instant upper = invocation.getArgument(2);
+            reads.add(new Instant[] { lower, upper });
+
+            List<Instant> boundedTimes = new ArrayList<>();
+            List<Double> boundedValues = new ArrayList<>();
+            for (int i = 0; i < times.size(); i++) {
+                if ((lower == null || !times.get(i).isBefore(lower)) && (upper == null || !times.get(i).isAfter(upper))) {
+                    boundedTimes.add(times.get(i));
+                    boundedValues.add(values.get(i));
+                }
+            }
+            return new TimeSeries<Instant>(boundedTimes, dataIRIs, List.of(boundedValues));
+        });
+
+        Mockito.when(
+            spiedClient.getOldestData(ArgumentMatchers.eq(dataIRIs.get(0)), ArgumentMatchers.any())
+        ).thenReturn(
+            new TimeSeries<Instant>(List.of(times.get(0)), dataIRIs, List.of(List.of(values.get(0))))
+        );
+
+        return spiedClient;
+    }
+
     /**
      * Returns a mocked RemoteRDBStoreClient for mocked interaction with RDBs.
      * 
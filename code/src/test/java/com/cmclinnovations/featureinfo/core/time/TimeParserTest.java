@@ -0,0 +1,206 @@
+package com.cmclinnovations.featureinfo.core.time;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.skyscreamer.jsonassert.JSONAssert;
+
+import com.cmclinnovations.featureinfo.objects.FeatureResult;
+
+import uk.ac.cam.cares.jps.base.timeseries.TimeSeries;
+import uk.ac.cam.cares.jps.base.timeseries.TimeSeriesClient;
+
+/**
+ * Tests for the TimeParser class.
+ */
+public class TimeParserTest {
+
+    /**
+     * Tests that combining time series with a forward merge gives the same result
+     * as the original implementation (retained below for reference), including
+     * exact matches, forward-filled gaps, values beyond the end of a series, and
+     * values before the start of a series.
+     */
+    @Test
+    public void testCombinedTimeSeries() {
+        Random random = new Random(42);
+
+        TimeSeries<Instant> longest = randomSeries(random, "https://test-stack/data/longest", 0, 200);
+        TimeSeries<Instant> offset = randomSeries(random, "https://test-stack/data/offset", 3, 120);
+        TimeSeries<Instant> sparse = randomSeries(random, "https://test-stack/data/sparse", 50, 40);
+        TimeSeries<Instant> emptyBefore = randomSeries(random, "https://test-stack/data/empty-before", 7, 60);
+
+        // Mock client for values before the start of a series
+        TimeSeriesClient<Instant> tsClient = Mockito.mock(TimeSeriesClient.class);
+        Mockito.when(tsClient.getTimeSeriesWithinBounds(
+                ArgumentMatchers.anyList(),
+                ArgumentMatchers.any(),
+                ArgumentMatchers.any()))
+                .thenAnswer(invocation -> {
+                    String dataIRI = invocation.<List<String>>getArgument(0).get(0);
+                    if (dataIRI.endsWith("empty-before")) {
+                        return new TimeSeries<>(List.of(), List.of(dataIRI), List.<List<?>>of(List.of()));
+                    }
+                    return new TimeSeries<>(
+                            List.of(Instant.ofEpochSecond(-120), Instant.ofEpochSecond(-60)),
+                            List.of(dataIRI),
+                            List.<List<?>>of(List.of(-2.0, -1.0)));
+                });
+
+        List<TimeSeries<Instant>> tsList = List.of(offset, longest, sparse, emptyBefore);
+        TimeSeries<Instant> expected = legacyCombinedTimeSeries(tsClient, tsList);
+        TimeSeries<Instant> actual = TimeParser.getCombinedTimeSeries(tsClient, tsList);
+
+        Assertions.assertEquals(expected.getTimes(), actual.getTimes());
+        Assertions.assertEquals(expected.getDataIRIs(), actual.getDataIRIs());
+        for (String dataIRI : expected.getDataIRIs()) {
+            Assertions.assertEquals(expected.getValues(dataIRI), actual.getValues(dataIRI),
+                    "Combined values differ for " + dataIRI);
+        }
+    }
+
+    /**
+     * Tests that streaming a result produces the same JSON as converting it to a
+     * JSON tree, and that output is only pretty-printed when requested.
+     *
+     * @throws IOException if output cannot be written.
+     */
+    @Test
+    public void testStreamedOutput() throws IOException {
+        TimeSeries<Instant> timeseries = new TimeSeries<>(
+                List.of(Instant.ofEpochSecond(43_200), Instant.ofEpochSecond(46_800)),
+                List.of("https://test-stack/data/one", "https://test-stack/data/two"),
+                List.<List<?>>of(Arrays.asList(1.5, null), List.of("on", "off")));
+
+        Map<String, String> units = new LinkedHashMap<>();
+        units.put("https://test-stack/data/one", "mph");
+        units.put("https://test-stack/data/two", "-");
+
+        Map<String, String> names = new LinkedHashMap<>();
+        names.put("https://test-stack/data/one", "Speed");
+        names.put("https://test-stack/data/two", "State");
+
+        JSONObject meta = new JSONObject().put("Name", "Feature One");
+        List<TimeSeriesResult> results = List.of(
+                new TimeSeriesResult(ColumnarTimeSeries.of(timeseries), units, names, null, null));
+        FeatureResult result = new FeatureResult(meta, results);
+        JSONObject expected = new JSONObject().put("meta", meta).put("time", TimeParser.convertToJSON(results));
+
+        StringWriter compact = new StringWriter();
+        result.write(compact, false);
+        Assertions.assertFalse(compact.toString().contains("\n"), "Expected compact output by default!");
+        JSONAssert.assertEquals(expected.toString(), compact.toString(), true);
+
+        JSONArray time = new JSONObject(compact.toString()).getJSONArray("time");
+        Assertions.assertEquals("1970-01-01T12:00:00Z", time.getJSONObject(0).getJSONArray("time").getString(0));
+        Assertions.assertEquals("String", time.getJSONObject(0).getJSONArray("valuesClass").getString(1));
+
+        StringWriter pretty = new StringWriter();
+        result.write(pretty, true);
+        Assertions.assertTrue(pretty.toString().contains("\n"), "Expected pretty-printed output!");
+        JSONAssert.assertEquals(compact.toString(), pretty.toString(), true);
+    }
+
+    /**
+     * Generates a single column series of random values, with times at random
+     * (ascending) multiples of 60 seconds.
+     *
+     * @param random  random number generator.
+     * @param dataIRI data IRI.
+     * @param start   index of first time.
+     * @param count   number of times.
+     *
+     * @return time series.
+     */
+    private static TimeSeries<Instant> randomSeries(Random random, String dataIRI, int start, int count) {
+        List<Instant> times = new ArrayList<>();
+        List<Double> values = new ArrayList<>();
+
+        int index = start;
+        for (int i = 0; i < count; i++) {
+            times.add(Instant.ofEpochSecond(index * 60L));
+            values.add((double) random.nextInt(100));
+            index += 1 + random.nextInt(2);
+        }
+        return new TimeSeries<>(times, List.of(dataIRI), List.<List<?>>of(values));
+    }
+
+    /**
+     * Original implementation of TimeParser.getCombinedTimeSeries, used to check
+     * that the current implementation is equivalent.
+     *
+     * @param tsClient time series client
+     * @param tsList   list of time series instances
+     *
+     * @return combined timeseries instance.
+     */
+    private static TimeSeries<Instant> legacyCombinedTimeSeries(TimeSeriesClient<Instant> tsClient,
+            Collection<TimeSeries<Instant>> tsList) {
+        List<TimeSeries<Instant>> tsSorted = tsList.stream()
+                .sorted(Comparator.comparing(ts -> ts.getTimes().size()))
+                .collect(Collectors.toList());
+        List<Instant> longestTimeList = tsSorted.get(tsSorted.size() - 1).getTimes();
+
+        List<List<?>> valuesList = new ArrayList<>();
+        List<String> dataIRIs = new ArrayList<>();
+
+        for (TimeSeries<Instant> ts : tsSorted) {
+            List<Double> values = new ArrayList<>();
+            String dataIRI = ts.getDataIRIs().get(0);
+
+            Double valueBefore = null;
+            if (ts.getTimes().get(0).isAfter(longestTimeList.get(0))) {
+                TimeSeries<Instant> extraInfo = tsClient.getTimeSeriesWithinBounds(Arrays.asList(dataIRI),
+                        longestTimeList.get(0).minus(1, ChronoUnit.DAYS), longestTimeList.get(0));
+
+                if (extraInfo.getTimes().size() == 0) {
+                    valueBefore = 0.0;
+                } else {
+                    valueBefore = extraInfo.getValuesAsDouble(dataIRI)
+                            .get(extraInfo.getValuesAsDouble(dataIRI).size() - 1);
+                }
+            }
+            for (Instant time : longestTimeList) {
+                int index;
+                if (ts.getTimes().contains(time)) {
+                    index = ts.getTimes().indexOf(time);
+                } else if (time.isAfter(ts.getTimes().get(ts.getTimes().size() - 1))) {
+                    index = ts.getTimes().size() - 1;
+                } else {
+                    Instant t1 = ts.getTimes().stream().filter(t -> t.isAfter(time)).findFirst().get();
+                    index = ts.getTimes().indexOf(t1) - 1;
+                }
+
+                if (index < 0) {
+                    values.add(valueBefore);
+                } else {
+                    values.add(ts.getValuesAsDouble(dataIRI).get(index));
+                }
+            }
+
+            dataIRIs.add(dataIRI);
+            valuesList.add(values);
+        }
+
+        return new TimeSeries<>(longestTimeList, dataIRIs, valuesList);
+    }
+
+}
+// End of class.
@@ -0,0 +1,256 @@
+package com.cmclinnovations.featureinfo.core.time;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+
+import com.cmclinnovations.featureinfo.config.AggregateSettings;
+
+import uk.ac.cam.cares.jps.base.timeseries.TimeSeries;
+
+/**
+ * Tests for the TimeSeriesAggregator class.
+ */
+public class TimeSeriesAggregatorTest {
+
+    /**
+     * Raw series over two hourly buckets, with a numeric and a string column.
+     */
+    private static final TimeSeries<Instant> RAW = new TimeSeries<>(
+            Arrays.asList(
+                    Instant.parse("1970-01-01T00:00:00Z"),
+                    Instant.parse("1970-01-01T00:20:00Z"),
+                    Instant.parse("1970-01-01T00:40:00Z"),
+                    Instant.parse("1970-01-01T01:10:00Z")),
+            Arrays.asList("number", "status"),
+            Arrays.asList(
+                    Arrays.asList(1.0, 5.0, null, 10.0),
+                    Arrays.asList("a", "b", "c", "d")));
+
+    /**
+     * Tests that numeric values are combined per bucket (ignoring nulls), whilst
+     * non-numeric values take the last in each bucket.
+     */
+    @Test
+    public void testAggregate() {
+        TimeSeries<Instant> mean = TimeSeriesAggregator.aggregate(RAW, AggregateSettings.of(1, "hours", "mean"));
+        Assertions.assertEquals(
+                List.of(Instant.parse("1970-01-01T00:00:00Z"), Instant.parse("1970-01-01T01:00:00Z")),
+                mean.getTimes());
+        Assertions.assertEquals(List.of(3.0, 10.0), mean.getValues("number"));
+        Assertions.assertEquals(List.of("c", "d"), mean.getValues("status"));
+
+        TimeSeries<Instant> max = TimeSeriesAggregator.aggregate(RAW, AggregateSettings.of(1, "hours", "max"));
+        Assertions.assertEquals(List.of(5.0, 10.0), max.getValues("number"));
+
+        TimeSeries<Instant> sum = TimeSeriesAggregator.aggregate(RAW, AggregateSettings.of(1, "days", "sum"));
+        Assertions.assertEquals(List.of(16.0), sum.getValues("number"));
+
+        TimeSeries<Instant> last = TimeSeriesAggregator.aggregate(RAW, AggregateSettings.of(30, "minutes", "last"));
+        Assertions.assertEquals(Arrays.asList(5.0, null, 10.0), last.getValues("number"));
+    }
+
+    /**
+     * Tests that aggregating a series stored in a table shared with other series
+     * only reads the rows of that series, from the schema-qualified table.
+     *
+     * @throws SQLException if query fails.
+     */
+    @Test
+    public void testSharedTable() throws SQLException {
+        List<String> queries = new ArrayList<>();
+        List<PreparedStatement> statements = new ArrayList<>();
+        Connection connection = mockConnection(queries, statements, Map.of(
+                "information_schema.columns WHERE table_name", List.<Object[]>of(new Object[] { "timeseries" }),
+                "FROM \"timeseries\".\"dbTable\" WHERE \"dataIRI\"",
+                List.<Object[]>of(new Object[] { "https://test-stack/time-series/one", "shared_table", "column1" }),
+                "WHERE table_schema",
+                List.<Object[]>of(new Object[] { "time", "timestamp with time zone" },
+                        new Object[] { "time_series_iri", "character varying" },
+                        new Object[] { "column1", "double precision" }, new Object[] { "column2", "text" }),
+                "fia_bucket",
+                List.<Object[]>of(new Object[] { OffsetDateTime.of(1970, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC), 3 })));
+
+        TimeSeries<Instant> result = TimeSeriesAggregator.query(connection, List.of("https://test-stack/data/one"),
+                null, null, AggregateSettings.of(1, "hours", "mean"));
+        Assertions.assertEquals(List.of(3.0), result.getValues("https://test-stack/data/one"));
+
+        String aggregateQuery = queries.get(queries.size() - 1);
+        Assertions.assertTrue(aggregateQuery.contains(
+                "FROM \"timeseries\".\"shared_table\" WHERE TRUE AND \"time_series_iri\" = ?"),
+                "Expected schema-qualified table filtered by time series, got: " + aggregateQuery);
+        Mockito.verify(statements.get(statements.size() - 1))
+                .setString(3, "https://test-stack/time-series/one");
+    }
+
+    /**
+     * Tests that non-numeric columns take the last value within each bucket,
+     * rather than being passed to the numeric aggregate function.
+     *
+     * @throws SQLException if query fails.
+     */
+    @Test
+    public void testNonNumericColumn() throws SQLException {
+        List<String> queries = new ArrayList<>();
+        Connection connection = mockConnection(queries, new ArrayList<>(), Map.of(
+                "information_schema.columns WHERE table_name", List.<Object[]>of(new Object[] { "public" }),
+                "FROM \"public\".\"dbTable\" WHERE \"dataIRI\"",
+                List.<Object[]>of(new Object[] { "https://test-stack/time-series/one", "table_one", "column2" }),
+                "WHERE table_schema",
+                List.<Object[]>of(new Object[] { "time", "timestamp with time zone" },
+                        new Object[] { "time_series_iri", "character varying" },
+                        new Object[] { "column1", "double precision" }, new Object[] { "column2", "text" }),
+                "fia_bucket",
+                List.<Object[]>of(new Object[] { OffsetDateTime.of(1970, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC), "on" })));
+
+        TimeSeries<Instant> result = TimeSeriesAggregator.query(connection, List.of("https://test-stack/data/two"),
+                null, null, AggregateSettings.of(1, "hours", "max"));
+        Assertions.assertEquals(List.of("on"), result.getValues("https://test-stack/data/two"));
+
+        String aggregateQuery = queries.get(queries.size() - 1);
+        Assertions.assertFalse(aggregateQuery.contains("max("),
+                "Expected non-numeric column not to be aggregated numerically, got: " + aggregateQuery);
+        Assertions.assertTrue(aggregateQuery.contains("array_agg(\"column2\""),
+                "Expected non-numeric column to take last value, got: " + aggregateQuery);
+    }
+
+    /**
+     * Tests that table layouts cached in an index are reused, so that later
+     * aggregations only run the aggregation query.
+     *
+     * @throws SQLException if query fails.
+     */
+    @Test
+    public void testCachedLayout() throws SQLException {
+        List<String> queries = new ArrayList<>();
+        Connection connection = mockConnection(queries, new ArrayList<>(), Map.of(
+                "information_schema.columns WHERE table_name", List.<Object[]>of(new Object[] { "public" }),
+                "FROM \"public\".\"dbTable\" WHERE \"dataIRI\"",
+                List.<Object[]>of(new Object[] { "https://test-stack/time-series/one", "table_one", "column1" }),
+                "WHERE table_schema",
+                List.<Object[]>of(new Object[] { "time", "timestamp with time zone" },
+                        new Object[] { "time_series_iri", "character varying" },
+                        new Object[] { "column1", "double precision" }),
+                "fia_bucket",
+                List.<Object[]>of(new Object[] { OffsetDateTime.of(1970, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC), 3 })));
+
+        TimeTableIndex index = new TimeTableIndex(10, 600);
+        List<String> dataIRIs = List.of("https://test-stack/data/one");
+        TimeSeriesAggregator.query(connection, index, dataIRIs, null, null, AggregateSettings.of(1, "hours", "mean"));
+        int firstQueries = queries.size();
+
+        TimeSeries<Instant> result = TimeSeriesAggregator.query(connection, index, dataIRIs, null, null,
+                AggregateSettings.of(1, "hours", "mean"));
+        Assertions.assertEquals(List.of(3.0), result.getValues("https://test-stack/data/one"));
+        Assertions.assertEquals(firstQueries + 1, queries.size(), "Expected only the aggregation query to be run!");
+        Assertions.assertTrue(queries.get(queries.size() - 1).contains("fia_bucket"));
+    }
+
+    /**
+     * Tests that tables holding several series without a time series column are
+     * not aggregated in the database (so the caller aggregates in memory).
+     *
+     * @throws SQLException if mocking fails.
+     */
+    @Test
+    public void testUnverifiedLayout() throws SQLException {
+        List<String> queries = new ArrayList<>();
+        Connection connection = mockConnection(queries, new ArrayList<>(), Map.of(
+                "information_schema.columns WHERE table_name", List.<Object[]>of(new Object[] { "public" }),
+                "FROM \"public\".\"dbTable\" WHERE \"dataIRI\"",
+                List.<Object[]>of(new Object[] { "https://test-stack/time-series/one", "shared_table", "column1" }),
+                "WHERE table_schema",
+                List.<Object[]>of(new Object[] { "time", "timestamp with time zone" },
+                        new Object[] { "column1", "double precision" }),
+                "count(DISTINCT",
+                List.<Object[]>of(new Object[] { 2L })));
+
+        Assertions.assertThrows(SQLException.class, () -> TimeSeriesAggregator.query(connection,
+                List.of("https://test-stack/data/one"), null, null, AggregateSettings.of(1, "hours", "mean")));
+        Assertions.assertTrue(queries.stream().noneMatch(query -> query.contains("fia_bucket")),
+                "Expected no aggregation query to be run!");
+    }
+
+    /**
+     * Tests that invalid aggregation options are rejected.
+     */
+    @Test
+    public void testInvalidSettings() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> AggregateSettings.of(1, "hours", "median"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> AggregateSettings.of(0, "hours", "mean"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> AggregateSettings.of(1, "weeks", "mean"));
+    }
+
+    /**
+     * Returns a mock connection, returning the input rows for each statement
+     * whose SQL contains the matching key.
+     *
+     * @param queries    SQL of prepared statements, added to.
+     * @param statements prepared statements, added to.
+     * @param rows       result rows, keyed by SQL fragment.
+     *
+     * @return mock connection.
+     *
+     * @throws SQLException if mocking fails.
+     */
+    private static Connection mockConnection(List<String> queries, List<PreparedStatement> statements,
+            Map<String, List<Object[]>> rows) throws SQLException {
+        Connection connection = Mockito.mock(Connection.class);
+        Mockito.when(connection.prepareStatement(ArgumentMatchers.anyString())).thenAnswer(invocation -> {
+            String query = invocation.getArgument(0);
+            queries.add(query);
+
+            List<Object[]> result = rows.entrySet().stream()
+                    .filter(entry -> query.contains(entry.getKey()))
+                    .map(Map.Entry::getValue)
+                    .findFirst()
+                    .orElseThrow(() -> new SQLException("Unexpected query: " + query));
+
+            PreparedStatement statement = Mockito.mock(PreparedStatement.class);
+            Mockito.when(statement.executeQuery()).thenAnswer(execution -> mockResultSet(result));
+            statements.add(statement);
+            return statement;
+        });
+        return connection;
+    }
+
+    /**
+     * Returns a mock result set over the input rows.
+     *
+     * @param rows result rows.
+     *
+     * @return mock result set.
+     *
+     * @throws SQLException if mocking fails.
+     */
+    private static ResultSet mockResultSet(List<Object[]> rows) throws SQLException {
+        AtomicInteger row = new AtomicInteger(-1);
+        ResultSet result = Mockito.mock(ResultSet.class);
+        Mockito.when(result.next()).thenAnswer(invocation -> row.incrementAndGet() < rows.size());
+        Mockito.when(result.getObject(ArgumentMatchers.anyInt())).thenAnswer(
+                invocation -> rows.get(row.get())[(int) invocation.getArgument(0) - 1]);
+        Mockito.when(result.getObject(ArgumentMatchers.anyInt(), ArgumentMatchers.eq(OffsetDateTime.class)))
+                .thenAnswer(invocation -> rows.get(row.get())[(int) invocation.getArgument(0) - 1]);
+        Mockito.when(result.getString(ArgumentMatchers.anyInt())).thenAnswer(
+                invocation -> (String) rows.get(row.get())[(int) invocation.getArgument(0) - 1]);
+        Mockito.when(result.getLong(ArgumentMatchers.anyInt())).thenAnswer(
+                invocation -> (Long) rows.get(row.get())[(int) invocation.getArgument(0) - 1]);
+        return result;
+    }
+
+}
+// End of class.
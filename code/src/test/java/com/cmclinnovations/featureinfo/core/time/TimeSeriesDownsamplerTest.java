@@ -0,0 +1,104 @@
+package com.cmclinnovations.featureinfo.core.time;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import uk.ac.cam.cares.jps.base.timeseries.TimeSeries;
+
+/**
+ * Tests for the TimeSeriesDownsampler class.
+ */
+public class TimeSeriesDownsamplerTest {
+
+    /**
+     * Tests that long series are reduced to at most the requested number of
+     * points, whilst keeping the first and last points, and any spikes.
+     */
+    @Test
+    public void testDownsample() {
+        List<Instant> times = new ArrayList<>();
+        List<Double> numbers = new ArrayList<>();
+        List<String> states = new ArrayList<>();
+
+        for (int i = 0; i < 1000; i++) {
+            times.add(Instant.ofEpochSecond(i * 60L));
+            numbers.add((i == 567) ? 1000.0 : Math.sin(i / 50.0));
+            states.add("state-" + i);
+        }
+
+        TimeSeries<Instant> timeseries = new TimeSeries<>(
+                times,
+                List.of("https://test-stack/data/number", "https://test-stack/data/state"),
+                List.<List<?>>of(numbers, states));
+
+        TimeSeries<Instant> result = TimeSeriesDownsampler.downsample(timeseries, 100);
+        List<Instant> newTimes = result.getTimes();
+
+        Assertions.assertTrue(newTimes.size() <= 100, "Expected at most 100 points!");
+        Assertions.assertEquals(times.get(0), newTimes.get(0), "Expected first point to be kept!");
+        Assertions.assertEquals(times.get(999), newTimes.get(newTimes.size() - 1), "Expected last point to be kept!");
+        Assertions.assertTrue(result.getValuesAsDouble("https://test-stack/data/number").contains(1000.0),
+                "Expected spike to be kept!");
+
+        // Values should still line up with their times
+        for (int i = 0; i < newTimes.size(); i++) {
+            int index = (int) (newTimes.get(i).getEpochSecond() / 60);
+            Assertions.assertEquals(states.get(index), result.getValues("https://test-stack/data/state").get(i));
+        }
+    }
+
+    /**
+     * Tests that the limit holds even when there are more numeric columns than
+     * can fit in a single bucket.
+     */
+    @Test
+    public void testManyColumns() {
+        List<Instant> times = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            times.add(Instant.ofEpochSecond(i * 60L));
+        }
+
+        List<String> dataIRIs = new ArrayList<>();
+        List<List<?>> columns = new ArrayList<>();
+        for (int column = 0; column < 60; column++) {
+            // Each column peaks and dips at its own points
+            List<Double> values = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                values.add((i == 1 + column * 7) ? 10.0 : (i == 500 + column * 7) ? -10.0 : 0.0);
+            }
+            dataIRIs.add("https://test-stack/data/number-" + column);
+            columns.add(values);
+        }
+
+        TimeSeries<Instant> result = TimeSeriesDownsampler.downsample(new TimeSeries<>(times, dataIRIs, columns), 100);
+        List<Instant> newTimes = result.getTimes();
+
+        Assertions.assertEquals(100, newTimes.size(), "Expected exactly 100 points!");
+        Assertions.assertEquals(times.get(0), newTimes.get(0), "Expected first point to be kept!");
+        Assertions.assertEquals(times.get(999), newTimes.get(99), "Expected last point to be kept!");
+        for (int i = 1; i < newTimes.size(); i++) {
+            Assertions.assertTrue(newTimes.get(i).isAfter(newTimes.get(i - 1)), "Expected times to stay ordered!");
+        }
+        Assertions.assertEquals(1, TimeSeriesDownsampler.downsample(new TimeSeries<>(times, dataIRIs, columns), 1)
+                .getTimes().size());
+    }
+
+    /**
+     * Tests that series already within the limit are returned untouched.
+     */
+    @Test
+    public void testShortSeries() {
+        TimeSeries<Instant> timeseries = new TimeSeries<>(
+                List.of(Instant.ofEpochSecond(0), Instant.ofEpochSecond(60)),
+                List.of("https://test-stack/data/number"),
+                List.<List<?>>of(List.of(1.0, 2.0)));
+
+        Assertions.assertSame(timeseries, TimeSeriesDownsampler.downsample(timeseries, 10));
+    }
+
+}
+// End of class.
@@ -0,0 +1,106 @@
+package com.cmclinnovations.featureinfo.core.time;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import uk.ac.cam.cares.jps.base.timeseries.TimeSeries;
+
+/**
+ * Tests for the TimeWindowCache class.
+ */
+public class TimeWindowCacheTest {
+
+    /**
+     * Tests that the least recently used windows are evicted once the memory
+     * budget is exceeded, and that windows larger than the budget are not stored.
+     */
+    @Test
+    public void testBudget() {
+        // Each ten point, single column, window is estimated at 816 bytes
+        TimeWindowCache cache = new TimeWindowCache(2000, 0);
+        cache.put("entry", List.of("one"), window(10));
+        cache.put("entry", List.of("two"), window(10));
+
+        // Access "one" so that "two" becomes the least recently used
+        Assertions.assertNotNull(cache.get("entry", List.of("one")));
+        cache.put("entry", List.of("three"), window(10));
+
+        Assertions.assertNull(cache.get("entry", List.of("two")), "Least recently used window was not evicted!");
+        Assertions.assertNotNull(cache.get("entry", List.of("one")));
+        Assertions.assertNotNull(cache.get("entry", List.of("three")));
+        Assertions.assertNull(cache.get("other-entry", List.of("one")), "Windows should be cached per entry!");
+
+        cache.put("entry", List.of("four"), window(100));
+        Assertions.assertNull(cache.get("entry", List.of("four")), "Window larger than budget was stored!");
+        Assertions.assertEquals(1632, cache.getStatistics().getLong("weight"));
+    }
+
+    /**
+     * Tests that windows are treated as absent once their time-to-live has passed.
+     */
+    @Test
+    public void testExpiry() {
+        AtomicLong clock = new AtomicLong(0);
+        TimeWindowCache cache = new TimeWindowCache(10_000, 60, clock::get);
+        cache.put("entry", List.of("one"), window(10));
+
+        clock.set(TimeUnit.SECONDS.toNanos(59));
+        Assertions.assertNotNull(cache.get("entry", List.of("one")), "Window expired before its time-to-live!");
+
+        clock.set(TimeUnit.SECONDS.toNanos(61));
+        Assertions.assertNull(cache.get("entry", List.of("one")), "Window did not expire after its time-to-live!");
+        Assertions.assertEquals(0, cache.getStatistics().getLong("weight"));
+    }
+
+    /**
+     * Tests that extending a window keeps the time-to-live of its last full
+     * read, so that frequently requested windows still expire.
+     */
+    @Test
+    public void testExtendKeepsExpiry() {
+        AtomicLong clock = new AtomicLong(0);
+        TimeWindowCache cache = new TimeWindowCache(10_000, 60, clock::get);
+        cache.put("entry", List.of("one"), window(10));
+
+        clock.set(TimeUnit.SECONDS.toNanos(50));
+        cache.extend("entry", List.of("one"), window(11));
+        Assertions.assertEquals(11, cache.get("entry", List.of("one")).timeseries().getTimes().size());
+
+        clock.set(TimeUnit.SECONDS.toNanos(61));
+        Assertions.assertNull(cache.get("entry", List.of("one")), "Extending a window reset its time-to-live!");
+
+        // Extending an absent window starts a new time-to-live
+        cache.extend("entry", List.of("one"), window(12));
+        clock.set(TimeUnit.SECONDS.toNanos(100));
+        Assertions.assertNotNull(cache.get("entry", List.of("one")));
+    }
+
+    /**
+     * Creates a single column window with the input number of points.
+     *
+     * @param size number of points.
+     *
+     * @return window.
+     */
+    private static TimeWindowCache.Window window(int size) {
+        List<Instant> times = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            times.add(Instant.ofEpochSecond(i));
+        }
+
+        TimeSeries<Instant> timeseries = new TimeSeries<>(
+                times,
+                List.of("data"),
+                List.of(Collections.nCopies(size, 1.0)));
+        return new TimeWindowCache.Window(timeseries, times.get(0), times.get(size - 1));
+    }
+
+}
+// End of class.
@@ -0,0 +1,45 @@
+package com.cmclinnovations.featureinfo.core.time;
+
+import java.time.Instant;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the TimeWindow class.
+ */
+public class TimeWindowTest {
+
+    /**
+     * Tests that cursors survive a round trip, and that invalid cursors and page
+     * sizes are rejected.
+     */
+    @Test
+    public void testCursor() {
+        Instant time = Instant.parse("2023-05-01T12:34:56.789Z");
+        String cursor = TimeWindow.encodeCursor(time);
+        Assertions.assertEquals(time, TimeWindow.decodeCursor(cursor));
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> TimeWindow.decodeCursor("not-a-cursor"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> TimeWindow.of(null, null, 0, null));
+    }
+
+    /**
+     * Tests that windows are only created when parameters are set, and that the
+     * upper bound is the earlier of the cursor and "to" parameter.
+     */
+    @Test
+    public void testUpperBound() {
+        Assertions.assertNull(TimeWindow.of(null, null, null, ""));
+
+        Instant time = Instant.ofEpochSecond(500);
+        TimeWindow window = TimeWindow.of(100L, 1000L, 10, TimeWindow.encodeCursor(time));
+        Assertions.assertEquals(Instant.ofEpochSecond(100), window.from());
+        Assertions.assertEquals(time, window.upperBound());
+
+        window = TimeWindow.of(null, 200L, null, TimeWindow.encodeCursor(time));
+        Assertions.assertEquals(Instant.ofEpochSecond(200), window.upperBound());
+    }
+
+}
+// End of class.
@@ -0,0 +1,142 @@
+package com.cmclinnovations.featureinfo.core.trajectory;
+
+import java.util.List;
+
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryFactory;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the ChunkedMetaQuery class.
+ */
+public class ChunkedMetaQueryTest {
+
+    /**
+     * Tests that averages are rewritten into partial sums and counts, then
+     * merged as a weighted mean per group.
+     */
+    @Test
+    public void testMergeAverage() {
+        ChunkedMetaQuery query = ChunkedMetaQuery.of(QueryFactory.create(
+                "SELECT ?Property (AVG(?value) AS ?Value) (MAX(?value) AS ?Max) WHERE {"
+                        + " ?Feature <https://test-stack/hasValue> ?value ."
+                        + " BIND(\"Average\" AS ?Property) } GROUP BY ?Property"),
+                "Feature");
+        Assertions.assertTrue(query.isChunkable());
+
+        String rendered = query.render(List.of("https://test-stack/feature")).toLowerCase();
+        Assertions.assertTrue(rendered.contains("values ?feature"));
+        Assertions.assertTrue(rendered.contains("sum(?value)"));
+        Assertions.assertTrue(rendered.contains("count(?value)"));
+
+        JSONArray first = new JSONArray().put(new JSONObject()
+                .put("Property", "Average").put("Value", "30").put("fia_count_Value", "3").put("Max", "20"));
+        JSONArray second = new JSONArray().put(new JSONObject()
+                .put("Property", "Average").put("Value", "10").put("fia_count_Value", "1").put("Max", "10"));
+
+        JSONArray merged = query.merge(List.of(first, second));
+        Assertions.assertEquals(1, merged.length());
+        Assertions.assertEquals(10.0, merged.getJSONObject(0).getDouble("Value"), 1E-9);
+        Assertions.assertEquals("20", merged.getJSONObject(0).get("Max"));
+
+        // A single chunk must still be finished into a mean
+        merged = query.merge(List.of(first));
+        Assertions.assertEquals(10.0, merged.getJSONObject(0).getDouble("Value"), 1E-9);
+        Assertions.assertFalse(merged.getJSONObject(0).has("fia_count_Value"));
+    }
+
+    /**
+     * Tests that queries without aggregates are concatenated, and that
+     * unmergeable queries are not chunked.
+     */
+    @Test
+    public void testConcatenateAndUnmergeable() {
+        ChunkedMetaQuery query = ChunkedMetaQuery.of(QueryFactory.create(
+                "SELECT DISTINCT ?Property ?Value WHERE { ?Feature ?Property ?Value }"), "Feature");
+        Assertions.assertTrue(query.isChunkable());
+
+        JSONArray first = new JSONArray().put(new JSONObject().put("Property", "a").put("Value", "1"));
+        JSONArray second = new JSONArray()
+                .put(new JSONObject().put("Property", "a").put("Value", "1"))
+                .put(new JSONObject().put("Property", "b").put("Value", "2"));
+        Assertions.assertEquals(2, query.merge(List.of(first, second)).length());
+
+        ChunkedMetaQuery unmergeable = ChunkedMetaQuery.of(QueryFactory.create(
+                "SELECT (SAMPLE(?v) AS ?Value) WHERE { ?Feature ?p ?v }"), "Feature");
+        Assertions.assertFalse(unmergeable.isChunkable());
+    }
+
+    /**
+     * Tests that merged rows are re-sorted by the query's ORDER BY variables,
+     * and that queries ordered by anything else are not chunked.
+     */
+    @Test
+    public void testMergeOrdered() {
+        ChunkedMetaQuery query = ChunkedMetaQuery.of(QueryFactory.create(
+                "SELECT ?Property ?Value WHERE { ?Feature ?Property ?Value } ORDER BY ?Property"), "Feature");
+        Assertions.assertTrue(query.isChunkable());
+
+        JSONArray first = new JSONArray()
+                .put(new JSONObject().put("Property", "b").put("Value", "2"))
+                .put(new JSONObject().put("Property", "d").put("Value", "4"));
+        JSONArray second = new JSONArray()
+                .put(new JSONObject().put("Property", "a").put("Value", "1"))
+                .put(new JSONObject().put("Property", "c").put("Value", "3"));
+        JSONArray merged = query.merge(List.of(first, second));
+        Assertions.assertEquals(4, merged.length());
+        for (int i = 0; i < merged.length(); i++) {
+            Assertions.assertEquals(String.valueOf(i + 1), merged.getJSONObject(i).get("Value"),
+                    "Merged rows were not sorted!");
+        }
+
+        // Merged aggregates are sorted numerically
+        ChunkedMetaQuery counted = ChunkedMetaQuery.of(QueryFactory.create(
+                "SELECT ?Property (COUNT(?v) AS ?Value) WHERE { ?Feature ?Property ?v }"
+                        + " GROUP BY ?Property ORDER BY DESC(?Value)"),
+                "Feature");
+        Assertions.assertTrue(counted.isChunkable());
+
+        first = new JSONArray()
+                .put(new JSONObject().put("Property", "a").put("Value", "9"))
+                .put(new JSONObject().put("Property", "b").put("Value", "5"));
+        second = new JSONArray()
+                .put(new JSONObject().put("Property", "b").put("Value", "6"));
+        merged = counted.merge(List.of(first, second));
+        Assertions.assertEquals("b", merged.getJSONObject(0).get("Property"));
+        Assertions.assertEquals(11L, merged.getJSONObject(0).getLong("Value"));
+        Assertions.assertEquals("a", merged.getJSONObject(1).get("Property"));
+
+        // Ordering by expressions or variables that are not projected cannot be re-sorted
+        Assertions.assertFalse(ChunkedMetaQuery.of(QueryFactory.create(
+                "SELECT ?Property ?Value WHERE { ?Feature ?Property ?Value } ORDER BY STRLEN(?Value)"),
+                "Feature").isChunkable());
+        Assertions.assertFalse(ChunkedMetaQuery.of(QueryFactory.create(
+                "SELECT ?Property WHERE { ?Feature ?Property ?Value } ORDER BY ?Value"),
+                "Feature").isChunkable());
+    }
+
+    /**
+     * Tests that rewriting an aggregate query keeps its dataset and trailing
+     * VALUES block.
+     */
+    @Test
+    public void testRewriteKeepsDatasetAndValues() {
+        ChunkedMetaQuery query = ChunkedMetaQuery.of(QueryFactory.create(
+                "SELECT ?Property (SUM(?v) AS ?Value) FROM <https://test-stack/graph>"
+                        + " FROM NAMED <https://test-stack/named> WHERE { ?Feature ?Property ?v }"
+                        + " GROUP BY ?Property VALUES ?Property { <https://test-stack/hasValue> }"),
+                "Feature");
+        Assertions.assertTrue(query.isChunkable());
+
+        Query rendered = QueryFactory.create(query.render(List.of("https://test-stack/feature")));
+        Assertions.assertEquals(List.of("https://test-stack/graph"), rendered.getGraphURIs());
+        Assertions.assertEquals(List.of("https://test-stack/named"), rendered.getNamedGraphURIs());
+        Assertions.assertTrue(rendered.hasValues(), "Trailing VALUES block was dropped!");
+        Assertions.assertEquals("Property", rendered.getValuesVariables().get(0).getVarName());
+    }
+
+}
+// End of class.
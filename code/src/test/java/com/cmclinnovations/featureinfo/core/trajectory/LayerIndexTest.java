@@ -0,0 +1,86 @@
+package com.cmclinnovations.featureinfo.core.trajectory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.postgis.LineString;
+import org.postgis.LinearRing;
+import org.postgis.Point;
+import org.postgis.Polygon;
+
+/**
+ * Tests for the LayerIndex class.
+ */
+public class LayerIndexTest {
+
+    /**
+     * Tests that features are matched if the trajectory crosses, lies within, or
+     * passes within the buffer distance of them, but not otherwise.
+     */
+    @Test
+    public void testIntersecting() {
+        // Degrees of longitude/latitude per metre at the equator
+        double metre = 1 / LayerIndex.METRES_PER_DEGREE;
+
+        List<LayerIndex.Feature> features = new ArrayList<>();
+        features.add(LayerIndex.toFeature("crossed", square(0.001, -0.0005, 0.001)));
+        features.add(LayerIndex.toFeature("near", new Point(0.003, 50 * metre)));
+        features.add(LayerIndex.toFeature("far", new Point(0.003, 150 * metre)));
+        features.add(LayerIndex.toFeature("within", square(-1, -1, 2)));
+
+        // Pad layer with distant features, so that the tree has several levels
+        for (int i = 0; i < 500; i++) {
+            features.add(LayerIndex.toFeature("distant-" + i, square(10 + i * 0.01, 10, 0.001)));
+        }
+        LayerIndex index = new LayerIndex(features);
+        Assertions.assertEquals(504, index.size());
+
+        LineString line = new LineString(new Point[] { new Point(0, 0), new Point(0.005, 0) });
+        Assertions.assertEquals(List.of("within", "crossed", "near"), sorted(index.intersecting(line, 100)));
+        Assertions.assertEquals(List.of("within", "crossed", "near", "far"), sorted(index.intersecting(line, 200)));
+    }
+
+    /**
+     * Tests the distance between segments.
+     */
+    @Test
+    public void testSegmentDistance() {
+        Assertions.assertEquals(0, LayerIndex.segmentDistance(0, 0, 2, 2, 0, 2, 2, 0), 1E-9);
+        Assertions.assertEquals(1, LayerIndex.segmentDistance(0, 0, 2, 0, 1, 1, 1, 3), 1E-9);
+        Assertions.assertEquals(Math.sqrt(2), LayerIndex.segmentDistance(0, 0, 0, 0, 1, 1, 1, 1), 1E-9);
+    }
+
+    /**
+     * Returns a square polygon.
+     *
+     * @param x    minimum x.
+     * @param y    minimum y.
+     * @param size length of each side.
+     *
+     * @return polygon.
+     */
+    private static Polygon square(double x, double y, double size) {
+        return new Polygon(new LinearRing[] { new LinearRing(new Point[] {
+                new Point(x, y),
+                new Point(x + size, y),
+                new Point(x + size, y + size),
+                new Point(x, y + size),
+                new Point(x, y) }) });
+    }
+
+    /**
+     * Orders the input IRIs as per the expectations of this test.
+     *
+     * @param iris matched IRIs.
+     *
+     * @return IRIs in a fixed order.
+     */
+    private static List<String> sorted(List<String> iris) {
+        List<String> order = List.of("within", "crossed", "near", "far");
+        return iris.stream().sorted((a, b) -> Integer.compare(order.indexOf(a), order.indexOf(b))).toList();
+    }
+
+}
+// End of class.
@@ -0,0 +1,49 @@
+package com.cmclinnovations.featureinfo.core.trajectory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.postgis.Point;
+
+/**
+ * Tests for the LineSimplifier class.
+ */
+public class LineSimplifierTest {
+
+    /**
+     * Tests that near-collinear points are removed whilst corners (and the end
+     * points) are kept.
+     */
+    @Test
+    public void testSimplify() {
+        List<Point> points = new ArrayList<>();
+        for (int i = 0; i <= 10; i++) {
+            points.add(new Point(i, (i % 2 == 0) ? 0 : 0.01));
+        }
+        for (int i = 1; i <= 10; i++) {
+            points.add(new Point(10, i));
+        }
+
+        List<Point> simplified = LineSimplifier.simplify(points, 0.1);
+        Assertions.assertEquals(
+                List.of(new Point(0, 0), new Point(10, 0), new Point(10, 10)),
+                simplified);
+
+        // Tolerance below the wiggle keeps every point, except the exactly collinear ones
+        Assertions.assertEquals(points.size() - 9, LineSimplifier.simplify(points, 0.001).size());
+    }
+
+    /**
+     * Tests that disabled tolerances and short lines are left untouched.
+     */
+    @Test
+    public void testUnchanged() {
+        List<Point> points = List.of(new Point(0, 0), new Point(1, 5), new Point(2, 0));
+        Assertions.assertSame(points, LineSimplifier.simplify(points, 0));
+        Assertions.assertEquals(2, LineSimplifier.simplify(points.subList(0, 2), 10).size());
+    }
+
+}
+// End of class.
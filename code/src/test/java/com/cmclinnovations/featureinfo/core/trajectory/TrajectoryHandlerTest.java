@@ -0,0 +1,130 @@
+package com.cmclinnovations.featureinfo.core.trajectory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.postgis.LineString;
+import org.postgis.Point;
+
+import com.cmclinnovations.featureinfo.utils.QueryTemplate;
+
+/**
+ * Tests for the TrajectoryHandler class.
+ */
+public class TrajectoryHandlerTest {
+
+    /**
+     * Tests that time ordered points from multiple devices are merged into a
+     * single time ordered list, keeping device order for equal times.
+     */
+    @Test
+    public void testMergeByTime() {
+        List<List<Long>> times = List.of(
+                List.of(1L, 4L, 6L),
+                List.of(),
+                List.of(2L, 4L, 5L, 9L));
+        List<List<String>> points = List.of(
+                List.of("a1", "a4", "a6"),
+                List.of(),
+                List.of("c2", "c4", "c5", "c9"));
+
+        Assertions.assertEquals(
+                List.of("a1", "c2", "a4", "c4", "c5", "a6", "c9"),
+                TrajectoryHandler.mergeByTime(times, points));
+        Assertions.assertTrue(TrajectoryHandler.mergeByTime(List.of(), List.<List<String>>of()).isEmpty());
+    }
+
+    /**
+     * Tests that the trajectory line is bound as (untyped) WKT text or WKB bytes
+     * as per each parameter's placeholder.
+     * 
+     * @throws SQLException if parameters cannot be set.
+     */
+    @Test
+    public void testBindLine() throws SQLException {
+        LineString line = new LineString(new Point[] { new Point(0, 0), new Point(1, 1) });
+        PreparedStatement statement = Mockito.mock(PreparedStatement.class);
+
+        TrajectoryHandler.bindLine(statement,
+                List.of(QueryTemplate.Placeholder.LINE_WKB, QueryTemplate.Placeholder.LINE_WKT),
+                line);
+
+        Mockito.verify(statement).setBytes(ArgumentMatchers.eq(1), ArgumentMatchers.any(byte[].class));
+        Mockito.verify(statement).setObject(2, line.toString(), Types.OTHER);
+    }
+
+    /**
+     * Tests that the in-memory layer matches the same features as the feature
+     * query would (run against the simplified line, with its buffer increased by
+     * the tolerance), including those near points removed by simplification.
+     */
+    @Test
+    public void testLayerMatchesRemote() {
+        double metre = 1 / LayerIndex.METRES_PER_DEGREE;
+        double buffer = 10;
+        double tolerance = 5 * metre;
+
+        // Middle point lies within the tolerance of the simplified line, so is removed
+        List<Point> points = List.of(new Point(0, 0), new Point(0.005, 4 * metre), new Point(0.01, 0));
+        LineString simplified = new LineString(LineSimplifier.simplify(points, tolerance).toArray(new Point[0]));
+        Assertions.assertEquals(2, simplified.numPoints());
+
+        List<Point> featurePoints = List.of(
+                new Point(0.005, 13 * metre),
+                new Point(0.005, -12 * metre),
+                new Point(0.005, 20 * metre),
+                new Point(0.02, 0));
+        List<LayerIndex.Feature> features = new ArrayList<>();
+        for (int i = 0; i < featurePoints.size(); i++) {
+            features.add(LayerIndex.toFeature("feature-" + i, featurePoints.get(i)));
+        }
+
+        // Remote equivalent, i.e. ST_DWithin(line, feature, buffer + tolerance)
+        List<String> remote = new ArrayList<>();
+        Point start = simplified.getPoint(0);
+        Point end = simplified.getPoint(1);
+        for (int i = 0; i < featurePoints.size(); i++) {
+            Point point = featurePoints.get(i);
+            double distance = LayerIndex.segmentDistance(start.getX(), start.getY(), end.getX(), end.getY(),
+                    point.getX(), point.getY(), point.getX(), point.getY()) * LayerIndex.METRES_PER_DEGREE;
+            if (distance <= buffer + tolerance * LayerIndex.METRES_PER_DEGREE) {
+                remote.add("feature-" + i);
+            }
+        }
+        Assertions.assertEquals(List.of("feature-0", "feature-1"), remote);
+
+        List<String> local = TrajectoryHandler.getLayerFeatures(new LayerIndex(features), simplified, buffer,
+                tolerance);
+        Assertions.assertEquals(remote, local.stream().sorted().toList());
+    }
+
+    /**
+     * Tests that a failed transaction is rolled back, and that an error from
+     * the rollback is kept alongside the original failure.
+     * 
+     * @throws SQLException if mocked rollback fails.
+     */
+    @Test
+    public void testRollback() throws SQLException {
+        Connection conn = Mockito.mock(Connection.class);
+        SQLException failure = new SQLException("Mock query failure");
+        TrajectoryHandler.rollback(conn, failure);
+        Mockito.verify(conn).rollback();
+        Assertions.assertEquals(0, failure.getSuppressed().length);
+
+        SQLException rollbackFailure = new SQLException("Mock rollback failure");
+        Mockito.doThrow(rollbackFailure).when(conn).rollback();
+        TrajectoryHandler.rollback(conn, failure);
+        Assertions.assertSame(rollbackFailure, failure.getSuppressed()[0]);
+    }
+
+}
+// End of class.
@@ -0,0 +1,109 @@
+package com.cmclinnovations.featureinfo.utils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the ExpiringCache class.
+ */
+public class ExpiringCacheTest {
+
+    /**
+     * Tests that the least recently used entry is evicted once the cache is full.
+     */
+    @Test
+    public void testEviction() {
+        ExpiringCache<String, String> cache = new ExpiringCache<>(2, 0);
+        cache.put("one", "1");
+        cache.put("two", "2");
+
+        // Access "one" so that "two" becomes the least recently used
+        Assertions.assertEquals("1", cache.get("one"));
+        cache.put("three", "3");
+
+        Assertions.assertEquals(2, cache.size(), "Cache has grown past its maximum size!");
+        Assertions.assertNull(cache.get("two"), "Least recently used entry was not evicted!");
+        Assertions.assertEquals("1", cache.get("one"));
+        Assertions.assertEquals("3", cache.get("three"));
+    }
+
+    /**
+     * Tests that entries are treated as absent once their time-to-live has passed.
+     */
+    @Test
+    public void testExpiry() {
+        AtomicLong clock = new AtomicLong(0);
+        ExpiringCache<String, String> cache = new ExpiringCache<>(10, 60, clock::get);
+        cache.put("one", "1");
+
+        clock.set(TimeUnit.SECONDS.toNanos(59));
+        Assertions.assertEquals("1", cache.get("one"), "Entry expired before its time-to-live!");
+
+        clock.set(TimeUnit.SECONDS.toNanos(61));
+        Assertions.assertNull(cache.get("one"), "Entry did not expire after its time-to-live!");
+    }
+
+    /**
+     * Tests that expired entries are returned as stale during the stale period,
+     * then treated as absent.
+     */
+    @Test
+    public void testStaleLookup() {
+        AtomicLong clock = new AtomicLong(0);
+        ExpiringCache<String, String> cache = new ExpiringCache<>(10, 60, 30, clock::get);
+        cache.put("one", "1");
+
+        clock.set(TimeUnit.SECONDS.toNanos(59));
+        Assertions.assertFalse(cache.lookup("one").stale(), "Entry was stale before its time-to-live!");
+
+        clock.set(TimeUnit.SECONDS.toNanos(61));
+        ExpiringCache.Lookup<String> lookup = cache.lookup("one");
+        Assertions.assertEquals("1", lookup.value());
+        Assertions.assertTrue(lookup.stale(), "Entry was not stale after its time-to-live!");
+        Assertions.assertNull(cache.get("one"), "Stale entry should not be returned by get()!");
+
+        clock.set(TimeUnit.SECONDS.toNanos(91));
+        Assertions.assertNull(cache.lookup("one"), "Entry was not removed after its stale period!");
+
+        // Stale entries only count as (stale) hits when returned by lookup()
+        JSONObject statistics = cache.getStatistics();
+        Assertions.assertEquals(1, statistics.getLong("hits"));
+        Assertions.assertEquals(1, statistics.getLong("staleHits"));
+        Assertions.assertEquals(2, statistics.getLong("misses"));
+    }
+
+    /**
+     * Tests that hits and misses are reported correctly.
+     */
+    @Test
+    public void testStatistics() {
+        ExpiringCache<String, String> cache = new ExpiringCache<>(10, 0);
+        cache.put("one", "1");
+        cache.get("one");
+        cache.get("one");
+        cache.get("two");
+
+        JSONObject statistics = cache.getStatistics();
+        Assertions.assertEquals(2, statistics.getLong("hits"));
+        Assertions.assertEquals(1, statistics.getLong("misses"));
+        Assertions.assertEquals(1, statistics.getInt("size"));
+    }
+
+    /**
+     * Tests that a cache with no capacity never stores entries.
+     */
+    @Test
+    public void testDisabled() {
+        ExpiringCache<String, String> cache = new ExpiringCache<>(0, 60);
+        cache.put("one", "1");
+
+        Assertions.assertFalse(cache.isEnabled());
+        Assertions.assertNull(cache.get("one"));
+    }
+
+}
+// End of class.
@@ -0,0 +1,110 @@
+package com.cmclinnovations.featureinfo.utils;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.cmclinnovations.featureinfo.config.StackEndpoint;
+import com.cmclinnovations.featureinfo.config.StackEndpointType;
+
+/**
+ * Tests for the QueryTemplate class.
+ */
+public class QueryTemplateTest {
+
+    /**
+     * Mock Ontop endpoint.
+     */
+    private static final StackEndpoint ONTOP = new StackEndpoint(
+            "https://test-stack/ontop", null, null, StackEndpointType.ONTOP);
+
+    /**
+     * Mock Blazegraph endpoint.
+     */
+    private static final StackEndpoint BLAZEGRAPH = new StackEndpoint(
+            "https://test-stack/blazegraph", null, null, StackEndpointType.BLAZEGRAPH);
+
+    /**
+     * Tests that all placeholders (including repeated ones) are injected, whilst
+     * other bracketed text is left untouched.
+     */
+    @Test
+    public void testRender() {
+        QueryTemplate template = QueryTemplate.compile(
+                "SELECT * WHERE { [IRI] ?p [] . SERVICE [ONTOP] { [IRI] ?q ?o } VALUES ?e { [ENDPOINTS-ALL]} VALUES ?b { [ENDPOINTS-BLAZEGRAPH]} }");
+
+        String result = Utils.queryInject(template, "https://test-stack/feature", List.of(ONTOP), List.of(BLAZEGRAPH));
+
+        Assertions.assertEquals(
+                "SELECT * WHERE { <https://test-stack/feature> ?p [] . SERVICE <https://test-stack/ontop> { <https://test-stack/feature> ?q ?o } "
+                        + "VALUES ?e { <https://test-stack/ontop> <https://test-stack/blazegraph> } "
+                        + "VALUES ?b { <https://test-stack/blazegraph> } }",
+                result);
+    }
+
+    /**
+     * Tests that the [ONTOP] placeholder is left in place unless there is exactly
+     * one Ontop endpoint, and that [LINE_WKT] is only injected when provided.
+     */
+    @Test
+    public void testOptionalPlaceholders() {
+        QueryTemplate template = QueryTemplate.compile("[ONTOP] [LINE_WKT]");
+        Assertions.assertTrue(template.contains(QueryTemplate.Placeholder.LINE_WKT));
+        Assertions.assertFalse(template.contains(QueryTemplate.Placeholder.IRI));
+
+        String result = Utils.queryInject(template, "<https://test-stack/feature>", List.of(ONTOP, ONTOP), List.of());
+        Assertions.assertEquals("[ONTOP] [LINE_WKT]", result);
+
+        result = Utils.queryInject(template, "https://test-stack/feature", List.of(ONTOP), List.of(), "LINESTRING(0 0,1 1)");
+        Assertions.assertEquals("<https://test-stack/ontop> LINESTRING(0 0,1 1)", result);
+    }
+
+    /**
+     * Tests that trajectory line placeholders are rendered as JDBC parameters
+     * (dropping quotes around [LINE_WKT]) whilst others are injected.
+     */
+    @Test
+    public void testRenderParameterised() {
+        QueryTemplate template = QueryTemplate.compile(
+                "SELECT iri FROM t WHERE ST_Intersects(geom, ST_GeomFromText('[LINE_WKT]', 4326))"
+                        + " OR ST_Intersects(geom, ST_GeomFromWKB([LINE_WKB], 4326)) OR iri = '[IRI]'");
+
+        QueryTemplate.ParameterisedQuery result = Utils.queryInjectParameterised(template,
+                "https://test-stack/feature", List.of(ONTOP), List.of(), "LINESTRING(0 0,1 1)");
+
+        Assertions.assertEquals(
+                "SELECT iri FROM t WHERE ST_Intersects(geom, ST_GeomFromText(?, 4326))"
+                        + " OR ST_Intersects(geom, ST_GeomFromWKB(?, 4326)) OR iri = '<https://test-stack/feature>'",
+                result.sql());
+        Assertions.assertEquals(
+                List.of(QueryTemplate.Placeholder.LINE_WKT, QueryTemplate.Placeholder.LINE_WKB),
+                result.parameters());
+
+        // Rendering as text leaves [LINE_WKB] in place
+        Assertions.assertTrue(Utils.queryInject(template, "https://test-stack/feature", List.of(ONTOP), List.of(),
+                "LINESTRING(0 0,1 1)").contains("[LINE_WKB]"));
+    }
+
+    /**
+     * Tests that a [LINE_WKT] placeholder within a larger literal is injected
+     * rather than bound, as a parameter cannot sit within a string literal.
+     */
+    @Test
+    public void testRenderParameterisedWithinLiteral() {
+        QueryTemplate template = QueryTemplate.compile(
+                "SELECT iri FROM t WHERE ST_Intersects(geom, ST_GeomFromEWKT('SRID=4326;[LINE_WKT]'))"
+                        + " OR ST_Intersects(geom, ST_GeomFromText('[LINE_WKT]', 4326))");
+
+        QueryTemplate.ParameterisedQuery result = Utils.queryInjectParameterised(template,
+                "https://test-stack/feature", List.of(ONTOP), List.of(), "LINESTRING(0 0,1 1)");
+
+        Assertions.assertEquals(
+                "SELECT iri FROM t WHERE ST_Intersects(geom, ST_GeomFromEWKT('SRID=4326;LINESTRING(0 0,1 1)'))"
+                        + " OR ST_Intersects(geom, ST_GeomFromText(?, 4326))",
+                result.sql());
+        Assertions.assertEquals(List.of(QueryTemplate.Placeholder.LINE_WKT), result.parameters());
+    }
+
+}
+// End of class.
@@ -0,0 +1,132 @@
+package com.cmclinnovations.featureinfo.utils;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+
+/**
+ * Tests for the RDBPoolRegistry class.
+ */
+public class RDBPoolRegistryTest {
+
+    /**
+     * Tests that a single pool is created per URL and user, and that idle pools
+     * are closed (then recreated on demand) when the registry is rebuilt.
+     *
+     * @throws SQLException if mocked connections cannot be made.
+     */
+    @Test
+    public void testPoolReuse() throws SQLException {
+        List<HikariDataSource> created = new ArrayList<>();
+
+        RDBPoolRegistry registry = new RDBPoolRegistry(0, 2, 60) {
+            @Override
+            protected HikariDataSource createPool(String url, String username, String password) {
+                HikariDataSource pool = Mockito.mock(HikariDataSource.class);
+                try {
+                    Mockito.when(pool.getConnection()).thenReturn(Mockito.mock(Connection.class));
+                } catch (SQLException exception) {
+                    Assertions.fail(exception);
+                }
+                created.add(pool);
+                return pool;
+            }
+        };
+
+        registry.getConnection("jdbc:postgresql://mock-postgres/one", "user", "pass");
+        registry.getConnection("jdbc:postgresql://mock-postgres/one", "user", "pass");
+        Assertions.assertEquals(1, created.size(), "Expected a single pool for the same URL and user!");
+
+        registry.getConnection("jdbc:postgresql://mock-postgres/one", "other", "pass");
+        registry.getConnection("jdbc:postgresql://mock-postgres/two", "user", "pass");
+        Assertions.assertEquals(3, created.size(), "Expected a pool for each distinct URL and user!");
+        Assertions.assertEquals(3, registry.getStatistics().length());
+
+        registry.rebuild();
+        created.forEach(pool -> Mockito.verify(pool).close());
+        Assertions.assertTrue(registry.getStatistics().isEmpty(), "Expected no pools after rebuild!");
+
+        registry.getConnection("jdbc:postgresql://mock-postgres/one", "user", "pass");
+        Assertions.assertEquals(4, created.size(), "Expected pool to be recreated on demand!");
+    }
+
+    /**
+     * Tests that a rebuild does not close a pool whilst its connections are
+     * still borrowed, only once they have been returned.
+     *
+     * @throws SQLException if mocked connections cannot be made.
+     */
+    @Test
+    public void testRebuildWhileInUse() throws SQLException {
+        HikariPoolMXBean bean = Mockito.mock(HikariPoolMXBean.class);
+        Mockito.when(bean.getActiveConnections()).thenReturn(1);
+
+        HikariDataSource pool = Mockito.mock(HikariDataSource.class);
+        Mockito.when(pool.getConnection()).thenReturn(Mockito.mock(Connection.class));
+        Mockito.when(pool.getHikariPoolMXBean()).thenReturn(bean);
+
+        RDBPoolRegistry registry = new RDBPoolRegistry(0, 2, 60) {
+            @Override
+            protected HikariDataSource createPool(String url, String username, String password) {
+                return pool;
+            }
+        };
+        registry.getConnection("jdbc:postgresql://mock-postgres/one", "user", "pass");
+
+        registry.rebuild();
+        Assertions.assertTrue(registry.getStatistics().isEmpty(), "Expected pool to be swapped out on rebuild!");
+        Mockito.verify(bean).softEvictConnections();
+        Mockito.verify(pool, Mockito.after(1500).never()).close();
+
+        // Connection returned, pool can now be closed
+        Mockito.when(bean.getActiveConnections()).thenReturn(0);
+        Mockito.verify(pool, Mockito.timeout(3000)).close();
+        registry.shutdown();
+    }
+
+    /**
+     * Tests that a pool closed between lookup and use is replaced, and the
+     * connection retried once.
+     *
+     * @throws SQLException if mocked connections cannot be made.
+     */
+    @Test
+    public void testClosedPoolRetry() throws SQLException {
+        HikariDataSource closed = Mockito.mock(HikariDataSource.class);
+        Mockito.when(closed.getConnection()).thenThrow(new SQLException("Mock pool has been closed."));
+        Mockito.when(closed.isClosed()).thenReturn(true);
+
+        Connection connection = Mockito.mock(Connection.class);
+        HikariDataSource open = Mockito.mock(HikariDataSource.class);
+        Mockito.when(open.getConnection()).thenReturn(connection);
+
+        List<HikariDataSource> pools = new ArrayList<>(List.of(closed, open));
+        RDBPoolRegistry registry = new RDBPoolRegistry(0, 2, 60) {
+            @Override
+            protected HikariDataSource createPool(String url, String username, String password) {
+                return pools.remove(0);
+            }
+        };
+
+        Assertions.assertSame(connection, registry.getConnection("jdbc:postgresql://mock-postgres/one", "user", "pass"));
+    }
+
+    /**
+     * Tests that a missing JDBC URL is reported as an SQLException.
+     */
+    @Test
+    public void testMissingURL() {
+        RDBPoolRegistry registry = new RDBPoolRegistry(0, 2, 60);
+        Assertions.assertThrows(SQLException.class, () -> registry.getConnection("", "user", "pass"));
+    }
+
+}
+// End of class.
@@ -0,0 +1,61 @@
+package com.cmclinnovations.featureinfo.utils;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import uk.ac.cam.cares.jps.base.timeseries.TimeSeriesClient;
+
+/**
+ * Tests for the TimeSeriesClientCache class.
+ */
+public class TimeSeriesClientCacheTest {
+
+    /**
+     * Tests that the factory is only called when any of the requested data IRIs
+     * are not cached (or are cached against different clients), and that clearing
+     * the cache forces a new lookup.
+     *
+     * @throws Exception if loader fails.
+     */
+    @Test
+    public void testCachedClients() throws Exception {
+        TimeSeriesClientCache cache = new TimeSeriesClientCache(10, 0);
+        AtomicInteger calls = new AtomicInteger();
+
+        TimeSeriesClient<?> clientOne = Mockito.mock(TimeSeriesClient.class);
+        TimeSeriesClient<?> clientTwo = Mockito.mock(TimeSeriesClient.class);
+
+        Assertions.assertSame(clientOne, cache.get(List.of("data-one", "data-two"), () -> {
+            calls.incrementAndGet();
+            return clientOne;
+        }));
+        Assertions.assertSame(clientOne, cache.get(List.of("data-two"), () -> {
+            calls.incrementAndGet();
+            return clientTwo;
+        }));
+        Assertions.assertEquals(1, calls.get(), "Expected cached client to be reused!");
+
+        cache.get(List.of("data-three"), () -> {
+            calls.incrementAndGet();
+            return clientTwo;
+        });
+        Assertions.assertSame(clientTwo, cache.get(List.of("data-one", "data-three"), () -> {
+            calls.incrementAndGet();
+            return clientTwo;
+        }));
+        Assertions.assertEquals(3, calls.get(), "Expected factory call for IRIs with different clients!");
+
+        cache.clear();
+        cache.get(List.of("data-two"), () -> {
+            calls.incrementAndGet();
+            return clientOne;
+        });
+        Assertions.assertEquals(4, calls.get(), "Expected factory call after cache was cleared!");
+    }
+
+}
+// End of class.
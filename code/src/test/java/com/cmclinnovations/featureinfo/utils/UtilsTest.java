@@ -0,0 +1,105 @@
+package com.cmclinnovations.featureinfo.utils;
+
+import java.util.List;
+import java.util.Map;
+
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryFactory;
+import org.json.JSONArray;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.cmclinnovations.featureinfo.config.StackEndpoint;
+import com.cmclinnovations.featureinfo.config.StackEndpointType;
+
+/**
+ * Tests for the Utils class.
+ */
+public class UtilsTest {
+
+    /**
+     * Mock Ontop endpoint.
+     */
+    private static final StackEndpoint ONTOP = new StackEndpoint(
+            "https://test-stack/ontop", null, null, StackEndpointType.ONTOP);
+
+    /**
+     * Mock feature IRIs.
+     */
+    private static final List<String> IRIS = List.of(
+            "https://test-stack/features/feature-one",
+            "https://test-stack/features/feature-two");
+
+    /**
+     * Tests that a plain SELECT query is batched, binding the IRI variable with a
+     * VALUES block and adding it to the projection.
+     */
+    @Test
+    public void testInjectValues() {
+        String result = inject("SELECT ?Property ?Value WHERE { [IRI] ?Property ?Value }");
+        Assertions.assertNotNull(result, "Expected query to be batched!");
+
+        Query parsed = QueryFactory.create(result);
+        Assertions.assertEquals(List.of("Property", "Value", Utils.BATCH_VARIABLE), parsed.getResultVars());
+        Assertions.assertTrue(result.contains("VALUES ?" + Utils.BATCH_VARIABLE));
+        IRIS.forEach(iri -> Assertions.assertTrue(result.contains("<" + iri + ">"), "Missing IRI: " + iri));
+    }
+
+    /**
+     * Tests that queries whose results would change if run for multiple IRIs at
+     * once are not batched.
+     */
+    @Test
+    public void testInjectValuesRefused() {
+        Assertions.assertNull(inject("SELECT (COUNT(?o) AS ?count) WHERE { [IRI] ?p ?o }"),
+                "Queries with aggregates should not be batched!");
+        Assertions.assertNull(inject("SELECT ?p WHERE { [IRI] ?p ?o } GROUP BY ?p"),
+                "Queries with grouping should not be batched!");
+        Assertions.assertNull(inject("SELECT ?p ?o WHERE { [IRI] ?p ?o } LIMIT 10"),
+                "Queries with limits should not be batched!");
+        Assertions.assertNull(inject("SELECT ?p WHERE { { SELECT ?p WHERE { [IRI] ?p ?o } } }"),
+                "Queries using the IRI within a sub-query should not be batched!");
+        Assertions.assertNull(inject("ASK WHERE { [IRI] ?p ?o }"),
+                "Non-SELECT queries should not be batched!");
+        Assertions.assertNull(inject("SELECT ?s WHERE { ?s ?p ?o }"),
+                "Queries without an IRI placeholder should not be batched!");
+    }
+
+    /**
+     * Tests that the results of a batched query are split by IRI, dropping the
+     * IRI variable and any rows for unknown IRIs.
+     */
+    @Test
+    public void testSplitBatchResult() {
+        JSONArray rawResult = new JSONArray(
+            """
+            [
+                {"fia_iri": "https://test-stack/features/feature-two", "Property": "Name", "Value": "Two"},
+                {"fia_iri": "https://test-stack/features/feature-one", "Property": "Name", "Value": "One"},
+                {"fia_iri": "https://test-stack/features/feature-three", "Property": "Name", "Value": "Three"}
+            ]
+            """
+        );
+
+        Map<String, JSONArray> results = Utils.splitBatchResult(rawResult, IRIS);
+        Assertions.assertEquals(IRIS, List.copyOf(results.keySet()), "Results were not in input order!");
+        Assertions.assertEquals(1, results.get(IRIS.get(0)).length());
+        Assertions.assertEquals("One", results.get(IRIS.get(0)).getJSONObject(0).getString("Value"));
+        Assertions.assertFalse(results.get(IRIS.get(0)).getJSONObject(0).has(Utils.BATCH_VARIABLE));
+        Assertions.assertEquals(1, results.get(IRIS.get(1)).length());
+        Assertions.assertEquals("Two", results.get(IRIS.get(1)).getJSONObject(0).getString("Value"));
+    }
+
+    /**
+     * Compiles the input query and injects the mock IRIs into it.
+     *
+     * @param query SPARQL query with an [IRI] placeholder.
+     *
+     * @return batched query (or null if cannot be batched).
+     */
+    private static String inject(String query) {
+        return Utils.queryInjectValues(QueryTemplate.compile(query), IRIS, List.of(ONTOP), List.of());
+    }
+
+}
+// End of class.
@@ -1,6 +1,6 @@
 WITH buffered_line AS (
     SELECT 
-        ST_Buffer(ST_Transform(ST_GeomFromText('[LINE_WKT]', 4326), 24500), 100) AS geom
+        ST_Buffer(ST_Transform(ST_GeomFromWKB([LINE_WKB], 4326), 24500), 100) AS geom
 )
 
 SELECT 
@@ -0,0 +1,5 @@
+SELECT 
+    iri, 
+    ST_AsBinary(ST_Transform(geom, 4326)) AS geom 
+FROM 
+    buildings_layer